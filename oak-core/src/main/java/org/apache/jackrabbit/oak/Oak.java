@@ -52,6 +52,7 @@ import com.google.common.io.Closer;
 import org.apache.jackrabbit.oak.api.ContentRepository;
 import org.apache.jackrabbit.oak.api.ContentSession;
 import org.apache.jackrabbit.oak.api.Root;
+import org.apache.jackrabbit.oak.api.jmx.CacheStatsMBean;
 import org.apache.jackrabbit.oak.api.jmx.IndexStatsMBean;
 import org.apache.jackrabbit.oak.api.jmx.QueryEngineSettingsMBean;
 import org.apache.jackrabbit.oak.api.jmx.RepositoryManagementMBean;
@@ -64,8 +65,12 @@ import org.apache.jackrabbit.oak.plugins.index.IndexEditorProvider;
 import org.apache.jackrabbit.oak.plugins.index.IndexUpdateProvider;
 import org.apache.jackrabbit.oak.plugins.index.property.jmx.PropertyIndexAsyncReindex;
 import org.apache.jackrabbit.oak.plugins.index.property.jmx.PropertyIndexAsyncReindexMBean;
+import org.apache.jackrabbit.oak.plugins.index.property.jmx.PropertyIndexStats;
+import org.apache.jackrabbit.oak.plugins.index.property.jmx.PropertyIndexStatsMBean;
 import org.apache.jackrabbit.oak.plugins.memory.MemoryNodeStore;
 import org.apache.jackrabbit.oak.query.QueryEngineSettings;
+import org.apache.jackrabbit.oak.security.authorization.AuthorizationConfigurationImpl;
+import org.apache.jackrabbit.oak.security.authorization.permission.GlobalPermissionEntryCache;
 import org.apache.jackrabbit.oak.spi.commit.CommitHook;
 import org.apache.jackrabbit.oak.spi.commit.CommitInfo;
 import org.apache.jackrabbit.oak.spi.commit.CompositeEditorProvider;
@@ -537,6 +542,23 @@ public class Oak {
 
         regs.add(registerMBean(whiteboard, QueryEngineSettingsMBean.class,
                 queryEngineSettings, QueryEngineSettingsMBean.TYPE, "settings"));
+        regs.add(registerMBean(whiteboard, PropertyIndexStatsMBean.class,
+                new PropertyIndexStats(store), PropertyIndexStatsMBean.TYPE,
+                "Property index statistics"));
+        regs.add(registerMBean(whiteboard, CacheStatsMBean.class,
+                queryEngineSettings.getPlanCacheStats(), CacheStatsMBean.TYPE,
+                queryEngineSettings.getPlanCacheStats().getName()));
+        for (SecurityConfiguration sc : securityProvider.getConfigurations()) {
+            if (sc instanceof AuthorizationConfigurationImpl) {
+                GlobalPermissionEntryCache cache =
+                        ((AuthorizationConfigurationImpl) sc).getPermissionEntryCache();
+                if (cache != null) {
+                    regs.add(registerMBean(whiteboard, CacheStatsMBean.class,
+                            cache.getStats(), CacheStatsMBean.TYPE,
+                            cache.getStats().getName()));
+                }
+            }
+        }
 
         // FIXME: OAK-810 move to proper workspace initialization
         // initialize default workspace
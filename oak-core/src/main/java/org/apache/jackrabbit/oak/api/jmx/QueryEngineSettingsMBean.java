@@ -51,4 +51,35 @@ public interface QueryEngineSettingsMBean {
      */
     void setLimitReads(long limitReads);
     
+    /**
+     * Whether the query engine may use hash joins (if the estimated cost is
+     * lower than the cost of a nested loop join).
+     * 
+     * @return true if hash joins are enabled
+     */
+    boolean isHashJoinEnabled();
+    
+    /**
+     * Enable or disable hash joins.
+     * 
+     * @param hashJoinEnabled the new value
+     */
+    void setHashJoinEnabled(boolean hashJoinEnabled);
+    
+    /**
+     * Whether query plans are cached. If enabled, the plan (join order and
+     * indexes) of a query is re-used when the same statement is executed
+     * again, with bind variables of the same type.
+     * 
+     * @return true if the plan cache is enabled
+     */
+    boolean isPlanCacheEnabled();
+    
+    /**
+     * Enable or disable the plan cache. Disabling it also clears the cache.
+     * 
+     * @param planCacheEnabled the new value
+     */
+    void setPlanCacheEnabled(boolean planCacheEnabled);
+    
 }
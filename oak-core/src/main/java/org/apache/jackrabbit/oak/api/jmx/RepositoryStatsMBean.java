@@ -104,4 +104,10 @@ public interface RepositoryStatsMBean {
      * Maximum length of observation queue in the respective time period.
      */
     CompositeData getObservationQueueMaxLength();
+
+    /**
+     * Maximum time in milliseconds changes waited in an observation queue
+     * before being processed, in the respective time period.
+     */
+    CompositeData getObservationQueueMaxDelay();
 }
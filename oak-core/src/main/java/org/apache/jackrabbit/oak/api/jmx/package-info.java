@@ -15,7 +15,7 @@
  * limitations under the License.
  */
 
-@Version("1.0")
+@Version("1.1")
 @Export(optional = "provide:=true")
 package org.apache.jackrabbit.oak.api.jmx;
 
@@ -0,0 +1,180 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.jackrabbit.oak.plugins.document;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Timing statistics and interval controls for the background operations
+ * of a {@link DocumentNodeStore}.
+ */
+public class BackgroundOperationStats implements BackgroundOperationStatsMBean {
+
+    private final DocumentNodeStore store;
+
+    private final Timing split = new Timing();
+
+    private final Timing write = new Timing();
+
+    private final Timing read = new Timing();
+
+    BackgroundOperationStats(DocumentNodeStore store) {
+        this.store = store;
+    }
+
+    void splitCompleted(long duration) {
+        split.record(duration);
+    }
+
+    void writeCompleted(long duration) {
+        write.record(duration);
+    }
+
+    void readCompleted(long duration) {
+        read.record(duration);
+    }
+
+    @Override
+    public int getSplitInterval() {
+        return store.getBackgroundSplitDelay();
+    }
+
+    @Override
+    public void setSplitInterval(int interval) {
+        store.setBackgroundSplitDelay(interval);
+    }
+
+    @Override
+    public long getSplitCount() {
+        return split.count;
+    }
+
+    @Override
+    public long getLastSplitDuration() {
+        return split.last;
+    }
+
+    @Override
+    public long getMaxSplitDuration() {
+        return split.max;
+    }
+
+    @Override
+    public long[] getSplitDurationHistogram() {
+        return split.histogram();
+    }
+
+    @Override
+    public int getWriteInterval() {
+        return store.getBackgroundWriteDelay();
+    }
+
+    @Override
+    public void setWriteInterval(int interval) {
+        store.setBackgroundWriteDelay(interval);
+    }
+
+    @Override
+    public long getWriteCount() {
+        return write.count;
+    }
+
+    @Override
+    public long getLastWriteDuration() {
+        return write.last;
+    }
+
+    @Override
+    public long getMaxWriteDuration() {
+        return write.max;
+    }
+
+    @Override
+    public long[] getWriteDurationHistogram() {
+        return write.histogram();
+    }
+
+    @Override
+    public int getReadInterval() {
+        return store.getBackgroundReadDelay();
+    }
+
+    @Override
+    public void setReadInterval(int interval) {
+        store.setBackgroundReadDelay(interval);
+    }
+
+    @Override
+    public long getReadCount() {
+        return read.count;
+    }
+
+    @Override
+    public long getLastReadDuration() {
+        return read.last;
+    }
+
+    @Override
+    public long getMaxReadDuration() {
+        return read.max;
+    }
+
+    @Override
+    public long[] getReadDurationHistogram() {
+        return read.histogram();
+    }
+
+    /**
+     * Durations of a single kind of background operation.
+     */
+    private static final class Timing {
+
+        /**
+         * Upper bounds (exclusive, in milliseconds) of all but the
+         * last histogram bucket.
+         */
+        private static final long[] BOUNDS = {1, 10, 100, 1000, 10000};
+
+        private final AtomicLongArray buckets =
+                new AtomicLongArray(BOUNDS.length + 1);
+
+        private volatile long count;
+
+        private volatile long last;
+
+        private volatile long max;
+
+        synchronized void record(long duration) {
+            count++;
+            last = duration;
+            max = Math.max(max, duration);
+            int i = 0;
+            while (i < BOUNDS.length && duration >= BOUNDS[i]) {
+                i++;
+            }
+            buckets.incrementAndGet(i);
+        }
+
+        long[] histogram() {
+            long[] values = new long[buckets.length()];
+            for (int i = 0; i < values.length; i++) {
+                values[i] = buckets.get(i);
+            }
+            return values;
+        }
+    }
+}
@@ -0,0 +1,133 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.jackrabbit.oak.plugins.document;
+
+/**
+ * MBean for monitoring and controlling the background operations of a
+ * {@link DocumentNodeStore}. The split of documents, the write back of
+ * {@code _lastRev} updates and the read of changes from other cluster nodes
+ * are scheduled independently of each other.
+ * <p>
+ * Duration histograms have six buckets with the upper bounds 1, 10, 100,
+ * 1000, 10000 milliseconds and the last bucket for anything above.
+ */
+public interface BackgroundOperationStatsMBean {
+    String TYPE = "DocumentBackgroundOperations";
+
+    /**
+     * @return  the delay (in milliseconds) between two runs of the
+     *          background split of documents
+     */
+    int getSplitInterval();
+
+    /**
+     * Sets the delay between two background splits.
+     *
+     * @param interval  the delay in milliseconds
+     * @throws IllegalArgumentException if the interval is not positive
+     */
+    void setSplitInterval(int interval);
+
+    /**
+     * @return  the number of completed background splits
+     */
+    long getSplitCount();
+
+    /**
+     * @return  the duration (in milliseconds) of the last background split
+     */
+    long getLastSplitDuration();
+
+    /**
+     * @return  the longest duration (in milliseconds) of a background split
+     */
+    long getMaxSplitDuration();
+
+    /**
+     * @return  the histogram of background split durations
+     */
+    long[] getSplitDurationHistogram();
+
+    /**
+     * @return  the delay (in milliseconds) between two runs of the
+     *          background write of {@code _lastRev} updates
+     */
+    int getWriteInterval();
+
+    /**
+     * Sets the delay between two background writes.
+     *
+     * @param interval  the delay in milliseconds
+     * @throws IllegalArgumentException if the interval is not positive
+     */
+    void setWriteInterval(int interval);
+
+    /**
+     * @return  the number of completed background writes
+     */
+    long getWriteCount();
+
+    /**
+     * @return  the duration (in milliseconds) of the last background write
+     */
+    long getLastWriteDuration();
+
+    /**
+     * @return  the longest duration (in milliseconds) of a background write
+     */
+    long getMaxWriteDuration();
+
+    /**
+     * @return  the histogram of background write durations
+     */
+    long[] getWriteDurationHistogram();
+
+    /**
+     * @return  the delay (in milliseconds) between two runs of the
+     *          background read of external changes
+     */
+    int getReadInterval();
+
+    /**
+     * Sets the delay between two background reads.
+     *
+     * @param interval  the delay in milliseconds
+     * @throws IllegalArgumentException if the interval is not positive
+     */
+    void setReadInterval(int interval);
+
+    /**
+     * @return  the number of completed background reads
+     */
+    long getReadCount();
+
+    /**
+     * @return  the duration (in milliseconds) of the last background read
+     */
+    long getLastReadDuration();
+
+    /**
+     * @return  the longest duration (in milliseconds) of a background read
+     */
+    long getMaxReadDuration();
+
+    /**
+     * @return  the histogram of background read durations
+     */
+    long[] getReadDurationHistogram();
+
+}
@@ -19,10 +19,11 @@ package org.apache.jackrabbit.oak.plugins.document;
 import static com.google.common.base.Preconditions.checkArgument;
 import static com.google.common.base.Preconditions.checkNotNull;
 
-import java.util.SortedMap;
+import java.util.Map;
 import java.util.SortedSet;
-import java.util.TreeMap;
 import java.util.TreeSet;
+import java.util.concurrent.ConcurrentNavigableMap;
+import java.util.concurrent.ConcurrentSkipListMap;
 import java.util.concurrent.CountDownLatch;
 
 import javax.annotation.Nonnull;
@@ -37,6 +38,14 @@ import org.slf4j.LoggerFactory;
 /**
  * <code>CommitQueue</code> ensures a sequence of commits consistent with the
  * commit revision even if commits did not complete in this sequence.
+ * <p>
+ * The queue is backed by a concurrent sorted map. Only the creation of a
+ * new commit revision and its insertion into the queue is done while holding
+ * the monitor of this queue. A trunk commit is processed by the thread that
+ * owns the first entry in the queue and the entry is only removed after the
+ * processing is done. This guarantees that at most one commit is applied to
+ * the head revision at a time without blocking threads that want to create
+ * a new commit revision.
  */
 class CommitQueue {
 
@@ -44,7 +53,8 @@ class CommitQueue {
 
     private final DocumentNodeStore store;
 
-    private final SortedMap<Revision, Entry> commits = new TreeMap<Revision, Entry>(StableRevisionComparator.INSTANCE);
+    private final ConcurrentNavigableMap<Revision, Entry> commits =
+            new ConcurrentSkipListMap<Revision, Entry>(StableRevisionComparator.INSTANCE);
 
     private final ChangeDispatcher dispatcher;
 
@@ -63,6 +73,9 @@ class CommitQueue {
         checkArgument(num > 0);
         SortedSet<Revision> revs = new TreeSet<Revision>(StableRevisionComparator.INSTANCE);
         Revision rev = null;
+        // revisions must be created and enqueued atomically, otherwise
+        // a later revision may become the head of the queue before an
+        // earlier one is added
         synchronized (this) {
             for (int i = 0; i < num; i++) {
                 rev = store.newRevision();
@@ -92,14 +105,14 @@ class CommitQueue {
 
     private void removeCommit(@Nonnull Revision rev) {
         // simply remove and notify next head if any
-        synchronized (this) {
-            boolean wasHead = commits.firstKey().equals(rev);
-            commits.remove(rev);
-            LOG.debug("removed commit {}, wasHead={}", rev, wasHead);
-            if (wasHead) {
-                notifyHead();
-            }
-        }
+        Map.Entry<Revision, Entry> head = commits.firstEntry();
+        boolean wasHead = head != null && head.getKey().equals(rev);
+        commits.remove(rev);
+        LOG.debug("removed commit {}, wasHead={}", rev, wasHead);
+        // always notify the current head. releasing a head that is already
+        // being processed is harmless, while missing a release when the
+        // removed commit concurrently became the head would stall the queue
+        notifyHead();
     }
 
     private void afterTrunkCommit(@Nonnull Commit commit,
@@ -107,39 +120,39 @@ class CommitQueue {
         assert !commits.isEmpty();
         Revision rev = commit.getRevision();
 
-        boolean isHead;
-        Entry commitEntry;
-        synchronized (this) {
-            isHead = commits.firstKey().equals(rev);
-            commitEntry = commits.get(rev);
-        }
-        if (!isHead) {
+        Entry commitEntry = commits.get(rev);
+        if (!rev.equals(commits.firstKey())) {
             LOG.debug("not head: {}, waiting...", rev);
             commitEntry.await();
         }
-        synchronized (this) {
+        // this commit is now the head of the queue and stays there until
+        // it is removed below. no other trunk commit can get past this point
+        // concurrently
+        try {
+            // remember before revision
+            Revision before = store.getHeadRevision();
+            // apply changes to cache based on before revision
+            commit.applyToCache(before, false);
+            // update head revision
+            store.setHeadRevision(rev);
+            NodeState root = store.getRoot();
+            dispatcher.contentChanged(root, info);
+        } finally {
             commits.remove(rev);
-            try {
-                LOG.debug("removed {}, head is now {}", rev, commits.isEmpty() ? null : commits.firstKey());
-                // remember before revision
-                Revision before = store.getHeadRevision();
-                // apply changes to cache based on before revision
-                commit.applyToCache(before, false);
-                // update head revision
-                store.setHeadRevision(rev);
-                NodeState root = store.getRoot();
-                dispatcher.contentChanged(root, info);
-            } finally {
-                // notify next if there is any
-                notifyHead();
+            if (LOG.isDebugEnabled()) {
+                Map.Entry<Revision, Entry> head = commits.firstEntry();
+                LOG.debug("removed {}, head is now {}", rev, head == null ? null : head.getKey());
             }
+            // notify next if there is any
+            notifyHead();
         }
     }
 
     private void notifyHead() {
-        if (!commits.isEmpty()) {
-            LOG.debug("release {}", commits.firstKey());
-            commits.get(commits.firstKey()).release();
+        Map.Entry<Revision, Entry> head = commits.firstEntry();
+        if (head != null) {
+            LOG.debug("release {}", head.getKey());
+            head.getValue().release();
         }
     }
 
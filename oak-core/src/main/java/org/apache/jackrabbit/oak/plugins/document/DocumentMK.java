@@ -490,6 +490,8 @@ public class DocumentMK implements MicroKernel {
         private boolean useSimpleRevision;
         private long splitDocumentAgeMillis = 5 * 60 * 1000;
         private long offHeapCacheSize = -1;
+        private String persistentCacheDirectory;
+        private long persistentCacheSize;
         private long maxReplicationLagMillis = TimeUnit.HOURS.toMillis(6);
         private boolean disableBranches;
         private Clock clock = Clock.SIMPLE;
@@ -740,6 +742,32 @@ public class DocumentMK implements MicroKernel {
             return this;
         }
 
+        /**
+         * Use a persistent cache for node states and their children in the
+         * given directory. The cache survives a restart of the node store.
+         *
+         * @param directory the directory for the cache files.
+         * @param maxSize the maximum size of the cache files in bytes.
+         * @return this
+         */
+        public Builder setPersistentCache(String directory, long maxSize) {
+            this.persistentCacheDirectory = directory;
+            this.persistentCacheSize = maxSize;
+            return this;
+        }
+
+        public boolean usePersistentCache() {
+            return persistentCacheDirectory != null && persistentCacheSize > 0;
+        }
+
+        public String getPersistentCacheDirectory() {
+            return persistentCacheDirectory;
+        }
+
+        public long getPersistentCacheSize() {
+            return persistentCacheSize;
+        }
+
         public Executor getExecutor() {
             if(executor == null){
                 return MoreExecutors.sameThreadExecutor();
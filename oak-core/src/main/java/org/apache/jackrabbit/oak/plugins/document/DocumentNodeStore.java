@@ -26,6 +26,7 @@ import static org.apache.jackrabbit.oak.plugins.document.UpdateOp.Key;
 import static org.apache.jackrabbit.oak.plugins.document.UpdateOp.Operation;
 
 import java.io.Closeable;
+import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
 import java.lang.ref.WeakReference;
@@ -62,6 +63,7 @@ import org.apache.jackrabbit.oak.commons.json.JsopReader;
 import org.apache.jackrabbit.oak.commons.json.JsopTokenizer;
 import org.apache.jackrabbit.oak.plugins.blob.BlobStoreBlob;
 import org.apache.jackrabbit.oak.plugins.blob.MarkSweepGarbageCollector;
+import org.apache.jackrabbit.oak.plugins.document.cache.PersistentCache;
 import org.apache.jackrabbit.oak.plugins.document.mongo.MongoBlobReferenceIterator;
 import org.apache.jackrabbit.oak.plugins.document.mongo.MongoDocumentStore;
 import org.apache.jackrabbit.oak.spi.blob.BlobStore;
@@ -152,6 +154,35 @@ public final class DocumentNodeStore
      */
     protected int asyncDelay = 1000;
 
+    /**
+     * The delay between two background splits of documents.
+     */
+    private volatile int backgroundSplitDelay;
+
+    /**
+     * The delay between two background writes of pending _lastRev updates.
+     */
+    private volatile int backgroundWriteDelay;
+
+    /**
+     * The delay between two background reads of external changes.
+     */
+    private volatile int backgroundReadDelay;
+
+    /**
+     * Monitors serializing each kind of background operation. The split,
+     * write and read operations run independently of each other, so that
+     * a slow split does not delay the propagation of _lastRev updates or
+     * the visibility of external changes.
+     */
+    private final Object backgroundSplitMonitor = new Object();
+
+    private final Object backgroundWriteMonitor = new Object();
+
+    private final Object backgroundReadMonitor = new Object();
+
+    private final BackgroundOperationStats backgroundOperationStats;
+
     /**
      * Whether this instance is disposed.
      */
@@ -208,7 +239,11 @@ public final class DocumentNodeStore
      */
     private volatile Revision headRevision;
 
-    private Thread backgroundThread;
+    private Thread backgroundSplitThread;
+
+    private Thread backgroundWriteThread;
+
+    private Thread backgroundReadThread;
 
     /**
      * Background thread performing the clusterId lease renew.
@@ -259,6 +294,14 @@ public final class DocumentNodeStore
      * Key: StringValue, value: Children
      */
     private final Cache<CacheValue, NodeDocument.Children> docChildrenCache;
+
+    /**
+     * Second level cache for node states and children, which survives a
+     * restart. Consulted before the document store on a miss of the
+     * {@link #nodeCache} or {@link #nodeChildrenCache}. Will be {@code null}
+     * if not configured.
+     */
+    private final PersistentNodeCache persistentNodeCache;
     private final CacheStats docChildrenCacheStats;
 
     /**
@@ -342,6 +385,10 @@ public final class DocumentNodeStore
         this.revisionComparator = new Revision.RevisionComparator(clusterId);
         this.branches = new UnmergedBranches(getRevisionComparator());
         this.asyncDelay = builder.getAsyncDelay();
+        this.backgroundSplitDelay = asyncDelay;
+        this.backgroundWriteDelay = asyncDelay;
+        this.backgroundReadDelay = asyncDelay;
+        this.backgroundOperationStats = new BackgroundOperationStats(this);
         this.versionGarbageCollector = new VersionGarbageCollector(this);
         this.lastRevRecoveryAgent = new LastRevRecoveryAgent(this);
         this.disableBranches = builder.isDisableBranches();
@@ -366,6 +413,19 @@ public final class DocumentNodeStore
         docChildrenCacheStats = new CacheStats(docChildrenCache, "Document-DocChildren",
                 builder.getWeigher(), builder.getDocChildrenCacheSize());
 
+        PersistentNodeCache pnc = null;
+        if (builder.usePersistentCache()) {
+            try {
+                pnc = new PersistentNodeCache(this, new PersistentCache(
+                        new File(builder.getPersistentCacheDirectory()),
+                        builder.getPersistentCacheSize()));
+            } catch (IOException e) {
+                LOG.warn("Unable to open persistent cache in {}, continuing without it",
+                        builder.getPersistentCacheDirectory(), e);
+            }
+        }
+        persistentNodeCache = pnc;
+
         diffCache = builder.getDiffCache();
         checkpoints = new Checkpoints(this);
 
@@ -397,15 +457,25 @@ public final class DocumentNodeStore
         dispatcher = new ChangeDispatcher(getRoot());
         commitQueue = new CommitQueue(this, dispatcher);
         batchCommitQueue = new BatchCommitQueue(store, revisionComparator);
-        backgroundThread = new Thread(
-                new BackgroundOperation(this, isDisposed),
-                "DocumentNodeStore background thread");
-        backgroundThread.setDaemon(true);
+        backgroundSplitThread = new Thread(
+                new BackgroundSplitOperation(this, isDisposed),
+                "DocumentNodeStore background split thread");
+        backgroundSplitThread.setDaemon(true);
+        backgroundWriteThread = new Thread(
+                new BackgroundWriteOperation(this, isDisposed),
+                "DocumentNodeStore background write thread");
+        backgroundWriteThread.setDaemon(true);
+        backgroundReadThread = new Thread(
+                new BackgroundReadOperation(this, isDisposed),
+                "DocumentNodeStore background read thread");
+        backgroundReadThread.setDaemon(true);
         checkLastRevRecovery();
         // Renew the lease because it may have been stale
         renewClusterIdLease();
 
-        backgroundThread.start();
+        backgroundSplitThread.start();
+        backgroundWriteThread.start();
+        backgroundReadThread.start();
 
         if (clusterNodeInfo != null) {
             leaseUpdateThread = new Thread(
@@ -431,10 +501,13 @@ public final class DocumentNodeStore
             synchronized (isDisposed) {
                 isDisposed.notifyAll();
             }
-            try {
-                backgroundThread.join();
-            } catch (InterruptedException e) {
-                // ignore
+            for (Thread t : new Thread[]{backgroundSplitThread,
+                    backgroundWriteThread, backgroundReadThread}) {
+                try {
+                    t.join();
+                } catch (InterruptedException e) {
+                    // ignore
+                }
             }
             if (leaseUpdateThread != null) {
                 try {
@@ -447,6 +520,13 @@ public final class DocumentNodeStore
                 clusterNodeInfo.dispose();
             }
             store.dispose();
+            if (persistentNodeCache != null) {
+                try {
+                    persistentNodeCache.close();
+                } catch (IOException e) {
+                    LOG.warn("Error closing persistent cache", e);
+                }
+            }
             LOG.info("Disposed DocumentNodeStore with clusterNodeId: {}", clusterId);
 
             if (blobStore instanceof Closeable) {
@@ -565,14 +645,78 @@ public final class DocumentNodeStore
         }
     }
 
+    /**
+     * Sets the delay for asynchronous operations. This also sets the delay
+     * of each of the background operations.
+     *
+     * @param delay the delay in milliseconds.
+     */
     public void setAsyncDelay(int delay) {
         this.asyncDelay = delay;
+        this.backgroundSplitDelay = delay;
+        this.backgroundWriteDelay = delay;
+        this.backgroundReadDelay = delay;
     }
 
     public int getAsyncDelay() {
         return asyncDelay;
     }
 
+    public int getBackgroundSplitDelay() {
+        return backgroundSplitDelay;
+    }
+
+    /**
+     * Sets the delay between two background splits.
+     *
+     * @param delay the delay in milliseconds.
+     * @throws IllegalArgumentException if the delay is not positive.
+     */
+    public void setBackgroundSplitDelay(int delay) {
+        checkArgument(delay > 0, "Delay must be positive: %s", delay);
+        this.backgroundSplitDelay = delay;
+    }
+
+    public int getBackgroundWriteDelay() {
+        return backgroundWriteDelay;
+    }
+
+    /**
+     * Sets the delay between two background writes.
+     *
+     * @param delay the delay in milliseconds.
+     * @throws IllegalArgumentException if the delay is not positive.
+     */
+    public void setBackgroundWriteDelay(int delay) {
+        checkArgument(delay > 0, "Delay must be positive: %s", delay);
+        this.backgroundWriteDelay = delay;
+    }
+
+    public int getBackgroundReadDelay() {
+        return backgroundReadDelay;
+    }
+
+    /**
+     * Sets the delay between two background reads.
+     *
+     * @param delay the delay in milliseconds.
+     * @throws IllegalArgumentException if the delay is not positive.
+     */
+    public void setBackgroundReadDelay(int delay) {
+        checkArgument(delay > 0, "Delay must be positive: %s", delay);
+        this.backgroundReadDelay = delay;
+    }
+
+    @CheckForNull
+    PersistentNodeCache getPersistentNodeCache() {
+        return persistentNodeCache;
+    }
+
+    @Nonnull
+    public BackgroundOperationStats getBackgroundOperationStats() {
+        return backgroundOperationStats;
+    }
+
     @CheckForNull
     public ClusterNodeInfo getClusterInfo() {
         return clusterNodeInfo;
@@ -655,13 +799,22 @@ public final class DocumentNodeStore
     DocumentNodeState getNode(@Nonnull final String path, @Nonnull final Revision rev) {
         checkRevisionAge(checkNotNull(rev), checkNotNull(path));
         try {
-            PathRev key = new PathRev(path, rev);
+            final PathRev key = new PathRev(path, rev);
             DocumentNodeState node = nodeCache.get(key, new Callable<DocumentNodeState>() {
                 @Override
                 public DocumentNodeState call() throws Exception {
-                    DocumentNodeState n = readNode(path, rev);
+                    DocumentNodeState n = null;
+                    if (persistentNodeCache != null) {
+                        n = persistentNodeCache.getNode(key);
+                        if (n != null) {
+                            return n;
+                        }
+                    }
+                    n = readNode(path, rev);
                     if (n == null) {
                         n = missing;
+                    } else if (persistentNodeCache != null) {
+                        persistentNodeCache.putNode(key, n);
                     }
                     return n;
                 }
@@ -683,14 +836,25 @@ public final class DocumentNodeStore
         }
         final String path = checkNotNull(parent).getPath();
         final Revision readRevision = parent.getLastRevision();
-        PathRev key = childNodeCacheKey(path, readRevision, name);
+        final PathRev key = childNodeCacheKey(path, readRevision, name);
         DocumentNodeState.Children children;
         for (;;) {
             try {
                 children = nodeChildrenCache.get(key, new Callable<DocumentNodeState.Children>() {
                     @Override
                     public DocumentNodeState.Children call() throws Exception {
-                        return readChildren(parent, name, limit);
+                        DocumentNodeState.Children c = null;
+                        if (persistentNodeCache != null) {
+                            c = persistentNodeCache.getChildren(key);
+                            if (c != null) {
+                                return c;
+                            }
+                        }
+                        c = readChildren(parent, name, limit);
+                        if (persistentNodeCache != null) {
+                            persistentNodeCache.putChildren(key, c);
+                        }
+                        return c;
                     }
                 });
             } catch (UncheckedExecutionException e) {
@@ -828,22 +992,26 @@ public final class DocumentNodeStore
             docChildrenCache.put(key, clone);
             c = clone;
         }
-        Iterable<NodeDocument> it = Iterables.transform(c.childNames, new Function<String, NodeDocument>() {
-            @Override
-            public NodeDocument apply(String name) {
-                String p = PathUtils.concat(path, name);
-                NodeDocument doc = store.find(Collection.NODES, Utils.getIdFromPath(p));
-                if (doc == null) {
-                    docChildrenCache.invalidateAll();
-                    throw new NullPointerException("Document " + p + " not found");
-                }
-                return doc;
+        List<String> ids = Lists.newArrayList();
+        for (String childName : Iterables.limit(c.childNames, limit * 2)) {
+            ids.add(Utils.getIdFromPath(PathUtils.concat(path, childName)));
+        }
+        // read the child documents with a single call
+        Map<String, NodeDocument> docs = Maps.newHashMap();
+        for (NodeDocument doc : store.find(Collection.NODES, ids)) {
+            docs.put(doc.getId(), doc);
+        }
+        List<NodeDocument> result = Lists.newArrayListWithCapacity(ids.size());
+        for (String id : ids) {
+            NodeDocument doc = docs.get(id);
+            if (doc == null) {
+                docChildrenCache.invalidateAll();
+                throw new NullPointerException("Document "
+                        + Utils.getPathFromId(id) + " not found");
             }
-        });
-        if (c.childNames.size() > limit * 2) {
-            it = Iterables.limit(it, limit * 2);
+            result.add(doc);
         }
-        return it;
+        return result;
     }
 
     /**
@@ -1371,32 +1539,90 @@ public final class DocumentNodeStore
 
     //----------------------< background operations >---------------------------
 
-    public synchronized void runBackgroundOperations() {
-        if (isDisposed.get()) {
+    /**
+     * Runs all background operations once: split documents, write back
+     * pending _lastRev updates and pull in changes from other cluster nodes.
+     */
+    public void runBackgroundOperations() {
+        runBackgroundSplit();
+        runBackgroundWrite();
+        runBackgroundRead();
+    }
+
+    /**
+     * Splits documents that grew too large. This does not create new
+     * revisions.
+     */
+    void runBackgroundSplit() {
+        if (!isBackgroundOperationEnabled()) {
             return;
         }
-        if (simpleRevisionCounter != null) {
-            // only when using timestamp
+        synchronized (backgroundSplitMonitor) {
+            long start = System.currentTimeMillis();
+            try {
+                backgroundSplit();
+            } catch (RuntimeException e) {
+                if (isDisposed.get()) {
+                    return;
+                }
+                throw e;
+            }
+            backgroundOperationStats.splitCompleted(
+                    System.currentTimeMillis() - start);
+        }
+    }
+
+    /**
+     * Writes back pending updates to _lastRev.
+     */
+    void runBackgroundWrite() {
+        if (!isBackgroundOperationEnabled()) {
             return;
         }
-        if (!ENABLE_BACKGROUND_OPS) {
+        synchronized (backgroundWriteMonitor) {
+            long start = System.currentTimeMillis();
+            try {
+                backgroundWrite();
+            } catch (RuntimeException e) {
+                if (isDisposed.get()) {
+                    return;
+                }
+                throw e;
+            }
+            backgroundOperationStats.writeCompleted(
+                    System.currentTimeMillis() - start);
+        }
+    }
+
+    /**
+     * Pulls in changes from other cluster nodes.
+     */
+    void runBackgroundRead() {
+        if (!isBackgroundOperationEnabled()) {
             return;
         }
-        try {
-            // split documents (does not create new revisions)
-            backgroundSplit();
-            // write back pending updates to _lastRev
-            backgroundWrite();
-            // pull in changes from other cluster nodes
-            backgroundRead(true);
-        } catch (RuntimeException e) {
-            if (isDisposed.get()) {
-                return;
+        synchronized (backgroundReadMonitor) {
+            long start = System.currentTimeMillis();
+            try {
+                backgroundRead(true);
+            } catch (RuntimeException e) {
+                if (isDisposed.get()) {
+                    return;
+                }
+                throw e;
             }
-            throw e;
+            backgroundOperationStats.readCompleted(
+                    System.currentTimeMillis() - start);
         }
     }
 
+    private boolean isBackgroundOperationEnabled() {
+        return !isDisposed.get()
+                // only when using timestamp
+                && simpleRevisionCounter == null
+                && ENABLE_BACKGROUND_OPS;
+    }
+
     void renewClusterIdLease() {
         if (clusterNodeInfo == null) {
             return;
@@ -1724,12 +1950,20 @@ public final class DocumentNodeStore
 
         NodeStoreTask(DocumentNodeStore nodeStore, AtomicBoolean isDisposed) {
             ref = new WeakReference<DocumentNodeStore>(nodeStore);
-            delay = nodeStore.getAsyncDelay();
+            delay = getDelay(nodeStore);
             this.isDisposed = isDisposed;
         }
 
         protected abstract void execute(@Nonnull DocumentNodeStore nodeStore);
 
+        /**
+         * @param nodeStore the node store.
+         * @return the delay in milliseconds until the next execution.
+         */
+        protected int getDelay(@Nonnull DocumentNodeStore nodeStore) {
+            return nodeStore.getAsyncDelay();
+        }
+
         @Override
         public void run() {
             while (delay != 0 && !isDisposed.get()) {
@@ -1747,7 +1981,7 @@ public final class DocumentNodeStore
                     } catch (Throwable t) {
                         LOG.warn("Background operation failed: " + t.toString(), t);
                     }
-                    delay = nodeStore.getAsyncDelay();
+                    delay = getDelay(nodeStore);
                 } else {
                     // node store not in use anymore
                     break;
@@ -1757,18 +1991,65 @@ public final class DocumentNodeStore
     }
 
     /**
-     * Background operations.
+     * Background split of documents.
      */
-    static class BackgroundOperation extends NodeStoreTask {
+    static class BackgroundSplitOperation extends NodeStoreTask {
 
-        BackgroundOperation(DocumentNodeStore nodeStore,
-                            AtomicBoolean isDisposed) {
+        BackgroundSplitOperation(DocumentNodeStore nodeStore,
+                                 AtomicBoolean isDisposed) {
             super(nodeStore, isDisposed);
         }
 
         @Override
         protected void execute(@Nonnull DocumentNodeStore nodeStore) {
-            nodeStore.runBackgroundOperations();
+            nodeStore.runBackgroundSplit();
+        }
+
+        @Override
+        protected int getDelay(@Nonnull DocumentNodeStore nodeStore) {
+            return nodeStore.getBackgroundSplitDelay();
+        }
+    }
+
+    /**
+     * Background write of pending _lastRev updates.
+     */
+    static class BackgroundWriteOperation extends NodeStoreTask {
+
+        BackgroundWriteOperation(DocumentNodeStore nodeStore,
+                                 AtomicBoolean isDisposed) {
+            super(nodeStore, isDisposed);
+        }
+
+        @Override
+        protected void execute(@Nonnull DocumentNodeStore nodeStore) {
+            nodeStore.runBackgroundWrite();
+        }
+
+        @Override
+        protected int getDelay(@Nonnull DocumentNodeStore nodeStore) {
+            return nodeStore.getBackgroundWriteDelay();
+        }
+    }
+
+    /**
+     * Background read of changes from other cluster nodes.
+     */
+    static class BackgroundReadOperation extends NodeStoreTask {
+
+        BackgroundReadOperation(DocumentNodeStore nodeStore,
+                                AtomicBoolean isDisposed) {
+            super(nodeStore, isDisposed);
+        }
+
+        @Override
+        protected void execute(@Nonnull DocumentNodeStore nodeStore) {
+            nodeStore.runBackgroundRead();
+        }
+
+        @Override
+        protected int getDelay(@Nonnull DocumentNodeStore nodeStore) {
+            return nodeStore.getBackgroundReadDelay();
         }
     }
 
@@ -81,6 +81,8 @@ public class DocumentNodeStoreService {
     private static final String DEFAULT_URI = "mongodb://localhost:27017/oak";
     private static final int DEFAULT_CACHE = 256;
     private static final int DEFAULT_OFF_HEAP_CACHE = 0;
+    private static final String DEFAULT_PERSISTENT_CACHE = "";
+    private static final int DEFAULT_PERSISTENT_CACHE_SIZE = 1024;
     private static final int DEFAULT_CHANGES_SIZE = 256;
     private static final String DEFAULT_DB = "oak";
     private static final String PREFIX = "oak.documentstore.";
@@ -113,6 +115,16 @@ public class DocumentNodeStoreService {
     @Property(intValue = DEFAULT_OFF_HEAP_CACHE)
     private static final String PROP_OFF_HEAP_CACHE = "offHeapCache";
 
+    /**
+     * Directory of the persistent cache for node states. The persistent
+     * cache is disabled if no directory is set.
+     */
+    @Property(value = DEFAULT_PERSISTENT_CACHE)
+    private static final String PROP_PERSISTENT_CACHE = "persistentCache";
+
+    @Property(intValue = DEFAULT_PERSISTENT_CACHE_SIZE)
+    private static final String PROP_PERSISTENT_CACHE_SIZE = "persistentCacheSize";
+
     @Property(intValue =  DEFAULT_CHANGES_SIZE)
     private static final String PROP_CHANGES_SIZE = "changesSize";
 
@@ -234,12 +246,17 @@ public class DocumentNodeStoreService {
         int offHeapCache = toInteger(prop(PROP_OFF_HEAP_CACHE), DEFAULT_OFF_HEAP_CACHE);
         int cacheSize = toInteger(prop(PROP_CACHE), DEFAULT_CACHE);
         int changesSize = toInteger(prop(PROP_CHANGES_SIZE), DEFAULT_CHANGES_SIZE);
+        String persistentCache = PropertiesUtil.toString(prop(PROP_PERSISTENT_CACHE), DEFAULT_PERSISTENT_CACHE);
+        int persistentCacheSize = toInteger(prop(PROP_PERSISTENT_CACHE_SIZE), DEFAULT_PERSISTENT_CACHE_SIZE);
         boolean useMK = toBoolean(context.getProperties().get(PROP_USE_MK), false);
 
         DocumentMK.Builder mkBuilder =
                 new DocumentMK.Builder().
                 memoryCacheSize(cacheSize * MB).
                 offHeapCacheSize(offHeapCache * MB);
+        if (!persistentCache.isEmpty()) {
+            mkBuilder.setPersistentCache(persistentCache, persistentCacheSize * MB);
+        }
 
         //Set blobstore before setting the DB
         if (customBlobStore) {
@@ -479,6 +496,10 @@ public class DocumentNodeStoreService {
         registrations.add(registerMBean(whiteboard, RevisionGCMBean.class, revisionGC,
                 RevisionGCMBean.TYPE, "Document node store revision garbage collection"));
 
+        registrations.add(registerMBean(whiteboard, BackgroundOperationStatsMBean.class,
+                store.getBackgroundOperationStats(), BackgroundOperationStatsMBean.TYPE,
+                "Document node store background operations"));
+
         //TODO Register JMX bean for Off Heap Cache stats
     }
 
@@ -73,6 +73,23 @@ public interface DocumentStore {
     @CheckForNull
     <T extends Document> T find(Collection<T> collection, String key, int maxCacheAge);
 
+    /**
+     * Get the documents with the given {@code keys}. Keys of documents that
+     * do not exist are ignored. This is a convenience method for reading
+     * multiple documents with as few round trips to the backend as possible.
+     * A cached document is returned if present, same as with
+     * {@link #find(Collection, String)}.
+     * <p>
+     * The returned documents are immutable.
+     *
+     * @param <T> the document type
+     * @param collection the collection
+     * @param keys the keys of the documents to read
+     * @return the documents in no particular order (possibly empty)
+     */
+    @Nonnull
+    <T extends Document> List<T> find(Collection<T> collection, List<String> keys);
+
     /**
      * Get a list of documents where the key is greater than a start value and
      * less than an end value, sorted by the key.
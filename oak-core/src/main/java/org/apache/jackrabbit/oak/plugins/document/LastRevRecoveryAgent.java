@@ -162,6 +162,22 @@ public class LastRevRecoveryAgent {
             }
         }
 
+        // read the parents which are not suspects with as few round trips
+        // as possible to find out whether their lastRev is already up to date
+        List<String> unknownParentIds = Lists.newArrayList();
+        for (String parentPath : unsavedParents.getPaths()) {
+            if (!knownLastRevs.containsKey(parentPath)) {
+                unknownParentIds.add(Utils.getIdFromPath(parentPath));
+            }
+        }
+        for (NodeDocument parent : nodeStore.getDocumentStore().find(
+                Collection.NODES, unknownParentIds)) {
+            Revision lastRev = parent.getLastRev().get(clusterId);
+            if (lastRev != null) {
+                knownLastRevs.put(parent.getPath(), lastRev);
+            }
+        }
+
         for (String parentPath : unsavedParents.getPaths()) {
             Revision calcLastRev = unsavedParents.get(parentPath);
             Revision knownLastRev = knownLastRevs.get(parentPath);
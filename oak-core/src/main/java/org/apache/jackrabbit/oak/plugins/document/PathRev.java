@@ -39,6 +39,11 @@ public final class PathRev implements CacheValue {
         this.revision = checkNotNull(revision);
     }
 
+    @Nonnull
+    public Revision getRevision() {
+        return revision;
+    }
+
     @Override
     public int getMemory() {
         return 24                           // shallow size
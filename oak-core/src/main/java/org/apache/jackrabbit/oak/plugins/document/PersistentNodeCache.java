@@ -0,0 +1,210 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.jackrabbit.oak.plugins.document;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.Map;
+
+import javax.annotation.CheckForNull;
+import javax.annotation.Nonnull;
+
+import com.esotericsoftware.kryo.Kryo;
+import com.esotericsoftware.kryo.Serializer;
+import com.esotericsoftware.kryo.io.Input;
+import com.esotericsoftware.kryo.io.Output;
+import org.apache.jackrabbit.oak.api.PropertyState;
+import org.apache.jackrabbit.oak.plugins.document.cache.KryoSerializer;
+import org.apache.jackrabbit.oak.plugins.document.cache.PersistentCache;
+import org.apache.jackrabbit.oak.plugins.document.cache.Serializers;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+/**
+ * A second level cache for {@link DocumentNodeState}s and their children,
+ * which keeps entries in a {@link PersistentCache} and therefore survives
+ * a restart of the {@link DocumentNodeStore}.
+ * <p>
+ * Only entries that never change are written to this cache: the keys are
+ * composed of a path and a revision, and entries for branch revisions or
+ * incomplete lists of children are not persisted.
+ */
+class PersistentNodeCache implements Closeable {
+
+    private static final Logger LOG = LoggerFactory.getLogger(PersistentNodeCache.class);
+
+    private static final String NODE_PREFIX = "n:";
+
+    private static final String CHILDREN_PREFIX = "c:";
+
+    private final PersistentCache cache;
+
+    private final KryoSerializer serializer;
+
+    PersistentNodeCache(@Nonnull final DocumentNodeStore store,
+                        @Nonnull PersistentCache cache) {
+        checkNotNull(store);
+        this.cache = checkNotNull(cache);
+        this.serializer = new KryoSerializer(new KryoSerializer.KryoPool() {
+            @Override
+            protected Kryo createInstance() {
+                Kryo kryo = new Kryo();
+                kryo.setReferences(false);
+                kryo.register(Revision.class, new Serializers.RevisionSerizlizer());
+                kryo.register(DocumentNodeState.class, new NodeStateSerializer(store));
+                kryo.register(DocumentNodeState.Children.class, new ChildrenSerializer());
+                kryo.setRegistrationRequired(true);
+                return kryo;
+            }
+        });
+    }
+
+    @CheckForNull
+    DocumentNodeState getNode(@Nonnull PathRev key) {
+        return read(NODE_PREFIX + key, DocumentNodeState.class);
+    }
+
+    void putNode(@Nonnull PathRev key, @Nonnull DocumentNodeState node) {
+        if (!key.getRevision().isBranch()) {
+            write(NODE_PREFIX + key, node);
+        }
+    }
+
+    @CheckForNull
+    DocumentNodeState.Children getChildren(@Nonnull PathRev key) {
+        return read(CHILDREN_PREFIX + key, DocumentNodeState.Children.class);
+    }
+
+    void putChildren(@Nonnull PathRev key,
+                     @Nonnull DocumentNodeState.Children children) {
+        // an incomplete list may not satisfy a later read with a higher limit
+        if (!children.hasMore && !key.getRevision().isBranch()) {
+            write(CHILDREN_PREFIX + key, children);
+        }
+    }
+
+    PersistentCache getCache() {
+        return cache;
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            serializer.close();
+        } finally {
+            cache.close();
+        }
+    }
+
+    //-----------------------------< internal >---------------------------------
+
+    @CheckForNull
+    private <T> T read(String key, Class<T> type) {
+        byte[] data = cache.get(key);
+        if (data == null) {
+            return null;
+        }
+        try {
+            return serializer.deserialize(data, type);
+        } catch (Exception e) {
+            LOG.warn("Unable to read {} from persistent cache", key, e);
+            return null;
+        }
+    }
+
+    private void write(String key, Object value) {
+        try {
+            cache.put(key, serializer.serialize(value));
+        } catch (IOException e) {
+            LOG.warn("Unable to write {} to persistent cache", key, e);
+        }
+    }
+
+    private static class NodeStateSerializer extends Serializer<DocumentNodeState> {
+
+        private final DocumentNodeStore store;
+
+        NodeStateSerializer(DocumentNodeStore store) {
+            this.store = store;
+        }
+
+        @Override
+        public void write(Kryo kryo, Output o, DocumentNodeState state) {
+            o.writeString(state.getPath());
+            kryo.writeObject(o, state.getRevision());
+            Revision lastRevision = state.getLastRevision();
+            o.writeBoolean(lastRevision != null);
+            if (lastRevision != null) {
+                kryo.writeObject(o, lastRevision);
+            }
+            o.writeBoolean(state.hasChildren);
+            o.writeInt(state.properties.size(), true);
+            for (Map.Entry<String, PropertyState> e : state.properties.entrySet()) {
+                o.writeString(e.getKey());
+                o.writeString(state.getPropertyAsString(e.getKey()));
+            }
+        }
+
+        @Override
+        public DocumentNodeState read(Kryo kryo, Input i,
+                                      Class<DocumentNodeState> type) {
+            String path = i.readString();
+            Revision rev = kryo.readObject(i, Revision.class);
+            Revision lastRevision = null;
+            if (i.readBoolean()) {
+                lastRevision = kryo.readObject(i, Revision.class);
+            }
+            boolean hasChildren = i.readBoolean();
+            DocumentNodeState state = new DocumentNodeState(
+                    store, path, rev, hasChildren);
+            state.setLastRevision(lastRevision);
+            int size = i.readInt(true);
+            for (int j = 0; j < size; j++) {
+                String name = i.readString();
+                state.setProperty(name, i.readString());
+            }
+            return state;
+        }
+    }
+
+    private static class ChildrenSerializer extends Serializer<DocumentNodeState.Children> {
+
+        @Override
+        public void write(Kryo kryo, Output o, DocumentNodeState.Children c) {
+            o.writeInt(c.children.size(), true);
+            for (String name : c.children) {
+                o.writeString(name);
+            }
+            o.writeBoolean(c.hasMore);
+        }
+
+        @Override
+        public DocumentNodeState.Children read(Kryo kryo, Input i,
+                                               Class<DocumentNodeState.Children> type) {
+            DocumentNodeState.Children c = new DocumentNodeState.Children();
+            int size = i.readInt(true);
+            c.children.ensureCapacity(size);
+            for (int j = 0; j < size; j++) {
+                c.children.add(i.readString());
+            }
+            c.hasMore = i.readBoolean();
+            return c;
+        }
+    }
+}
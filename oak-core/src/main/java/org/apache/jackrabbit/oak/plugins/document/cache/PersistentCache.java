@@ -0,0 +1,523 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.jackrabbit.oak.plugins.document.cache;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.FileChannel;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.CRC32;
+
+import javax.annotation.CheckForNull;
+import javax.annotation.Nonnull;
+
+import com.google.common.base.Charsets;
+import com.google.common.collect.Maps;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+
+/**
+ * A persistent key value store for cache entries that must survive a
+ * restart. Entries are appended to a data file in the local file system
+ * and located through an in-memory index, which is rebuilt from the data
+ * files on startup.
+ * <p>
+ * The store is only suitable for immutable entries: once a key is written
+ * its value is never replaced. The size of the store is bounded by keeping
+ * at most two generations of data files. When the current generation is
+ * full, the older generation is deleted together with all its entries and
+ * a new generation is started. A generation is also considered full once
+ * it holds half of the maximum number of entries, which bounds the heap
+ * used by the index.
+ * <p>
+ * The data files consist of records with the following layout:
+ * <pre>
+ *     int   key length
+ *     int   value length
+ *     byte[] key (UTF-8)
+ *     byte[] value
+ *     long  CRC32 checksum of key and value
+ * </pre>
+ * A partially written record at the end of the current generation, e.g.
+ * after a crash, is discarded when the store is opened.
+ */
+public class PersistentCache implements Closeable {
+
+    private static final Logger LOG = LoggerFactory.getLogger(PersistentCache.class);
+
+    private static final String FILE_PREFIX = "cache-";
+
+    private static final String FILE_SUFFIX = ".data";
+
+    /**
+     * Size of the record header: key and value length.
+     */
+    private static final int HEADER_SIZE = 8;
+
+    /**
+     * Size of the record footer: the checksum.
+     */
+    private static final int FOOTER_SIZE = 8;
+
+    /**
+     * The default maximum number of entries.
+     */
+    public static final int DEFAULT_MAX_ENTRIES = 200000;
+
+    private final File directory;
+
+    private final long maxGenerationSize;
+
+    private final int maxGenerationEntries;
+
+    /**
+     * Location of the entries. Guarded by this.
+     */
+    private final Map<String, Location> index = Maps.newHashMap();
+
+    private final AtomicLong hitCount = new AtomicLong();
+
+    private final AtomicLong missCount = new AtomicLong();
+
+    /**
+     * The older generation, which is read-only. Guarded by this.
+     */
+    private Generation previous;
+
+    /**
+     * The current generation, new entries are appended to it.
+     * Guarded by this.
+     */
+    private Generation current;
+
+    /**
+     * Opens the persistent cache in the given directory. Existing data
+     * files are read to restore the entries written before.
+     *
+     * @param directory the directory for the data files.
+     * @param maxSize the maximum size of the data files in bytes.
+     * @throws IOException if the data files cannot be opened.
+     */
+    public PersistentCache(@Nonnull File directory, long maxSize)
+            throws IOException {
+        this(directory, maxSize, DEFAULT_MAX_ENTRIES);
+    }
+
+    /**
+     * Opens the persistent cache in the given directory. Existing data
+     * files are read to restore the entries written before.
+     *
+     * @param directory the directory for the data files.
+     * @param maxSize the maximum size of the data files in bytes.
+     * @param maxEntries the maximum number of entries.
+     * @throws IOException if the data files cannot be opened.
+     */
+    public PersistentCache(@Nonnull File directory, long maxSize, int maxEntries)
+            throws IOException {
+        checkArgument(maxSize > 0, "maxSize must be positive");
+        checkArgument(maxEntries > 1, "maxEntries must be greater than one");
+        this.directory = checkNotNull(directory);
+        this.maxGenerationSize = maxSize / 2;
+        this.maxGenerationEntries = maxEntries / 2;
+        if (!directory.isDirectory() && !directory.mkdirs()) {
+            throw new IOException("Unable to create directory " + directory);
+        }
+        int[] generations = listGenerations();
+        for (int i = 0; i < generations.length - 2; i++) {
+            deleteGeneration(generations[i]);
+        }
+        int n = generations.length;
+        if (n > 1) {
+            previous = openGeneration(generations[n - 2]);
+        }
+        if (n > 0) {
+            current = openGeneration(generations[n - 1]);
+        } else {
+            current = openGeneration(0);
+        }
+        LOG.info("Opened persistent cache {} with {} entries",
+                directory, index.size());
+    }
+
+    /**
+     * Reads the value for the given key.
+     *
+     * @param key the key.
+     * @return the value or {@code null} if there is no entry for the key.
+     */
+    @CheckForNull
+    public byte[] get(@Nonnull String key) {
+        Location location;
+        synchronized (this) {
+            location = index.get(key);
+        }
+        if (location == null) {
+            missCount.incrementAndGet();
+            return null;
+        }
+        try {
+            byte[] value = location.generation.read(
+                    location.position, location.length);
+            hitCount.incrementAndGet();
+            return value;
+        } catch (IOException e) {
+            // the generation may have been removed concurrently
+            LOG.debug("Unable to read entry {} from persistent cache", key, e);
+            missCount.incrementAndGet();
+            return null;
+        }
+    }
+
+    /**
+     * Writes an entry unless there already is one for the given key.
+     *
+     * @param key the key.
+     * @param value the value.
+     */
+    public synchronized void put(@Nonnull String key, @Nonnull byte[] value) {
+        if (current == null || index.containsKey(key)) {
+            return;
+        }
+        byte[] k = key.getBytes(Charsets.UTF_8);
+        int length = HEADER_SIZE + k.length + value.length + FOOTER_SIZE;
+        try {
+            if (current.size > 0 && (current.size + length > maxGenerationSize
+                    || current.entries >= maxGenerationEntries)) {
+                newGeneration();
+            }
+            ByteBuffer buffer = ByteBuffer.allocate(length);
+            buffer.putInt(k.length);
+            buffer.putInt(value.length);
+            buffer.put(k);
+            buffer.put(value);
+            buffer.putLong(checksum(k, value));
+            buffer.flip();
+            long position = current.size;
+            current.write(buffer, position);
+            current.entries++;
+            index.put(key, new Location(current,
+                    position + HEADER_SIZE + k.length, value.length));
+        } catch (IOException e) {
+            LOG.warn("Unable to write entry {} to persistent cache", key, e);
+        }
+    }
+
+    /**
+     * Removes all entries and data files.
+     */
+    public synchronized void invalidateAll() {
+        index.clear();
+        try {
+            if (previous != null) {
+                previous.close();
+                previous.file.delete();
+                previous = null;
+            }
+            if (current != null) {
+                int id = current.id;
+                current.close();
+                current.file.delete();
+                current = openGeneration(id + 1);
+            }
+        } catch (IOException e) {
+            LOG.warn("Unable to reset persistent cache {}", directory, e);
+            current = null;
+        }
+    }
+
+    /**
+     * @return the number of entries in the cache.
+     */
+    public synchronized int size() {
+        return index.size();
+    }
+
+    public long getHitCount() {
+        return hitCount.get();
+    }
+
+    public long getMissCount() {
+        return missCount.get();
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        index.clear();
+        if (previous != null) {
+            previous.close();
+            previous = null;
+        }
+        if (current != null) {
+            current.close();
+            current = null;
+        }
+    }
+
+    //-----------------------------< internal >---------------------------------
+
+    private void newGeneration() throws IOException {
+        if (previous != null) {
+            for (Iterator<Location> it = index.values().iterator(); it.hasNext(); ) {
+                if (it.next().generation == previous) {
+                    it.remove();
+                }
+            }
+            previous.close();
+            if (!previous.file.delete()) {
+                LOG.warn("Unable to delete {}", previous.file);
+            }
+        }
+        previous = current;
+        current = openGeneration(previous.id + 1);
+        LOG.debug("Started new persistent cache generation {}", current.file);
+    }
+
+    private int[] listGenerations() {
+        String[] names = directory.list();
+        if (names == null) {
+            return new int[0];
+        }
+        int[] ids = new int[names.length];
+        int n = 0;
+        for (String name : names) {
+            if (name.startsWith(FILE_PREFIX) && name.endsWith(FILE_SUFFIX)) {
+                try {
+                    ids[n++] = Integer.parseInt(name.substring(
+                            FILE_PREFIX.length(),
+                            name.length() - FILE_SUFFIX.length()));
+                } catch (NumberFormatException e) {
+                    LOG.debug("Ignoring unexpected file {}", name);
+                }
+            }
+        }
+        ids = Arrays.copyOf(ids, n);
+        Arrays.sort(ids);
+        return ids;
+    }
+
+    private File getFile(int id) {
+        return new File(directory, FILE_PREFIX + id + FILE_SUFFIX);
+    }
+
+    private void deleteGeneration(int id) {
+        File file = getFile(id);
+        if (!file.delete()) {
+            LOG.warn("Unable to delete {}", file);
+        }
+    }
+
+    /**
+     * Opens the data file of a generation and adds the valid records
+     * to the index. The file is truncated after the last valid record.
+     */
+    private Generation openGeneration(int id) throws IOException {
+        Generation generation = new Generation(id, getFile(id));
+        long position = 0;
+        while (position + HEADER_SIZE <= generation.size) {
+            ByteBuffer header = ByteBuffer.wrap(
+                    generation.read(position, HEADER_SIZE));
+            int keyLength = header.getInt();
+            int valueLength = header.getInt();
+            long length = (long) HEADER_SIZE + keyLength + valueLength + FOOTER_SIZE;
+            if (keyLength < 0 || valueLength < 0
+                    || position + length > generation.size) {
+                break;
+            }
+            byte[] k = generation.read(position + HEADER_SIZE, keyLength);
+            byte[] value = generation.read(
+                    position + HEADER_SIZE + keyLength, valueLength);
+            ByteBuffer footer = ByteBuffer.wrap(generation.read(
+                    position + HEADER_SIZE + keyLength + valueLength,
+                    FOOTER_SIZE));
+            if (footer.getLong() != checksum(k, value)) {
+                break;
+            }
+            index.put(new String(k, Charsets.UTF_8), new Location(generation,
+                    position + HEADER_SIZE + keyLength, valueLength));
+            generation.entries++;
+            position += length;
+        }
+        if (position < generation.size) {
+            LOG.info("Discarding {} bytes of incomplete records in {}",
+                    generation.size - position, generation.file);
+            generation.truncate(position);
+        }
+        return generation;
+    }
+
+    private static long checksum(byte[] key, byte[] value) {
+        CRC32 crc = new CRC32();
+        crc.update(key);
+        crc.update(value);
+        return crc.getValue();
+    }
+
+    /**
+     * The data file of a generation.
+     * <p>
+     * Reads and writes through a {@link FileChannel} are interruptible: an
+     * interrupt of the calling thread closes the channel, also for all other
+     * threads using it. A generation therefore reopens its data file when it
+     * finds the channel closed by an interrupt, and retries the operation.
+     */
+    private static final class Generation {
+
+        final int id;
+
+        final File file;
+
+        /**
+         * The data file, replaced when the channel was closed by an interrupt.
+         * Guarded by this.
+         */
+        private RandomAccessFile access;
+
+        private volatile FileChannel channel;
+
+        /**
+         * Set when the generation has been closed. Guarded by this.
+         */
+        private boolean closed;
+
+        /**
+         * The size of the data file. Guarded by the enclosing cache.
+         */
+        long size;
+
+        /**
+         * The number of entries in the data file. Guarded by the enclosing
+         * cache.
+         */
+        int entries;
+
+        Generation(int id, File file) throws IOException {
+            this.id = id;
+            this.file = file;
+            this.access = new RandomAccessFile(file, "rw");
+            this.channel = access.getChannel();
+            this.size = channel.size();
+        }
+
+        byte[] read(long position, int length) throws IOException {
+            boolean interrupted = false;
+            try {
+                while (true) {
+                    FileChannel c = channel;
+                    try {
+                        ByteBuffer buffer = ByteBuffer.allocate(length);
+                        while (buffer.hasRemaining()) {
+                            if (c.read(buffer, position + buffer.position()) < 0) {
+                                throw new IOException("Unexpected end of file " + file);
+                            }
+                        }
+                        return buffer.array();
+                    } catch (ClosedChannelException e) {
+                        interrupted |= Thread.interrupted();
+                        reopen(c);
+                    }
+                }
+            } finally {
+                if (interrupted) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        }
+
+        void write(ByteBuffer buffer, long position) throws IOException {
+            boolean interrupted = false;
+            try {
+                while (true) {
+                    FileChannel c = channel;
+                    try {
+                        long p = position;
+                        buffer.rewind();
+                        while (buffer.hasRemaining()) {
+                            p += c.write(buffer, p);
+                        }
+                        size = p;
+                        return;
+                    } catch (ClosedChannelException e) {
+                        interrupted |= Thread.interrupted();
+                        reopen(c);
+                    }
+                }
+            } finally {
+                if (interrupted) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        }
+
+        void truncate(long position) throws IOException {
+            channel.truncate(position);
+            size = position;
+        }
+
+        synchronized void close() throws IOException {
+            closed = true;
+            access.close();
+        }
+
+        /**
+         * Reopens the data file unless the given channel has already been
+         * replaced by another thread.
+         *
+         * @param c the channel that was found closed.
+         * @throws IOException if this generation has been closed or the file
+         *          cannot be reopened.
+         */
+        private synchronized void reopen(FileChannel c) throws IOException {
+            if (closed) {
+                throw new ClosedChannelException();
+            }
+            if (channel == c) {
+                LOG.debug("Reopening {} after an interrupt", file);
+                access = new RandomAccessFile(file, "rw");
+                channel = access.getChannel();
+            }
+        }
+    }
+
+    /**
+     * The location of a value in a generation.
+     */
+    private static final class Location {
+
+        final Generation generation;
+
+        final long position;
+
+        final int length;
+
+        Location(Generation generation, long position, int length) {
+            this.generation = generation;
+            this.position = position;
+            this.length = length;
+        }
+    }
+}
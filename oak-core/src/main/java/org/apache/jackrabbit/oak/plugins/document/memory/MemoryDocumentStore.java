@@ -98,6 +98,26 @@ public class MemoryDocumentStore implements DocumentStore {
         }
     }
 
+    @Override
+    @Nonnull
+    public <T extends Document> List<T> find(Collection<T> collection, List<String> keys) {
+        Lock lock = rwLock.readLock();
+        lock.lock();
+        try {
+            ConcurrentSkipListMap<String, T> map = getMap(collection);
+            List<T> result = new ArrayList<T>(keys.size());
+            for (String key : keys) {
+                T doc = map.get(key);
+                if (doc != null) {
+                    result.add(doc);
+                }
+            }
+            return result;
+        } finally {
+            lock.unlock();
+        }
+    }
+
     @Override
     @Nonnull
     public <T extends Document> List<T> query(Collection<T> collection,
@@ -400,6 +400,64 @@ public class MongoDocumentStore implements CachingDocumentStore {
         }
     }
 
+    @Nonnull
+    @Override
+    @SuppressWarnings("unchecked")
+    public <T extends Document> List<T> find(Collection<T> collection,
+                                             List<String> keys) {
+        log("find", keys.size());
+        List<T> result = new ArrayList<T>(keys.size());
+        List<String> uncached = keys;
+        if (collection == Collection.NODES) {
+            uncached = new ArrayList<String>();
+            for (String key : keys) {
+                NodeDocument doc = nodesCache.getIfPresent(new StringValue(key));
+                if (doc == null) {
+                    uncached.add(key);
+                } else if (doc != NodeDocument.NULL) {
+                    result.add((T) doc);
+                }
+            }
+        }
+        if (uncached.isEmpty()) {
+            return result;
+        }
+        DBCollection dbCollection = getDBCollection(collection);
+        long start = start();
+        try {
+            for (List<String> keyBatch : Lists.partition(uncached, IN_CLAUSE_BATCH_SIZE)) {
+                DBObject query = QueryBuilder.start(Document.ID).in(keyBatch).get();
+                DBCursor cursor = dbCollection.find(query);
+                // documents may be on different parents, always read
+                // from the primary like an uncached find would do
+                cursor.setReadPreference(ReadPreference.primary());
+                try {
+                    while (cursor.hasNext()) {
+                        T doc = convertFromDBObject(collection, cursor.next());
+                        if (doc == null) {
+                            continue;
+                        }
+                        doc.seal();
+                        if (collection == Collection.NODES) {
+                            TreeLock lock = acquire(doc.getId());
+                            try {
+                                addToCacheIfNotNewer((NodeDocument) doc);
+                            } finally {
+                                lock.unlock();
+                            }
+                        }
+                        result.add(doc);
+                    }
+                } finally {
+                    cursor.close();
+                }
+            }
+            return result;
+        } finally {
+            end("find", start);
+        }
+    }
+
     @Nonnull
     @Override
     public <T extends Document> List<T> query(Collection<T> collection,
@@ -457,25 +515,7 @@ public class MongoDocumentStore implements CachingDocumentStore {
                     T doc = convertFromDBObject(collection, o);
                     if (collection == Collection.NODES && doc != null) {
                         doc.seal();
-                        String id = doc.getId();
-                        CacheValue cacheKey = new StringValue(id);
-                        // do not overwrite document in cache if the
-                        // existing one in the cache is newer
-                        NodeDocument cached = nodesCache.getIfPresent(cacheKey);
-                        if (cached != null && cached != NodeDocument.NULL) {
-                            // check mod count
-                            Number cachedModCount = cached.getModCount();
-                            Number modCount = doc.getModCount();
-                            if (cachedModCount == null || modCount == null) {
-                                throw new IllegalStateException(
-                                        "Missing " + Document.MOD_COUNT);
-                            }
-                            if (modCount.longValue() > cachedModCount.longValue()) {
-                                nodesCache.put(cacheKey, (NodeDocument) doc);
-                            }
-                        } else {
-                            nodesCache.put(cacheKey, (NodeDocument) doc);
-                        }
+                        addToCacheIfNotNewer((NodeDocument) doc);
                     }
                     list.add(doc);
                 }
@@ -489,6 +529,34 @@ public class MongoDocumentStore implements CachingDocumentStore {
         }
     }
 
+    /**
+     * Adds a document to the {@link #nodesCache} unless the cache already
+     * contains a newer version of the document. The caller must hold a lock
+     * for the document.
+     *
+     * @param doc the document read from MongoDB.
+     */
+    private void addToCacheIfNotNewer(@Nonnull NodeDocument doc) {
+        CacheValue cacheKey = new StringValue(doc.getId());
+        // do not overwrite document in cache if the
+        // existing one in the cache is newer
+        NodeDocument cached = nodesCache.getIfPresent(cacheKey);
+        if (cached != null && cached != NodeDocument.NULL) {
+            // check mod count
+            Number cachedModCount = cached.getModCount();
+            Number modCount = doc.getModCount();
+            if (cachedModCount == null || modCount == null) {
+                throw new IllegalStateException(
+                        "Missing " + Document.MOD_COUNT);
+            }
+            if (modCount.longValue() > cachedModCount.longValue()) {
+                nodesCache.put(cacheKey, doc);
+            }
+        } else {
+            nodesCache.put(cacheKey, doc);
+        }
+    }
+
     boolean canUseModifiedTimeIdx(long modifiedTimeInSecs) {
         if (maxDeltaForModTimeIdxSecs < 0) {
             return false;
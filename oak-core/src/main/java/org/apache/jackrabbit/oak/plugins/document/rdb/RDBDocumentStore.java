@@ -200,6 +200,27 @@ public class RDBDocumentStore implements CachingDocumentStore {
         return readDocumentCached(collection, id, maxCacheAge);
     }
 
+    @Override
+    public <T extends Document> List<T> find(Collection<T> collection, List<String> ids) {
+        List<T> result = new ArrayList<T>(ids.size());
+        List<String> uncached = ids;
+        if (collection == Collection.NODES) {
+            uncached = new ArrayList<String>();
+            for (String id : ids) {
+                NodeDocument doc = nodesCache.getIfPresent(new StringValue(id));
+                if (doc == null) {
+                    uncached.add(id);
+                } else if (doc != NodeDocument.NULL) {
+                    result.add(castAsT(doc));
+                }
+            }
+        }
+        for (List<String> chunk : Lists.partition(uncached, CHUNKSIZE)) {
+            result.addAll(internalRead(collection, chunk));
+        }
+        return result;
+    }
+
     @Override
     public <T extends Document> List<T> query(Collection<T> collection, String fromKey, String toKey, int limit) {
         // TODO cache
@@ -667,6 +688,26 @@ public class RDBDocumentStore implements CachingDocumentStore {
         return result;
     }
 
+    private <T extends Document> List<T> internalRead(Collection<T> collection, List<String> ids) {
+        Connection connection = null;
+        String tableName = getTable(collection);
+        List<T> result = new ArrayList<T>(ids.size());
+        try {
+            connection = getConnection();
+            for (String data : dbRead(connection, tableName, ids)) {
+                T doc = fromString(collection, data);
+                doc.seal();
+                result.add(doc);
+                addToCacheIfNotNewer(collection, doc);
+            }
+        } catch (Exception ex) {
+            throw new DocumentStoreException(ex);
+        } finally {
+            closeConnection(connection);
+        }
+        return result;
+    }
+
     private <T extends Document> String getTable(Collection<T> collection) {
         if (collection == Collection.CLUSTER_NODES) {
             return this.tablePrefix + "CLUSTERNODES";
@@ -907,6 +948,32 @@ public class RDBDocumentStore implements CachingDocumentStore {
         }
     }
 
+    private List<String> dbRead(Connection connection, String tableName, List<String> ids) throws SQLException {
+        int cnt = ids.size();
+        StringBuilder inClause = new StringBuilder();
+        for (int i = 0; i < cnt; i++) {
+            inClause.append('?');
+            if (i != cnt - 1) {
+                inClause.append(',');
+            }
+        }
+        PreparedStatement stmt = connection.prepareStatement("select DATA, BDATA from " + tableName + " where ID in ("
+                + inClause.toString() + ")");
+        List<String> result = new ArrayList<String>(cnt);
+        try {
+            for (int i = 0; i < cnt; i++) {
+                stmt.setString(i + 1, ids.get(i));
+            }
+            ResultSet rs = stmt.executeQuery();
+            while (rs.next()) {
+                result.add(getData(rs, 1, 2));
+            }
+        } finally {
+            stmt.close();
+        }
+        return result;
+    }
+
     private List<String> dbQuery(Connection connection, String tableName, String minId, String maxId, String indexedProperty,
             long startValue, int limit) throws SQLException {
         String t = "select ID, DATA, BDATA from " + tableName + " where ID > ? and ID < ?";
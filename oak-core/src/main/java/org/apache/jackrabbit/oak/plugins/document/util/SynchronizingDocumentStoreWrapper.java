@@ -47,6 +47,12 @@ public class SynchronizingDocumentStoreWrapper implements DocumentStore {
         return store.find(collection, key, maxCacheAge);
     }
 
+    @Nonnull
+    @Override
+    public synchronized <T extends Document> List<T> find(final Collection<T> collection, final List<String> keys) {
+        return store.find(collection, keys);
+    }
+
     @Nonnull
     @Override
     public synchronized <T extends Document> List<T> query(final Collection<T> collection, final String fromKey,
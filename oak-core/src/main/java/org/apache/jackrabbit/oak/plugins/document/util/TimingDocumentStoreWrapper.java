@@ -116,6 +116,22 @@ public class TimingDocumentStoreWrapper implements DocumentStore {
         }
     }
 
+    @Override
+    @Nonnull
+    public <T extends Document> List<T> find(Collection<T> collection, List<String> keys) {
+        try {
+            long start = now();
+            List<T> result = base.find(collection, keys);
+            updateAndLogTimes("findMultiple", start, 0, size(result));
+            if (logCommonCall()) {
+                logCommonCall(start, "findMultiple " + collection + " " + keys.size() + " keys");
+            }
+            return result;
+        } catch (Exception e) {
+            throw convert(e);
+        }
+    }
+
     @Override
     @Nonnull
     public <T extends Document> List<T> query(Collection<T> collection,
@@ -44,6 +44,7 @@ import org.apache.jackrabbit.oak.spi.commit.Editor;
 import org.apache.jackrabbit.oak.spi.commit.EditorDiff;
 import org.apache.jackrabbit.oak.spi.state.NodeBuilder;
 import org.apache.jackrabbit.oak.spi.state.NodeState;
+import org.apache.jackrabbit.oak.spi.state.NodeStateUtils;
 
 import com.google.common.base.Objects;
 import org.slf4j.Logger;
@@ -52,6 +53,14 @@ import org.slf4j.LoggerFactory;
 public class IndexUpdate implements Editor {
     private final Logger log = LoggerFactory.getLogger(getClass());
 
+    /**
+     * The default number of threads used to re-index
+     * {@link MergeableIndexEditor mergeable} indexes. With 1 (the default),
+     * re-indexing is done in the current thread.
+     */
+    public static final int DEFAULT_REINDEX_THREADS =
+            Integer.getInteger("oak.reindex.threads", 1);
+
     private final IndexEditorProvider provider;
 
     private final String async;
@@ -79,15 +88,34 @@ public class IndexUpdate implements Editor {
      */
     private final Map<String, Editor> reindex = new HashMap<String, Editor>();
 
+    /**
+     * The definitions of the indexes that need to be re-indexed.
+     */
+    private final Map<String, NodeBuilder> reindexDefinitions =
+            new HashMap<String, NodeBuilder>();
+
     /**
      * Callback for the update events of the indexing job
      */
     private final IndexUpdateCallback updateCallback;
 
+    /**
+     * The number of threads used to re-index.
+     */
+    private final int reindexThreads;
+
     public IndexUpdate(
             IndexEditorProvider provider, String async,
             NodeState root, NodeBuilder builder,
             IndexUpdateCallback updateCallback) {
+        this(provider, async, root, builder, updateCallback,
+                DEFAULT_REINDEX_THREADS);
+    }
+
+    public IndexUpdate(
+            IndexEditorProvider provider, String async,
+            NodeState root, NodeBuilder builder,
+            IndexUpdateCallback updateCallback, int reindexThreads) {
         this.parent = null;
         this.name = null;
         this.path = "/";
@@ -96,6 +124,7 @@ public class IndexUpdate implements Editor {
         this.root = checkNotNull(root);
         this.builder = checkNotNull(builder);
         this.updateCallback = checkNotNull(updateCallback);
+        this.reindexThreads = reindexThreads;
     }
 
     private IndexUpdate(IndexUpdate parent, String name) {
@@ -106,6 +135,7 @@ public class IndexUpdate implements Editor {
         this.root = parent.root;
         this.builder = parent.builder.getChildNode(checkNotNull(name));
         this.updateCallback = parent.updateCallback;
+        this.reindexThreads = parent.reindexThreads;
     }
 
     @Override
@@ -117,15 +147,42 @@ public class IndexUpdate implements Editor {
             log.info("Reindexing would be performed for following indexes {}", reindex.keySet());
         }
 
+        reindex(after);
+
+        for (Editor editor : editors) {
+            editor.enter(before, after);
+        }
+    }
+
+    /**
+     * Re-index the indexes that need to be re-indexed. Mergeable indexes are
+     * re-indexed in parallel, if multiple threads are configured; the others
+     * are re-indexed in the current thread.
+     */
+    private void reindex(NodeState after) throws CommitFailedException {
+        List<Editor> sequential = newArrayList();
+        Map<String, MergeableIndexEditor> parallel =
+                new HashMap<String, MergeableIndexEditor>();
+        for (Map.Entry<String, Editor> e : reindex.entrySet()) {
+            Editor editor = e.getValue();
+            if (reindexThreads > 1 && editor instanceof MergeableIndexEditor
+                    && ((MergeableIndexEditor) editor).isMergeable()) {
+                parallel.put(e.getKey(), (MergeableIndexEditor) editor);
+            } else {
+                sequential.add(editor);
+            }
+        }
+
         // no-op when reindex is empty
         CommitFailedException exception = EditorDiff.process(
-                CompositeEditor.compose(reindex.values()), MISSING_NODE, after);
+                CompositeEditor.compose(sequential), MISSING_NODE, after);
         if (exception != null) {
             throw exception;
         }
 
-        for (Editor editor : editors) {
-            editor.enter(before, after);
+        if (!parallel.isEmpty()) {
+            new ParallelReindex(provider, root, updateCallback, reindexThreads,
+                    reindexDefinitions, parallel).reindex(after);
         }
     }
 
@@ -165,11 +222,16 @@ public class IndexUpdate implements Editor {
                     } else {
                         definition.setProperty(REINDEX_PROPERTY_NAME, false);
                         // as we don't know the index content node name
-                        // beforehand, we'll remove all child nodes
+                        // beforehand, we'll remove all hidden child nodes;
+                        // the others are part of the index configuration
                         for (String rm : definition.getChildNodeNames()) {
-                            definition.getChildNode(rm).remove();
+                            if (NodeStateUtils.isHidden(rm)) {
+                                definition.getChildNode(rm).remove();
+                            }
                         }
-                        reindex.put(concat(getPath(), INDEX_DEFINITIONS_NAME, name), editor);
+                        String indexPath = concat(getPath(), INDEX_DEFINITIONS_NAME, name);
+                        reindex.put(indexPath, editor);
+                        reindexDefinitions.put(indexPath, definition);
                     }
                 } else {
                     editors.add(editor);
@@ -40,21 +40,37 @@ public class IndexUpdateProvider implements EditorProvider {
 
     private final String async;
 
+    private final int reindexThreads;
+
     public IndexUpdateProvider(IndexEditorProvider provider) {
         this(provider, null);
     }
 
     public IndexUpdateProvider(
             @Nonnull IndexEditorProvider provider, @CheckForNull String async) {
+        this(provider, async, IndexUpdate.DEFAULT_REINDEX_THREADS);
+    }
+
+    /**
+     * @param provider the index editor provider
+     * @param async the async name, or null for synchronous indexes
+     * @param reindexThreads the number of threads used to re-index
+     *            mergeable indexes
+     */
+    public IndexUpdateProvider(
+            @Nonnull IndexEditorProvider provider, @CheckForNull String async,
+            int reindexThreads) {
         this.provider = provider;
         this.async = async;
+        this.reindexThreads = reindexThreads;
     }
 
     @Override @CheckForNull
     public Editor getRootEditor(
             NodeState before, NodeState after,
             NodeBuilder builder, CommitInfo info) {
-        return VisibleEditor.wrap(new IndexUpdate(provider, async, after, builder, NOOP_CALLBACK));
+        return VisibleEditor.wrap(new IndexUpdate(
+                provider, async, after, builder, NOOP_CALLBACK, reindexThreads));
     }
 
 }
@@ -0,0 +1,59 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.jackrabbit.oak.plugins.index;
+
+import java.util.List;
+
+import org.apache.jackrabbit.oak.api.CommitFailedException;
+import org.apache.jackrabbit.oak.spi.state.NodeState;
+
+/**
+ * An {@link IndexEditor} that supports re-indexing in parallel. The content
+ * is then split into partitions, and each partition is indexed by a separate
+ * editor (from the same {@link IndexEditorProvider}) into a separate copy of
+ * the index definition. The editor for the index definition itself is not
+ * used to traverse the content; instead, the index data of all partitions is
+ * merged into its index definition.
+ *
+ * @see IndexUpdate
+ */
+public interface MergeableIndexEditor extends IndexEditor {
+
+    /**
+     * Whether the index data of this editor can be merged. If not, the index
+     * is re-indexed in one thread.
+     *
+     * @return true if merging is supported
+     */
+    boolean isMergeable();
+
+    /**
+     * Merge the index data of the partitions into the index definition of
+     * this editor. The index definition does not contain any index data
+     * before this method is called for the first time. The method is called
+     * multiple times, as partitions are completed, so the index data merged
+     * in earlier calls needs to be kept. Each partition covers a different
+     * set of nodes.
+     *
+     * @param partitions the index definitions of the partitions, with the
+     *            index data
+     * @throws CommitFailedException if merging failed, or if the merged index
+     *             would violate a constraint
+     */
+    void merge(List<NodeState> partitions) throws CommitFailedException;
+
+}
@@ -0,0 +1,402 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.jackrabbit.oak.plugins.index;
+
+import static com.google.common.collect.Lists.newArrayList;
+import static com.google.common.collect.Maps.newLinkedHashMap;
+import static com.google.common.collect.Sets.newHashSet;
+import static org.apache.jackrabbit.oak.api.CommitFailedException.OAK;
+import static org.apache.jackrabbit.oak.commons.PathUtils.concat;
+import static org.apache.jackrabbit.oak.commons.PathUtils.elements;
+import static org.apache.jackrabbit.oak.plugins.index.IndexConstants.TYPE_PROPERTY_NAME;
+import static org.apache.jackrabbit.oak.plugins.memory.EmptyNodeState.EMPTY_NODE;
+import static org.apache.jackrabbit.oak.plugins.memory.EmptyNodeState.MISSING_NODE;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.jackrabbit.oak.api.CommitFailedException;
+import org.apache.jackrabbit.oak.api.PropertyState;
+import org.apache.jackrabbit.oak.spi.commit.CompositeEditor;
+import org.apache.jackrabbit.oak.spi.commit.Editor;
+import org.apache.jackrabbit.oak.spi.commit.EditorDiff;
+import org.apache.jackrabbit.oak.spi.state.ChildNodeEntry;
+import org.apache.jackrabbit.oak.spi.state.NodeBuilder;
+import org.apache.jackrabbit.oak.spi.state.NodeState;
+import org.apache.jackrabbit.oak.spi.state.NodeStateUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Re-indexes a set of {@link MergeableIndexEditor mergeable} indexes using
+ * multiple threads.
+ * <p>
+ * The content tree is split into a number of subtrees (the partitions), by
+ * descending a few levels from the top. The nodes above the partitions (the
+ * "spine") are indexed by one task. The subtrees are put in a queue, and
+ * each worker thread indexes subtrees from that queue until it is empty.
+ * The spine and each subtree are indexed with their own editors, created by
+ * the index editor provider for a separate, empty copy of each index
+ * definition. As soon as the spine or a subtree is indexed, the index data
+ * of its copies is merged into the index definitions using
+ * {@link MergeableIndexEditor#merge(List)}, and the copies are discarded.
+ * That way, at most one copy per thread is kept in memory (or, depending on
+ * the node store, in the not yet persisted part of the repository). Merging
+ * is serialized, while the other threads continue indexing.
+ */
+class ParallelReindex {
+
+    private static final Logger log = LoggerFactory.getLogger(ParallelReindex.class);
+
+    /**
+     * The number of partitions per thread to aim for, so that the work is
+     * distributed evenly even if the subtrees have different sizes.
+     */
+    private static final int PARTITIONS_PER_THREAD = 16;
+
+    /**
+     * The maximum depth to descend to find partitions.
+     */
+    private static final int MAX_DEPTH = 4;
+
+    private final IndexEditorProvider provider;
+
+    private final NodeState root;
+
+    private final IndexUpdateCallback callback;
+
+    private final int threads;
+
+    /**
+     * The editors of the index definitions, by index path.
+     */
+    private final Map<String, MergeableIndexEditor> editors;
+
+    /**
+     * The index definitions without their index content, by index path.
+     */
+    private final Map<String, NodeState> definitions = newLinkedHashMap();
+
+    /**
+     * The relative paths of the nodes above the partitions.
+     */
+    private final Set<String> spine = newHashSet();
+
+    /**
+     * The relative paths of the subtrees that are not yet indexed.
+     */
+    private final Queue<String> partitions = new ConcurrentLinkedQueue<String>();
+
+    private final AtomicInteger done = new AtomicInteger();
+
+    private int partitionCount;
+
+    /**
+     * Create a parallel re-indexer.
+     *
+     * @param provider the index editor provider
+     * @param root the root state
+     * @param callback the callback (calls are serialized)
+     * @param threads the number of threads
+     * @param definitions the index definition builders, by index path
+     * @param editors the editors for the definitions, by index path
+     */
+    ParallelReindex(IndexEditorProvider provider, NodeState root,
+            final IndexUpdateCallback callback, int threads,
+            Map<String, NodeBuilder> definitions,
+            Map<String, MergeableIndexEditor> editors) {
+        this.provider = provider;
+        this.root = root;
+        this.callback = new IndexUpdateCallback() {
+            @Override
+            public synchronized void indexUpdate() throws CommitFailedException {
+                callback.indexUpdate();
+            }
+        };
+        this.threads = threads;
+        this.editors = editors;
+        for (String path : editors.keySet()) {
+            this.definitions.put(path,
+                    getEmptyCopy(definitions.get(path).getNodeState()));
+        }
+    }
+
+    /**
+     * Get a copy of the index definition with all its configuration, but
+     * without the (hidden) index content.
+     */
+    private static NodeState getEmptyCopy(NodeState definition) {
+        NodeBuilder builder = definition.builder();
+        for (String name : definition.getChildNodeNames()) {
+            if (NodeStateUtils.isHidden(name)) {
+                builder.getChildNode(name).remove();
+            }
+        }
+        return builder.getNodeState();
+    }
+
+    /**
+     * Index the given tree, and merge the results into the index
+     * definitions.
+     *
+     * @param state the root of the tree to index
+     */
+    void reindex(NodeState state) throws CommitFailedException {
+        long start = System.currentTimeMillis();
+        partition(state);
+        log.info("Reindexing {} using {} threads and {} partitions",
+                editors.keySet(), threads, partitionCount);
+
+        List<Callable<Void>> tasks = newArrayList();
+        tasks.add(new SpineTask(state));
+        for (int i = 0; i < threads; i++) {
+            tasks.add(new PartitionTask(state));
+        }
+        ExecutorService executor = Executors.newFixedThreadPool(threads,
+                new ThreadFactory() {
+                    private final AtomicInteger count = new AtomicInteger();
+                    @Override
+                    public Thread newThread(Runnable r) {
+                        Thread t = new Thread(r, "oak-reindex-"
+                                + count.incrementAndGet());
+                        t.setDaemon(true);
+                        return t;
+                    }
+                });
+        try {
+            List<Future<Void>> futures = newArrayList();
+            for (Callable<Void> task : tasks) {
+                futures.add(executor.submit(task));
+            }
+            for (Future<Void> future : futures) {
+                get(future);
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+        log.info("Reindexing {} done in {} ms", editors.keySet(),
+                System.currentTimeMillis() - start);
+    }
+
+    private static <T> T get(Future<T> future) throws CommitFailedException {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new CommitFailedException(OAK, 14,
+                    "Interrupted while reindexing", e);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof CommitFailedException) {
+                throw (CommitFailedException) cause;
+            } else if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            } else if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            throw new CommitFailedException(OAK, 14,
+                    "Reindexing failed", cause);
+        }
+    }
+
+    /**
+     * Split the tree into partitions, by descending level by level until
+     * there are enough subtrees.
+     */
+    private void partition(NodeState state) {
+        List<String> level = newArrayList();
+        spine.add("/");
+        for (String name : state.getChildNodeNames()) {
+            level.add(concat("/", name));
+        }
+        int target = threads * PARTITIONS_PER_THREAD;
+        for (int depth = 1; depth < MAX_DEPTH && level.size() < target; depth++) {
+            List<String> next = newArrayList();
+            for (String path : level) {
+                // the node is indexed with the spine,
+                // and its child nodes are the candidate partitions
+                spine.add(path);
+                NodeState node = getNode(state, path);
+                for (String name : node.getChildNodeNames()) {
+                    next.add(concat(path, name));
+                }
+            }
+            level = next;
+        }
+        partitions.addAll(level);
+        partitionCount = level.size();
+    }
+
+    private static NodeState getNode(NodeState state, String path) {
+        for (String name : elements(path)) {
+            state = state.getChildNode(name);
+        }
+        return state;
+    }
+
+    /**
+     * Get a view of the spine: the given node, with its properties, and only
+     * the child nodes that belong to the spine.
+     */
+    private NodeState getSpineView(NodeState node, String path) {
+        NodeBuilder builder = EMPTY_NODE.builder();
+        for (PropertyState property : node.getProperties()) {
+            builder.setProperty(property);
+        }
+        for (ChildNodeEntry child : node.getChildNodeEntries()) {
+            String childPath = concat(path, child.getName());
+            if (spine.contains(childPath)) {
+                builder.setChildNode(child.getName(),
+                        getSpineView(child.getNodeState(), childPath));
+            }
+        }
+        return builder.getNodeState();
+    }
+
+    /**
+     * Merge the index data of the given copies into the index definitions.
+     *
+     * @param copies the copies, by index path
+     */
+    private synchronized void merge(Map<String, NodeBuilder> copies)
+            throws CommitFailedException {
+        for (Entry<String, NodeBuilder> e : copies.entrySet()) {
+            editors.get(e.getKey()).merge(
+                    Collections.singletonList(e.getValue().getNodeState()));
+        }
+    }
+
+    private void progress() {
+        int count = done.incrementAndGet();
+        if (count == partitionCount || count % Math.max(1, partitionCount / 10) == 0) {
+            log.info("Reindexing {}: {} of {} partitions done",
+                    editors.keySet(), count, partitionCount);
+        }
+    }
+
+    /**
+     * Empty copies of the index definitions, and the editor to index nodes
+     * into them.
+     */
+    private class Copies {
+
+        private final Map<String, NodeBuilder> builders = newLinkedHashMap();
+
+        private final Editor editor;
+
+        Copies() throws CommitFailedException {
+            List<Editor> list = newArrayList();
+            for (Entry<String, NodeState> e : definitions.entrySet()) {
+                NodeBuilder builder = e.getValue().builder();
+                String type = builder.getString(TYPE_PROPERTY_NAME);
+                Editor editor = provider.getIndexEditor(
+                        type, builder, root, callback);
+                if (editor == null) {
+                    throw new CommitFailedException(OAK, 14,
+                            "No index editor for " + e.getKey());
+                }
+                builders.put(e.getKey(), builder);
+                list.add(editor);
+            }
+            editor = CompositeEditor.compose(list);
+        }
+
+    }
+
+    /**
+     * Indexes the nodes of the spine.
+     */
+    private class SpineTask implements Callable<Void> {
+
+        private final NodeState state;
+
+        SpineTask(NodeState state) {
+            this.state = state;
+        }
+
+        @Override
+        public Void call() throws CommitFailedException {
+            Copies copies = new Copies();
+            CommitFailedException exception = EditorDiff.process(
+                    copies.editor, MISSING_NODE, getSpineView(state, "/"));
+            if (exception != null) {
+                throw exception;
+            }
+            merge(copies.builders);
+            return null;
+        }
+
+    }
+
+    /**
+     * Indexes subtrees from the queue, until the queue is empty. Each
+     * subtree is indexed into new copies, which are merged right afterwards.
+     * The root editor is not used to index the root node (that is done by
+     * the spine task), but only to get the editors for the subtree, and to
+     * complete indexing when leaving.
+     */
+    private class PartitionTask implements Callable<Void> {
+
+        private final NodeState state;
+
+        PartitionTask(NodeState state) {
+            this.state = state;
+        }
+
+        @Override
+        public Void call() throws CommitFailedException {
+            String path;
+            while ((path = partitions.poll()) != null) {
+                Copies copies = new Copies();
+                Editor editor = copies.editor;
+                editor.enter(state, state);
+                Editor e = editor;
+                NodeState node = state;
+                for (String name : elements(path)) {
+                    node = node.getChildNode(name);
+                    e = e.childNodeAdded(name, node);
+                    if (e == null) {
+                        break;
+                    }
+                }
+                CommitFailedException exception =
+                        EditorDiff.process(e, MISSING_NODE, node);
+                if (exception != null) {
+                    throw exception;
+                }
+                editor.leave(state, state);
+                merge(copies.builders);
+                progress();
+            }
+            return null;
+        }
+
+    }
+
+}
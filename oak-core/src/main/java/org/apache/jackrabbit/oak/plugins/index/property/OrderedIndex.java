@@ -134,14 +134,19 @@ public interface OrderedIndex {
      *  <dt>lane 1:</dt> <dd>10.0%</dd>
      *  <dt>lane 2:</dt> <dd>1.0%</dd>
      *  <dt>lane 3:</dt> <dd>0.1%</dd>
+     *  <dt>...</dt>
+     *  <dt>lane 7:</dt> <dd>0.00001%</dd>
      * </dl>
      */
     double DEFAULT_PROBABILITY = 0.1;
     
     /**
-     * the number of lanes used in the SkipList 
+     * the number of lanes used in the SkipList. With the default probability, seeks and inserts
+     * need a logarithmic number of steps for up to about 10^8 entries. Only the first 4 lanes
+     * are always stored (the original number of lanes); the upper ones only for the entries
+     * linked on them.
      */
-    int LANES = 4;
+    int LANES = 8;
     
     /**
      * Convenience Predicate that will force the implementor to expose what we're searching for
@@ -114,6 +114,15 @@ public class OrderedPropertyIndexEditor extends PropertyIndexEditor {
         return store;
     }
 
+    /**
+     * The ordered index content can not be merged, as the entries of the
+     * partitions would need to be re-linked.
+     */
+    @Override
+    public boolean isMergeable() {
+        return false;
+    }
+
     public boolean isProperlyConfigured() {
         return properlyConfigured;
     }
@@ -28,7 +28,9 @@ import static org.apache.jackrabbit.oak.plugins.index.IndexConstants.DECLARING_N
 import static org.apache.jackrabbit.oak.plugins.index.IndexConstants.INDEX_CONTENT_NODE_NAME;
 import static org.apache.jackrabbit.oak.plugins.index.IndexConstants.PROPERTY_NAMES;
 import static org.apache.jackrabbit.oak.plugins.index.property.PropertyIndex.encode;
+import static org.apache.jackrabbit.oak.plugins.index.property.strategy.ApproximateCounter.COUNT_PROPERTY_NAME;
 
+import java.util.List;
 import java.util.Set;
 
 import javax.annotation.Nonnull;
@@ -37,14 +39,16 @@ import javax.jcr.PropertyType;
 import org.apache.jackrabbit.oak.api.CommitFailedException;
 import org.apache.jackrabbit.oak.api.PropertyState;
 import org.apache.jackrabbit.oak.plugins.index.IndexConstants;
-import org.apache.jackrabbit.oak.plugins.index.IndexEditor;
 import org.apache.jackrabbit.oak.plugins.index.IndexUpdateCallback;
+import org.apache.jackrabbit.oak.plugins.index.MergeableIndexEditor;
+import org.apache.jackrabbit.oak.plugins.index.property.strategy.ApproximateCounter;
 import org.apache.jackrabbit.oak.plugins.index.property.strategy.ContentMirrorStoreStrategy;
 import org.apache.jackrabbit.oak.plugins.index.property.strategy.IndexStoreStrategy;
 import org.apache.jackrabbit.oak.plugins.index.property.strategy.UniqueEntryStoreStrategy;
 import org.apache.jackrabbit.oak.plugins.nodetype.TypePredicate;
 import org.apache.jackrabbit.oak.spi.commit.Editor;
 import org.apache.jackrabbit.oak.spi.query.PropertyValues;
+import org.apache.jackrabbit.oak.spi.state.ChildNodeEntry;
 import org.apache.jackrabbit.oak.spi.state.NodeBuilder;
 import org.apache.jackrabbit.oak.spi.state.NodeState;
 
@@ -56,7 +60,7 @@ import com.google.common.base.Predicate;
  * @see PropertyIndex
  * @see PropertyIndexLookup
  */
-class PropertyIndexEditor implements IndexEditor {
+class PropertyIndexEditor implements MergeableIndexEditor {
 
     /** Index storage strategy */
     private static final IndexStoreStrategy MIRROR =
@@ -319,6 +323,58 @@ class PropertyIndexEditor implements IndexEditor {
         }
     }
 
+    @Override
+    public boolean isMergeable() {
+        return true;
+    }
+
+    /**
+     * Merge the index content of the partitions. Each partition covers
+     * different paths, so the content trees only overlap at the index keys
+     * and at the common ancestors of the indexed paths, and merging is
+     * cheap. For unique indexes, a key that is used in multiple partitions
+     * is a constraint violation.
+     */
+    @Override
+    public void merge(List<NodeState> partitions)
+            throws CommitFailedException {
+        NodeBuilder index = definition.child(INDEX_CONTENT_NODE_NAME);
+        for (NodeState partition : partitions) {
+            NodeState content = partition.getChildNode(INDEX_CONTENT_NODE_NAME);
+            ApproximateCounter.merge(index, content);
+            for (ChildNodeEntry entry : content.getChildNodeEntries()) {
+                String key = entry.getName();
+                if (!index.hasChildNode(key)) {
+                    index.setChildNode(key, entry.getNodeState());
+                } else if (keysToCheckForUniqueness != null) {
+                    String msg = String.format("Uniqueness constraint violated at path [%s] for one of the " +
+                            "property in %s having value %s", getPath(), propertyNames, key);
+                    throw new CommitFailedException(CONSTRAINT, 30, msg);
+                } else {
+                    NodeBuilder target = index.getChildNode(key);
+                    ApproximateCounter.merge(target, entry.getNodeState());
+                    merge(target, entry.getNodeState());
+                }
+            }
+        }
+    }
+
+    private static void merge(NodeBuilder target, NodeState source) {
+        for (PropertyState property : source.getProperties()) {
+            if (!COUNT_PROPERTY_NAME.equals(property.getName())) {
+                target.setProperty(property);
+            }
+        }
+        for (ChildNodeEntry entry : source.getChildNodeEntries()) {
+            String name = entry.getName();
+            if (target.hasChildNode(name)) {
+                merge(target.getChildNode(name), entry.getNodeState());
+            } else {
+                target.setChildNode(name, entry.getNodeState());
+            }
+        }
+    }
+
     /**
      * Retrieve a new index editor associated with the child node to process
      * 
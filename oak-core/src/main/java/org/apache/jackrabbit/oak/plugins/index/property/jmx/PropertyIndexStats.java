@@ -0,0 +1,63 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.jackrabbit.oak.plugins.index.property.jmx;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+import static org.apache.jackrabbit.oak.plugins.index.IndexConstants.INDEX_CONTENT_NODE_NAME;
+
+import javax.annotation.Nonnull;
+
+import org.apache.jackrabbit.oak.commons.PathUtils;
+import org.apache.jackrabbit.oak.plugins.index.property.strategy.ApproximateCounter;
+import org.apache.jackrabbit.oak.spi.state.NodeState;
+import org.apache.jackrabbit.oak.spi.state.NodeStore;
+
+/**
+ * Default implementation of {@link PropertyIndexStatsMBean}, reading the
+ * counters of the latest state of the node store.
+ */
+public class PropertyIndexStats implements PropertyIndexStatsMBean {
+
+    private final NodeStore store;
+
+    public PropertyIndexStats(@Nonnull NodeStore store) {
+        this.store = checkNotNull(store);
+    }
+
+    @Override
+    public long getEstimatedEntryCount(String indexPath) {
+        return ApproximateCounter.getCount(getIndexContent(indexPath));
+    }
+
+    @Override
+    public long getEstimatedKeyCount(String indexPath, String key) {
+        NodeState node = getIndexContent(indexPath).getChildNode(key);
+        if (!node.exists()) {
+            return 0;
+        }
+        return ApproximateCounter.getCount(node);
+    }
+
+    private NodeState getIndexContent(String indexPath) {
+        NodeState node = store.getRoot();
+        for (String name : PathUtils.elements(indexPath)) {
+            node = node.getChildNode(name);
+        }
+        return node.getChildNode(INDEX_CONTENT_NODE_NAME);
+    }
+
+}
@@ -0,0 +1,46 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.jackrabbit.oak.plugins.index.property.jmx;
+
+/**
+ * MBean for the statistics of the property indexes, as used for query cost
+ * estimation.
+ */
+public interface PropertyIndexStatsMBean {
+
+    String TYPE = "PropertyIndexStats";
+
+    /**
+     * The approximate number of entries in a property index.
+     *
+     * @param indexPath the path of the index definition, for example
+     *            "/oak:index/foo"
+     * @return the number of entries, or -1 if not known (for indexes that
+     *         were created before entries were counted)
+     */
+    long getEstimatedEntryCount(String indexPath);
+
+    /**
+     * The approximate number of entries for a key in a property index.
+     *
+     * @param indexPath the path of the index definition
+     * @param key the key, as stored in the index (the URL-encoded value)
+     * @return the number of entries, or -1 if not known
+     */
+    long getEstimatedKeyCount(String indexPath, String key);
+
+}
@@ -0,0 +1,145 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.jackrabbit.oak.plugins.index.property.strategy;
+
+import java.util.Random;
+
+import org.apache.jackrabbit.oak.api.PropertyState;
+import org.apache.jackrabbit.oak.api.Type;
+import org.apache.jackrabbit.oak.spi.state.NodeBuilder;
+import org.apache.jackrabbit.oak.spi.state.NodeState;
+
+/**
+ * Approximate counters of the entries of a property index, stored in a hidden
+ * property of the index nodes. There is a counter for each key node (the
+ * number of entries for this value), and one for the index content node (the
+ * total number of entries).
+ * <p>
+ * Updating the same property in each commit would cause conflicts between
+ * concurrent commits. Therefore, once a counter has reached a certain size,
+ * it is only updated with a probability of 1 / resolution, by resolution
+ * entries at a time. The expected value is still the exact count. The
+ * resolution grows with the count, so that the relative error stays about
+ * the same (roughly 10%).
+ * <p>
+ * A counter is only maintained for nodes that were empty when the first
+ * entry was added, so that the entries of an index that was created before
+ * counting was supported are never under-counted.
+ */
+public final class ApproximateCounter {
+
+    /**
+     * The name of the (hidden) property that contains the approximate count.
+     */
+    public static final String COUNT_PROPERTY_NAME = ":count";
+
+    /**
+     * Counters up to this value are exact.
+     */
+    static final long EXACT_COUNT = 100;
+
+    /**
+     * The maximum resolution.
+     */
+    static final long MAX_RESOLUTION = 1000;
+
+    private static final Random RANDOM = new Random();
+
+    private ApproximateCounter() {
+    }
+
+    /**
+     * Get the counter of the given node.
+     *
+     * @param node the index node
+     * @return the approximate count, or -1 if no counter is available
+     */
+    public static long getCount(NodeState node) {
+        PropertyState count = node.getProperty(COUNT_PROPERTY_NAME);
+        return count == null ? -1 : count.getValue(Type.LONG);
+    }
+
+    /**
+     * Adjust the counter of a node before an entry is added.
+     *
+     * @param node the index node
+     */
+    static void entryAdded(NodeBuilder node) {
+        PropertyState count = node.getProperty(COUNT_PROPERTY_NAME);
+        if (count != null) {
+            adjust(node, count.getValue(Type.LONG), 1);
+        } else if (node.getChildNodeCount(1) == 0) {
+            // a new (or empty) node: start counting
+            node.setProperty(COUNT_PROPERTY_NAME, 1L);
+        }
+    }
+
+    /**
+     * Adjust the counter of a node after an entry was removed.
+     *
+     * @param node the index node
+     */
+    static void entryRemoved(NodeBuilder node) {
+        PropertyState count = node.getProperty(COUNT_PROPERTY_NAME);
+        if (count != null) {
+            adjust(node, count.getValue(Type.LONG), -1);
+        }
+    }
+
+    /**
+     * Combine the counters of two nodes whose entries are merged.
+     *
+     * @param target the node the entries are merged into
+     * @param source the node with the additional entries
+     */
+    public static void merge(NodeBuilder target, NodeState source) {
+        long a = getCount(target.getNodeState());
+        long b = getCount(source);
+        // an empty node without counter has no entries
+        if (a < 0 && target.getChildNodeCount(1) == 0) {
+            a = 0;
+        }
+        if (b < 0 && source.getChildNodeCount(1) == 0) {
+            b = 0;
+        }
+        if (a >= 0 && b >= 0) {
+            target.setProperty(COUNT_PROPERTY_NAME, a + b);
+        } else {
+            // one of the nodes is not counted
+            target.removeProperty(COUNT_PROPERTY_NAME);
+        }
+    }
+
+    private static void adjust(NodeBuilder node, long count, int offset) {
+        long resolution = getResolution(count);
+        if (resolution > 1) {
+            if (RANDOM.nextInt((int) resolution) != 0) {
+                return;
+            }
+            offset *= resolution;
+        }
+        node.setProperty(COUNT_PROPERTY_NAME, Math.max(0, count + offset));
+    }
+
+    static long getResolution(long count) {
+        if (count <= EXACT_COUNT) {
+            return 1;
+        }
+        return Math.min(MAX_RESOLUTION, count / EXACT_COUNT);
+    }
+
+}
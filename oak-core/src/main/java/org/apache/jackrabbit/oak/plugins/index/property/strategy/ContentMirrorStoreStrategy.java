@@ -97,6 +97,10 @@ public class ContentMirrorStoreStrategy implements IndexStoreStrategy {
 
             // Drop the match value,  if present
             if (builder.exists()) {
+                if (builder.getBoolean("match")) {
+                    ApproximateCounter.entryRemoved(index);
+                    ApproximateCounter.entryRemoved(builders.getLast());
+                }
                 builder.removeProperty("match");
             }
 
@@ -106,8 +110,10 @@ public class ContentMirrorStoreStrategy implements IndexStoreStrategy {
     }
 
     private void insert(NodeBuilder index, String key, String value) {
+        ApproximateCounter.entryAdded(index);
         // NodeBuilder builder = index.child(key);
         NodeBuilder builder = fetchKeyNode(index, key);
+        ApproximateCounter.entryAdded(builder);
         for (String name : PathUtils.elements(value)) {
             builder = builder.child(name);
         }
@@ -160,15 +166,18 @@ public class ContentMirrorStoreStrategy implements IndexStoreStrategy {
     public long count(NodeState indexMeta, final String indexStorageNodeName,
             Set<String> values, int max) {
         NodeState index = indexMeta.getChildNode(indexStorageNodeName);
-        int count = 0;
+        long count = 0;
         if (values == null) {
             PropertyState ec = indexMeta.getProperty(ENTRY_COUNT_PROPERTY_NAME);
             if (ec != null) {
                 return ec.getValue(Type.LONG);
             }
-            CountingNodeVisitor v = new CountingNodeVisitor(max);
-            v.visit(index);
-            count = v.getEstimatedCount();
+            count = ApproximateCounter.getCount(index);
+            if (count < 0) {
+                CountingNodeVisitor v = new CountingNodeVisitor(max);
+                v.visit(index);
+                count = v.getEstimatedCount();
+            }
             if (count >= max) {
                 // "is not null" queries typically read more data
                 count *= 10;
@@ -205,9 +214,15 @@ public class ContentMirrorStoreStrategy implements IndexStoreStrategy {
                 }
                 NodeState s = index.getChildNode(p);
                 if (s.exists()) {
-                    CountingNodeVisitor v = new CountingNodeVisitor(max);
-                    v.visit(s);
-                    count += v.getEstimatedCount();
+                    long c = ApproximateCounter.getCount(s);
+                    if (c >= 0) {
+                        // the key node exists, so there is at least one entry
+                        count += Math.max(1, c);
+                    } else {
+                        CountingNodeVisitor v = new CountingNodeVisitor(max);
+                        v.visit(s);
+                        count += v.getEstimatedCount();
+                    }
                 }
                 i++;
             }
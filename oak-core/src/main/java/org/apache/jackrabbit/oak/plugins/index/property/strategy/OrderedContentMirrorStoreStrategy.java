@@ -23,6 +23,7 @@ import static org.apache.jackrabbit.oak.plugins.index.IndexConstants.INDEX_CONTE
 
 import java.io.UnsupportedEncodingException;
 import java.net.URLEncoder;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.Deque;
 import java.util.Iterator;
@@ -426,9 +427,12 @@ public class OrderedContentMirrorStoreStrategy extends ContentMirrorStoreStrateg
                 value = lpr.first.getValue(Type.STRING);
                 NodeState n = content.getChildNode(value);
                 if (n.exists()) {
-                    CountingNodeVisitor v = new CountingNodeVisitor(max);
-                    v.visit(n);
-                    count = v.getEstimatedCount();
+                    count = ApproximateCounter.getCount(n);
+                    if (count < 0) {
+                        CountingNodeVisitor v = new CountingNodeVisitor(max);
+                        v.visit(n);
+                        count = v.getEstimatedCount();
+                    }
                 }
             } else if (lpr.first == null && lpr.last == null) {
                 // property not null case
@@ -436,9 +440,12 @@ public class OrderedContentMirrorStoreStrategy extends ContentMirrorStoreStrateg
                 if (ec != null) {
                     count = ec.getValue(Type.LONG);
                 } else {
-                    CountingNodeVisitor v = new CountingNodeVisitor(max);
-                    v.visit(content);
-                    count = v.getEstimatedCount();
+                    count = ApproximateCounter.getCount(content);
+                    if (count < 0) {
+                        CountingNodeVisitor v = new CountingNodeVisitor(max);
+                        v.visit(content);
+                        count = v.getEstimatedCount();
+                    }
                 }
             } else if (lpr.first != null && !lpr.first.equals(lpr.last)) {
                 // > & >= in ascending index
@@ -1011,12 +1018,15 @@ public class OrderedContentMirrorStoreStrategy extends ContentMirrorStoreStrateg
      */
     static void setPropertyNext(@Nonnull final NodeBuilder node, final String... next) {
         if (node != null && next != null) {
-            String n1 = (next.length > 0) ? next[0] : "";
-            String n2 = (next.length > 1) ? next[1] : "";
-            String n3 = (next.length > 2) ? next[2] : "";
-            String n4 = (next.length > 3) ? next[3] : "";
-            
-            node.setProperty(NEXT, ImmutableList.of(n1, n2, n3, n4), Type.STRINGS);
+            // the lanes above the default ones are only stored for the
+            // (few) entries that are linked on them
+            int size = Math.max(EMPTY_NEXT_ARRAY.length,
+                Math.min(next.length, OrderedIndex.LANES));
+            List<String> values = Lists.newArrayListWithCapacity(size);
+            for (int i = 0; i < size; i++) {
+                values.add((next.length > i) ? next[i] : "");
+            }
+            node.setProperty(NEXT, values, Type.STRINGS);
         }
     }
     
@@ -1036,19 +1046,16 @@ public class OrderedContentMirrorStoreStrategy extends ContentMirrorStoreStrateg
                 String[] values;
                 if (next.isArray()) {
                     values = Iterables.toArray(next.getValue(Type.STRINGS), String.class);
-                    if (values.length < OrderedIndex.LANES) {
-                        // it could be we increased the number of lanes and running on some existing
-                        // content
-                        LOG.debug("topping-up the number of lanes.");
-                        List<String> vv = Lists.newArrayList(values);
-                        for (int i = vv.size(); i <= OrderedIndex.LANES; i++) {
-                            vv.add("");
-                        }
-                        values = vv.toArray(new String[vv.size()]);
-                    }
                 } else {
-                    values = Iterables.toArray(EMPTY_NEXT, String.class);
-                    values[0] = next.getValue(Type.STRING);
+                    values = new String[] { next.getValue(Type.STRING) };
+                }
+                if (values.length <= lane) {
+                    // the entry is linked on an upper lane, or the content was written
+                    // with fewer lanes. The lanes in between are not linked.
+                    LOG.debug("topping-up the number of lanes.");
+                    int length = values.length;
+                    values = Arrays.copyOf(values, lane + 1);
+                    Arrays.fill(values, length, values.length, "");
                 }
                 values[lane] = value;
                 setPropertyNext(node, values);
@@ -1081,7 +1088,8 @@ public class OrderedContentMirrorStoreStrategy extends ContentMirrorStoreStrateg
     }
 
     /**
-     * short-cut for using NodeBuilder. See {@code getNext(NodeState)}
+     * short-cut for using NodeBuilder. See {@code getNext(NodeState)}. A lane that is not stored
+     * means the entry is not linked on it, so an empty string is returned.
      */
     static String getPropertyNext(@Nonnull final NodeBuilder node, final int lane) {
         checkNotNull(node);
@@ -1090,8 +1098,10 @@ public class OrderedContentMirrorStoreStrategy extends ContentMirrorStoreStrateg
         PropertyState ps = node.getProperty(NEXT);
         if (ps != null) {
             if (ps.isArray()) {
-                next = ps.getValue(Type.STRING, Math.min(ps.count() - 1, lane));
-            } else {
+                if (lane < ps.count()) {
+                    next = ps.getValue(Type.STRING, lane);
+                }
+            } else if (lane == 0) {
                 next = ps.getValue(Type.STRING);
             }
         }
@@ -1101,7 +1111,7 @@ public class OrderedContentMirrorStoreStrategy extends ContentMirrorStoreStrateg
     /**
      * retrieve the lane to be updated based on probabilistic approach.
      * 
-     * Having 4 lanes if we have the 3 to be updated it means we'll have to update lanes
+     * If we have the lane 3 to be updated it means we'll have to update lanes
      * 0,1,2 and 3. If we'll have 2 only 0,1,2 and so on.
      * 
      * Lane 0 will always be updated as it's the base linked list.
@@ -70,6 +70,12 @@ public class Compactor {
      */
     private final Map<String, List<RecordId>> binaries = newHashMap();
 
+    /**
+     * Number of nodes processed so far. Only updated by the compacting
+     * thread, but may be read concurrently to monitor progress.
+     */
+    private volatile long nodeCount = 0;
+
     public Compactor(SegmentWriter writer) {
         this.writer = writer;
     }
@@ -90,6 +96,17 @@ public class Compactor {
         return map;
     }
 
+    /**
+     * Returns the number of added or changed nodes processed by this
+     * compactor so far. Can be called concurrently to track the progress
+     * of a running compaction.
+     *
+     * @return number of processed nodes
+     */
+    public long getNodeCount() {
+        return nodeCount;
+    }
+
     private class CompactDiff extends ApplyDiff {
 
         CompactDiff(NodeBuilder builder) {
@@ -110,6 +127,7 @@ public class Compactor {
 
         @Override
         public boolean childNodeAdded(String name, NodeState after) {
+            nodeCount++;
             RecordId id = null;
             if (after instanceof SegmentNodeState) {
                 id = ((SegmentNodeState) after).getRecordId();
@@ -138,6 +156,7 @@ public class Compactor {
         @Override
         public boolean childNodeChanged(
                 String name, NodeState before, NodeState after) {
+            nodeCount++;
             RecordId id = null;
             if (after instanceof SegmentNodeState) {
                 id = ((SegmentNodeState) after).getRecordId();
@@ -109,6 +109,16 @@ public class SegmentId implements Comparable<SegmentId> {
         return segment;
     }
 
+    /**
+     * Checks whether the segment is currently available in memory, without
+     * loading it or affecting its cache status.
+     *
+     * @return {@code true} if the segment is loaded, {@code false} otherwise
+     */
+    public boolean isLoaded() {
+        return segment != null;
+    }
+
     synchronized void setSegment(Segment segment) {
         this.segment = segment;
     }
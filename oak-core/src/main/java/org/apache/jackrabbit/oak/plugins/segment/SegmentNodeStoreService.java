@@ -34,13 +34,17 @@ import org.apache.felix.scr.annotations.Property;
 import org.apache.felix.scr.annotations.Reference;
 import org.apache.felix.scr.annotations.ReferenceCardinality;
 import org.apache.felix.scr.annotations.ReferencePolicy;
+import org.apache.jackrabbit.oak.api.jmx.CacheStatsMBean;
+import org.apache.jackrabbit.oak.cache.CacheStats;
 import org.apache.jackrabbit.oak.osgi.ObserverTracker;
 import org.apache.jackrabbit.oak.osgi.OsgiWhiteboard;
 import org.apache.jackrabbit.oak.plugins.blob.BlobGC;
 import org.apache.jackrabbit.oak.plugins.blob.BlobGCMBean;
 import org.apache.jackrabbit.oak.plugins.blob.BlobGarbageCollector;
 import org.apache.jackrabbit.oak.plugins.blob.MarkSweepGarbageCollector;
+import org.apache.jackrabbit.oak.plugins.segment.file.CompactionStatsMBean;
 import org.apache.jackrabbit.oak.plugins.segment.file.FileStore;
+import org.apache.jackrabbit.oak.plugins.segment.file.FileStoreStatsMBean;
 import org.apache.jackrabbit.oak.spi.blob.BlobStore;
 import org.apache.jackrabbit.oak.spi.blob.GarbageCollectableBlobStore;
 import org.apache.jackrabbit.oak.spi.commit.Observable;
@@ -103,6 +107,9 @@ public class SegmentNodeStoreService extends ProxyNodeStore
     private ServiceRegistration registration;
     private Registration revisionGCRegistration;
     private Registration blobGCRegistration;
+    private Registration fileStoreStatsRegistration;
+    private Registration segmentCacheStatsRegistration;
+    private Registration compactionStatsRegistration;
     private WhiteboardExecutor executor;
     private boolean customBlobStore;
 
@@ -153,17 +160,19 @@ public class SegmentNodeStoreService extends ProxyNodeStore
         }
 
         boolean memoryMapping = "64".equals(mode);
+        FileStore fileStore;
         if (customBlobStore) {
             log.info("Initializing SegmentNodeStore with BlobStore [{}]", blobStore);
-            store = new FileStore(
+            fileStore = new FileStore(
                     blobStore,
                     new File(directory),
                     Integer.parseInt(size), memoryMapping);
         } else {
-            store = new FileStore(
+            fileStore = new FileStore(
                     new File(directory),
                     Integer.parseInt(size), memoryMapping);
         }
+        store = fileStore;
 
 
         delegate = new SegmentNodeStore(store);
@@ -187,6 +196,18 @@ public class SegmentNodeStoreService extends ProxyNodeStore
         revisionGCRegistration = registerMBean(whiteboard, RevisionGCMBean.class, revisionGC,
                 RevisionGCMBean.TYPE, "Segment node store revision garbage collection");
 
+        fileStoreStatsRegistration = registerMBean(whiteboard, FileStoreStatsMBean.class,
+                fileStore.getStats(), FileStoreStatsMBean.TYPE, "Segment node store statistics");
+
+        compactionStatsRegistration = registerMBean(whiteboard, CompactionStatsMBean.class,
+                fileStore.getCompactionStats(), CompactionStatsMBean.TYPE, "Segment node store compaction statistics");
+
+        CacheStats segmentCacheStats = fileStore.getSegmentCacheStats();
+        if (segmentCacheStats != null) {
+            segmentCacheStatsRegistration = registerMBean(whiteboard, CacheStatsMBean.class,
+                    segmentCacheStats, CacheStatsMBean.TYPE, segmentCacheStats.getName());
+        }
+
         if (store.getBlobStore() instanceof GarbageCollectableBlobStore) {
             BlobGarbageCollector gc = new BlobGarbageCollector() {
                 @Override
@@ -250,6 +271,18 @@ public class SegmentNodeStoreService extends ProxyNodeStore
             blobGCRegistration.unregister();
             blobGCRegistration = null;
         }
+        if (fileStoreStatsRegistration != null) {
+            fileStoreStatsRegistration.unregister();
+            fileStoreStatsRegistration = null;
+        }
+        if (segmentCacheStatsRegistration != null) {
+            segmentCacheStatsRegistration.unregister();
+            segmentCacheStatsRegistration = null;
+        }
+        if (compactionStatsRegistration != null) {
+            compactionStatsRegistration.unregister();
+            compactionStatsRegistration = null;
+        }
         if (executor != null) {
             executor.stop();
             executor = null;
@@ -16,6 +16,7 @@
  */
 package org.apache.jackrabbit.oak.plugins.segment;
 
+import static com.google.common.base.Preconditions.checkArgument;
 import static com.google.common.collect.Lists.newLinkedList;
 import static com.google.common.collect.Queues.newArrayDeque;
 import static com.google.common.collect.Sets.newHashSet;
@@ -23,6 +24,7 @@ import static com.google.common.collect.Sets.newIdentityHashSet;
 
 import java.security.SecureRandom;
 import java.util.LinkedList;
+import java.util.Map;
 import java.util.Queue;
 import java.util.Set;
 import java.util.concurrent.atomic.AtomicReference;
@@ -59,6 +61,15 @@ public class SegmentTracker {
 
     private static final int DEFAULT_MEMORY_CACHE_SIZE = 256;
 
+    /**
+     * Number of independent segment writers. Each writing thread is mapped
+     * to one of these, so concurrent commits don't all contend on the
+     * monitor of a single {@link SegmentWriter}.
+     */
+    private static final int DEFAULT_WRITER_COUNT = Integer.getInteger(
+            "oak.segment.writers",
+            Math.min(8, Runtime.getRuntime().availableProcessors()));
+
     /**
      * The random number source for generating new segment identifiers.
      */
@@ -66,7 +77,11 @@ public class SegmentTracker {
 
     private final SegmentStore store;
 
-    private final SegmentWriter writer;
+    /**
+     * Pool of segment writers, striped by the identifier of the
+     * writing thread. See {@link #getWriter()}.
+     */
+    private final SegmentWriter[] writers;
 
     /**
      * Serialized map that contains the link between old record
@@ -93,22 +108,63 @@ public class SegmentTracker {
 
     private long currentSize = 0;
 
-    public SegmentTracker(SegmentStore store, int cacheSizeMB) {
+    public SegmentTracker(
+            SegmentStore store, int cacheSizeMB, int writerCount) {
+        checkArgument(writerCount > 0);
         for (int i = 0; i < tables.length; i++) {
             tables[i] = new SegmentIdTable(this);
         }
 
         this.store = store;
-        this.writer = new SegmentWriter(store, this);
+        // all writers share a single record cache so that string and
+        // template records are deduplicated across writers
+        Map<Object, RecordId> records = SegmentWriter.newRecordCache();
+        this.writers = new SegmentWriter[writerCount];
+        for (int i = 0; i < writers.length; i++) {
+            writers[i] = new SegmentWriter(store, this, records);
+        }
         this.cacheSize = cacheSizeMB * MB;
     }
 
+    public SegmentTracker(SegmentStore store, int cacheSizeMB) {
+        this(store, cacheSizeMB, DEFAULT_WRITER_COUNT);
+    }
+
     public SegmentTracker(SegmentStore store) {
         this(store, DEFAULT_MEMORY_CACHE_SIZE);
     }
 
+    /**
+     * Returns the segment writer assigned to the current thread. Threads
+     * are striped across a fixed pool of writers, each of which has its
+     * own segment buffer, so that concurrent writers produce separate
+     * data segments instead of serializing on a single writer.
+     *
+     * @return segment writer of the current thread
+     */
     public SegmentWriter getWriter() {
-        return writer;
+        int index = (int) (Thread.currentThread().getId() % writers.length);
+        return writers[index];
+    }
+
+    /**
+     * Flushes the pending segments of all writers to the store. Must be
+     * called before persisting a head state, as its records may be held
+     * in the buffer of any of the writers.
+     */
+    public void flushWriters() {
+        for (SegmentWriter writer : writers) {
+            writer.flush();
+        }
+    }
+
+    /**
+     * Drops the record caches of all writers.
+     */
+    public void dropWriterCaches() {
+        for (SegmentWriter writer : writers) {
+            writer.dropCache();
+        }
     }
 
     public SegmentStore getStore() {
@@ -192,7 +248,7 @@ public class SegmentTracker {
     public void collectBlobReferences(ReferenceCollector collector) {
         Set<SegmentId> processed = newIdentityHashSet();
         Queue<SegmentId> queue = newArrayDeque(getReferencedSegmentIds());
-        writer.flush(); // force the current segment to have root record info
+        flushWriters(); // force the current segments to have root record info
         while (!queue.isEmpty()) {
             SegmentId id = queue.remove();
             if (id.isDataSegmentId() && processed.add(id)) {
@@ -113,16 +113,10 @@ public class SegmentWriter {
 
     /**
      * Cache of recently stored string and template records, used to
-     * avoid storing duplicates of frequently occurring data.
-     * Should only be accessed from synchronized blocks to prevent corruption.
+     * avoid storing duplicates of frequently occurring data. The cache
+     * may be shared with other writers, see {@link #newRecordCache()}.
      */
-    private final Map<Object, RecordId> records =
-        new LinkedHashMap<Object, RecordId>(15000, 0.75f, true) {
-            @Override
-            protected boolean removeEldestEntry(Entry<Object, RecordId> e) {
-                return size() > 10000;
-            }
-        };
+    private final Map<Object, RecordId> records;
 
     /**
      * The set of root records (i.e. ones not referenced by other records)
@@ -156,12 +150,43 @@ public class SegmentWriter {
     private Segment segment;
 
     public SegmentWriter(SegmentStore store, SegmentTracker tracker) {
+        this(store, tracker, newRecordCache());
+    }
+
+    /**
+     * Creates a writer that uses the given record cache. Writers sharing
+     * a cache deduplicate string and template records across each other.
+     *
+     * @param store segment store
+     * @param tracker segment tracker
+     * @param records record cache created by {@link #newRecordCache()}
+     */
+    SegmentWriter(SegmentStore store, SegmentTracker tracker,
+            Map<Object, RecordId> records) {
         this.store = store;
         this.tracker = tracker;
+        this.records = records;
         this.segment = new Segment(tracker, buffer);
         segment.getSegmentId().setSegment(segment);
     }
 
+    /**
+     * Creates a new, thread-safe cache for recently stored string and
+     * template records.
+     *
+     * @return record cache
+     */
+    static Map<Object, RecordId> newRecordCache() {
+        return Collections.synchronizedMap(
+                new LinkedHashMap<Object, RecordId>(15000, 0.75f, true) {
+                    @Override
+                    protected boolean removeEldestEntry(
+                            Entry<Object, RecordId> e) {
+                        return size() > 10000;
+                    }
+                });
+    }
+
     public synchronized Segment getCurrentSegment(SegmentId id) {
         if (id == segment.getSegmentId()) {
             return segment;
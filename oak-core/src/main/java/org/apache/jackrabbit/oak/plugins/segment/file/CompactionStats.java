@@ -0,0 +1,114 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.jackrabbit.oak.plugins.segment.file;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.jackrabbit.oak.plugins.segment.Compactor;
+
+/**
+ * Compaction and revision cleanup statistics of a {@link FileStore}.
+ */
+public class CompactionStats implements CompactionStatsMBean {
+
+    /**
+     * The compactor of the running compaction, or {@code null}.
+     */
+    private volatile Compactor compactor;
+
+    private volatile long compactedNodeCount;
+
+    private volatile int lastRebaseCount;
+
+    private volatile long lastCompactionDuration;
+
+    private final AtomicLong compactionCount = new AtomicLong();
+
+    private volatile long lastReclaimedBytes;
+
+    private final AtomicLong totalReclaimedBytes = new AtomicLong();
+
+    void compactionStarted(Compactor compactor) {
+        this.compactor = compactor;
+        this.compactedNodeCount = 0;
+    }
+
+    void compactionCompleted(int rebaseCount, long duration) {
+        lastRebaseCount = rebaseCount;
+        lastCompactionDuration = duration;
+        compactionCount.incrementAndGet();
+    }
+
+    /**
+     * Called when a compaction run ends, whether it completed or failed.
+     */
+    void compactionStopped() {
+        Compactor compactor = this.compactor;
+        if (compactor != null) {
+            compactedNodeCount = compactor.getNodeCount();
+        }
+        this.compactor = null;
+    }
+
+    void cleanupCompleted(long reclaimedBytes) {
+        lastReclaimedBytes = reclaimedBytes;
+        totalReclaimedBytes.addAndGet(reclaimedBytes);
+    }
+
+    //----------------------------------------------< CompactionStatsMBean >--
+
+    @Override
+    public boolean isCompacting() {
+        return compactor != null;
+    }
+
+    @Override
+    public long getCompactedNodeCount() {
+        Compactor compactor = this.compactor;
+        if (compactor != null) {
+            return compactor.getNodeCount();
+        } else {
+            return compactedNodeCount;
+        }
+    }
+
+    @Override
+    public int getLastRebaseCount() {
+        return lastRebaseCount;
+    }
+
+    @Override
+    public long getLastCompactionDuration() {
+        return lastCompactionDuration;
+    }
+
+    @Override
+    public long getCompactionCount() {
+        return compactionCount.get();
+    }
+
+    @Override
+    public long getLastReclaimedBytes() {
+        return lastReclaimedBytes;
+    }
+
+    @Override
+    public long getTotalReclaimedBytes() {
+        return totalReclaimedBytes.get();
+    }
+
+}
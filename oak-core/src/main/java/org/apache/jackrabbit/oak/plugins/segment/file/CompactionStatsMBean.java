@@ -0,0 +1,63 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.jackrabbit.oak.plugins.segment.file;
+
+/**
+ * MBean for monitoring the progress and the results of TarMK compaction
+ * and revision cleanup.
+ */
+public interface CompactionStatsMBean {
+    String TYPE = "SegmentCompaction";
+
+    /**
+     * @return  {@code true} if a compaction is currently running
+     */
+    boolean isCompacting();
+
+    /**
+     * @return  the number of nodes processed by the running compaction or,
+     *          if none is running, by the last compaction
+     */
+    long getCompactedNodeCount();
+
+    /**
+     * @return  the number of times the last compaction had to rebase
+     *          concurrent commits on top of the compacted state
+     */
+    int getLastRebaseCount();
+
+    /**
+     * @return  the duration (in milliseconds) of the last compaction
+     */
+    long getLastCompactionDuration();
+
+    /**
+     * @return  the number of completed compactions
+     */
+    long getCompactionCount();
+
+    /**
+     * @return  the number of bytes reclaimed by the last revision cleanup
+     */
+    long getLastReclaimedBytes();
+
+    /**
+     * @return  the total number of bytes reclaimed by revision cleanup
+     */
+    long getTotalReclaimedBytes();
+
+}
@@ -48,6 +48,7 @@ import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
 import org.apache.jackrabbit.oak.api.Blob;
+import org.apache.jackrabbit.oak.cache.CacheStats;
 import org.apache.jackrabbit.oak.plugins.blob.BlobStoreBlob;
 import org.apache.jackrabbit.oak.plugins.segment.Compactor;
 import org.apache.jackrabbit.oak.plugins.segment.RecordId;
@@ -83,6 +84,31 @@ public class FileStore implements SegmentStore {
     private static final boolean MEMORY_MAPPING_DEFAULT =
             "64".equals(System.getProperty("sun.arch.data.model", "32"));
 
+    /**
+     * Interval (in milliseconds) of the background flush. Segments written
+     * within this window are synced to disk together with a single journal
+     * update, which bounds the latency until a commit becomes durable.
+     */
+    private static final long FLUSH_INTERVAL =
+            Long.getLong("oak.segment.flushInterval", 5000);
+
+    /**
+     * Size (in MB) of the off-heap cache of segments read from tar files
+     * that are not memory mapped. Zero (the default) disables the cache.
+     */
+    private static final String SEGMENT_CACHE_SIZE =
+            "oak.segment.offHeapCacheSize";
+
+    /**
+     * Number of background threads used for prefetching segments.
+     */
+    private static final int PREFETCH_THREADS = 2;
+
+    /**
+     * Maximum number of segments queued for prefetching.
+     */
+    private static final int PREFETCH_BUDGET = 256;
+
     private final SegmentTracker tracker;
 
     private final File directory;
@@ -93,6 +119,18 @@ public class FileStore implements SegmentStore {
 
     private final boolean memoryMapping;
 
+    /**
+     * Off-heap cache of segments read from tar files, or {@code null} if
+     * the tar files are memory mapped or the cache is disabled.
+     */
+    private final SegmentCache segmentCache;
+
+    /**
+     * Background loader of segments referenced by segments read from
+     * tar files, or {@code null} if prefetching is disabled.
+     */
+    private volatile SegmentPrefetcher prefetcher;
+
     private volatile List<TarReader> readers;
 
     private int writeNumber;
@@ -118,7 +156,8 @@ public class FileStore implements SegmentStore {
 
     /**
      * The background flush thread. Automatically flushes the TarMK state
-     * once every five seconds.
+     * once every {@link #FLUSH_INTERVAL} milliseconds (five seconds by
+     * default).
      */
     private final BackgroundThread flushThread;
 
@@ -133,6 +172,10 @@ public class FileStore implements SegmentStore {
      */
     private final AtomicBoolean cleanupNeeded = new AtomicBoolean(false);
 
+    private final FileStoreStats stats = new FileStoreStats(FLUSH_INTERVAL);
+
+    private final CompactionStats compactionStats = new CompactionStats();
+
     /**
      * List of old tar file generations that are waiting to be removed. They can
      * not be removed immediately, because they first need to be closed, and the
@@ -175,6 +218,13 @@ public class FileStore implements SegmentStore {
         this.maxFileSize = maxFileSizeMB * MB;
         this.memoryMapping = memoryMapping;
 
+        int segmentCacheSizeMB = Integer.getInteger(SEGMENT_CACHE_SIZE, 0);
+        if (!memoryMapping && segmentCacheSizeMB > 0) {
+            this.segmentCache = new SegmentCache(segmentCacheSizeMB * (long) MB);
+        } else {
+            this.segmentCache = null;
+        }
+
         journalFile = new RandomAccessFile(
                 new File(directory, JOURNAL_FILE_NAME), "rw");
         journalLock = journalFile.getChannel().lock();
@@ -232,7 +282,7 @@ public class FileStore implements SegmentStore {
         }
 
         this.flushThread = new BackgroundThread(
-                "TarMK flush thread [" + directory + "]", 5000, // 5s interval
+                "TarMK flush thread [" + directory + "]", FLUSH_INTERVAL,
                 new Runnable() {
                     @Override
                     public void run() {
@@ -253,7 +303,8 @@ public class FileStore implements SegmentStore {
                     }
                 });
 
-        log.info("TarMK opened: {} (mmap={})", directory, memoryMapping);
+        log.info("TarMK opened: {} (mmap={}, segment cache={}MB)",
+                directory, memoryMapping, segmentCache != null ? segmentCacheSizeMB : 0);
     }
 
     static Map<Integer, Map<Character, File>> collectFiles(File directory)
@@ -342,9 +393,14 @@ public class FileStore implements SegmentStore {
             RecordId after = head.get();
             boolean cleanup = cleanupNeeded.getAndSet(false);
             if (cleanup || !after.equals(before)) {
+                long start = System.nanoTime();
+
                 // needs to happen outside the synchronization block below to
-                // avoid a deadlock with another thread flushing the writer
-                tracker.getWriter().flush();
+                // avoid a deadlock with another thread flushing the writers
+                tracker.flushWriters();
+
+                // all segments written so far are synced by a single call
+                int batchSize = stats.flushStarted();
 
                 // needs to happen outside the synchronization block below to
                 // prevent the flush from stopping concurrent reads and writes
@@ -360,6 +416,9 @@ public class FileStore implements SegmentStore {
                         cleanup();
                     }
                 }
+
+                stats.flushCompleted(batchSize, MILLISECONDS.convert(
+                        System.nanoTime() - start, NANOSECONDS));
             }
             synchronized (this) {
                 // remove all obsolete tar generations
@@ -393,6 +452,11 @@ public class FileStore implements SegmentStore {
         // to clear stale weak references in the SegmentTracker
         System.gc();
 
+        long initialSize = 0;
+        for (TarReader reader : readers) {
+            initialSize += reader.size();
+        }
+
         Set<UUID> ids = newHashSet();
         for (SegmentId id : tracker.getReferencedSegmentIds()) {
             ids.add(new UUID(
@@ -418,8 +482,20 @@ public class FileStore implements SegmentStore {
         }
         readers = list;
 
-        log.info("TarMK revision cleanup completed in {}ms",
-                MILLISECONDS.convert(System.nanoTime() - start, NANOSECONDS));
+        long finalSize = 0;
+        for (TarReader reader : list) {
+            finalSize += reader.size();
+        }
+        compactionStats.cleanupCompleted(initialSize - finalSize);
+
+        if (segmentCache != null) {
+            // don't keep serving segments that may have been removed
+            segmentCache.clear();
+        }
+
+        log.info("TarMK revision cleanup completed in {}ms, reclaimed {} bytes",
+                MILLISECONDS.convert(System.nanoTime() - start, NANOSECONDS),
+                initialSize - finalSize);
     }
 
     /**
@@ -433,30 +509,39 @@ public class FileStore implements SegmentStore {
 
         SegmentWriter writer = new SegmentWriter(this, tracker);
         Compactor compactor = new Compactor(writer);
-
-        SegmentNodeState before = getHead();
-        SegmentNodeState after = compactor.compact(EMPTY_NODE, before);
-        writer.flush();
-        while (!setHead(before, after)) {
-            // Some other concurrent changes have been made.
-            // Rebase (and compact) those changes on top of the
-            // compacted state before retrying to set the head.
-            SegmentNodeState head = getHead();
-            after = compactor.compact(before, head);
-            before = head;
+        compactionStats.compactionStarted(compactor);
+        try {
+            SegmentNodeState before = getHead();
+            SegmentNodeState after = compactor.compact(EMPTY_NODE, before);
             writer.flush();
+            int rebaseCount = 0;
+            while (!setHead(before, after)) {
+                // Some other concurrent changes have been made.
+                // Rebase (and compact) those changes on top of the
+                // compacted state before retrying to set the head.
+                SegmentNodeState head = getHead();
+                after = compactor.compact(before, head);
+                before = head;
+                writer.flush();
+                rebaseCount++;
+            }
+            tracker.setCompactionMap(compactor.getCompactionMap());
+
+            // Drop the SegmentWriter caches and flush any existing state
+            // in an attempt to prevent new references to old pre-compacted
+            // content. TODO: There should be a cleaner way to do this.
+            tracker.dropWriterCaches();
+            tracker.flushWriters();
+
+            long duration = MILLISECONDS.convert(
+                    System.nanoTime() - start, NANOSECONDS);
+            compactionStats.compactionCompleted(rebaseCount, duration);
+            log.info("TarMK compaction completed in {}ms ({} nodes, {} rebases)",
+                    duration, compactor.getNodeCount(), rebaseCount);
+            cleanupNeeded.set(true);
+        } finally {
+            compactionStats.compactionStopped();
         }
-        tracker.setCompactionMap(compactor.getCompactionMap());
-
-        // Drop the SegmentWriter caches and flush any existing state
-        // in an attempt to prevent new references to old pre-compacted
-        // content. TODO: There should be a cleaner way to do this.
-        tracker.getWriter().dropCache();
-        tracker.getWriter().flush();
-
-        log.info("TarMK compaction completed in {}ms", MILLISECONDS
-                .convert(System.nanoTime() - start, NANOSECONDS));
-        cleanupNeeded.set(true);
     }
 
     public synchronized Iterable<SegmentId> getSegmentIds() {
@@ -481,6 +566,26 @@ public class FileStore implements SegmentStore {
         return tracker;
     }
 
+    public FileStoreStats getStats() {
+        return stats;
+    }
+
+    public CompactionStats getCompactionStats() {
+        return compactionStats;
+    }
+
+    /**
+     * @return  statistics of the off-heap segment cache, or {@code null}
+     *          if the cache is not enabled
+     */
+    public CacheStats getSegmentCacheStats() {
+        if (segmentCache != null) {
+            return segmentCache.getStats();
+        } else {
+            return null;
+        }
+    }
+
     @Override
     public SegmentNodeState getHead() {
         return new SegmentNodeState(head.get());
@@ -501,6 +606,7 @@ public class FileStore implements SegmentStore {
         flushThread.close();
 
         synchronized (this) {
+            setPrefetchEnabled(false);
             try {
                 flush();
 
@@ -537,10 +643,8 @@ public class FileStore implements SegmentStore {
     }
 
     private boolean containsSegment(long msb, long lsb) {
-        for (TarReader reader : readers) {
-            if (reader.containsEntry(msb, lsb)) {
-                return true;
-            }
+        if (findReader(msb, lsb) != null) {
+            return true;
         }
 
         synchronized (this) {
@@ -551,13 +655,51 @@ public class FileStore implements SegmentStore {
 
         // the writer might have switched to a new file,
         // so we need to re-check the readers
-        for (TarReader reader : readers) {
-            if (reader.containsEntry(msb, lsb)) {
-                return true;
+        return findReader(msb, lsb) != null;
+    }
+
+    /**
+     * Finds the tar file that contains the given segment. The Bloom filters
+     * of the tar files are used to skip files that don't contain the
+     * segment, so that only a few tar indexes need to be searched even
+     * when there are thousands of tar files.
+     *
+     * @param msb the most significant bits of the segment id
+     * @param lsb the least significant bits of the segment id
+     * @return the tar file containing the segment, or {@code null}
+     */
+    private TarReader findReader(long msb, long lsb) {
+        int probes = 0;
+        try {
+            for (TarReader reader : readers) {
+                if (reader.mayContainEntry(msb, lsb)) {
+                    probes++;
+                    if (reader.containsEntry(msb, lsb)) {
+                        return reader;
+                    }
+                }
             }
+            return null;
+        } finally {
+            stats.segmentLookup(probes);
         }
+    }
 
-        return false;
+    private Segment readSegment(SegmentId id, TarReader reader) {
+        long msb = id.getMostSignificantBits();
+        long lsb = id.getLeastSignificantBits();
+        try {
+            ByteBuffer buffer = reader.readEntry(msb, lsb);
+            if (buffer != null) {
+                if (segmentCache != null) {
+                    buffer = segmentCache.put(msb, lsb, buffer);
+                }
+                return prefetchReferences(new Segment(tracker, id, buffer));
+            }
+        } catch (IOException e) {
+            log.warn("Failed to read from tar file " + reader, e);
+        }
+        return null;
     }
 
     @Override
@@ -565,14 +707,18 @@ public class FileStore implements SegmentStore {
         long msb = id.getMostSignificantBits();
         long lsb = id.getLeastSignificantBits();
 
-        for (TarReader reader : readers) {
-            try {
-                ByteBuffer buffer = reader.readEntry(msb, lsb);
-                if (buffer != null) {
-                    return new Segment(tracker, id, buffer);
-                }
-            } catch (IOException e) {
-                log.warn("Failed to read from tar file " + reader, e);
+        if (segmentCache != null) {
+            ByteBuffer buffer = segmentCache.get(msb, lsb);
+            if (buffer != null) {
+                return new Segment(tracker, id, buffer);
+            }
+        }
+
+        TarReader reader = findReader(msb, lsb);
+        if (reader != null) {
+            Segment segment = readSegment(id, reader);
+            if (segment != null) {
+                return segment;
             }
         }
 
@@ -589,20 +735,61 @@ public class FileStore implements SegmentStore {
 
         // the writer might have switched to a new file,
         // so we need to re-check the readers
-        for (TarReader reader : readers) {
-            try {
-                ByteBuffer buffer = reader.readEntry(msb, lsb);
-                if (buffer != null) {
-                    return new Segment(tracker, id, buffer);
-                }
-            } catch (IOException e) {
-                log.warn("Failed to read from tar file " + reader, e);
+        reader = findReader(msb, lsb);
+        if (reader != null) {
+            Segment segment = readSegment(id, reader);
+            if (segment != null) {
+                return segment;
             }
         }
 
         throw new IllegalStateException("Segment " + id + " not found");
     }
 
+    private Segment prefetchReferences(Segment segment) {
+        SegmentPrefetcher prefetcher = this.prefetcher;
+        if (prefetcher != null) {
+            prefetcher.prefetchReferences(segment);
+        }
+        return segment;
+    }
+
+    /**
+     * Enables or disables prefetching of segments. When enabled, the data
+     * segments referenced by a segment read from a tar file are loaded
+     * in the background, which speeds up traversals over content that is
+     * not yet cached in memory.
+     *
+     * @param enabled whether segments should be prefetched
+     */
+    public synchronized void setPrefetchEnabled(boolean enabled) {
+        if (enabled && prefetcher == null) {
+            prefetcher = new SegmentPrefetcher(
+                    "TarMK prefetch thread [" + directory + "]",
+                    PREFETCH_THREADS, PREFETCH_BUDGET);
+        } else if (!enabled && prefetcher != null) {
+            prefetcher.close();
+            prefetcher = null;
+        }
+    }
+
+    public boolean isPrefetchEnabled() {
+        return prefetcher != null;
+    }
+
+    /**
+     * @return the number of segments loaded by prefetching since it
+     *         was last enabled
+     */
+    public long getPrefetchedSegmentCount() {
+        SegmentPrefetcher prefetcher = this.prefetcher;
+        if (prefetcher != null) {
+            return prefetcher.getPrefetchCount();
+        } else {
+            return 0;
+        }
+    }
+
     @Override
     public synchronized void writeSegment(
             SegmentId id, byte[] data, int offset, int length) {
@@ -611,6 +798,7 @@ public class FileStore implements SegmentStore {
                     id.getMostSignificantBits(),
                     id.getLeastSignificantBits(),
                     data, offset, length);
+            stats.segmentWritten();
             if (size >= maxFileSize) {
                 writer.close();
 
@@ -0,0 +1,140 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.jackrabbit.oak.plugins.segment.file;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Flush and lookup statistics of a {@link FileStore}. Segments written to
+ * the store are collected in the current tar file and synced to disk in
+ * batches, either by the periodic background flush or by an explicit call
+ * to {@link FileStore#flush()}.
+ */
+public class FileStoreStats implements FileStoreStatsMBean {
+
+    private final long flushInterval;
+
+    /**
+     * Number of segments written since the last flush.
+     */
+    private final AtomicInteger pendingSegments = new AtomicInteger();
+
+    private final AtomicLong flushCount = new AtomicLong();
+
+    private final AtomicLong flushedSegmentCount = new AtomicLong();
+
+    private volatile int lastFlushBatchSize;
+
+    private volatile int maxFlushBatchSize;
+
+    private volatile long lastFlushDuration;
+
+    private final AtomicLong segmentLookupCount = new AtomicLong();
+
+    private final AtomicLong tarIndexProbeCount = new AtomicLong();
+
+    FileStoreStats(long flushInterval) {
+        this.flushInterval = flushInterval;
+    }
+
+    void segmentWritten() {
+        pendingSegments.incrementAndGet();
+    }
+
+    /**
+     * Called before a flush starts syncing the tar file.
+     *
+     * @return the number of segments covered by this flush
+     */
+    int flushStarted() {
+        return pendingSegments.getAndSet(0);
+    }
+
+    synchronized void flushCompleted(int batchSize, long duration) {
+        if (batchSize > 0) {
+            flushCount.incrementAndGet();
+            flushedSegmentCount.addAndGet(batchSize);
+            lastFlushBatchSize = batchSize;
+            maxFlushBatchSize = Math.max(maxFlushBatchSize, batchSize);
+            lastFlushDuration = duration;
+        }
+    }
+
+    /**
+     * Called after the tar files have been searched for a segment.
+     *
+     * @param probes number of tar indexes that had to be searched
+     */
+    void segmentLookup(int probes) {
+        segmentLookupCount.incrementAndGet();
+        tarIndexProbeCount.addAndGet(probes);
+    }
+
+    //-----------------------------------------------< FileStoreStatsMBean >--
+
+    @Override
+    public long getFlushInterval() {
+        return flushInterval;
+    }
+
+    @Override
+    public long getFlushCount() {
+        return flushCount.get();
+    }
+
+    @Override
+    public long getFlushedSegmentCount() {
+        return flushedSegmentCount.get();
+    }
+
+    @Override
+    public int getLastFlushBatchSize() {
+        return lastFlushBatchSize;
+    }
+
+    @Override
+    public int getMaxFlushBatchSize() {
+        return maxFlushBatchSize;
+    }
+
+    @Override
+    public long getLastFlushDuration() {
+        return lastFlushDuration;
+    }
+
+    @Override
+    public long getSegmentLookupCount() {
+        return segmentLookupCount.get();
+    }
+
+    @Override
+    public long getTarIndexProbeCount() {
+        return tarIndexProbeCount.get();
+    }
+
+    @Override
+    public double getTarIndexProbesPerLookup() {
+        long lookups = segmentLookupCount.get();
+        if (lookups > 0) {
+            return (double) tarIndexProbeCount.get() / lookups;
+        } else {
+            return 0;
+        }
+    }
+
+}
@@ -0,0 +1,74 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.jackrabbit.oak.plugins.segment.file;
+
+/**
+ * MBean for monitoring how the TarMK batches segment writes into
+ * flushes to disk, and how efficiently segments are located in tar files.
+ */
+public interface FileStoreStatsMBean {
+    String TYPE = "FileStoreStats";
+
+    /**
+     * @return  the maximum time (in milliseconds) a written segment may
+     *          wait before it is flushed to disk by the background thread
+     */
+    long getFlushInterval();
+
+    /**
+     * @return  the number of flushes that synced new segments to disk
+     */
+    long getFlushCount();
+
+    /**
+     * @return  the total number of segments synced to disk by flushes
+     */
+    long getFlushedSegmentCount();
+
+    /**
+     * @return  the number of segments synced by the last flush
+     */
+    int getLastFlushBatchSize();
+
+    /**
+     * @return  the largest number of segments synced by a single flush
+     */
+    int getMaxFlushBatchSize();
+
+    /**
+     * @return  the duration (in milliseconds) of the last flush
+     */
+    long getLastFlushDuration();
+
+    /**
+     * @return  the number of times the tar files were searched for
+     *          a segment
+     */
+    long getSegmentLookupCount();
+
+    /**
+     * @return  the number of tar indexes searched for segments, i.e. the
+     *          lookups not ruled out by the Bloom filter of a tar file
+     */
+    long getTarIndexProbeCount();
+
+    /**
+     * @return  the average number of tar indexes searched per lookup
+     */
+    double getTarIndexProbesPerLookup();
+
+}
@@ -0,0 +1,106 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.jackrabbit.oak.plugins.segment.file;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+import java.nio.ByteBuffer;
+import java.util.UUID;
+
+import org.apache.jackrabbit.oak.cache.CacheLIRS;
+import org.apache.jackrabbit.oak.cache.CacheStats;
+import org.apache.jackrabbit.oak.plugins.segment.Segment;
+
+import com.google.common.cache.Weigher;
+
+/**
+ * Off-heap cache of segments read from tar files. Used when the tar files
+ * are not memory mapped, so that frequently read segments are kept outside
+ * of the Java heap instead of being re-read into (and collected from) heap
+ * buffers over and over again.
+ * <p>
+ * The cached segment data is copied to direct byte buffers, and the cache
+ * uses the LIRS replacement policy of {@link CacheLIRS}, weighted by the
+ * size of the segments.
+ */
+class SegmentCache {
+
+    private static final Weigher<UUID, ByteBuffer> WEIGHER =
+            new Weigher<UUID, ByteBuffer>() {
+                @Override
+                public int weigh(UUID key, ByteBuffer value) {
+                    return 32 + value.capacity();
+                }
+            };
+
+    private final CacheLIRS<UUID, ByteBuffer> cache;
+
+    private final CacheStats stats;
+
+    SegmentCache(long maxSize) {
+        checkArgument(maxSize > 0);
+        this.cache = CacheLIRS.newBuilder()
+                .weigher(WEIGHER)
+                .averageWeight(Segment.MAX_SEGMENT_SIZE / 2)
+                .maximumWeight(maxSize)
+                .recordStats()
+                .build();
+        this.stats = new CacheStats(
+                cache, "TarMK-SegmentCache", WEIGHER, maxSize);
+    }
+
+    /**
+     * Returns the cached data of the given segment.
+     *
+     * @param msb the most significant bits of the segment id
+     * @param lsb the least significant bits of the segment id
+     * @return the segment data, or {@code null} if not cached
+     */
+    ByteBuffer get(long msb, long lsb) {
+        ByteBuffer buffer = cache.getIfPresent(new UUID(msb, lsb));
+        if (buffer != null) {
+            return buffer.duplicate();
+        } else {
+            return null;
+        }
+    }
+
+    /**
+     * Copies the given segment data off-heap and adds it to the cache.
+     *
+     * @param msb the most significant bits of the segment id
+     * @param lsb the least significant bits of the segment id
+     * @param data the segment data, as read from a tar file
+     * @return the cached copy of the segment data
+     */
+    ByteBuffer put(long msb, long lsb, ByteBuffer data) {
+        ByteBuffer buffer = ByteBuffer.allocateDirect(data.remaining());
+        buffer.put(data.duplicate());
+        buffer.flip();
+        cache.put(new UUID(msb, lsb), buffer);
+        return buffer.duplicate();
+    }
+
+    void clear() {
+        cache.invalidateAll();
+    }
+
+    CacheStats getStats() {
+        return stats;
+    }
+
+}
@@ -0,0 +1,80 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.jackrabbit.oak.plugins.segment.file;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+/**
+ * Bloom filter over the segment identifiers contained in a tar file.
+ * Used to quickly skip tar files that do not contain a given segment,
+ * without searching their index.
+ * <p>
+ * Segment identifiers are generated from a secure random source, so their
+ * bits are already uniformly distributed and can be used directly as the
+ * hash values of the filter (with double hashing to derive the positions
+ * of the bits to check). With ten bits per entry and seven hash functions
+ * the false positive rate is about one percent.
+ */
+class SegmentIdFilter {
+
+    private static final int BITS_PER_ENTRY = 10;
+
+    private static final int HASH_COUNT = 7;
+
+    private final long[] bits;
+
+    private final int mask;
+
+    SegmentIdFilter(int expectedEntries) {
+        checkArgument(expectedEntries >= 0);
+        int size = Math.max(64, expectedEntries * BITS_PER_ENTRY);
+        size = Integer.highestOneBit(size - 1) << 1; // round up to 2^n
+        this.bits = new long[size >>> 6];
+        this.mask = size - 1;
+    }
+
+    void add(long msb, long lsb) {
+        int h1 = (int) lsb;
+        int h2 = ((int) (msb >>> 32)) | 1;
+        for (int i = 0; i < HASH_COUNT; i++) {
+            int index = (h1 + i * h2) & mask;
+            bits[index >>> 6] |= 1L << index;
+        }
+    }
+
+    /**
+     * Checks whether the identified segment might be contained in the
+     * tar file. A {@code false} return value is definite, while a
+     * {@code true} value needs to be confirmed with the tar index.
+     *
+     * @param msb the most significant bits of the segment id
+     * @param lsb the least significant bits of the segment id
+     * @return whether the segment might be contained
+     */
+    boolean mightContain(long msb, long lsb) {
+        int h1 = (int) lsb;
+        int h2 = ((int) (msb >>> 32)) | 1;
+        for (int i = 0; i < HASH_COUNT; i++) {
+            int index = (h1 + i * h2) & mask;
+            if ((bits[index >>> 6] & (1L << index)) == 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+}
@@ -0,0 +1,147 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.jackrabbit.oak.plugins.segment.file;
+
+import static java.util.concurrent.TimeUnit.SECONDS;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.RejectedExecutionHandler;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.jackrabbit.oak.plugins.segment.Segment;
+import org.apache.jackrabbit.oak.plugins.segment.SegmentId;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Background loader of the data segments referenced by a segment that was
+ * just read from a tar file. A traversal that reaches a segment is likely
+ * to follow its references next, so loading those ahead of time avoids
+ * paying the read latency one segment at a time.
+ * <p>
+ * Prefetching is bounded: at most {@code budget} segments are queued for
+ * loading at any time and further requests are dropped until the queue
+ * drains. Segments loaded by the prefetcher do not trigger further
+ * prefetching, so prefetching never reaches beyond the direct references
+ * of segments read on behalf of a client.
+ */
+class SegmentPrefetcher {
+
+    /** Logger instance */
+    private static final Logger log =
+            LoggerFactory.getLogger(SegmentPrefetcher.class);
+
+    /**
+     * Marks the threads of the prefetch executor, so that segments they
+     * read are not themselves prefetched from.
+     */
+    private static final ThreadLocal<Boolean> PREFETCHING =
+            new ThreadLocal<Boolean>();
+
+    private final ThreadPoolExecutor executor;
+
+    private final AtomicLong prefetchCount = new AtomicLong();
+
+    private final AtomicLong dropCount = new AtomicLong();
+
+    SegmentPrefetcher(final String name, int threads, int budget) {
+        final AtomicInteger counter = new AtomicInteger();
+        this.executor = new ThreadPoolExecutor(
+                threads, threads, 60, SECONDS,
+                new ArrayBlockingQueue<Runnable>(budget),
+                new ThreadFactory() {
+                    @Override
+                    public Thread newThread(Runnable runnable) {
+                        Thread thread = new Thread(runnable,
+                                name + "-" + counter.incrementAndGet());
+                        thread.setDaemon(true);
+                        return thread;
+                    }
+                },
+                new RejectedExecutionHandler() {
+                    @Override
+                    public void rejectedExecution(
+                            Runnable runnable, ThreadPoolExecutor executor) {
+                        dropCount.incrementAndGet();
+                    }
+                });
+        this.executor.allowCoreThreadTimeOut(true);
+    }
+
+    /**
+     * Schedules the data segments referenced by the given, just loaded,
+     * segment to be loaded in the background.
+     *
+     * @param segment segment that was read from a tar file
+     */
+    void prefetchReferences(Segment segment) {
+        if (Boolean.TRUE.equals(PREFETCHING.get())
+                || !segment.getSegmentId().isDataSegmentId()) {
+            return;
+        }
+
+        for (final SegmentId id : segment.getReferencedIds()) {
+            if (id.isDataSegmentId() && !id.isLoaded()) {
+                executor.execute(new Runnable() {
+                    @Override
+                    public void run() {
+                        load(id);
+                    }
+                });
+            }
+        }
+    }
+
+    private void load(SegmentId id) {
+        if (!id.isLoaded()) {
+            PREFETCHING.set(Boolean.TRUE);
+            try {
+                id.getSegment();
+                prefetchCount.incrementAndGet();
+            } catch (RuntimeException e) {
+                // the segment may have been removed in the meantime,
+                // in which case a reader will report the problem
+                log.debug("Failed to prefetch segment " + id, e);
+            } finally {
+                PREFETCHING.remove();
+            }
+        }
+    }
+
+    /**
+     * @return the number of segments loaded by this prefetcher
+     */
+    long getPrefetchCount() {
+        return prefetchCount.get();
+    }
+
+    /**
+     * @return the number of prefetch requests dropped because the
+     *         prefetch budget was exhausted
+     */
+    long getDropCount() {
+        return dropCount.get();
+    }
+
+    void close() {
+        executor.shutdownNow();
+    }
+
+}
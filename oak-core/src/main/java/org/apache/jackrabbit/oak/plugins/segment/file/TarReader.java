@@ -473,12 +473,23 @@ class TarReader {
 
     private final ByteBuffer graph;
 
+    /**
+     * Bloom filter over the segments in this file, built from the index.
+     */
+    private final SegmentIdFilter filter;
+
     private TarReader(File file, FileAccess access, ByteBuffer index)
             throws IOException {
         this.file = file;
         this.access = access;
         this.index = index;
         this.graph = loadGraph(file, access, index);
+
+        this.filter = new SegmentIdFilter(index.remaining() / 24);
+        for (int position = index.position();
+                position < index.limit(); position += 24) {
+            filter.add(index.getLong(position), index.getLong(position + 8));
+        }
     }
 
     long size() {
@@ -497,6 +508,20 @@ class TarReader {
         return uuids;
     }
 
+    /**
+     * Quickly checks whether the given segment might be in this file.
+     * Used to skip files that certainly don't contain the segment
+     * before searching their index.
+     *
+     * @param msb the most significant bits of the segment id
+     * @param lsb the least significant bits of the segment id
+     * @return {@code false} if the segment is not in this file,
+     *         {@code true} if it might be
+     */
+    boolean mayContainEntry(long msb, long lsb) {
+        return filter.mightContain(msb, lsb);
+    }
+
     boolean containsEntry(long msb, long lsb) {
         return findEntry(msb, lsb) != -1;
     }
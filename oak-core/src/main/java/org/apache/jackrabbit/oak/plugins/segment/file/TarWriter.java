@@ -31,6 +31,8 @@ import java.io.FileDescriptor;
 import java.io.IOException;
 import java.io.RandomAccessFile;
 import java.nio.ByteBuffer;
+import java.nio.channels.ClosedByInterruptException;
+import java.nio.channels.FileChannel;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
@@ -199,14 +201,8 @@ class TarWriter {
             access = new RandomAccessFile(file, "rw");
         }
 
-        access.write(header);
-        access.write(data, offset, size);
         int padding = getPaddingSize(size);
-        if (padding > 0) {
-            access.write(ZERO_BYTES, 0, padding);
-        }
-
-        long length = access.getFilePointer();
+        long length = write(header, data, offset, size, padding);
         checkState(length <= Integer.MAX_VALUE);
         TarEntry entry = new TarEntry(
                 uuid.getMostSignificantBits(), uuid.getLeastSignificantBits(),
@@ -237,6 +233,50 @@ class TarWriter {
         return length;
     }
 
+    /**
+     * Writes the header, the segment and the padding with a single gathering
+     * write instead of issuing a system call for each part. Writes to a
+     * {@link FileChannel} are interruptible: an interrupt of the writing
+     * thread closes the channel and the underlying file. In that case the
+     * file is reopened, truncated to its previous length and the write is
+     * retried, so that interrupting one writer doesn't break this tar file
+     * for all others. The interrupt status of the thread is preserved.
+     *
+     * @return the position after the written entry
+     */
+    private long write(byte[] header, byte[] data, int offset, int size,
+            int padding) throws IOException {
+        long start = access.length();
+        boolean interrupted = false;
+        try {
+            while (true) {
+                ByteBuffer[] buffers = new ByteBuffer[] {
+                        ByteBuffer.wrap(header),
+                        ByteBuffer.wrap(data, offset, size),
+                        ByteBuffer.wrap(ZERO_BYTES, 0, padding) };
+                FileChannel channel = access.getChannel();
+                channel.position(start);
+                try {
+                    long remaining = header.length + size + padding;
+                    while (remaining > 0) {
+                        remaining -= channel.write(buffers);
+                    }
+                    return channel.position();
+                } catch (ClosedByInterruptException e) {
+                    log.debug("Write to {} interrupted, retrying", file);
+                    // clear the interrupt status for the retry
+                    interrupted |= Thread.interrupted();
+                    access = new RandomAccessFile(file, "rw");
+                    access.setLength(start);
+                }
+            }
+        } finally {
+            if (interrupted) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
     /**
      * Flushes the entries that have so far been written to the disk.
      * This method is <em>not</em> synchronized to allow concurrent reads
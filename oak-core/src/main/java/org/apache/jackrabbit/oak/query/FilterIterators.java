@@ -13,16 +13,36 @@
  */
 package org.apache.jackrabbit.oak.query;
 
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.lang.ref.PhantomReference;
+import java.lang.ref.Reference;
+import java.lang.ref.ReferenceQueue;
+import java.nio.charset.Charset;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.Comparator;
 import java.util.HashSet;
 import java.util.Iterator;
 import java.util.NoSuchElementException;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
 
+import org.apache.jackrabbit.oak.commons.json.JsopBuilder;
+import org.apache.jackrabbit.oak.commons.json.JsopTokenizer;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import com.google.common.collect.AbstractIterator;
+import com.google.common.collect.Sets;
+
 /**
  * Filtering iterators that are useful for queries with limit, offset, order by,
  * or distinct.
@@ -30,6 +50,40 @@ import org.slf4j.LoggerFactory;
 public class FilterIterators {
     
     private static final Logger LOG = LoggerFactory.getLogger(FilterIterators.class);    
+    
+    private static final Charset UTF8 = Charset.forName("UTF-8");
+    
+    /**
+     * The number of temporary files used for "distinct", if there are more
+     * entries than can be kept in memory.
+     */
+    private static final int DISTINCT_PARTITIONS = 64;
+    
+    /**
+     * Converts entries to a string and back. This is used to store entries in
+     * temporary files if there are more entries than can be kept in memory.
+     * 
+     * @param <K> the entry type
+     */
+    public interface Serializer<K> {
+        
+        /**
+         * Convert an entry to a string.
+         * 
+         * @param entry the entry
+         * @return the string, or null if the entry can not be converted
+         */
+        String serialize(K entry);
+        
+        /**
+         * Convert a string back to an entry.
+         * 
+         * @param s the string
+         * @return the entry
+         */
+        K deserialize(String s);
+        
+    }
 
     /**
      * Verify the number of in-memory nodes is below the limit.
@@ -71,15 +125,27 @@ public class FilterIterators {
     public static <K> Iterator<K> newCombinedFilter(
             Iterator<K> it, boolean distinct, long limit, long offset, 
             Comparator<K> orderBy, QueryEngineSettings settings) {
+        return newCombinedFilter(it, distinct, limit, offset, orderBy, settings, null);
+    }
+    
+    /**
+     * Combine the filters. If a serializer is set, entries are stored in
+     * temporary files if there are more entries than the in-memory limit;
+     * otherwise, an exception is thrown in this case.
+     */
+    public static <K> Iterator<K> newCombinedFilter(
+            Iterator<K> it, boolean distinct, long limit, long offset, 
+            Comparator<K> orderBy, QueryEngineSettings settings, 
+            Serializer<K> serializer) {
         if (distinct) {
-            it = FilterIterators.newDistinct(it, settings);
+            it = FilterIterators.newDistinct(it, settings, serializer);
         }
         if (orderBy != null) {
             // avoid overflow (both offset and limit could be Long.MAX_VALUE)
             int max = (int) Math.min(Integer.MAX_VALUE, 
                     Math.min(Integer.MAX_VALUE, offset) + 
                     Math.min(Integer.MAX_VALUE, limit));
-            it = FilterIterators.newSort(it, orderBy, max, settings);
+            it = FilterIterators.newSort(it, orderBy, max, settings, serializer);
         }
         if (offset != 0) {
             it = FilterIterators.newOffset(it, offset);
@@ -91,7 +157,12 @@ public class FilterIterators {
     }
     
     public static <K> DistinctIterator<K> newDistinct(Iterator<K> it, QueryEngineSettings settings) {
-        return new DistinctIterator<K>(it, settings);
+        return newDistinct(it, settings, null);
+    }
+    
+    public static <K> DistinctIterator<K> newDistinct(Iterator<K> it, 
+            QueryEngineSettings settings, Serializer<K> serializer) {
+        return new DistinctIterator<K>(it, settings, serializer);
     }
     
     public static <K> Iterator<K> newLimit(Iterator<K> it, long limit) {
@@ -103,13 +174,25 @@ public class FilterIterators {
     }
     
     public static <K> Iterator<K> newSort(Iterator<K> it, Comparator<K> orderBy, int max, QueryEngineSettings settings) {
-        return new SortIterator<K>(it, orderBy, max, settings);
+        return newSort(it, orderBy, max, settings, null);
+    }
+
+    public static <K> Iterator<K> newSort(Iterator<K> it, Comparator<K> orderBy, 
+            int max, QueryEngineSettings settings, Serializer<K> serializer) {
+        return new SortIterator<K>(it, orderBy, max, settings, serializer);
     }
 
     /**
      * An iterator that filters duplicate entries, that is, it only returns each
      * unique entry once. The internal set of unique entries is filled only when
      * needed (on demand).
+     * <p>
+     * If there are more unique entries than can be kept in memory and a
+     * serializer is set, the entries already returned and all remaining
+     * entries are distributed to a number of temporary files by hash code.
+     * The files are then processed one at a time, so that only the unique
+     * entries of one file are kept in memory. In this case, entries are no
+     * longer returned in the original order.
      * 
      * @param <K> the entry type
      */
@@ -117,13 +200,23 @@ public class FilterIterators {
 
         private final Iterator<K> source;
         private final long maxMemoryEntries;
-        private final HashSet<K> distinctSet;
+        private final Serializer<K> serializer;
+        private HashSet<K> distinctSet;
         private K current;
         private boolean end;
+        
+        /**
+         * The temporary files (partitions), if the in-memory limit was reached.
+         */
+        private TempFiles tempFiles;
+        private ArrayList<TempFile> partitions;
+        private int partitionIndex;
+        private Iterator<String> partition;
 
-        DistinctIterator(Iterator<K> source, QueryEngineSettings settings) {
+        DistinctIterator(Iterator<K> source, QueryEngineSettings settings, Serializer<K> serializer) {
             this.source = source;
             this.maxMemoryEntries = settings.getLimitInMemory();
+            this.serializer = serializer;
             distinctSet = new HashSet<K>();
         }
 
@@ -131,16 +224,88 @@ public class FilterIterators {
             if (end) {
                 return;
             }
+            if (partitions == null && 
+                    serializer != null && distinctSet.size() >= maxMemoryEntries) {
+                partitions = partition();
+            }
+            if (partitions != null) {
+                fetchNextFromPartitions();
+                return;
+            }
             while (source.hasNext()) {
                 current = source.next();
                 if (distinctSet.add(current)) {
-                    checkMemoryLimit(distinctSet.size(), maxMemoryEntries);
+                    if (serializer == null) {
+                        checkMemoryLimit(distinctSet.size(), maxMemoryEntries);
+                    }
                     return;
                 }
             }
             current = null;
             end = true;
         }
+        
+        /**
+         * Write the entries that were already returned (marked with "-"), and
+         * all remaining entries (marked with "+") to the partitions.
+         * 
+         * @return the partitions
+         */
+        private ArrayList<TempFile> partition() {
+            LOG.debug("Distinct: more than {} entries, using temporary files", 
+                    maxMemoryEntries);
+            tempFiles = new TempFiles(this);
+            ArrayList<TempFile> list = new ArrayList<TempFile>(DISTINCT_PARTITIONS);
+            for (int i = 0; i < DISTINCT_PARTITIONS; i++) {
+                list.add(tempFiles.create());
+            }
+            for (K x : distinctSet) {
+                write(list, "-", x);
+            }
+            distinctSet = null;
+            while (source.hasNext()) {
+                write(list, "+", source.next());
+            }
+            return list;
+        }
+        
+        private void write(ArrayList<TempFile> list, String marker, K x) {
+            String s = serializer.serialize(x);
+            if (s == null) {
+                tempFiles.deleteAll();
+                // can not be written to a file
+                checkMemoryLimit(Long.MAX_VALUE, maxMemoryEntries);
+            }
+            int index = (x.hashCode() & Integer.MAX_VALUE) % list.size();
+            list.get(index).write(marker + s);
+        }
+        
+        private void fetchNextFromPartitions() {
+            while (true) {
+                if (partition == null) {
+                    if (partitionIndex >= partitions.size()) {
+                        tempFiles.deleteAll();
+                        current = null;
+                        end = true;
+                        return;
+                    }
+                    partition = partitions.get(partitionIndex++).read();
+                    distinctSet = new HashSet<K>();
+                }
+                while (partition.hasNext()) {
+                    String s = partition.next();
+                    K x = serializer.deserialize(s.substring(1));
+                    boolean added = distinctSet.add(x);
+                    checkMemoryLimit(distinctSet.size(), maxMemoryEntries * DISTINCT_PARTITIONS);
+                    if (added && s.charAt(0) == '+') {
+                        current = x;
+                        return;
+                    }
+                }
+                partition = null;
+                distinctSet = null;
+            }
+        }
 
         @Override
         public boolean hasNext() {
@@ -174,6 +339,11 @@ public class FilterIterators {
      * An iterator that returns entries in sorted order. The internal list of
      * sorted entries can be limited to a given number of entries, and the
      * entries are only read when needed (on demand).
+     * <p>
+     * If there are more entries than can be kept in memory and a serializer
+     * is set, sorted runs of entries (each truncated to the given number of
+     * entries) are written to temporary files, and the runs are merged
+     * when reading.
      * 
      * @param <K> the entry type
      */
@@ -182,14 +352,23 @@ public class FilterIterators {
         private final Iterator<K> source;
         private final long maxMemoryEntries;
         private final Comparator<K> orderBy;
+        private final Serializer<K> serializer;
         private Iterator<K> result;
         private final int max;
+        
+        /**
+         * The temporary files (sorted runs), if the in-memory limit was
+         * reached.
+         */
+        private TempFiles tempFiles;
 
-        SortIterator(Iterator<K> source, Comparator<K> orderBy, int max, QueryEngineSettings settings) {
+        SortIterator(Iterator<K> source, Comparator<K> orderBy, int max, 
+                QueryEngineSettings settings, Serializer<K> serializer) {
             this.source = source;
             this.orderBy = orderBy;
             this.max = max;
             this.maxMemoryEntries = settings.getLimitInMemory();
+            this.serializer = serializer;
         }
         
         private void init() {
@@ -197,14 +376,19 @@ public class FilterIterators {
                 return;
             }
             ArrayList<K> list = new ArrayList<K>();
+            ArrayList<TempFile> runs = new ArrayList<TempFile>();
             while (source.hasNext()) {
                 K x = source.next();
                 list.add(x);
-                checkMemoryLimit(list.size(), maxMemoryEntries);
-                // from time to time, sort and truncate
-                // this should results in O(n*log(2*keep)) operations,
-                // which is close to the optimum O(n*log(keep))
-                if (list.size() > max * 2) {
+                if (list.size() > maxMemoryEntries) {
+                    if (serializer == null) {
+                        checkMemoryLimit(list.size(), maxMemoryEntries);
+                    }
+                    writeRun(list, runs);
+                } else if (list.size() > max * 2) {
+                    // from time to time, sort and truncate
+                    // this should results in O(n*log(2*keep)) operations,
+                    // which is close to the optimum O(n*log(keep))
                     // remove tail entries right now, to save memory
                     Collections.sort(list, orderBy);
                     keepFirst(list, max);
@@ -212,7 +396,45 @@ public class FilterIterators {
             }
             Collections.sort(list, orderBy);
             keepFirst(list, max);
-            result = list.iterator();
+            if (runs.isEmpty()) {
+                result = list.iterator();
+            } else {
+                ArrayList<Iterator<K>> its = new ArrayList<Iterator<K>>();
+                for (TempFile f : runs) {
+                    its.add(new DeserializingIterator<K>(f.read(), serializer));
+                }
+                its.add(list.iterator());
+                result = new MergeIterator<K>(its, orderBy, max, tempFiles);
+            }
+        }
+        
+        /**
+         * Sort and truncate the list, write it to a temporary file, and clear
+         * the list.
+         * 
+         * @param list the list
+         * @param runs the list of files
+         */
+        private void writeRun(ArrayList<K> list, ArrayList<TempFile> runs) {
+            if (runs.isEmpty()) {
+                LOG.debug("Sort: more than {} entries, using temporary files", 
+                        maxMemoryEntries);
+                tempFiles = new TempFiles(this);
+            }
+            Collections.sort(list, orderBy);
+            keepFirst(list, max);
+            TempFile f = tempFiles.create();
+            runs.add(f);
+            for (K x : list) {
+                String s = serializer.serialize(x);
+                if (s == null) {
+                    tempFiles.deleteAll();
+                    // can not be written to a file
+                    checkMemoryLimit(Long.MAX_VALUE, maxMemoryEntries);
+                }
+                f.write(s);
+            }
+            list.clear();
         }
         
         /**
@@ -332,4 +554,295 @@ public class FilterIterators {
         
     }
 
+    /**
+     * An iterator that merges a number of sorted iterators, and returns at
+     * most the given number of entries. For entries that are equal, the
+     * entries of the first iterator are returned first. The given temporary
+     * files are deleted as soon as the last entry was returned.
+     * 
+     * @param <K> the entry type
+     */
+    static class MergeIterator<K> extends AbstractIterator<K> {
+        
+        private final PriorityQueue<Run<K>> queue;
+        private final int max;
+        private final TempFiles tempFiles;
+        private int count;
+        
+        MergeIterator(ArrayList<Iterator<K>> its, final Comparator<K> orderBy, int max, 
+                TempFiles tempFiles) {
+            this.max = max;
+            this.tempFiles = tempFiles;
+            queue = new PriorityQueue<Run<K>>(Math.max(1, its.size()), 
+                    new Comparator<Run<K>>() {
+                @Override
+                public int compare(Run<K> a, Run<K> b) {
+                    int comp = orderBy.compare(a.current, b.current);
+                    if (comp == 0) {
+                        comp = a.index < b.index ? -1 : a.index > b.index ? 1 : 0;
+                    }
+                    return comp;
+                }
+            });
+            for (int i = 0; i < its.size(); i++) {
+                Iterator<K> it = its.get(i);
+                if (it.hasNext()) {
+                    queue.add(new Run<K>(i, it));
+                }
+            }
+        }
+        
+        @Override
+        protected K computeNext() {
+            if (count >= max) {
+                close();
+                return endOfData();
+            }
+            Run<K> r = queue.poll();
+            if (r == null) {
+                close();
+                return endOfData();
+            }
+            count++;
+            K x = r.current;
+            if (count >= max) {
+                // the caller might not ask for more entries (for example
+                // if there is a limit), so release the files right now
+                close();
+            } else if (r.it.hasNext()) {
+                r.current = r.it.next();
+                queue.add(r);
+            }
+            return x;
+        }
+        
+        private void close() {
+            queue.clear();
+            if (tempFiles != null) {
+                tempFiles.deleteAll();
+            }
+        }
+        
+    }
+    
+    /**
+     * A sorted iterator and its current entry.
+     * 
+     * @param <K> the entry type
+     */
+    private static class Run<K> {
+        
+        final int index;
+        final Iterator<K> it;
+        K current;
+        
+        Run(int index, Iterator<K> it) {
+            this.index = index;
+            this.it = it;
+            current = it.next();
+        }
+        
+    }
+    
+    /**
+     * An iterator that converts strings to entries.
+     * 
+     * @param <K> the entry type
+     */
+    private static class DeserializingIterator<K> extends AbstractIterator<K> {
+        
+        private final Iterator<String> source;
+        private final Serializer<K> serializer;
+        
+        DeserializingIterator(Iterator<String> source, Serializer<K> serializer) {
+            this.source = source;
+            this.serializer = serializer;
+        }
+        
+        @Override
+        protected K computeNext() {
+            if (!source.hasNext()) {
+                return endOfData();
+            }
+            return serializer.deserialize(source.next());
+        }
+        
+    }
+    
+    /**
+     * Delete the temporary files of iterators that were garbage collected
+     * before all entries were read.
+     */
+    static void deleteAbandonedTempFiles() {
+        Reference<?> ref;
+        while ((ref = TempFiles.ABANDONED.poll()) != null) {
+            ((TempFiles) ref).deleteAll();
+        }
+    }
+    
+    /**
+     * Get the number of temporary files that were not deleted yet.
+     * 
+     * @return the number of files
+     */
+    static int getTempFileCount() {
+        return TempFile.COUNT.get();
+    }
+    
+    /**
+     * The temporary files of an iterator. The files are deleted when the
+     * iterator is done with them, or, if the iterator is abandoned before
+     * all entries were read, after the iterator was garbage collected.
+     */
+    static class TempFiles extends PhantomReference<Object> {
+        
+        /**
+         * Iterators that were garbage collected.
+         */
+        static final ReferenceQueue<Object> ABANDONED = new ReferenceQueue<Object>();
+        
+        /**
+         * The temporary files that were not deleted yet. This set keeps the
+         * phantom references reachable until they are enqueued.
+         */
+        private static final Set<TempFiles> OPEN = 
+                Collections.synchronizedSet(Sets.<TempFiles>newIdentityHashSet());
+        
+        private final ArrayList<TempFile> files = new ArrayList<TempFile>();
+        
+        /**
+         * Create the list of temporary files of the given iterator. The
+         * iterator must not be referenced from the files.
+         * 
+         * @param owner the iterator
+         */
+        TempFiles(Object owner) {
+            super(owner, ABANDONED);
+            deleteAbandonedTempFiles();
+            OPEN.add(this);
+        }
+        
+        synchronized TempFile create() {
+            TempFile f = new TempFile();
+            files.add(f);
+            return f;
+        }
+        
+        synchronized void deleteAll() {
+            for (TempFile f : files) {
+                f.delete();
+            }
+            files.clear();
+            OPEN.remove(this);
+            clear();
+        }
+        
+    }
+    
+    /**
+     * A temporary file that contains strings, one per line. The file is
+     * deleted after it was read.
+     */
+    static class TempFile {
+        
+        /**
+         * The number of temporary files that were not deleted yet.
+         */
+        static final AtomicInteger COUNT = new AtomicInteger();
+        
+        private File file;
+        private BufferedWriter writer;
+        private BufferedReader reader;
+        
+        TempFile() {
+            try {
+                file = File.createTempFile("oakQuery", ".tmp");
+                COUNT.incrementAndGet();
+                writer = new BufferedWriter(new OutputStreamWriter(
+                        new FileOutputStream(file), UTF8));
+            } catch (IOException e) {
+                delete();
+                throw new RuntimeException("Could not create a temporary file", e);
+            }
+        }
+        
+        void write(String s) {
+            try {
+                // encoding ensures the string doesn't contain line breaks
+                writer.write(JsopBuilder.encode(s));
+                writer.newLine();
+            } catch (IOException e) {
+                delete();
+                throw new RuntimeException("Could not write to " + file, e);
+            }
+        }
+        
+        /**
+         * Read the strings. This closes the file for writing.
+         * 
+         * @return an iterator over the strings
+         */
+        Iterator<String> read() {
+            try {
+                writer.close();
+                writer = null;
+                reader = new BufferedReader(new InputStreamReader(
+                        new FileInputStream(file), UTF8));
+            } catch (IOException e) {
+                delete();
+                throw new RuntimeException("Could not read from " + file, e);
+            }
+            return new AbstractIterator<String>() {
+                
+                @Override
+                protected String computeNext() {
+                    if (reader == null) {
+                        // deleted
+                        return endOfData();
+                    }
+                    String line;
+                    try {
+                        line = reader.readLine();
+                    } catch (IOException e) {
+                        delete();
+                        throw new RuntimeException("Could not read from " + file, e);
+                    }
+                    if (line == null) {
+                        delete();
+                        return endOfData();
+                    }
+                    return JsopTokenizer.decodeQuoted(line);
+                }
+                
+            };
+        }
+        
+        synchronized void delete() {
+            if (writer != null) {
+                try {
+                    writer.close();
+                } catch (IOException e) {
+                    // ignore
+                }
+                writer = null;
+            }
+            if (reader != null) {
+                try {
+                    reader.close();
+                } catch (IOException e) {
+                    // ignore
+                }
+                reader = null;
+            }
+            if (file != null) {
+                if (!file.delete()) {
+                    LOG.debug("Could not delete {}", file);
+                }
+                file = null;
+                COUNT.decrementAndGet();
+            }
+        }
+        
+    }
+
 }
@@ -32,6 +32,7 @@ import org.apache.jackrabbit.oak.api.Result;
 import org.apache.jackrabbit.oak.namepath.LocalNameMapper;
 import org.apache.jackrabbit.oak.namepath.NamePathMapper;
 import org.apache.jackrabbit.oak.namepath.NamePathMapperImpl;
+import org.apache.jackrabbit.oak.query.QueryPlanCache.CachedPlan;
 import org.apache.jackrabbit.oak.query.xpath.XPathToSQL2Converter;
 import org.apache.jackrabbit.oak.spi.state.NodeState;
 import org.slf4j.Logger;
@@ -93,6 +94,24 @@ public abstract class QueryEngineImpl implements QueryEngine {
     private static Query parseQuery(
             String statement, String language, ExecutionContext context,
             Map<String, String> mappings) throws ParseException {
+        return parseQuery(statement, language, context, mappings, null);
+    }
+
+    /**
+     * Parse the query.
+     * 
+     * @param statement query statement
+     * @param language query language
+     * @param context the execution context
+     * @param mappings namespace prefix mappings
+     * @param sql2 for XPath queries, the statement converted to SQL-2, or
+     *            null if it was not converted yet
+     * @return the query
+     * @throws ParseException
+     */
+    private static Query parseQuery(
+            String statement, String language, ExecutionContext context,
+            Map<String, String> mappings, String sql2) throws ParseException {
         LOG.debug("Parsing {} statement: {}", language, statement);
 
         NamePathMapper mapper = new NamePathMapperImpl(
@@ -115,9 +134,9 @@ public abstract class QueryEngineImpl implements QueryEngine {
             parser.setSupportSQL1(true);
             return parser.parse(statement);
         } else if (XPATH.equals(language)) {
-            XPathToSQL2Converter converter = new XPathToSQL2Converter();
-            String sql2 = converter.convert(statement);
-            LOG.debug("XPath > SQL2: {}", sql2);
+            if (sql2 == null) {
+                sql2 = convertXPath(statement);
+            }
             try {
                 // OAK-874: No artificial XPath selector name in wildcards
                 parser.setIncludeSelectorNameInWildcardColumns(false);
@@ -133,6 +152,13 @@ public abstract class QueryEngineImpl implements QueryEngine {
         }
     }
     
+    private static String convertXPath(String statement) throws ParseException {
+        XPathToSQL2Converter converter = new XPathToSQL2Converter();
+        String sql2 = converter.convert(statement);
+        LOG.debug("XPath > SQL2: {}", sql2);
+        return sql2;
+    }
+    
     @Override
     public Result executeQuery(
             String statement, String language, long limit, long offset,
@@ -154,7 +180,21 @@ public abstract class QueryEngineImpl implements QueryEngine {
         }
 
         ExecutionContext context = getExecutionContext();
-        Query q = parseQuery(statement, language, context, mappings);
+        QueryPlanCache planCache = context.getSettings().getPlanCache();
+        String key = null;
+        CachedPlan plan = null;
+        String sql2 = null;
+        if (planCache != null) {
+            key = QueryPlanCache.getKey(language, statement, limit, offset,
+                    bindings, mappings, traversalEnabled);
+            plan = planCache.get(key, context.getBaseState());
+            if (plan != null) {
+                sql2 = plan.statement;
+            } else if (language.startsWith(XPATH)) {
+                sql2 = convertXPath(statement);
+            }
+        }
+        Query q = parseQuery(statement, language, context, mappings, sql2);
         q.setExecutionContext(context);
         q.setLimit(limit);
         q.setOffset(offset);
@@ -164,7 +204,13 @@ public abstract class QueryEngineImpl implements QueryEngine {
             }
         }
         q.setTraversalEnabled(traversalEnabled);
+        if (plan != null && q instanceof QueryImpl) {
+            ((QueryImpl) q).setCachedPlan(plan.joinOrder, plan.indexNames);
+        }
         q.prepare();
+        if (planCache != null && plan == null) {
+            planCache.put(key, context.getBaseState(), sql2, q);
+        }
         return q.executeQuery();
     }
 
@@ -19,6 +19,7 @@
 package org.apache.jackrabbit.oak.query;
 
 import org.apache.jackrabbit.oak.api.jmx.QueryEngineSettingsMBean;
+import org.apache.jackrabbit.oak.cache.CacheStats;
 
 /**
  * Settings of the query engine.
@@ -31,10 +32,30 @@ public class QueryEngineSettings implements QueryEngineSettingsMBean {
     private static final int DEFAULT_QUERY_LIMIT_READS = 
             Integer.getInteger("oak.queryLimitReads", Integer.MAX_VALUE);    
     
+    private static final boolean DEFAULT_HASH_JOIN_ENABLED = 
+            Boolean.getBoolean("oak.queryHashJoin");
+    
+    private static final int DEFAULT_HASH_JOIN_LIMIT = 
+            Integer.getInteger("oak.queryHashJoinLimit", 100000);
+    
+    private static final boolean DEFAULT_PLAN_CACHE_ENABLED = 
+            Boolean.getBoolean("oak.queryPlanCache");
+    
+    private static final int PLAN_CACHE_SIZE = 
+            Integer.getInteger("oak.queryPlanCacheSize", 1000);
+    
     private long limitInMemory = DEFAULT_QUERY_LIMIT_IN_MEMORY;
     
     private long limitReads = DEFAULT_QUERY_LIMIT_READS;
     
+    private boolean hashJoinEnabled = DEFAULT_HASH_JOIN_ENABLED;
+    
+    private long hashJoinLimit = DEFAULT_HASH_JOIN_LIMIT;
+    
+    private volatile boolean planCacheEnabled = DEFAULT_PLAN_CACHE_ENABLED;
+    
+    private final QueryPlanCache planCache = new QueryPlanCache(PLAN_CACHE_SIZE);
+    
     /**
      * Get the limit on how many nodes a query may read at most into memory, for
      * "order by" and "distinct" queries. If this limit is exceeded, the query
@@ -79,4 +100,95 @@ public class QueryEngineSettings implements QueryEngineSettingsMBean {
         this.limitReads = limitReads;
     }
     
+    /**
+     * Whether the query engine may use hash joins. If enabled, an inner join
+     * is evaluated as a hash join if the estimated cost is lower than the
+     * cost of a nested loop join. The rows of the right hand side are then
+     * kept in memory, up to the "hashJoinLimit" number of rows (see
+     * {@link #getHashJoinLimit()}); if there are more rows, the join falls
+     * back to a nested loop join.
+     * 
+     * @return true if hash joins are enabled
+     */
+    @Override
+    public boolean isHashJoinEnabled() {
+        return hashJoinEnabled;
+    }
+    
+    /**
+     * Enable or disable hash joins.
+     * 
+     * @param hashJoinEnabled the new value
+     */
+    @Override
+    public void setHashJoinEnabled(boolean hashJoinEnabled) {
+        this.hashJoinEnabled = hashJoinEnabled;
+    }
+    
+    /**
+     * Get the maximum number of rows a hash join may keep in memory. This is
+     * the lower of the "oak.queryHashJoinLimit" setting (100000 by default)
+     * and the "limitInMemory" limit.
+     * 
+     * @return the limit
+     */
+    public long getHashJoinLimit() {
+        return Math.min(hashJoinLimit, limitInMemory);
+    }
+    
+    /**
+     * Change the maximum number of rows a hash join may keep in memory.
+     * 
+     * @param hashJoinLimit the new limit
+     */
+    public void setHashJoinLimit(long hashJoinLimit) {
+        this.hashJoinLimit = hashJoinLimit;
+    }
+    
+    /**
+     * Whether query plans are cached. If enabled, the plan (join order and
+     * indexes) of a query is re-used when the same statement is executed
+     * again, with bind variables of the same type. A cached plan is only
+     * re-used if the index definitions below the root /oak:index node are
+     * unchanged (hidden content is ignored); otherwise the query is planned
+     * again. Index definitions of nested /oak:index nodes are not tracked.
+     * 
+     * @return true if the plan cache is enabled
+     */
+    @Override
+    public boolean isPlanCacheEnabled() {
+        return planCacheEnabled;
+    }
+    
+    /**
+     * Enable or disable the plan cache. Disabling it also clears the cache.
+     * 
+     * @param planCacheEnabled the new value
+     */
+    @Override
+    public void setPlanCacheEnabled(boolean planCacheEnabled) {
+        this.planCacheEnabled = planCacheEnabled;
+        if (!planCacheEnabled) {
+            planCache.clear();
+        }
+    }
+    
+    /**
+     * Get the statistics of the plan cache.
+     * 
+     * @return the statistics
+     */
+    public CacheStats getPlanCacheStats() {
+        return planCache.getStats();
+    }
+    
+    /**
+     * Get the plan cache, if enabled.
+     * 
+     * @return the plan cache, or null if disabled
+     */
+    QueryPlanCache getPlanCache() {
+        return planCacheEnabled ? planCache : null;
+    }
+    
 }
@@ -15,11 +15,13 @@ package org.apache.jackrabbit.oak.query;
 
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.Comparator;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 
 import org.apache.jackrabbit.oak.api.PropertyValue;
@@ -139,6 +141,22 @@ public class QueryImpl implements Query {
 
     private final QueryEngineSettings settings;
 
+    /**
+     * The order in which the inner join selectors were joined (the indexes
+     * in the list of inner join selectors), or null if there is no join.
+     */
+    private int[] joinOrder;
+
+    /**
+     * The join order of a cached plan, or null.
+     */
+    private int[] cachedJoinOrder;
+
+    /**
+     * The index names of a cached plan (for each selector), or null.
+     */
+    private Map<String, String> cachedIndexNames;
+
     QueryImpl(String statement, SourceImpl source, ConstraintImpl constraint,
             ColumnImpl[] columns, NamePathMapper mapper, QueryEngineSettings settings) {
         this.statement = statement;
@@ -473,13 +491,19 @@ public class QueryImpl implements Query {
                 }
             }
         }
+        FilterIterators.Serializer<ResultRowImpl> serializer;
         if (sortUsingIndex) {
             orderBy = null;
+            // rows read back from temporary files would no longer be
+            // in index order, so distinct rows are kept in memory
+            serializer = null;
         } else {
             orderBy = ResultRowImpl.getComparator(orderings);
+            serializer = ResultRowImpl.getSerializer(this, distinctColumns);
         }
         Iterator<ResultRowImpl> it = 
-                FilterIterators.newCombinedFilter(rowIt, distinct, limit, offset, orderBy, settings);
+                FilterIterators.newCombinedFilter(rowIt, distinct, limit, offset, orderBy, settings, 
+                        serializer);
         if (measure) {
             // run the query
             while (it.hasNext()) {
@@ -538,7 +562,20 @@ public class QueryImpl implements Query {
             return;
         }
 
+        if (cachedJoinOrder != null) {
+            SourceImpl result = buildJoin(sources, cachedJoinOrder, conditions);
+            if (result != null) {
+                estimatedCost = result.prepare().getEstimatedCost();
+                joinOrder = cachedJoinOrder;
+                source = result;
+                return;
+            }
+        }
+
         // use a greedy algorithm
+        List<SourceImpl> allSources = new ArrayList<SourceImpl>(sources);
+        int[] order = new int[sources.size()];
+        int joined = 0;
         SourceImpl result = null;
         Set<SourceImpl> available = new HashSet<SourceImpl>();
         while (sources.size() > 0) {
@@ -562,14 +599,79 @@ public class QueryImpl implements Query {
                 }
                 test.unprepare();
             }
+            order[joined++] = allSources.indexOf(sources.get(bestIndex));
             available.add(sources.remove(bestIndex));
             result = best;
             best.prepare(bestPlan);
         }
         estimatedCost = result.prepare().getEstimatedCost();
+        joinOrder = order;
         source = result;
                 
     }
+
+    /**
+     * Join the sources in the given order.
+     * 
+     * @param sources the inner join selectors
+     * @param order the join order (indexes in the list of sources)
+     * @param conditions the join conditions
+     * @return the join, or null if the sources can't be joined in this order
+     */
+    private static SourceImpl buildJoin(List<SourceImpl> sources, int[] order, 
+            List<JoinConditionImpl> conditions) {
+        if (order.length != sources.size()) {
+            return null;
+        }
+        SourceImpl result = null;
+        for (int i : order) {
+            if (i < 0 || i >= sources.size()) {
+                return null;
+            }
+            result = buildJoin(result, sources.get(i), conditions);
+            if (result == null) {
+                return null;
+            }
+        }
+        return result;
+    }
+    
+    /**
+     * Use the join order and indexes of a cached plan when preparing the
+     * query. Indexes that are not (or no longer) available are ignored.
+     * 
+     * @param joinOrder the join order, or null
+     * @param indexNames the index name for each selector, or null
+     */
+    void setCachedPlan(int[] joinOrder, Map<String, String> indexNames) {
+        this.cachedJoinOrder = joinOrder;
+        this.cachedIndexNames = indexNames;
+    }
+    
+    /**
+     * Get the join order of the prepared query.
+     * 
+     * @return the join order, or null if there is no join
+     */
+    int[] getJoinOrder() {
+        return joinOrder;
+    }
+    
+    /**
+     * Get the names of the indexes used by the prepared query.
+     * 
+     * @return a map from selector name to index name
+     */
+    Map<String, String> getIndexNames() {
+        HashMap<String, String> map = new HashMap<String, String>();
+        for (SelectorImpl s : selectors) {
+            SelectorExecutionPlan p = s.getExecutionPlan();
+            if (p != null && p.getIndex() != null) {
+                map.put(s.getSelectorName(), p.getIndex().getIndexName());
+            }
+        }
+        return Collections.unmodifiableMap(map);
+    }
     
     private static SourceImpl buildJoin(SourceImpl result, SourceImpl last, List<JoinConditionImpl> conditions) {
         if (result == null) {
@@ -761,78 +863,27 @@ public class QueryImpl implements Query {
     private SelectorExecutionPlan getBestSelectorExecutionPlan(
             NodeState rootState, FilterImpl filter,
             QueryIndexProvider indexProvider, boolean traversalEnabled) {
-        QueryIndex bestIndex = null;
         if (LOG.isDebugEnabled()) {
             LOG.debug("cost using filter " + filter);
         }
+        if (cachedIndexNames != null) {
+            SelectorExecutionPlan p = getCachedSelectorExecutionPlan(
+                    rootState, filter, indexProvider, traversalEnabled);
+            if (p != null) {
+                return p;
+            }
+        }
 
+        QueryIndex bestIndex = null;
         double bestCost = Double.POSITIVE_INFINITY;
         IndexPlan bestPlan = null;
         for (QueryIndex index : indexProvider.getQueryIndexes(rootState)) {
-            double cost;
-            IndexPlan indexPlan = null;
-            if (index instanceof AdvancedQueryIndex) {
-                AdvancedQueryIndex advIndex = (AdvancedQueryIndex) index;
-                List<OrderEntry> sortOrder = null;
-                if (orderings != null) {
-                    sortOrder = new ArrayList<OrderEntry>();
-                    for (OrderingImpl o : orderings) {
-                        DynamicOperandImpl op = o.getOperand();
-                        if (!(op instanceof PropertyValueImpl)) {
-                            // ordered by a function: currently not supported
-                            break;
-                        }
-                        PropertyValueImpl p = (PropertyValueImpl) op;
-                        SelectorImpl s = p.getSelectors().iterator().next();
-                        if (!s.equals(filter.getSelector())) {
-                            // ordered by a different selector
-                            continue;
-                        }
-                        OrderEntry e = new OrderEntry(
-                                p.getPropertyName(), 
-                                Type.UNDEFINED, 
-                                o.isDescending() ? 
-                                OrderEntry.Order.DESCENDING : OrderEntry.Order.ASCENDING);
-                        sortOrder.add(e);
-                    }
-                    if (sortOrder.size() == 0) {
-                        sortOrder = null;
-                    }
-                }
-                long maxEntryCount = limit;
-                if (offset > 0) {
-                    if (offset + limit < 0) {
-                        // long overflow
-                        maxEntryCount = Long.MAX_VALUE;
-                    } else {
-                        maxEntryCount = offset + limit;
-                    }
-                }
-                List<IndexPlan> ipList = advIndex.getPlans(
-                        filter, sortOrder, rootState);
-                cost = Double.POSITIVE_INFINITY;
-                for (IndexPlan p : ipList) {
-                    // TODO limit is after all conditions
-                    long entryCount = Math.min(maxEntryCount, p.getEstimatedEntryCount());
-                    double c = p.getCostPerExecution() + entryCount * p.getCostPerEntry();
-                    if (c < cost) {
-                        cost = c;
-                        indexPlan = p;
-                    }
-                }
-            } else {
-                cost = index.getCost(filter, rootState);
-            }
-            if (LOG.isDebugEnabled()) {
-                LOG.debug("cost for " + index.getIndexName() + " is " + cost);
-            }
-            if (cost < 0) {
-                LOG.error("cost below 0 for " + index.getIndexName() + " is " + cost);
-            }
+            SelectorExecutionPlan p = getSelectorExecutionPlan(rootState, filter, index);
+            double cost = p.getEstimatedCost();
             if (cost < bestCost) {
                 bestCost = cost;
                 bestIndex = index;
-                bestPlan = indexPlan;
+                bestPlan = p.getIndexPlan();
             }
         }
 
@@ -851,6 +902,137 @@ public class QueryImpl implements Query {
         return new SelectorExecutionPlan(filter.getSelector(), bestIndex, bestPlan, bestCost);
     }
 
+    /**
+     * Get the plan for the index of the cached plan.
+     * 
+     * @return the plan, or null if the index is not available or can not be
+     *         used
+     */
+    private SelectorExecutionPlan getCachedSelectorExecutionPlan(
+            NodeState rootState, FilterImpl filter,
+            QueryIndexProvider indexProvider, boolean traversalEnabled) {
+        String indexName = cachedIndexNames.get(filter.getSelector().getSelectorName());
+        if (indexName == null) {
+            return null;
+        }
+        for (QueryIndex index : indexProvider.getQueryIndexes(rootState)) {
+            if (indexName.equals(index.getIndexName())) {
+                SelectorExecutionPlan p = getSelectorExecutionPlan(rootState, filter, index);
+                if (p.getEstimatedCost() == Double.POSITIVE_INFINITY) {
+                    return null;
+                }
+                return p;
+            }
+        }
+        if (traversalEnabled) {
+            QueryIndex traversal = new TraversingIndex();
+            if (indexName.equals(traversal.getIndexName())) {
+                double cost = traversal.getCost(filter, rootState);
+                return new SelectorExecutionPlan(filter.getSelector(), traversal, null, cost);
+            }
+        }
+        return null;
+    }
+
+    private SelectorExecutionPlan getSelectorExecutionPlan(
+            NodeState rootState, FilterImpl filter, QueryIndex index) {
+        double cost;
+        IndexPlan indexPlan = null;
+        if (index instanceof AdvancedQueryIndex) {
+            AdvancedQueryIndex advIndex = (AdvancedQueryIndex) index;
+            List<OrderEntry> sortOrder = null;
+            if (orderings != null) {
+                sortOrder = new ArrayList<OrderEntry>();
+                for (OrderingImpl o : orderings) {
+                    DynamicOperandImpl op = o.getOperand();
+                    if (!(op instanceof PropertyValueImpl)) {
+                        // ordered by a function: currently not supported
+                        break;
+                    }
+                    PropertyValueImpl p = (PropertyValueImpl) op;
+                    SelectorImpl s = p.getSelectors().iterator().next();
+                    if (!s.equals(filter.getSelector())) {
+                        // ordered by a different selector
+                        continue;
+                    }
+                    OrderEntry e = new OrderEntry(
+                            p.getPropertyName(), 
+                            Type.UNDEFINED, 
+                            o.isDescending() ? 
+                            OrderEntry.Order.DESCENDING : OrderEntry.Order.ASCENDING);
+                    sortOrder.add(e);
+                }
+                if (sortOrder.size() == 0) {
+                    sortOrder = null;
+                }
+            }
+            long maxEntryCount = limit;
+            if (offset > 0) {
+                if (offset + limit < 0) {
+                    // long overflow
+                    maxEntryCount = Long.MAX_VALUE;
+                } else {
+                    maxEntryCount = offset + limit;
+                }
+            }
+            List<IndexPlan> ipList = advIndex.getPlans(
+                    filter, sortOrder, rootState);
+            cost = Double.POSITIVE_INFINITY;
+            for (IndexPlan p : ipList) {
+                long entryCount = p.getEstimatedEntryCount();
+                if (orderings == null || isSortedByIndex(p, sortOrder)) {
+                    // if the result needs to be sorted afterwards, all
+                    // entries are read, so the limit doesn't help
+                    // TODO limit is after all conditions
+                    entryCount = Math.min(maxEntryCount, entryCount);
+                }
+                double c = p.getCostPerExecution() + entryCount * p.getCostPerEntry();
+                if (c < cost) {
+                    cost = c;
+                    indexPlan = p;
+                }
+            }
+        } else {
+            cost = index.getCost(filter, rootState);
+        }
+        if (LOG.isDebugEnabled()) {
+            LOG.debug("cost for " + index.getIndexName() + " is " + cost);
+        }
+        if (cost < 0) {
+            LOG.error("cost below 0 for " + index.getIndexName() + " is " + cost);
+        }
+        return new SelectorExecutionPlan(filter.getSelector(), index, indexPlan, cost);
+    }
+
+    /**
+     * Whether the plan returns the entries in the requested order, so that
+     * they don't need to be sorted afterwards.
+     * 
+     * @param plan the index plan
+     * @param sortOrder the requested sort order of this selector
+     * @return true if sorting is not needed
+     */
+    private boolean isSortedByIndex(IndexPlan plan, List<OrderEntry> sortOrder) {
+        if (selectors.size() != 1 || sortOrder == null
+                || sortOrder.size() != orderings.length) {
+            // ordered by a function or by another selector
+            return false;
+        }
+        List<OrderEntry> list = plan.getSortOrder();
+        if (list == null || list.size() != sortOrder.size()) {
+            return false;
+        }
+        for (int i = 0; i < list.size(); i++) {
+            OrderEntry a = list.get(i);
+            OrderEntry b = sortOrder.get(i);
+            if (!a.getPropertyName().equals(b.getPropertyName())
+                    || a.getOrder() != b.getOrder()) {
+                return false;
+            }
+        }
+        return true;
+    }
+
     @Override
     public void setExecutionContext(ExecutionContext context) {
         this.context = context;
@@ -0,0 +1,237 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.jackrabbit.oak.query;
+
+import static org.apache.jackrabbit.oak.plugins.index.IndexConstants.INDEX_DEFINITIONS_NAME;
+
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.TreeMap;
+
+import org.apache.jackrabbit.oak.api.PropertyState;
+import org.apache.jackrabbit.oak.api.PropertyValue;
+import org.apache.jackrabbit.oak.cache.CacheStats;
+import org.apache.jackrabbit.oak.spi.state.NodeState;
+import org.apache.jackrabbit.oak.spi.state.NodeStateDiff;
+import org.apache.jackrabbit.oak.spi.state.NodeStateUtils;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+
+/**
+ * A cache of query plans. The key is the query statement, together with
+ * everything that could change the plan: the language, the namespace
+ * mappings, the names and types of the bind variables, limit and offset.
+ * <p>
+ * Each plan remembers the index definitions in "/oak:index" it was planned
+ * against, and is only used if the index definitions of the root state the
+ * query is executed against are the same. Sessions that see different
+ * revisions therefore do not invalidate each other's plans. Changes to the
+ * indexed content itself (hidden nodes and properties) are ignored, so that a
+ * cached plan might not be the cheapest one any longer, but it is still
+ * correct. If the cached index is no longer available, the query is planned
+ * as usual.
+ */
+class QueryPlanCache {
+
+    private final Cache<String, CachedPlan> cache;
+
+    private final CacheStats stats;
+
+    QueryPlanCache(int size) {
+        cache = CacheBuilder.newBuilder().
+                maximumSize(size).
+                recordStats().
+                build();
+        stats = new CacheStats(cache, "Query-Plans", null, size);
+    }
+
+    CacheStats getStats() {
+        return stats;
+    }
+
+    /**
+     * Get the cached plan for this query.
+     *
+     * @param key the key
+     * @param rootState the root state the query is executed against
+     * @return the cached plan, or null if not found or planned against
+     *         different index definitions
+     */
+    CachedPlan get(String key, NodeState rootState) {
+        CachedPlan p = cache.getIfPresent(key);
+        if (p == null) {
+            return null;
+        }
+        NodeState defs = rootState.getChildNode(INDEX_DEFINITIONS_NAME);
+        NodeState planned = p.indexDefinitions;
+        if (defs != planned) {
+            if (!defs.compareAgainstBaseState(planned, new IndexDefinitionDiff())) {
+                // the entry is replaced once the query is planned
+                return null;
+            }
+            // same definitions: remember the newer state, so that the
+            // next lookup doesn't need to compare again
+            p.indexDefinitions = defs;
+        }
+        return p;
+    }
+
+    /**
+     * Add a plan to the cache.
+     *
+     * @param key the key
+     * @param rootState the root state the query was planned against
+     * @param statement the SQL-2 statement
+     * @param query the prepared query (may be null if only the statement
+     *            should be cached)
+     */
+    void put(String key, NodeState rootState, String statement, Query query) {
+        NodeState defs = rootState.getChildNode(INDEX_DEFINITIONS_NAME);
+        int[] joinOrder = null;
+        Map<String, String> indexNames = null;
+        if (query instanceof QueryImpl) {
+            QueryImpl q = (QueryImpl) query;
+            joinOrder = q.getJoinOrder();
+            indexNames = q.getIndexNames();
+        }
+        cache.put(key, new CachedPlan(defs, statement, joinOrder, indexNames));
+    }
+
+    /**
+     * Remove all entries.
+     */
+    void clear() {
+        cache.invalidateAll();
+    }
+
+    /**
+     * Build the cache key.
+     *
+     * @param language the query language
+     * @param statement the statement
+     * @param limit the limit
+     * @param offset the offset
+     * @param bindings the bind variables (only the names and types are used)
+     * @param mappings the namespace mappings
+     * @param traversalEnabled whether traversal is enabled
+     * @return the key
+     */
+    static String getKey(String language, String statement, long limit,
+            long offset, Map<String, ? extends PropertyValue> bindings,
+            Map<String, String> mappings, boolean traversalEnabled) {
+        StringBuilder buff = new StringBuilder();
+        buff.append(language).append(' ').append(limit).
+                append(' ').append(offset).
+                append(' ').append(traversalEnabled);
+        for (Entry<String, ? extends PropertyValue> e :
+                new TreeMap<String, PropertyValue>(bindings).entrySet()) {
+            PropertyValue v = e.getValue();
+            buff.append(" $").append(e.getKey()).append('=').
+                    append(v == null ? "null" : v.getType().toString());
+        }
+        for (Entry<String, String> e :
+                new TreeMap<String, String>(mappings).entrySet()) {
+            buff.append(' ').append(e.getKey()).append(':').append(e.getValue());
+        }
+        buff.append('\n').append(statement);
+        return buff.toString();
+    }
+
+    /**
+     * A cached plan.
+     */
+    static class CachedPlan {
+
+        /**
+         * The index definitions the plan was made for (or, if they only
+         * differ in hidden content, a later state of them).
+         */
+        volatile NodeState indexDefinitions;
+
+        /**
+         * The SQL-2 statement (converted from XPath if needed).
+         */
+        final String statement;
+
+        /**
+         * The order in which the selectors are joined (the indexes in the
+         * list of inner join selectors), or null.
+         */
+        final int[] joinOrder;
+
+        /**
+         * The name of the index to use, for each selector, or null.
+         */
+        final Map<String, String> indexNames;
+
+        CachedPlan(NodeState indexDefinitions, String statement, int[] joinOrder,
+                Map<String, String> indexNames) {
+            this.indexDefinitions = indexDefinitions;
+            this.statement = statement;
+            this.joinOrder = joinOrder;
+            this.indexNames = indexNames;
+        }
+
+    }
+
+    /**
+     * A diff that stops at the first change of an index definition. Hidden
+     * nodes and properties (the index data) are ignored.
+     */
+    private static class IndexDefinitionDiff implements NodeStateDiff {
+
+        @Override
+        public boolean propertyAdded(PropertyState after) {
+            return NodeStateUtils.isHidden(after.getName());
+        }
+
+        @Override
+        public boolean propertyChanged(PropertyState before,
+                PropertyState after) {
+            return NodeStateUtils.isHidden(after.getName());
+        }
+
+        @Override
+        public boolean propertyDeleted(PropertyState before) {
+            return NodeStateUtils.isHidden(before.getName());
+        }
+
+        @Override
+        public boolean childNodeAdded(String name, NodeState after) {
+            return NodeStateUtils.isHidden(name);
+        }
+
+        @Override
+        public boolean childNodeChanged(String name, NodeState before,
+                NodeState after) {
+            if (NodeStateUtils.isHidden(name)) {
+                return true;
+            }
+            return after.compareAgainstBaseState(before, this);
+        }
+
+        @Override
+        public boolean childNodeDeleted(String name, NodeState before) {
+            return NodeStateUtils.isHidden(name);
+        }
+
+    }
+
+}
@@ -16,13 +16,24 @@
  */
 package org.apache.jackrabbit.oak.query;
 
+import java.math.BigDecimal;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Comparator;
+import java.util.List;
+
+import javax.jcr.PropertyType;
 
 import org.apache.jackrabbit.JcrConstants;
 import org.apache.jackrabbit.oak.api.PropertyValue;
 import org.apache.jackrabbit.oak.api.ResultRow;
 import org.apache.jackrabbit.oak.api.Tree;
+import org.apache.jackrabbit.oak.api.Type;
+import org.apache.jackrabbit.oak.commons.json.JsopBuilder;
+import org.apache.jackrabbit.oak.commons.json.JsopReader;
+import org.apache.jackrabbit.oak.commons.json.JsopTokenizer;
+import org.apache.jackrabbit.oak.plugins.memory.PropertyStates;
+import org.apache.jackrabbit.oak.plugins.value.Conversions;
 import org.apache.jackrabbit.oak.query.ast.ColumnImpl;
 import org.apache.jackrabbit.oak.query.ast.OrderingImpl;
 import org.apache.jackrabbit.oak.query.fulltext.SimpleExcerptProvider;
@@ -249,4 +260,162 @@ public class ResultRowImpl implements ResultRow {
 
     }
 
+    /**
+     * Get a serializer for the rows of the given query, so that rows can be
+     * stored in temporary files. Rows that contain binary values can not be
+     * serialized.
+     * 
+     * @param query the query
+     * @param distinctValues the distinct columns of the query
+     * @return the serializer
+     */
+    static FilterIterators.Serializer<ResultRowImpl> getSerializer(
+            final Query query, final boolean[] distinctValues) {
+        return new FilterIterators.Serializer<ResultRowImpl>() {
+
+            @Override
+            public String serialize(ResultRowImpl row) {
+                JsopBuilder buff = new JsopBuilder();
+                buff.array();
+                buff.array();
+                for (Tree t : row.trees) {
+                    buff.value(t == null ? null : t.getPath());
+                }
+                buff.endArray();
+                if (!writeValues(buff, row.values) || 
+                        !writeValues(buff, row.orderValues)) {
+                    return null;
+                }
+                buff.endArray();
+                return buff.toString();
+            }
+
+            @Override
+            public ResultRowImpl deserialize(String s) {
+                JsopTokenizer t = new JsopTokenizer(s);
+                t.read('[');
+                t.read('[');
+                ArrayList<Tree> trees = new ArrayList<Tree>();
+                if (!t.matches(']')) {
+                    do {
+                        if (t.matches(JsopReader.NULL)) {
+                            trees.add(null);
+                        } else {
+                            trees.add(query.getTree(t.readString()));
+                        }
+                    } while (t.matches(','));
+                    t.read(']');
+                }
+                t.read(',');
+                PropertyValue[] values = readValues(t);
+                t.read(',');
+                PropertyValue[] orderValues = readValues(t);
+                t.read(']');
+                return new ResultRowImpl(query, 
+                        trees.toArray(new Tree[trees.size()]), 
+                        values, distinctValues, orderValues);
+            }
+            
+        };
+    }
+    
+    private static boolean writeValues(JsopBuilder buff, PropertyValue[] values) {
+        if (values == null) {
+            buff.encodedValue("null");
+            return true;
+        }
+        buff.array();
+        for (PropertyValue v : values) {
+            if (v == null) {
+                buff.encodedValue("null");
+                continue;
+            }
+            int tag = v.getType().tag();
+            if (tag == PropertyType.BINARY) {
+                return false;
+            }
+            buff.array();
+            buff.value(tag);
+            buff.value(v.isArray());
+            for (String x : v.getValue(Type.STRINGS)) {
+                buff.value(x);
+            }
+            buff.endArray();
+        }
+        buff.endArray();
+        return true;
+    }
+    
+    private static PropertyValue[] readValues(JsopTokenizer t) {
+        if (t.matches(JsopReader.NULL)) {
+            return null;
+        }
+        t.read('[');
+        ArrayList<PropertyValue> list = new ArrayList<PropertyValue>();
+        if (!t.matches(']')) {
+            do {
+                list.add(readValue(t));
+            } while (t.matches(','));
+            t.read(']');
+        }
+        return list.toArray(new PropertyValue[list.size()]);
+    }
+    
+    private static PropertyValue readValue(JsopTokenizer t) {
+        if (t.matches(JsopReader.NULL)) {
+            return null;
+        }
+        t.read('[');
+        int tag = Integer.parseInt(t.read(JsopReader.NUMBER));
+        t.read(',');
+        boolean isArray = t.matches(JsopReader.TRUE);
+        if (!isArray) {
+            t.read(JsopReader.FALSE);
+        }
+        ArrayList<String> strings = new ArrayList<String>();
+        while (t.matches(',')) {
+            strings.add(t.readString());
+        }
+        t.read(']');
+        if (!isArray) {
+            return PropertyValues.create(
+                    PropertyStates.createProperty("", strings.get(0), tag));
+        }
+        Object values;
+        switch (tag) {
+        case PropertyType.LONG:
+            List<Long> longs = new ArrayList<Long>();
+            for (String x : strings) {
+                longs.add(Conversions.convert(x).toLong());
+            }
+            values = longs;
+            break;
+        case PropertyType.DOUBLE:
+            List<Double> doubles = new ArrayList<Double>();
+            for (String x : strings) {
+                doubles.add(Conversions.convert(x).toDouble());
+            }
+            values = doubles;
+            break;
+        case PropertyType.BOOLEAN:
+            List<Boolean> booleans = new ArrayList<Boolean>();
+            for (String x : strings) {
+                booleans.add(Conversions.convert(x).toBoolean());
+            }
+            values = booleans;
+            break;
+        case PropertyType.DECIMAL:
+            List<BigDecimal> decimals = new ArrayList<BigDecimal>();
+            for (String x : strings) {
+                decimals.add(Conversions.convert(x).toDecimal());
+            }
+            values = decimals;
+            break;
+        default:
+            values = strings;
+        }
+        return PropertyValues.create(
+                PropertyStates.createProperty("", values, Type.fromTag(tag, true)));
+    }
+
 }
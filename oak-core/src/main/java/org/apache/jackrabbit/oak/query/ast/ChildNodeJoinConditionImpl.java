@@ -18,6 +18,8 @@
  */
 package org.apache.jackrabbit.oak.query.ast;
 
+import java.util.Collection;
+import java.util.Collections;
 import java.util.Set;
 
 import org.apache.jackrabbit.oak.commons.PathUtils;
@@ -102,5 +104,33 @@ public class ChildNodeJoinConditionImpl extends JoinConditionImpl {
     public boolean canEvaluate(Set<SourceImpl> available) {
         return available.contains(childSelector) && available.contains(parentSelector);
     }
+    
+    @Override
+    public SelectorImpl getOtherSelector(SelectorImpl s) {
+        if (childSelector.equals(parentSelector)) {
+            return null;
+        } else if (s.equals(childSelector)) {
+            return parentSelector;
+        } else if (s.equals(parentSelector)) {
+            return childSelector;
+        }
+        return null;
+    }
+    
+    @Override
+    public Collection<String> getJoinKeys(SelectorImpl s) {
+        if (s.equals(parentSelector)) {
+            String p = parentSelector.currentPath();
+            if (p == null) {
+                return Collections.emptySet();
+            }
+            return Collections.singleton(p);
+        }
+        String c = childSelector.currentPath();
+        if (c == null || PathUtils.denotesRoot(c)) {
+            return Collections.emptySet();
+        }
+        return Collections.singleton(PathUtils.getParentPath(c));
+    }
 
 }
\ No newline at end of file
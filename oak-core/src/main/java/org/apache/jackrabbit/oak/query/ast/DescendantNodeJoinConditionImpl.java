@@ -18,6 +18,9 @@
  */
 package org.apache.jackrabbit.oak.query.ast;
 
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.Set;
 
 import org.apache.jackrabbit.oak.commons.PathUtils;
@@ -102,5 +105,39 @@ public class DescendantNodeJoinConditionImpl extends JoinConditionImpl {
     public boolean canEvaluate(Set<SourceImpl> available) {
         return available.contains(descendantSelector) && available.contains(ancestorSelector);
     }
+    
+    @Override
+    public SelectorImpl getOtherSelector(SelectorImpl s) {
+        if (descendantSelector.equals(ancestorSelector)) {
+            return null;
+        } else if (s.equals(descendantSelector)) {
+            return ancestorSelector;
+        } else if (s.equals(ancestorSelector)) {
+            return descendantSelector;
+        }
+        return null;
+    }
+    
+    @Override
+    public Collection<String> getJoinKeys(SelectorImpl s) {
+        if (s.equals(ancestorSelector)) {
+            String a = ancestorSelector.currentPath();
+            if (a == null) {
+                return Collections.emptySet();
+            }
+            return Collections.singleton(a);
+        }
+        String d = descendantSelector.currentPath();
+        if (d == null) {
+            return Collections.emptySet();
+        }
+        // all ancestors
+        ArrayList<String> list = new ArrayList<String>();
+        while (!PathUtils.denotesRoot(d)) {
+            d = PathUtils.getParentPath(d);
+            list.add(d);
+        }
+        return list;
+    }
 
 }
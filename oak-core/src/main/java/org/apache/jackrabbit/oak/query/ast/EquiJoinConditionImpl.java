@@ -18,9 +18,14 @@
  */
 package org.apache.jackrabbit.oak.query.ast;
 
+import java.util.Collection;
+import java.util.Collections;
 import java.util.Set;
 
+import javax.jcr.PropertyType;
+
 import org.apache.jackrabbit.oak.api.PropertyValue;
+import org.apache.jackrabbit.oak.api.Type;
 import org.apache.jackrabbit.oak.query.index.FilterImpl;
 import org.apache.jackrabbit.oak.spi.query.PropertyValues;
 
@@ -152,5 +157,44 @@ public class EquiJoinConditionImpl extends JoinConditionImpl {
     public boolean canEvaluate(Set<SourceImpl> available) {
         return available.contains(selector1) && available.contains(selector2);
     }
+    
+    @Override
+    public SelectorImpl getOtherSelector(SelectorImpl s) {
+        if (selector1.equals(selector2)) {
+            return null;
+        } else if (s.equals(selector1)) {
+            return selector2;
+        } else if (s.equals(selector2)) {
+            return selector1;
+        }
+        return null;
+    }
+    
+    @Override
+    public Collection<String> getJoinKeys(SelectorImpl s) {
+        PropertyValue p;
+        if (s.equals(selector1)) {
+            p = selector1.currentProperty(property1Name);
+        } else {
+            p = selector2.currentProperty(property2Name);
+        }
+        if (p == null) {
+            // can not match
+            return Collections.emptySet();
+        }
+        if (p.isArray()) {
+            // the value of the other side may be converted
+            return null;
+        }
+        switch (p.getType().tag()) {
+        case PropertyType.BINARY:
+        case PropertyType.DATE:
+        case PropertyType.DECIMAL:
+            // equal values may have a different string representation
+            return null;
+        }
+        // single values only match if the type is the same
+        return Collections.singleton(p.getType().tag() + ":" + p.getValue(Type.STRING));
+    }
 
 }
@@ -13,6 +13,7 @@
  */
 package org.apache.jackrabbit.oak.query.ast;
 
+import java.util.Collection;
 import java.util.Set;
 
 import org.apache.jackrabbit.oak.query.index.FilterImpl;
@@ -80,5 +81,31 @@ public abstract class JoinConditionImpl extends AstElement {
      * @return true if the condition can be evaluated
      */
     public abstract boolean canEvaluate(Set<SourceImpl> available);
+    
+    /**
+     * Get the selector on the other side of the condition, if this condition
+     * can be evaluated using a hash join.
+     * 
+     * @param s the selector (the build side of the hash join)
+     * @return the other selector, or null if a hash join is not supported
+     */
+    public SelectorImpl getOtherSelector(SelectorImpl s) {
+        return null;
+    }
+
+    /**
+     * Get the hash join keys of the current row of the given selector. If the
+     * condition matches for two rows, then the keys of the two rows have at
+     * least one entry in common. The condition still needs to be evaluated
+     * for rows that have a key in common.
+     * 
+     * @param s the selector (one of the selectors of this condition)
+     * @return the keys (possibly empty), or null if the keys are not known,
+     *         in which case the row needs to be compared with all rows of the
+     *         other side
+     */
+    public Collection<String> getJoinKeys(SelectorImpl s) {
+        return null;
+    }
 
 }
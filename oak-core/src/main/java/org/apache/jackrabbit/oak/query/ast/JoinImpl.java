@@ -14,11 +14,17 @@
 package org.apache.jackrabbit.oak.query.ast;
 
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Iterator;
 import java.util.List;
+import java.util.TreeSet;
 
 import org.apache.jackrabbit.oak.query.plan.ExecutionPlan;
 import org.apache.jackrabbit.oak.query.plan.JoinExecutionPlan;
+import org.apache.jackrabbit.oak.query.plan.SelectorExecutionPlan;
 import org.apache.jackrabbit.oak.spi.query.Filter;
+import org.apache.jackrabbit.oak.spi.query.IndexRow;
 import org.apache.jackrabbit.oak.spi.state.NodeState;
 
 /**
@@ -39,6 +45,28 @@ public class JoinImpl extends SourceImpl {
     private NodeState rootState;
     
     private JoinExecutionPlan plan;
+    
+    /**
+     * Whether the current execution uses a hash join.
+     */
+    private boolean hashJoin;
+    
+    /**
+     * For a hash join, the selector of the left hand side that is used to
+     * look up the matching rows of the right hand side.
+     */
+    private SelectorImpl probeSelector;
+    
+    /**
+     * For a hash join, the rows of the right hand side (in the order they
+     * were read), the index of the rows by join key, and the rows without a
+     * known join key.
+     */
+    private ArrayList<IndexRow> buildRows;
+    private HashMap<String, ArrayList<Integer>> hashTable;
+    private ArrayList<Integer> unknownKeyRows;
+    private NodeState buildRootState;
+    private Iterator<IndexRow> candidates;
 
     public JoinImpl(SourceImpl left, SourceImpl right, JoinType joinType,
             JoinConditionImpl joinCondition) {
@@ -105,6 +133,11 @@ public class JoinImpl extends SourceImpl {
             append(right.getPlan(rootState)).
             append(" on ").
             append(joinCondition);
+        if (plan != null && plan.isHashJoin()) {
+            buff.append(" /* hash join, cost ").
+                append(plan.getEstimatedCost()).
+                append(" */");
+        }
         return buff.toString();
     }
 
@@ -119,6 +152,11 @@ public class JoinImpl extends SourceImpl {
         left.unprepare();
         right.unprepare();
         plan = null;
+        probeSelector = null;
+        buildRows = null;
+        hashTable = null;
+        unknownKeyRows = null;
+        buildRootState = null;
     }
     
     private void applyJoinConditions() {
@@ -162,6 +200,11 @@ public class JoinImpl extends SourceImpl {
         applyJoinConditions();
         left.prepare(joinPlan.getLeftPlan());
         right.prepare(joinPlan.getRightPlan());
+        if (joinPlan.isHashJoin()) {
+            SelectorImpl s = (SelectorImpl) right;
+            s.prepareHashJoinBuildSide((SelectorExecutionPlan) joinPlan.getRightPlan());
+            probeSelector = joinCondition.getOtherSelector(s);
+        }
     }
 
     @Override
@@ -177,9 +220,46 @@ public class JoinImpl extends SourceImpl {
         ExecutionPlan leftPlan = left.prepare();
         ExecutionPlan rightPlan = right.prepare();
         double cost = leftPlan.getEstimatedCost() + 2 * rightPlan.getEstimatedCost();
-        plan = new JoinExecutionPlan(this, leftPlan, rightPlan, cost);
+        boolean hash = false;
+        SelectorImpl s = getHashJoinBuildSide();
+        if (s != null) {
+            // a hash join reads the right selector only once,
+            // but without the restriction of the join condition
+            SelectorExecutionPlan buildPlan = s.getHashJoinBuildPlan();
+            double hashJoinCost = leftPlan.getEstimatedCost() + buildPlan.getEstimatedCost();
+            if (hashJoinCost < cost) {
+                s.prepareHashJoinBuildSide(buildPlan);
+                probeSelector = joinCondition.getOtherSelector(s);
+                rightPlan = buildPlan;
+                cost = hashJoinCost;
+                hash = true;
+            }
+        }
+        plan = new JoinExecutionPlan(this, leftPlan, rightPlan, cost, hash);
         return plan;
     }
+    
+    /**
+     * Get the right selector if this join can be evaluated as a hash join.
+     * This is the case for inner joins where the right hand side is a
+     * selector, if the join condition supports it.
+     * 
+     * @return the right selector, or null if a hash join is not possible
+     */
+    private SelectorImpl getHashJoinBuildSide() {
+        if (joinType != JoinType.INNER || !(right instanceof SelectorImpl)) {
+            return null;
+        }
+        SelectorImpl s = (SelectorImpl) right;
+        if (!s.query.getSettings().isHashJoinEnabled()) {
+            return null;
+        }
+        SelectorImpl other = joinCondition.getOtherSelector(s);
+        if (other == null || left.getSelector(other.getSelectorName()) == null) {
+            return null;
+        }
+        return s;
+    }
 
     @Override
     public SelectorImpl getSelector(String selectorName) {
@@ -195,6 +275,10 @@ public class JoinImpl extends SourceImpl {
         this.rootState = rootState;
         leftNeedExecute = true;
         end = false;
+        // the build side is no longer used as such 
+        // if there were too many rows in a previous execution
+        hashJoin = plan != null && plan.isHashJoin() && 
+                ((SelectorImpl) right).isHashJoinBuildSide();
     }
 
     @Override
@@ -230,6 +314,12 @@ public class JoinImpl extends SourceImpl {
             left.execute(rootState);
             leftNeedExecute = false;
             leftNeedNext = true;
+            if (hashJoin && buildRootState != rootState) {
+                hashJoin = buildHashTable();
+            }
+        }
+        if (hashJoin) {
+            return nextHashJoin();
         }
         while (true) {
             if (leftNeedNext) {
@@ -261,6 +351,100 @@ public class JoinImpl extends SourceImpl {
         }
     }
     
+    /**
+     * Read all rows of the right selector, and index them by join key.
+     * 
+     * @return true if successful, false if there are too many rows (in
+     *         which case a nested loop join needs to be used)
+     */
+    private boolean buildHashTable() {
+        SelectorImpl s = (SelectorImpl) right;
+        long limit = s.query.getSettings().getHashJoinLimit();
+        ArrayList<IndexRow> rows = new ArrayList<IndexRow>();
+        HashMap<String, ArrayList<Integer>> table = new HashMap<String, ArrayList<Integer>>();
+        ArrayList<Integer> unknown = new ArrayList<Integer>();
+        buildRows = null;
+        hashTable = null;
+        unknownKeyRows = null;
+        buildRootState = null;
+        s.execute(rootState);
+        while (s.next()) {
+            if (rows.size() >= limit) {
+                // too many rows to keep in memory
+                s.setHashJoinBuildSide(false);
+                return false;
+            }
+            Integer index = rows.size();
+            rows.add(s.currentRow());
+            Collection<String> keys = joinCondition.getJoinKeys(s);
+            if (keys == null) {
+                unknown.add(index);
+                continue;
+            }
+            for (String k : keys) {
+                ArrayList<Integer> list = table.get(k);
+                if (list == null) {
+                    list = new ArrayList<Integer>(1);
+                    table.put(k, list);
+                }
+                list.add(index);
+            }
+        }
+        buildRows = rows;
+        hashTable = table;
+        unknownKeyRows = unknown;
+        // the rows don't depend on the left hand side, so they
+        // can be re-used if this join is executed again
+        buildRootState = rootState;
+        return true;
+    }
+    
+    private boolean nextHashJoin() {
+        SelectorImpl s = (SelectorImpl) right;
+        while (true) {
+            if (leftNeedNext) {
+                if (!left.next()) {
+                    end = true;
+                    return false;
+                }
+                leftNeedNext = false;
+                candidates = getCandidates();
+            }
+            while (candidates.hasNext()) {
+                s.setCurrentRow(candidates.next());
+                if (joinCondition.evaluate()) {
+                    return true;
+                }
+            }
+            leftNeedNext = true;
+        }
+    }
+    
+    /**
+     * Get the rows of the right hand side that may match the current row of
+     * the left hand side, in the order they were read.
+     * 
+     * @return the candidate rows
+     */
+    private Iterator<IndexRow> getCandidates() {
+        Collection<String> keys = joinCondition.getJoinKeys(probeSelector);
+        if (keys == null) {
+            return buildRows.iterator();
+        }
+        TreeSet<Integer> set = new TreeSet<Integer>(unknownKeyRows);
+        for (String k : keys) {
+            ArrayList<Integer> list = hashTable.get(k);
+            if (list != null) {
+                set.addAll(list);
+            }
+        }
+        ArrayList<IndexRow> result = new ArrayList<IndexRow>(set.size());
+        for (Integer index : set) {
+            result.add(buildRows.get(index));
+        }
+        return result.iterator();
+    }
+    
     @Override
     public boolean isOuterJoinRightHandSide() {
         return left.isOuterJoinRightHandSide() || right.isOuterJoinRightHandSide();
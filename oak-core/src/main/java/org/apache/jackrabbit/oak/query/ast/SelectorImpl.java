@@ -132,6 +132,13 @@ public class SelectorImpl extends SourceImpl {
      */
     private boolean outerJoinRightHandSide;
     
+    /**
+     * Whether this selector is the build side of a hash join. In this case,
+     * the join condition is not used to restrict or filter the rows of this
+     * selector; instead, it is evaluated by the join.
+     */
+    private boolean hashJoinBuildSide;
+    
     /**
      * The list of all join conditions this selector is involved. For the query
      * "select * from nt:base as a inner join nt:base as b on a.x =
@@ -243,6 +250,7 @@ public class SelectorImpl extends SourceImpl {
         plan = null;
         selectorConstraints.clear();
         isParent = false;
+        hashJoinBuildSide = false;
         joinCondition = null;
         allJoinConditions.clear();
     }
@@ -285,6 +293,47 @@ public class SelectorImpl extends SourceImpl {
         return plan;
     }
     
+    /**
+     * Get the best plan to read all rows of this selector once, without
+     * using the join condition. This does not change the prepared plan.
+     * 
+     * @return the plan for the build side of a hash join
+     */
+    SelectorExecutionPlan getHashJoinBuildPlan() {
+        boolean old = hashJoinBuildSide;
+        hashJoinBuildSide = true;
+        try {
+            return query.getBestSelectorExecutionPlan(createFilter(true));
+        } finally {
+            hashJoinBuildSide = old;
+        }
+    }
+
+    /**
+     * Use this selector as the build side of a hash join, using the given
+     * plan.
+     * 
+     * @param p the plan (see {@link #getHashJoinBuildPlan()})
+     */
+    void prepareHashJoinBuildSide(SelectorExecutionPlan p) {
+        plan = p;
+        hashJoinBuildSide = true;
+    }
+    
+    boolean isHashJoinBuildSide() {
+        return hashJoinBuildSide;
+    }
+    
+    /**
+     * Change whether this selector is the build side of a hash join. This is
+     * used to fall back to a nested loop join if there are too many rows.
+     * 
+     * @param hashJoinBuildSide the new value
+     */
+    void setHashJoinBuildSide(boolean hashJoinBuildSide) {
+        this.hashJoinBuildSide = hashJoinBuildSide;
+    }
+    
     @Override
     public void setQueryConstraint(ConstraintImpl queryConstraint) {
         this.queryConstraint = queryConstraint;
@@ -358,7 +407,7 @@ public class SelectorImpl extends SourceImpl {
     public FilterImpl createFilter(boolean preparing) {
         FilterImpl f = new FilterImpl(this, query.getStatement(), query.getSettings());
         f.setPreparing(preparing);
-        if (joinCondition != null) {
+        if (joinCondition != null && !hashJoinBuildSide) {
             joinCondition.restrict(f);
         }
         // rep:excerpt handling: create a (fake) restriction
@@ -441,7 +490,7 @@ public class SelectorImpl extends SourceImpl {
                 return false;
             }
         }
-        if (joinCondition != null && !joinCondition.evaluate()) {
+        if (joinCondition != null && !hashJoinBuildSide && !joinCondition.evaluate()) {
             return false;
         }
         return true;
@@ -478,7 +527,26 @@ public class SelectorImpl extends SourceImpl {
      * @return the path
      */
     public String currentPath() {
-        return cursor == null ? null : currentRow.getPath();
+        return currentRow == null ? null : currentRow.getPath();
+    }
+    
+    /**
+     * Get the current row.
+     * 
+     * @return the row, or null
+     */
+    IndexRow currentRow() {
+        return currentRow;
+    }
+    
+    /**
+     * Set the current row. This is used by hash joins, to go back to a row
+     * that was read before.
+     * 
+     * @param row the row
+     */
+    void setCurrentRow(IndexRow row) {
+        currentRow = row;
     }
     
     /**
@@ -27,12 +27,19 @@ public class JoinExecutionPlan implements ExecutionPlan {
     private final JoinImpl join;
     private final ExecutionPlan leftPlan, rightPlan;
     private final double estimatedCost;
+    private final boolean hashJoin;
     
     public JoinExecutionPlan(JoinImpl join, ExecutionPlan leftPlan, ExecutionPlan rightPlan, double estimatedCost) {
+        this(join, leftPlan, rightPlan, estimatedCost, false);
+    }
+    
+    public JoinExecutionPlan(JoinImpl join, ExecutionPlan leftPlan, ExecutionPlan rightPlan, 
+            double estimatedCost, boolean hashJoin) {
         this.join = join;
         this.leftPlan = leftPlan;
         this.rightPlan = rightPlan;
         this.estimatedCost = estimatedCost;
+        this.hashJoin = hashJoin;
     }
     
     @Override
@@ -52,4 +59,15 @@ public class JoinExecutionPlan implements ExecutionPlan {
         return rightPlan;
     }
 
+    /**
+     * Whether the join is evaluated as a hash join. If yes, the right plan is
+     * the plan to read all rows of the right hand side once; otherwise the
+     * join is evaluated as a nested loop join.
+     * 
+     * @return true for a hash join
+     */
+    public boolean isHashJoin() {
+        return hashJoin;
+    }
+
 }
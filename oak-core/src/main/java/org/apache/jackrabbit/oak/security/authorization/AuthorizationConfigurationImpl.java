@@ -21,6 +21,7 @@ import java.util.Collections;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import javax.annotation.CheckForNull;
 import javax.annotation.Nonnull;
 import javax.jcr.security.AccessControlManager;
 
@@ -39,6 +40,7 @@ import org.apache.jackrabbit.oak.plugins.version.VersionablePathHook;
 import org.apache.jackrabbit.oak.security.authorization.accesscontrol.AccessControlImporter;
 import org.apache.jackrabbit.oak.security.authorization.accesscontrol.AccessControlManagerImpl;
 import org.apache.jackrabbit.oak.security.authorization.accesscontrol.AccessControlValidatorProvider;
+import org.apache.jackrabbit.oak.security.authorization.permission.GlobalPermissionEntryCache;
 import org.apache.jackrabbit.oak.security.authorization.permission.PermissionHook;
 import org.apache.jackrabbit.oak.security.authorization.permission.PermissionProviderImpl;
 import org.apache.jackrabbit.oak.security.authorization.permission.PermissionStoreValidatorProvider;
@@ -110,9 +112,18 @@ import org.apache.jackrabbit.oak.spi.xml.ProtectedItemImporter;
                         @PropertyOption(name = ControlFlag.SUFFICIENT_NAME, value = ControlFlag.SUFFICIENT_NAME),
                         @PropertyOption(name = ControlFlag.REQUISITE_NAME, value = ControlFlag.REQUISITE_NAME)
                 },
-                value = ControlFlag.REQUISITE_NAME)
+                value = ControlFlag.REQUISITE_NAME),
+        @Property(name = GlobalPermissionEntryCache.GLOBAL_CACHE_SIZE_PARAM,
+                label = "Global Permission Cache Size",
+                description = "Maximal number of permission entries shared by all sessions. A value of 0 disables the shared cache.",
+                longValue = GlobalPermissionEntryCache.DEFAULT_GLOBAL_CACHE_SIZE)
 })
 public class AuthorizationConfigurationImpl extends ConfigurationBase implements AuthorizationConfiguration {
+
+    private GlobalPermissionEntryCache permissionEntryCache;
+
+    private boolean permissionEntryCacheInitialized;
+
     public AuthorizationConfigurationImpl() {
         super();
     }
@@ -187,7 +198,27 @@ public class AuthorizationConfigurationImpl extends ConfigurationBase implements
     @Nonnull
     @Override
     public PermissionProvider getPermissionProvider(Root root, String workspaceName, Set<Principal> principals) {
-        return new PermissionProviderImpl(root, workspaceName, principals, this);
+        return new PermissionProviderImpl(root, workspaceName, principals, this, getPermissionEntryCache());
+    }
+
+    /**
+     * Returns the permission entry cache shared by all permission providers
+     * created by this configuration.
+     *
+     * @return the shared cache or {@code null} if it has been disabled.
+     */
+    @CheckForNull
+    public synchronized GlobalPermissionEntryCache getPermissionEntryCache() {
+        if (!permissionEntryCacheInitialized) {
+            long size = getParameters().getConfigValue(
+                    GlobalPermissionEntryCache.GLOBAL_CACHE_SIZE_PARAM,
+                    GlobalPermissionEntryCache.DEFAULT_GLOBAL_CACHE_SIZE);
+            if (size > 0) {
+                permissionEntryCache = new GlobalPermissionEntryCache(size);
+            }
+            permissionEntryCacheInitialized = true;
+        }
+        return permissionEntryCache;
     }
 
 }
@@ -47,6 +47,7 @@ import org.apache.jackrabbit.oak.spi.security.authorization.permission.Permissio
 import org.apache.jackrabbit.oak.spi.security.authorization.permission.Permissions;
 import org.apache.jackrabbit.oak.spi.security.authorization.permission.RepositoryPermission;
 import org.apache.jackrabbit.oak.spi.security.authorization.permission.TreePermission;
+import org.apache.jackrabbit.oak.spi.security.authorization.restriction.RestrictionPattern;
 import org.apache.jackrabbit.oak.spi.security.authorization.restriction.RestrictionProvider;
 import org.apache.jackrabbit.oak.spi.security.privilege.PrivilegeBits;
 import org.apache.jackrabbit.oak.spi.security.privilege.PrivilegeBitsProvider;
@@ -87,7 +88,8 @@ final class CompiledPermissionImpl implements CompiledPermissions, PermissionCon
     private CompiledPermissionImpl(@Nonnull Set<Principal> principals,
                                    @Nonnull ImmutableRoot root, @Nonnull String workspaceName,
                                    @Nonnull RestrictionProvider restrictionProvider,
-                                   @Nonnull AuthorizationConfiguration acConfig) {
+                                   @Nonnull AuthorizationConfiguration acConfig,
+                                   @Nullable GlobalPermissionEntryCache globalCache) {
         this.root = root;
         this.workspaceName = workspaceName;
 
@@ -108,7 +110,7 @@ final class CompiledPermissionImpl implements CompiledPermissions, PermissionCon
         }
 
         ConfigurationParameters options = acConfig.getParameters();
-        PermissionEntryCache cache = new PermissionEntryCache();
+        PermissionEntryCache cache = new PermissionEntryCache(globalCache, workspaceName);
         userStore = new PermissionEntryProviderImpl(store, cache, userNames, options);
         groupStore = new PermissionEntryProviderImpl(store, cache, groupNames, options);
 
@@ -117,12 +119,13 @@ final class CompiledPermissionImpl implements CompiledPermissions, PermissionCon
 
     static CompiledPermissions create(@Nonnull ImmutableRoot root, @Nonnull String workspaceName,
                                       @Nonnull Set<Principal> principals,
-                                      @Nonnull AuthorizationConfiguration acConfig) {
+                                      @Nonnull AuthorizationConfiguration acConfig,
+                                      @Nullable GlobalPermissionEntryCache globalCache) {
         Tree permissionsTree = PermissionUtil.getPermissionsRoot(root, workspaceName);
         if (!permissionsTree.exists() || principals.isEmpty()) {
             return NoPermissions.getInstance();
         } else {
-            return new CompiledPermissionImpl(principals, root, workspaceName, acConfig.getRestrictionProvider(), acConfig);
+            return new CompiledPermissionImpl(principals, root, workspaceName, acConfig.getRestrictionProvider(), acConfig, globalCache);
         }
     }
 
@@ -440,6 +443,7 @@ final class CompiledPermissionImpl implements CompiledPermissions, PermissionCon
 
         private boolean skipped;
         private ReadStatus readStatus;
+        private Boolean restricted;
 
         private TreePermissionImpl(ImmutableTree tree, int treeType, TreePermission parentPermission) {
             this.tree = tree;
@@ -465,6 +469,9 @@ final class CompiledPermissionImpl implements CompiledPermissions, PermissionCon
             if (!isAcTree && readableTree) {
                 return true;
             }
+            if (readStatus == null && canInheritReadStatus()) {
+                readStatus = parent.readStatus;
+            }
             if (readStatus == null) {
                 readStatus = ReadStatus.DENY_THIS;
 
@@ -550,6 +557,43 @@ final class CompiledPermissionImpl implements CompiledPermissions, PermissionCon
         private boolean isAcTree() {
             return type == TreeTypeProvider.TYPE_AC;
         }
+
+        /**
+         * The read status of a tree without entries of its own is the same as
+         * the one of its parent, as long as no entry in the hierarchy contains
+         * restrictions: the same entries are evaluated in the same order. This
+         * avoids walking up the hierarchy for every node while traversing
+         * large subtrees.
+         */
+        private boolean canInheritReadStatus() {
+            return parent != null && parent.readStatus != null && parent.type == type
+                    && !getUserEntries().hasNext() && !getGroupEntries().hasNext()
+                    && !isRestricted();
+        }
+
+        /**
+         * @return {@code true} if any of the entries defined for this tree or
+         * one of its ancestors contains restrictions.
+         */
+        private boolean isRestricted() {
+            if (restricted == null) {
+                boolean r = hasRestrictions(getUserEntries()) || hasRestrictions(getGroupEntries());
+                if (!r && parent != null) {
+                    r = parent.isRestricted();
+                }
+                restricted = r;
+            }
+            return restricted;
+        }
+
+        private boolean hasRestrictions(@Nonnull Iterator<PermissionEntry> entries) {
+            while (entries.hasNext()) {
+                if (entries.next().restriction != RestrictionPattern.EMPTY) {
+                    return true;
+                }
+            }
+            return false;
+        }
     }
 
     private static final class LazyIterator extends AbstractLazyIterator<PermissionEntry> {
@@ -0,0 +1,184 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.jackrabbit.oak.security.authorization.permission;
+
+import java.util.Collection;
+import javax.annotation.CheckForNull;
+import javax.annotation.Nonnull;
+
+import com.google.common.base.Objects;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.Weigher;
+import org.apache.jackrabbit.oak.cache.CacheStats;
+import org.apache.jackrabbit.oak.spi.state.EqualsDiff;
+import org.apache.jackrabbit.oak.spi.state.NodeState;
+
+/**
+ * {@code GlobalPermissionEntryCache} holds the fully loaded permission entries of principals and is shared by all
+ * sessions of a repository. The entries are keyed by workspace and principal name, together with the state of the
+ * principal's permission store they were loaded from (see {@link PermissionStore#getPrincipalState(String)}).
+ * Cached entries are only returned to sessions for which that state is unchanged; since the node states of unchanged
+ * subtrees are compared without reading their content, this check is cheap. Sessions on a different revision load
+ * the entries again and replace the cached ones.
+ * <p>
+ * The size of the cache is bounded by the total number of permission entries held.
+ */
+public class GlobalPermissionEntryCache {
+
+    /**
+     * Configuration parameter specifying the maximal number of permission entries held by the global cache.
+     * A value of {@code 0} disables the cache.
+     */
+    public static final String GLOBAL_CACHE_SIZE_PARAM = "globalCacheSize";
+
+    public static final long DEFAULT_GLOBAL_CACHE_SIZE = 100000;
+
+    private final Cache<Key, Entries> cache;
+
+    private final CacheStats stats;
+
+    public GlobalPermissionEntryCache(long maxEntries) {
+        Weigher<Key, Entries> weigher = new Weigher<Key, Entries>() {
+            @Override
+            public int weigh(Key key, Entries value) {
+                int weight = 1;
+                for (Collection<PermissionEntry> entries : value.ppe.getEntries().values()) {
+                    weight += entries.size();
+                }
+                return weight;
+            }
+        };
+        cache = CacheBuilder.newBuilder().
+                maximumWeight(maxEntries).
+                weigher(weigher).
+                recordStats().
+                build();
+        stats = new CacheStats(cache, "Permission-Entries", weigher, maxEntries);
+    }
+
+    @Nonnull
+    public CacheStats getStats() {
+        return stats;
+    }
+
+    /**
+     * Returns the cached entries of the given principal if they were loaded from the same state of the permission
+     * store.
+     *
+     * @param store the permission store of the calling session
+     * @param workspaceName the workspace name
+     * @param principalName the principal name
+     * @return the fully loaded entries or {@code null} if not cached.
+     */
+    @CheckForNull
+    PrincipalPermissionEntries getIfPresent(@Nonnull PermissionStore store,
+                                            @Nonnull String workspaceName,
+                                            @Nonnull String principalName) {
+        NodeState state = store.getPrincipalState(principalName);
+        if (state == null) {
+            return null;
+        }
+        return get(new Key(workspaceName, principalName), state);
+    }
+
+    /**
+     * Returns the fully loaded entries of the given principal, loading them from the store if needed. Principals
+     * without any entries are not cached.
+     *
+     * @param store the permission store of the calling session
+     * @param workspaceName the workspace name
+     * @param principalName the principal name
+     * @return the fully loaded entries
+     */
+    @Nonnull
+    PrincipalPermissionEntries load(@Nonnull PermissionStore store,
+                                    @Nonnull String workspaceName,
+                                    @Nonnull String principalName) {
+        NodeState state = store.getPrincipalState(principalName);
+        if (state == null) {
+            return store.load(principalName);
+        }
+        Key key = new Key(workspaceName, principalName);
+        PrincipalPermissionEntries ppe = get(key, state);
+        if (ppe == null) {
+            ppe = store.load(principalName);
+            cache.put(key, new Entries(state, ppe));
+        }
+        return ppe;
+    }
+
+    public void clear() {
+        cache.invalidateAll();
+    }
+
+    @CheckForNull
+    private PrincipalPermissionEntries get(@Nonnull Key key, @Nonnull NodeState state) {
+        Entries entries = cache.getIfPresent(key);
+        if (entries == null) {
+            return null;
+        }
+        if (entries.state != state && !EqualsDiff.equals(entries.state, state)) {
+            // loaded from a different revision of the permission store
+            return null;
+        }
+        return entries.ppe;
+    }
+
+    private static final class Key {
+
+        private final String workspaceName;
+        private final String principalName;
+
+        private Key(String workspaceName, String principalName) {
+            this.workspaceName = workspaceName;
+            this.principalName = principalName;
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hashCode(workspaceName, principalName);
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (o instanceof Key) {
+                Key other = (Key) o;
+                return principalName.equals(other.principalName)
+                        && workspaceName.equals(other.workspaceName);
+            }
+            return false;
+        }
+    }
+
+    /**
+     * The entries of a principal, and the state of the permission store they were loaded from.
+     */
+    private static final class Entries {
+
+        private final NodeState state;
+        private final PrincipalPermissionEntries ppe;
+
+        private Entries(NodeState state, PrincipalPermissionEntries ppe) {
+            this.state = state;
+            this.ppe = ppe;
+        }
+    }
+}
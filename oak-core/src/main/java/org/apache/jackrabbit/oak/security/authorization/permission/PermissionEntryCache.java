@@ -23,36 +23,51 @@ import java.util.Map;
 import java.util.Set;
 import java.util.TreeSet;
 
+import javax.annotation.CheckForNull;
 import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
 
 /**
  * {@code PermissionEntryCache} caches the permission entries of principals.
  * The cache is held locally for each session and contains a version of the principal permission
  * entries of the session that read them last.
+ * <p>
+ * Fully loaded entries are obtained from the {@link GlobalPermissionEntryCache} if one is
+ * present, such that sessions looking at the same revision of the permission store share
+ * them instead of reading them again. Entries obtained from the global cache must not be
+ * modified.
  *
  * TODO:
- * - report cache usage metrics
  * - limit size of local caches based on ppe sizes. the current implementation loads all ppes. this can get a memory
  *   problem, as well as a performance problem for principals with many entries. principals with many entries must
- *   fallback to the direct store.load() methods when providing the entries. if those principals with many entries
- *   are used often, they might get elected to live in the global cache; memory permitting.
+ *   fallback to the direct store.load() methods when providing the entries.
  */
 public class PermissionEntryCache {
 
     private final Map<String, PrincipalPermissionEntries> entries = new HashMap<String, PrincipalPermissionEntries>();
 
+    private final GlobalPermissionEntryCache globalCache;
+
+    private final String workspaceName;
+
+    public PermissionEntryCache() {
+        this(null, "");
+    }
+
+    public PermissionEntryCache(@Nullable GlobalPermissionEntryCache globalCache, @Nonnull String workspaceName) {
+        this.globalCache = globalCache;
+        this.workspaceName = workspaceName;
+    }
+
     @Nonnull
     public PrincipalPermissionEntries getEntries(@Nonnull PermissionStore store,
                                                  @Nonnull String principalName) {
         PrincipalPermissionEntries ppe = entries.get(principalName);
-        if (ppe == null) {
-            ppe = store.load(principalName);
+        if (ppe == null || !ppe.isFullyLoaded()) {
+            ppe = (globalCache == null)
+                    ? store.load(principalName)
+                    : globalCache.load(store, workspaceName, principalName);
             entries.put(principalName, ppe);
-        } else {
-            if (!ppe.isFullyLoaded()) {
-                ppe = store.load(principalName);
-                entries.put(principalName, ppe);
-            }
         }
         return ppe;
     }
@@ -77,13 +92,16 @@ public class PermissionEntryCache {
                      @Nonnull Collection<PermissionEntry> ret,
                      @Nonnull String principalName,
                      @Nonnull String path) {
-        PrincipalPermissionEntries ppe = entries.get(principalName);
+        PrincipalPermissionEntries ppe = getCachedEntries(store, principalName);
         if (ppe == null) {
             ppe = new PrincipalPermissionEntries(principalName);
             entries.put(principalName, ppe);
         }
         Collection<PermissionEntry> pes = ppe.getEntries().get(path);
-        if (pes == null) {
+        if (pes == null && ppe.isFullyLoaded()) {
+            // no entries for this path
+            return;
+        } else if (pes == null) {
             pes = store.load(null, principalName, path);
             if (pes == null) {
                 pes = Collections.emptySet();
@@ -99,7 +117,7 @@ public class PermissionEntryCache {
     public long getNumEntries(@Nonnull PermissionStore store,
                               @Nonnull String principalName,
                               long max) {
-        PrincipalPermissionEntries ppe = entries.get(principalName);
+        PrincipalPermissionEntries ppe = getCachedEntries(store, principalName);
         return ppe == null
                 ? store.getNumEntries(principalName, max)
                 : ppe.getEntries().size();
@@ -108,4 +126,17 @@ public class PermissionEntryCache {
     public void flush(@Nonnull Set<String> principalNames) {
         entries.keySet().removeAll(principalNames);
     }
+
+    @CheckForNull
+    private PrincipalPermissionEntries getCachedEntries(@Nonnull PermissionStore store,
+                                                        @Nonnull String principalName) {
+        PrincipalPermissionEntries ppe = entries.get(principalName);
+        if (ppe == null && globalCache != null) {
+            ppe = globalCache.getIfPresent(store, workspaceName, principalName);
+            if (ppe != null) {
+                entries.put(principalName, ppe);
+            }
+        }
+        return ppe;
+    }
 }
\ No newline at end of file
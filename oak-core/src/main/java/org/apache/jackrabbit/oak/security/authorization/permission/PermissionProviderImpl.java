@@ -58,6 +58,12 @@ public class PermissionProviderImpl implements PermissionProvider, AccessControl
 
     public PermissionProviderImpl(@Nonnull Root root, @Nonnull String workspaceName, @Nonnull Set<Principal> principals,
                                   @Nonnull AuthorizationConfiguration acConfig) {
+        this(root, workspaceName, principals, acConfig, null);
+    }
+
+    public PermissionProviderImpl(@Nonnull Root root, @Nonnull String workspaceName, @Nonnull Set<Principal> principals,
+                                  @Nonnull AuthorizationConfiguration acConfig,
+                                  @Nullable GlobalPermissionEntryCache globalCache) {
         this.root = root;
         this.workspaceName = workspaceName;
         this.acConfig = acConfig;
@@ -67,7 +73,7 @@ public class PermissionProviderImpl implements PermissionProvider, AccessControl
         if (principals.contains(SystemPrincipal.INSTANCE) || isAdmin(principals)) {
             compiledPermissions = AllPermissions.getInstance();
         } else {
-            compiledPermissions = CompiledPermissionImpl.create(immutableRoot, workspaceName, principals, acConfig);
+            compiledPermissions = CompiledPermissionImpl.create(immutableRoot, workspaceName, principals, acConfig, globalCache);
         }
 
         flag = ControlFlag.valueOf(acConfig.getParameters().getConfigValue(AggregatedPermissionProvider.PARAM_CONTROL_FLAG, ControlFlag.REQUISITE_NAME));
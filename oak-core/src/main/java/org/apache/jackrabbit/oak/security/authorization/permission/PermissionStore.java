@@ -23,6 +23,8 @@ import javax.annotation.CheckForNull;
 import javax.annotation.Nonnull;
 import javax.annotation.Nullable;
 
+import org.apache.jackrabbit.oak.spi.state.NodeState;
+
 /**
  * The permission store is used to store and provide access control permissions for principals. It is responsible to
  * load and store the permissions in an optimal form in the repository and must not cache them.
@@ -49,4 +51,15 @@ public interface PermissionStore {
 
     long getNumEntries(@Nonnull String principalName, long max);
 
+    /**
+     * Returns the state of the permission entries of the given principal, such that cached entries can be compared
+     * against the revision of the permission store this store reads from.
+     *
+     * @param principalName name of the principal
+     * @return the state of the principal's permission entries or {@code null} if no entries exist for the given
+     * principal or the state is not available.
+     */
+    @CheckForNull
+    NodeState getPrincipalState(@Nonnull String principalName);
+
 }
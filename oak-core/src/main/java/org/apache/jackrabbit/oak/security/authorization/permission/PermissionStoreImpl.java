@@ -27,8 +27,10 @@ import javax.annotation.Nullable;
 
 import org.apache.jackrabbit.oak.api.Root;
 import org.apache.jackrabbit.oak.api.Tree;
+import org.apache.jackrabbit.oak.plugins.tree.ImmutableTree;
 import org.apache.jackrabbit.oak.spi.security.authorization.permission.PermissionConstants;
 import org.apache.jackrabbit.oak.spi.security.authorization.restriction.RestrictionProvider;
+import org.apache.jackrabbit.oak.spi.state.NodeState;
 import org.apache.jackrabbit.oak.util.TreeUtil;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -116,6 +118,17 @@ public class PermissionStoreImpl implements PermissionStore {
         return tree == null ? 0 : tree.getChildrenCount(max);
     }
 
+    @Override
+    @CheckForNull
+    public NodeState getPrincipalState(@Nonnull String principalName) {
+        Tree tree = getPrincipalRoot(principalName);
+        if (tree instanceof ImmutableTree) {
+            return ((ImmutableTree) tree).getNodeState();
+        } else {
+            return null;
+        }
+    }
+
     @Override
     @Nonnull
     public PrincipalPermissionEntries load(@Nonnull String principalName) {
@@ -55,6 +55,13 @@ import org.slf4j.LoggerFactory;
  * The current implementation uses a fixed threshold value of {@link #getMembershipSizeThreshold()} before creating
  * {@link #NT_REP_MEMBER_REFERENCES} sub nodes.
  *
+ * The memberships of an authorizable are resolved through the reference index, which maps the content id of a member
+ * to the {@link #REP_MEMBERS} properties referencing it and is maintained upon commit. Membership tests are resolved
+ * the same way if inherited members are included, walking up from the member through its (typically few) groups
+ * instead of walking down through the (potentially many) members of a group. As the reference index doesn't reflect
+ * transient modifications, the latter is still used if the root has pending changes. Declared membership tests read
+ * the {@link #REP_MEMBERS} of the group directly.
+ *
  * Example Group with few members (irrelevant properties excluded):
  * <xmp>
      {
@@ -106,13 +113,27 @@ class MembershipProvider extends AuthorizableBaseProvider {
 
     private final MembershipWriter writer = new MembershipWriter();
 
+    private final boolean indexed;
+
     /**
      * Creates a new membership provider
      * @param root the current root
      * @param config the security configuration
      */
     MembershipProvider(Root root, ConfigurationParameters config) {
+        this(root, config, true);
+    }
+
+    /**
+     * Creates a new membership provider
+     * @param root the current root
+     * @param config the security configuration
+     * @param indexed {@code false} if the references of the given root have not been indexed yet, in which case
+     *                membership tests always walk through the group members.
+     */
+    MembershipProvider(Root root, ConfigurationParameters config, boolean indexed) {
         super(root, config);
+        this.indexed = indexed;
     }
 
     /**
@@ -287,6 +308,9 @@ class MembershipProvider extends AuthorizableBaseProvider {
      * @return true if the group has given member.
      */
     boolean isMember(Tree groupTree, Tree authorizableTree, boolean includeInherited) {
+        if (includeInherited && isMembershipIndexed()) {
+            return isInheritedMember(groupTree, authorizableTree);
+        }
         return isMember(groupTree, getContentID(authorizableTree), includeInherited);
     }
 
@@ -319,6 +343,35 @@ class MembershipProvider extends AuthorizableBaseProvider {
         return false;
     }
 
+    /**
+     * Returns {@code true} if the given {@code groupTree} is contained in the inherited memberships of the given
+     * {@code authorizableTree}. The memberships are looked up lazily, so this returns as soon as the group is found.
+     *
+     * @param groupTree the group tree
+     * @param authorizableTree the authorizable to check
+     * @return true if the authorizable is an inherited member of the group.
+     */
+    private boolean isInheritedMember(Tree groupTree, Tree authorizableTree) {
+        String groupPath = groupTree.getPath();
+        Iterator<String> memberships = getMembership(authorizableTree, true);
+        while (memberships.hasNext()) {
+            if (groupPath.equals(memberships.next())) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Returns {@code true} if the memberships can be looked up in the reference index, i.e. if the references
+     * of the root have been indexed and the root doesn't contain any transient modifications.
+     *
+     * @return {@code true} if the memberships are indexed.
+     */
+    private boolean isMembershipIndexed() {
+        return indexed && !root.hasPendingChanges();
+    }
+
     /**
      * Adds a new member to the given {@code groupTree}.
      * @param groupTree the group to add the member to
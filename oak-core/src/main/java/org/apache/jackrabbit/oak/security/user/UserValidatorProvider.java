@@ -46,7 +46,8 @@ class UserValidatorProvider extends ValidatorProvider {
     @Override @Nonnull
     public Validator getRootValidator(
             NodeState before, NodeState after, CommitInfo info) {
-        membershipProvider = new MembershipProvider(new ImmutableRoot(after), config);
+        // the references of the after state are not indexed yet
+        membershipProvider = new MembershipProvider(new ImmutableRoot(after), config, false);
         return new UserValidator(new ImmutableTree(before), new ImmutableTree(after), this);
     }
 
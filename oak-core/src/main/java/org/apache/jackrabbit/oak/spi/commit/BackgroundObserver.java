@@ -22,6 +22,7 @@ package org.apache.jackrabbit.oak.spi.commit;
 import static com.google.common.base.Preconditions.checkNotNull;
 import static com.google.common.base.Preconditions.checkState;
 import static com.google.common.collect.Queues.newArrayBlockingQueue;
+import static java.util.concurrent.TimeUnit.NANOSECONDS;
 
 import java.io.Closeable;
 import java.lang.Thread.UncaughtExceptionHandler;
@@ -49,13 +50,18 @@ import org.slf4j.LoggerFactory;
  * To help prevent such cases, any sequential external content changes that
  * the background observer thread has yet to process are automatically merged
  * to just one change.
+ * <p>
+ * Each queued change remembers when the oldest content change it covers
+ * was observed. Subclasses can use this through {@link #getQueueDelay()}
+ * and {@link #removed(int, long)} to react to slow consumers based on how
+ * far they lag behind, rather than only on the length of the queue.
  */
 public class BackgroundObserver implements Observer, Closeable {
 
     /**
      * Signal for the background thread to stop processing changes.
      */
-    private static final ContentChange STOP = new ContentChange(null, null);
+    private static final ContentChange STOP = new ContentChange(null, null, 0);
 
     /**
      * The receiving observer being notified off the background thread.
@@ -80,9 +86,17 @@ public class BackgroundObserver implements Observer, Closeable {
     private static class ContentChange {
         private final NodeState root;
         private final CommitInfo info;
-        ContentChange(NodeState root, CommitInfo info) {
+
+        /**
+         * Time stamp ({@link System#nanoTime()}) of the oldest content
+         * change covered by this change.
+         */
+        private final long created;
+
+        ContentChange(NodeState root, CommitInfo info, long created) {
             this.root = root;
             this.info = info;
+            this.created = created;
         }
     }
 
@@ -98,6 +112,12 @@ public class BackgroundObserver implements Observer, Closeable {
      */
     private boolean full;
 
+    /**
+     * Time stamp of the first content change dropped since the queue
+     * became full.
+     */
+    private long skippedSince;
+
     /**
      * Current background task
      */
@@ -114,6 +134,7 @@ public class BackgroundObserver implements Observer, Closeable {
                 try {
                     ContentChange change = queue.poll();
                     while (change != null && change != STOP) {
+                        removed(queue.size(), NANOSECONDS.toMillis(System.nanoTime() - change.created));
                         observer.contentChanged(change.root, change.info);
                         change = queue.poll();
                     }
@@ -171,6 +192,27 @@ public class BackgroundObserver implements Observer, Closeable {
      */
     protected void added(int queueSize) { }
 
+    /**
+     * Called on the background thread whenever an item has been removed
+     * from the queue, right before it is passed on to the receiving observer.
+     * @param queueSize  size of the queue
+     * @param delay      time in milliseconds the removed item has been waiting
+     *                   to be processed
+     */
+    protected void removed(int queueSize, long delay) { }
+
+    /**
+     * Time the oldest content change in the queue has been waiting to be processed.
+     * @return  the delay in milliseconds or {@code 0} if the queue is empty.
+     */
+    public long getQueueDelay() {
+        ContentChange change = queue.peek();
+        if (change == null || change == STOP) {
+            return 0;
+        }
+        return NANOSECONDS.toMillis(System.nanoTime() - change.created);
+    }
+
     /**
      * Clears the change queue and signals the background thread to stop
      * without making any further {@link #contentChanged(NodeState, CommitInfo)}
@@ -199,12 +241,17 @@ public class BackgroundObserver implements Observer, Closeable {
         checkState(!stopped);
         checkNotNull(root);
 
+        // The change covers all changes skipped while the queue was full
+        long created = full ? skippedSince : System.nanoTime();
+
         if (info == null && last != null && last.info == null) {
             // This is an external change. If the previous change was
             // also external, we can drop it from the queue (since external
             // changes in any case can cover multiple commits) to help
             // prevent the queue from filling up too fast.
-            queue.remove(last);
+            if (queue.remove(last)) {
+                created = last.created;
+            }
             full = false;
         }
 
@@ -213,15 +260,20 @@ public class BackgroundObserver implements Observer, Closeable {
             // If the queue is full, some commits have already been skipped
             // so we need to drop the possible local commit information as
             // only external changes can be merged together to larger chunks.
-            change = new ContentChange(root, null);
+            change = new ContentChange(root, null, created);
         } else {
-            change = new ContentChange(root, info);
+            change = new ContentChange(root, info, created);
         }
 
         // Try to add this change to the queue without blocking, and
         // mark the queue as full if there wasn't enough space
+        boolean wasFull = full;
         full = !queue.offer(change);
 
+        if (full && !wasFull) {
+            skippedSince = change.created;
+        }
+
         if (!full) {
             // Keep track of the last change added, so we can do the
             // compacting of external changes shown above.
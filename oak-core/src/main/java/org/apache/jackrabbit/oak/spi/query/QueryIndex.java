@@ -19,7 +19,9 @@
 package org.apache.jackrabbit.oak.spi.query;
 
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
 import javax.annotation.CheckForNull;
 
@@ -291,6 +293,7 @@ public interface QueryIndex {
             protected NodeState definition;
             protected PropertyRestriction propRestriction;
             protected String pathPrefix = "/";
+            protected Map<String, Object> attributes = new HashMap<String, Object>();
 
             public Builder setCostPerExecution(double costPerExecution) {
                 this.costPerExecution = costPerExecution;
@@ -347,123 +350,160 @@ public interface QueryIndex {
                 return this;
             }
 
+            /**
+             * Set an index specific attribute. Indexes can use attributes to
+             * pass information from the planning phase to the query phase.
+             *
+             * @param name the attribute name
+             * @param value the value
+             * @return this
+             */
+            public Builder setAttribute(String name, Object value) {
+                this.attributes.put(name, value);
+                return this;
+            }
+
+            /**
+             * Get the index specific attribute of a plan that was built by a
+             * builder.
+             *
+             * @param plan the plan
+             * @param name the attribute name
+             * @return the attribute value, or null if not set or if the plan
+             *         was not built by a builder
+             */
+            @CheckForNull
+            public static Object getAttribute(IndexPlan plan, String name) {
+                if (plan instanceof BuiltPlan) {
+                    return ((BuiltPlan) plan).attributes.get(name);
+                }
+                return null;
+            }
+
             public IndexPlan build() {
+                return new BuiltPlan();
+            }
+
+            /**
+             * A plan built by the builder.
+             */
+            private class BuiltPlan implements IndexPlan {
                 
-                return new IndexPlan() {
-                    
-                    private final double costPerExecution = 
-                            Builder.this.costPerExecution;
-                    private final double costPerEntry = 
-                            Builder.this.costPerEntry;
-                    private final long estimatedEntryCount = 
-                            Builder.this.estimatedEntryCount;
-                    private Filter filter = 
-                            Builder.this.filter;
-                    private final boolean isDelayed = 
-                            Builder.this.isDelayed;
-                    private final boolean isFulltextIndex = 
-                            Builder.this.isFulltextIndex;
-                    private final boolean includesNodeData = 
-                            Builder.this.includesNodeData;
-                    private final List<OrderEntry> sortOrder = 
-                            Builder.this.sortOrder == null ?
-                            null : new ArrayList<OrderEntry>(
-                                    Builder.this.sortOrder);
-                    private final NodeState definition =
-                            Builder.this.definition;
-                    private final PropertyRestriction propRestriction =
-                            Builder.this.propRestriction;
-                    private final String pathPrefix =
-                            Builder.this.pathPrefix;
-
-                    @Override
-                    public String toString() {
-                        return String.format(
-                              "{ costPerExecution : %s,"
-                            + " costPerEntry : %s,"
-                            + " estimatedEntryCount : %s,"
-                            + " filter : %s,"
-                            + " isDelayed : %s,"
-                            + " isFulltextIndex : %s,"
-                            + " includesNodeData : %s,"
-                            + " sortOrder : %s,"
-                            + " definition : %s,"
-                            + " propertyRestriction : %s,"
-                            + " pathPrefix : %s }",
-                            costPerExecution,
-                            costPerEntry,
-                            estimatedEntryCount,
-                            filter,
-                            isDelayed,
-                            isFulltextIndex,
-                            includesNodeData,
-                            sortOrder,
-                            definition,
-                            propRestriction,
-                            pathPrefix
-                            );
-                    }
-
-                    @Override
-                    public double getCostPerExecution() {
-                        return costPerExecution;
-                    }
-
-                    @Override
-                    public double getCostPerEntry() {
-                        return costPerEntry;
-                    }
-
-                    @Override
-                    public long getEstimatedEntryCount() {
-                        return estimatedEntryCount;
-                    }
-
-                    @Override
-                    public Filter getFilter() {
-                        return filter;
-                    }
-                    
-                    @Override
-                    public void setFilter(Filter filter) {
-                        this.filter = filter;
-                    }
-
-                    @Override
-                    public boolean isDelayed() {
-                        return isDelayed;
-                    }
-
-                    @Override
-                    public boolean isFulltextIndex() {
-                        return isFulltextIndex;
-                    }
-
-                    @Override
-                    public boolean includesNodeData() {
-                        return includesNodeData;
-                    }
-
-                    @Override
-                    public List<OrderEntry> getSortOrder() {
-                        return sortOrder;
-                    }
-
-                    @Override
-                    public NodeState getDefinition() {
-                        return definition;
-                    }
-
-                    @Override
-                    public PropertyRestriction getPropertyRestriction() {
-                        return propRestriction;
-                    }
-
-                    @Override
-                    public String getPathPrefix() {
-                        return pathPrefix;
-                    }
-                };
+                private final double costPerExecution = 
+                        Builder.this.costPerExecution;
+                private final double costPerEntry = 
+                        Builder.this.costPerEntry;
+                private final long estimatedEntryCount = 
+                        Builder.this.estimatedEntryCount;
+                private Filter filter = 
+                        Builder.this.filter;
+                private final boolean isDelayed = 
+                        Builder.this.isDelayed;
+                private final boolean isFulltextIndex = 
+                        Builder.this.isFulltextIndex;
+                private final boolean includesNodeData = 
+                        Builder.this.includesNodeData;
+                private final List<OrderEntry> sortOrder = 
+                        Builder.this.sortOrder == null ?
+                        null : new ArrayList<OrderEntry>(
+                                Builder.this.sortOrder);
+                private final NodeState definition =
+                        Builder.this.definition;
+                private final PropertyRestriction propRestriction =
+                        Builder.this.propRestriction;
+                private final String pathPrefix =
+                        Builder.this.pathPrefix;
+                private final Map<String, Object> attributes =
+                        new HashMap<String, Object>(Builder.this.attributes);
+
+                @Override
+                public String toString() {
+                    return String.format(
+                          "{ costPerExecution : %s,"
+                        + " costPerEntry : %s,"
+                        + " estimatedEntryCount : %s,"
+                        + " filter : %s,"
+                        + " isDelayed : %s,"
+                        + " isFulltextIndex : %s,"
+                        + " includesNodeData : %s,"
+                        + " sortOrder : %s,"
+                        + " definition : %s,"
+                        + " propertyRestriction : %s,"
+                        + " pathPrefix : %s }",
+                        costPerExecution,
+                        costPerEntry,
+                        estimatedEntryCount,
+                        filter,
+                        isDelayed,
+                        isFulltextIndex,
+                        includesNodeData,
+                        sortOrder,
+                        definition,
+                        propRestriction,
+                        pathPrefix
+                        );
+                }
+
+                @Override
+                public double getCostPerExecution() {
+                    return costPerExecution;
+                }
+
+                @Override
+                public double getCostPerEntry() {
+                    return costPerEntry;
+                }
+
+                @Override
+                public long getEstimatedEntryCount() {
+                    return estimatedEntryCount;
+                }
+
+                @Override
+                public Filter getFilter() {
+                    return filter;
+                }
+                
+                @Override
+                public void setFilter(Filter filter) {
+                    this.filter = filter;
+                }
+
+                @Override
+                public boolean isDelayed() {
+                    return isDelayed;
+                }
+
+                @Override
+                public boolean isFulltextIndex() {
+                    return isFulltextIndex;
+                }
+
+                @Override
+                public boolean includesNodeData() {
+                    return includesNodeData;
+                }
+
+                @Override
+                public List<OrderEntry> getSortOrder() {
+                    return sortOrder;
+                }
+
+                @Override
+                public NodeState getDefinition() {
+                    return definition;
+                }
+
+                @Override
+                public PropertyRestriction getPropertyRestriction() {
+                    return propRestriction;
+                }
+
+                @Override
+                public String getPathPrefix() {
+                    return pathPrefix;
+                }
+
             }
 
         }
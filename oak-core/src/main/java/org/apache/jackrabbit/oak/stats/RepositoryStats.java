@@ -54,10 +54,45 @@ public class RepositoryStats implements RepositoryStatsMBean {
 
     private final RepositoryStatistics repoStats;
     private final TimeSeries maxQueueLength;
+    private final TimeSeries maxQueueDelay;
+
+    /**
+     * Time series without any recorded values, for statistics that are not
+     * provided.
+     */
+    private static final TimeSeries EMPTY = new TimeSeries() {
+        private final long[] values = new long[0];
+
+        @Override
+        public long[] getValuePerSecond() {
+            return values;
+        }
+
+        @Override
+        public long[] getValuePerMinute() {
+            return values;
+        }
+
+        @Override
+        public long[] getValuePerHour() {
+            return values;
+        }
+
+        @Override
+        public long[] getValuePerWeek() {
+            return values;
+        }
+    };
 
     public RepositoryStats(RepositoryStatistics repoStats, TimeSeries maxQueueLength) {
+        this(repoStats, maxQueueLength, EMPTY);
+    }
+
+    public RepositoryStats(RepositoryStatistics repoStats, TimeSeries maxQueueLength,
+            TimeSeries maxQueueDelay) {
         this.repoStats = repoStats;
         this.maxQueueLength = maxQueueLength;
+        this.maxQueueDelay = maxQueueDelay;
     }
 
     @Override
@@ -135,6 +170,11 @@ public class RepositoryStats implements RepositoryStatsMBean {
         return asCompositeData(maxQueueLength, "maximal length of observation queue");
     }
 
+    @Override
+    public CompositeData getObservationQueueMaxDelay() {
+        return asCompositeData(maxQueueDelay, "maximal delay of observation queue in milliseconds");
+    }
+
     public static final String[] ITEM_NAMES = new String[] {
             "per second", "per minute", "per hour", "per week"};
 
@@ -42,6 +42,7 @@ public class StatisticManager {
     private final QueryStatImpl queryStat = new QueryStatImpl();
     private final RepositoryStatisticsImpl repoStats;
     private final TimeSeriesMax maxQueueLength;
+    private final TimeSeriesMax maxQueueDelay;
     private final CompositeRegistration registration;
 
     /**
@@ -53,10 +54,11 @@ public class StatisticManager {
         queryStat.setEnabled(true);
         repoStats = new RepositoryStatisticsImpl(executor);
         maxQueueLength = new TimeSeriesMax(executor);
+        maxQueueDelay = new TimeSeriesMax(executor);
         registration = new CompositeRegistration(
             registerMBean(whiteboard, QueryStatManagerMBean.class, new QueryStatManager(queryStat),
                     "QueryStat", "Oak Query Statistics"),
-            registerMBean(whiteboard, RepositoryStatsMBean.class, new RepositoryStats(repoStats, maxQueueLength),
+            registerMBean(whiteboard, RepositoryStatsMBean.class, new RepositoryStats(repoStats, maxQueueLength, maxQueueDelay),
                     RepositoryStats.TYPE, "Oak Repository Statistics"));
     }
 
@@ -85,6 +87,10 @@ public class StatisticManager {
         return maxQueueLength;
     }
 
+    public TimeSeriesMax maxQueueDelayRecorder() {
+        return maxQueueDelay;
+    }
+
     /**
      * Unregister all statistics previously registered with the whiteboard passed
      * to the constructor.
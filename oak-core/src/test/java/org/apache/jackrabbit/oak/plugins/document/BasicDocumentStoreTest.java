@@ -24,7 +24,9 @@ import static org.junit.Assert.fail;
 
 import java.util.ArrayList;
 import java.util.Collections;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
 import java.util.UUID;
 
 import org.apache.jackrabbit.oak.plugins.document.mongo.MongoDocumentStore;
@@ -181,6 +183,36 @@ public class BasicDocumentStoreTest extends AbstractDocumentStoreTest {
         assertEquals(d.get("foo").toString(), "bar");
     }
 
+    @Test
+    public void testFindMultiple() {
+        String base = this.getClass().getName() + ".testFindMultiple";
+        List<UpdateOp> ops = new ArrayList<UpdateOp>();
+        List<String> ids = new ArrayList<String>();
+        for (int i = 0; i < 10; i++) {
+            String id = base + "-" + i;
+            UpdateOp up = new UpdateOp(id, true);
+            up.set("_id", id);
+            ops.add(up);
+            ids.add(id);
+        }
+        boolean success = super.ds.create(Collection.NODES, ops);
+        assertTrue(success);
+        removeMe.addAll(ids);
+
+        // read one of them into the cache, add a non-existing one
+        assertNotNull(super.ds.find(Collection.NODES, ids.get(0)));
+        List<String> keys = new ArrayList<String>(ids);
+        keys.add(base + "-" + UUID.randomUUID());
+
+        List<NodeDocument> docs = super.ds.find(Collection.NODES, keys);
+        assertEquals(ids.size(), docs.size());
+        Set<String> found = new HashSet<String>();
+        for (NodeDocument doc : docs) {
+            found.add(doc.getId());
+        }
+        assertEquals(new HashSet<String>(ids), found);
+    }
+
     @Test
     public void testQuery() {
         // create ten documents
@@ -22,6 +22,7 @@ import java.util.Collections;
 import java.util.List;
 import java.util.Random;
 import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import javax.annotation.Nonnull;
 import javax.annotation.Nullable;
@@ -31,6 +32,8 @@ import org.apache.jackrabbit.oak.spi.commit.Observer;
 import org.apache.jackrabbit.oak.spi.state.NodeState;
 import org.junit.Test;
 
+import static org.junit.Assert.assertEquals;
+
 /**
  * Tests for {@link CommitQueue}.
  */
@@ -106,4 +109,58 @@ public class CommitQueueTest {
         }
     }
 
+    @Test
+    public void exclusiveHeadUpdates() throws Exception {
+        final DocumentNodeStore store = new DocumentMK.Builder().getNodeStore();
+        final List<Exception> exceptions = Collections.synchronizedList(new ArrayList<Exception>());
+        final AtomicInteger active = new AtomicInteger();
+        final AtomicInteger seen = new AtomicInteger();
+
+        Closeable observer = store.addObserver(new Observer() {
+            @Override
+            public void contentChanged(@Nonnull NodeState root, @Nullable CommitInfo info) {
+                if (active.incrementAndGet() > 1) {
+                    exceptions.add(new Exception("Concurrent head update"));
+                }
+                try {
+                    Thread.sleep(0, 500);
+                } catch (InterruptedException e) {
+                    // ignore
+                }
+                seen.incrementAndGet();
+                active.decrementAndGet();
+            }
+        });
+        // ignore initial content change
+        seen.set(0);
+
+        List<Thread> writers = new ArrayList<Thread>();
+        for (int i = 0; i < NUM_WRITERS; i++) {
+            writers.add(new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        for (int i = 0; i < COMMITS_PER_WRITER; i++) {
+                            Commit commit = store.newCommit(null);
+                            store.done(commit, false, null);
+                        }
+                    } catch (Exception e) {
+                        exceptions.add(e);
+                    }
+                }
+            }));
+        }
+        for (Thread t : writers) {
+            t.start();
+        }
+        for (Thread t : writers) {
+            t.join();
+        }
+        observer.close();
+        store.dispose();
+        for (Exception e : exceptions) {
+            throw e;
+        }
+        assertEquals(NUM_WRITERS * COMMITS_PER_WRITER, seen.get());
+    }
 }
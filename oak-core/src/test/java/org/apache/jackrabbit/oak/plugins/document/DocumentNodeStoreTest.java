@@ -25,6 +25,7 @@ import java.util.Map;
 import java.util.SortedSet;
 import java.util.TreeSet;
 import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicInteger;
 
 import javax.annotation.CheckForNull;
@@ -290,6 +291,72 @@ public class DocumentNodeStoreTest {
         ns2.dispose();
     }
 
+    @Test
+    public void independentBackgroundOperations() throws Exception {
+        final String blockedId = Utils.getIdFromPath("/blocked");
+        final Semaphore splitStarted = new Semaphore(0);
+        final Semaphore splitBlocked = new Semaphore(0);
+        final AtomicBoolean block = new AtomicBoolean(true);
+        DocumentStore docStore = new MemoryDocumentStore() {
+            @Override
+            public <T extends Document> T find(Collection<T> collection,
+                                               String key) {
+                if (key.equals(blockedId) && block.getAndSet(false)) {
+                    splitStarted.release();
+                    splitBlocked.acquireUninterruptibly();
+                }
+                return super.find(collection, key);
+            }
+        };
+        final DocumentNodeStore store = new DocumentMK.Builder()
+                .setDocumentStore(docStore).setAsyncDelay(0).getNodeStore();
+        store.addSplitCandidate(blockedId);
+        Thread split = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                store.runBackgroundSplit();
+            }
+        });
+        split.start();
+        assertTrue(splitStarted.tryAcquire(10, SECONDS));
+
+        // write and read must not wait for the blocked split
+        store.runBackgroundWrite();
+        store.runBackgroundRead();
+        BackgroundOperationStats stats = store.getBackgroundOperationStats();
+        assertEquals(0, stats.getSplitCount());
+        assertEquals(1, stats.getWriteCount());
+        assertEquals(1, stats.getReadCount());
+
+        splitBlocked.release();
+        split.join();
+        assertEquals(1, stats.getSplitCount());
+        long total = 0;
+        for (long count : stats.getSplitDurationHistogram()) {
+            total += count;
+        }
+        assertEquals(1, total);
+
+        stats.setReadInterval(100);
+        assertEquals(100, store.getBackgroundReadDelay());
+        assertEquals(0, store.getBackgroundSplitDelay());
+        try {
+            stats.setWriteInterval(0);
+            fail("IllegalArgumentException expected");
+        } catch (IllegalArgumentException e) {
+            // expected
+        }
+        assertEquals(0, store.getBackgroundWriteDelay());
+        try {
+            store.setBackgroundSplitDelay(-1);
+            fail("IllegalArgumentException expected");
+        } catch (IllegalArgumentException e) {
+            // expected
+        }
+        assertEquals(0, store.getBackgroundSplitDelay());
+        store.dispose();
+    }
+
     @Test
     public void commitHookChangesOnBranch() throws Exception {
         final int NUM_NODES = DocumentRootBuilder.UPDATE_LIMIT / 2;
@@ -190,6 +190,16 @@ public class NodeStoreDiffTest {
             return super.find(collection, key);
         }
 
+        @Override
+        public <T extends Document> List<T> find(Collection<T> collection, List<String> keys) {
+            if(collection == Collection.NODES){
+                for (String key : keys) {
+                    paths.add(Utils.getPathFromId(key));
+                }
+            }
+            return super.find(collection, keys);
+        }
+
         void reset(){
             paths.clear();
         }
@@ -0,0 +1,166 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.jackrabbit.oak.plugins.document;
+
+import java.io.File;
+import java.io.IOException;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.jackrabbit.oak.plugins.document.cache.PersistentCache;
+import org.apache.jackrabbit.oak.plugins.document.memory.MemoryDocumentStore;
+import org.apache.jackrabbit.oak.api.Type;
+import org.apache.jackrabbit.oak.spi.commit.CommitInfo;
+import org.apache.jackrabbit.oak.spi.commit.EmptyHook;
+import org.apache.jackrabbit.oak.spi.state.NodeBuilder;
+import org.apache.jackrabbit.oak.spi.state.NodeState;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests for {@link PersistentNodeCache}.
+ */
+public class PersistentNodeCacheTest {
+
+    private File directory;
+
+    private DocumentNodeStore store;
+
+    @Before
+    public void setUp() throws IOException {
+        directory = File.createTempFile(
+                "PersistentNodeCacheTest", "dir", new File("target"));
+        directory.delete();
+        directory.mkdir();
+        store = new DocumentMK.Builder().setAsyncDelay(0).getNodeStore();
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        store.dispose();
+        FileUtils.deleteDirectory(directory);
+    }
+
+    @Test
+    public void nodeState() throws Exception {
+        NodeBuilder builder = store.getRoot().builder();
+        builder.setProperty("string", "value");
+        builder.setProperty("long", 42L);
+        builder.child("child");
+        store.merge(builder, EmptyHook.INSTANCE, CommitInfo.EMPTY);
+        DocumentNodeState root = store.getRoot();
+        PathRev key = new PathRev("/", root.getRevision());
+
+        PersistentNodeCache cache = newCache();
+        cache.putNode(key, root);
+        cache.close();
+
+        cache = newCache();
+        DocumentNodeState state = cache.getNode(key);
+        assertNotNull(state);
+        assertEquals(root.getPath(), state.getPath());
+        assertEquals(root.getRevision(), state.getRevision());
+        assertEquals(root.getLastRevision(), state.getLastRevision());
+        assertTrue(state.hasChildren);
+        assertEquals("value", state.getString("string"));
+        assertEquals(42L, state.getLong("long"));
+        assertTrue(state.equals(root));
+        cache.close();
+    }
+
+    @Test
+    public void children() throws Exception {
+        Revision rev = Revision.newRevision(1);
+        PathRev complete = new PathRev("/a", rev);
+        PathRev incomplete = new PathRev("/b", rev);
+        DocumentNodeState.Children c = new DocumentNodeState.Children();
+        c.children.add("x");
+        c.children.add("y");
+
+        PersistentNodeCache cache = newCache();
+        cache.putChildren(complete, c);
+        c.hasMore = true;
+        cache.putChildren(incomplete, c);
+        cache.close();
+
+        cache = newCache();
+        DocumentNodeState.Children read = cache.getChildren(complete);
+        assertNotNull(read);
+        assertEquals(c.children, read.children);
+        // incomplete lists are not persisted
+        assertNull(cache.getChildren(incomplete));
+        cache.close();
+    }
+
+    @Test
+    public void branchRevision() throws Exception {
+        DocumentNodeState root = store.getRoot();
+        PathRev key = new PathRev("/", root.getRevision().asBranchRevision());
+        PersistentNodeCache cache = newCache();
+        cache.putNode(key, root);
+        assertNull(cache.getNode(key));
+        cache.close();
+    }
+
+    @Test
+    public void restart() throws Exception {
+        DocumentStore docStore = new MemoryDocumentStore();
+        DocumentNodeStore ns = newStore(docStore);
+        NodeBuilder builder = ns.getRoot().builder();
+        for (int i = 0; i < 10; i++) {
+            builder.child("node" + i).setProperty("p", i);
+        }
+        ns.merge(builder, EmptyHook.INSTANCE, CommitInfo.EMPTY);
+        ns.runBackgroundOperations();
+        // read the nodes to populate the cache
+        for (int i = 0; i < 10; i++) {
+            assertTrue(ns.getRoot().getChildNode("node" + i).exists());
+        }
+        ns.dispose();
+
+        // a new node store finds the node states in the persistent cache
+        ns = newStore(docStore);
+        try {
+            PersistentCache cache = ns.getPersistentNodeCache().getCache();
+            long hits = cache.getHitCount();
+            for (int i = 0; i < 10; i++) {
+                NodeState node = ns.getRoot().getChildNode("node" + i);
+                assertEquals(i, node.getProperty("p").getValue(Type.LONG).intValue());
+            }
+            assertTrue(cache.getHitCount() >= hits + 10);
+        } finally {
+            ns.dispose();
+        }
+    }
+
+    private DocumentNodeStore newStore(DocumentStore docStore) {
+        return new DocumentMK.Builder().setAsyncDelay(0)
+                .setDocumentStore(docStore).setClusterId(1)
+                .setPersistentCache(directory.getPath(), 1024 * 1024)
+                .getNodeStore();
+    }
+
+    private PersistentNodeCache newCache() throws IOException {
+        return new PersistentNodeCache(store,
+                new PersistentCache(directory, 1024 * 1024));
+    }
+}
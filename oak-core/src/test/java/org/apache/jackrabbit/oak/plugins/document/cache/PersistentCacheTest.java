@@ -0,0 +1,170 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.jackrabbit.oak.plugins.document.cache;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class PersistentCacheTest {
+
+    private File directory;
+
+    @Before
+    public void setUp() throws IOException {
+        directory = File.createTempFile(
+                "PersistentCacheTest", "dir", new File("target"));
+        directory.delete();
+        directory.mkdir();
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        FileUtils.deleteDirectory(directory);
+    }
+
+    @Test
+    public void putAndGet() throws IOException {
+        PersistentCache cache = new PersistentCache(directory, 1024 * 1024);
+        cache.put("a", new byte[]{1, 2, 3});
+        cache.put("b", new byte[0]);
+        // existing entries are never replaced
+        cache.put("a", new byte[]{4});
+        assertArrayEquals(new byte[]{1, 2, 3}, cache.get("a"));
+        assertArrayEquals(new byte[0], cache.get("b"));
+        assertNull(cache.get("c"));
+        assertEquals(2, cache.getHitCount());
+        assertEquals(1, cache.getMissCount());
+        cache.close();
+    }
+
+    @Test
+    public void restart() throws IOException {
+        PersistentCache cache = new PersistentCache(directory, 1024 * 1024);
+        for (int i = 0; i < 100; i++) {
+            cache.put("key" + i, ("value" + i).getBytes("UTF-8"));
+        }
+        cache.close();
+
+        cache = new PersistentCache(directory, 1024 * 1024);
+        assertEquals(100, cache.size());
+        for (int i = 0; i < 100; i++) {
+            assertArrayEquals(("value" + i).getBytes("UTF-8"), cache.get("key" + i));
+        }
+        cache.close();
+    }
+
+    @Test
+    public void incompleteRecord() throws IOException {
+        PersistentCache cache = new PersistentCache(directory, 1024 * 1024);
+        cache.put("a", new byte[]{1, 2, 3});
+        cache.put("b", new byte[]{4, 5, 6});
+        cache.close();
+
+        // cut off the last byte of the second record
+        File file = new File(directory, "cache-0.data");
+        RandomAccessFile f = new RandomAccessFile(file, "rw");
+        f.setLength(f.length() - 1);
+        f.close();
+
+        cache = new PersistentCache(directory, 1024 * 1024);
+        assertArrayEquals(new byte[]{1, 2, 3}, cache.get("a"));
+        assertNull(cache.get("b"));
+        cache.put("c", new byte[]{7});
+        cache.close();
+
+        cache = new PersistentCache(directory, 1024 * 1024);
+        assertEquals(2, cache.size());
+        assertArrayEquals(new byte[]{7}, cache.get("c"));
+        cache.close();
+    }
+
+    @Test
+    public void generations() throws IOException {
+        // each generation holds about 10 entries of ~100 bytes
+        PersistentCache cache = new PersistentCache(directory, 2 * 1000);
+        byte[] value = new byte[80];
+        for (int i = 0; i < 100; i++) {
+            cache.put("key" + i, value);
+        }
+        // the oldest entries were evicted
+        assertNull(cache.get("key0"));
+        assertArrayEquals(value, cache.get("key99"));
+        assertEquals(2, directory.list().length);
+        int size = cache.size();
+        cache.close();
+
+        cache = new PersistentCache(directory, 2 * 1000);
+        assertEquals(size, cache.size());
+        assertArrayEquals(value, cache.get("key99"));
+        cache.invalidateAll();
+        assertEquals(0, cache.size());
+        assertNull(cache.get("key99"));
+        cache.close();
+    }
+
+    @Test
+    public void maxEntries() throws IOException {
+        // each generation holds at most 10 entries
+        PersistentCache cache = new PersistentCache(directory, 1024 * 1024, 20);
+        for (int i = 0; i < 100; i++) {
+            cache.put("key" + i, new byte[]{1});
+        }
+        assertTrue(cache.size() <= 20);
+        assertNull(cache.get("key0"));
+        assertArrayEquals(new byte[]{1}, cache.get("key99"));
+        cache.close();
+    }
+
+    @Test
+    public void interrupted() throws IOException {
+        PersistentCache cache = new PersistentCache(directory, 1024 * 1024);
+        cache.put("a", new byte[]{1, 2, 3});
+
+        // an interrupted reader must not break the cache
+        Thread.currentThread().interrupt();
+        try {
+            assertArrayEquals(new byte[]{1, 2, 3}, cache.get("a"));
+        } finally {
+            assertTrue(Thread.interrupted());
+        }
+        Thread.currentThread().interrupt();
+        try {
+            cache.put("b", new byte[]{4});
+        } finally {
+            assertTrue(Thread.interrupted());
+        }
+        assertArrayEquals(new byte[]{1, 2, 3}, cache.get("a"));
+        assertArrayEquals(new byte[]{4}, cache.get("b"));
+        cache.close();
+
+        cache = new PersistentCache(directory, 1024 * 1024);
+        assertEquals(2, cache.size());
+        cache.close();
+    }
+}
@@ -16,12 +16,15 @@
  */
 package org.apache.jackrabbit.oak.plugins.index;
 
+import static com.google.common.collect.Lists.newArrayList;
 import static org.apache.jackrabbit.JcrConstants.JCR_SYSTEM;
 import static org.apache.jackrabbit.JcrConstants.NT_BASE;
 import static org.apache.jackrabbit.oak.plugins.index.IndexConstants.INDEX_CONTENT_NODE_NAME;
 import static org.apache.jackrabbit.oak.plugins.index.IndexConstants.INDEX_DEFINITIONS_NAME;
 import static org.apache.jackrabbit.oak.plugins.index.IndexConstants.REINDEX_PROPERTY_NAME;
 import static org.apache.jackrabbit.oak.plugins.index.IndexUtils.createIndexDefinition;
+import static org.apache.jackrabbit.oak.plugins.index.property.strategy.ApproximateCounter.COUNT_PROPERTY_NAME;
+import static org.apache.jackrabbit.oak.plugins.memory.EmptyNodeState.EMPTY_NODE;
 import static org.apache.jackrabbit.oak.plugins.nodetype.NodeTypeConstants.JCR_NODE_TYPES;
 import static org.apache.jackrabbit.oak.plugins.nodetype.write.InitialContent.INITIAL_CONTENT;
 import static org.junit.Assert.assertEquals;
@@ -29,8 +32,10 @@ import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertTrue;
 
+import java.util.List;
 import java.util.Set;
 
+import org.apache.jackrabbit.oak.api.CommitFailedException;
 import org.apache.jackrabbit.oak.api.PropertyState;
 import org.apache.jackrabbit.oak.api.Type;
 import org.apache.jackrabbit.oak.plugins.index.property.PropertyIndexEditorProvider;
@@ -39,9 +44,11 @@ import org.apache.jackrabbit.oak.query.QueryEngineSettings;
 import org.apache.jackrabbit.oak.query.ast.SelectorImpl;
 import org.apache.jackrabbit.oak.query.index.FilterImpl;
 import org.apache.jackrabbit.oak.spi.commit.CommitInfo;
+import org.apache.jackrabbit.oak.spi.commit.Editor;
 import org.apache.jackrabbit.oak.spi.commit.EditorHook;
 import org.apache.jackrabbit.oak.spi.query.Filter;
 import org.apache.jackrabbit.oak.spi.query.PropertyValues;
+import org.apache.jackrabbit.oak.spi.state.ChildNodeEntry;
 import org.apache.jackrabbit.oak.spi.state.NodeBuilder;
 import org.apache.jackrabbit.oak.spi.state.NodeState;
 import org.junit.Test;
@@ -229,6 +236,93 @@ public class IndexUpdateTest {
                 "index2", INDEX_CONTENT_NODE_NAME);
     }
 
+    @Test
+    public void parallelReindex() throws Exception {
+        for (int i = 0; i < 10; i++) {
+            NodeBuilder a = builder.child("a" + i);
+            a.setProperty("foo", "x");
+            for (int j = 0; j < 10; j++) {
+                NodeBuilder b = a.child("b" + j);
+                for (int k = 0; k < 10; k++) {
+                    b.child("c" + k).setProperty("foo", "v" + (i + j + k) % 7);
+                }
+            }
+        }
+        builder.setProperty("foo", "x");
+        NodeState before = builder.getNodeState();
+        createIndexDefinition(builder.child(INDEX_DEFINITIONS_NAME), "foo",
+                true, false, ImmutableSet.of("foo"), null);
+        NodeState after = builder.getNodeState();
+
+        NodeState expected = HOOK.processCommit(before, after, CommitInfo.EMPTY);
+        EditorHook parallel = new EditorHook(new IndexUpdateProvider(
+                new PropertyIndexEditorProvider(), null, 4));
+        NodeState indexed = parallel.processCommit(before, after, CommitInfo.EMPTY);
+
+        // the approximate counters are updated randomly,
+        // so they may differ
+        assertEquals(
+                withoutCounts(checkPathExists(expected, INDEX_DEFINITIONS_NAME, "foo")),
+                withoutCounts(checkPathExists(indexed, INDEX_DEFINITIONS_NAME, "foo")));
+        PropertyIndexLookup lookup = new PropertyIndexLookup(indexed);
+        assertTrue(find(lookup, "foo", "x").contains("a5"));
+        assertTrue(find(lookup, "foo", "v0").contains("a9/b9/c3"));
+    }
+
+    @Test
+    public void parallelReindexKeepsConfiguration() throws Exception {
+        for (int i = 0; i < 100; i++) {
+            builder.child("a" + i).child("b").setProperty("foo", "v" + i);
+        }
+        NodeState before = builder.getNodeState();
+        NodeBuilder index = createIndexDefinition(
+                builder.child(INDEX_DEFINITIONS_NAME), "foo",
+                true, false, ImmutableSet.of("foo"), null);
+        index.child("config").setProperty("x", 1L);
+        NodeState after = builder.getNodeState();
+
+        final List<Boolean> configured = newArrayList();
+        IndexEditorProvider provider = new IndexEditorProvider() {
+            private final IndexEditorProvider property =
+                    new PropertyIndexEditorProvider();
+            @Override
+            public Editor getIndexEditor(String type, NodeBuilder definition,
+                    NodeState root, IndexUpdateCallback callback)
+                    throws CommitFailedException {
+                synchronized (configured) {
+                    configured.add(definition.hasChildNode("config")
+                            && !definition.hasChildNode(INDEX_CONTENT_NODE_NAME));
+                }
+                return property.getIndexEditor(type, definition, root, callback);
+            }
+        };
+        NodeState indexed = new EditorHook(new IndexUpdateProvider(
+                provider, null, 4)).processCommit(before, after, CommitInfo.EMPTY);
+
+        // the editor of the definition, and the editors of the copies
+        assertTrue(configured.size() > 2);
+        assertFalse(configured.contains(false));
+        checkPathExists(indexed, INDEX_DEFINITIONS_NAME, "foo", "config");
+        PropertyIndexLookup lookup = new PropertyIndexLookup(indexed);
+        assertEquals(ImmutableSet.of("a42/b"), find(lookup, "foo", "v42"));
+    }
+
+    @Test(expected = CommitFailedException.class)
+    public void parallelReindexUnique() throws Exception {
+        for (int i = 0; i < 100; i++) {
+            builder.child("a" + i).child("b").setProperty("foo", "v" + i);
+        }
+        builder.child("a99").child("c").setProperty("foo", "v0");
+        NodeState before = builder.getNodeState();
+        createIndexDefinition(builder.child(INDEX_DEFINITIONS_NAME), "foo",
+                true, true, ImmutableSet.of("foo"), null);
+        NodeState after = builder.getNodeState();
+
+        EditorHook parallel = new EditorHook(new IndexUpdateProvider(
+                new PropertyIndexEditorProvider(), null, 4));
+        parallel.processCommit(before, after, CommitInfo.EMPTY);
+    }
+
     private Set<String> find(PropertyIndexLookup lookup, String name,
             String value) {
         NodeState system = root.getChildNode(JCR_SYSTEM);
@@ -240,6 +334,20 @@ public class IndexUpdateTest {
                 PropertyValues.newString(value)));
     }
 
+    private static NodeState withoutCounts(NodeState state) {
+        NodeBuilder builder = EMPTY_NODE.builder();
+        for (PropertyState property : state.getProperties()) {
+            if (!COUNT_PROPERTY_NAME.equals(property.getName())) {
+                builder.setProperty(property);
+            }
+        }
+        for (ChildNodeEntry child : state.getChildNodeEntries()) {
+            builder.setChildNode(child.getName(),
+                    withoutCounts(child.getNodeState()));
+        }
+        return builder.getNodeState();
+    }
+
     static NodeState checkPathExists(NodeState state, String... verify) {
         NodeState c = state;
         for (String p : verify) {
@@ -140,4 +140,45 @@ public class ContentMirrorStoreStrategyTest {
                 store.count(indexMeta.getNodeState(), Collections.singleton("key"), 2) > 1);
     }
 
+    @Test
+    public void approximateCount() {
+        IndexStoreStrategy store = new ContentMirrorStoreStrategy();
+        NodeBuilder indexMeta = EMPTY_NODE.builder();
+        NodeBuilder index = indexMeta.child(INDEX_CONTENT_NODE_NAME);
+
+        // small counts are exact
+        for (int i = 0; i < 50; i++) {
+            store.update(index, "n" + i, EMPTY, KEY);
+        }
+        for (int i = 0; i < 10; i++) {
+            store.update(index, "n" + i, KEY, EMPTY);
+        }
+        Assert.assertEquals(40, store.count(indexMeta.getNodeState(), KEY, 10));
+        Assert.assertEquals(40, store.count(indexMeta.getNodeState(), null, 100));
+        // "is not null" queries are penalized, as with the walking estimate
+        Assert.assertEquals(400, store.count(indexMeta.getNodeState(), null, 10));
+
+        // larger counts are approximate
+        for (int i = 50; i < 10000; i++) {
+            store.update(index, "n" + i, EMPTY, KEY);
+        }
+        long count = store.count(indexMeta.getNodeState(), KEY, 10);
+        Assert.assertTrue("count: " + count, count > 7000 && count < 13000);
+    }
+
+    @Test
+    public void noCountForExistingIndex() {
+        IndexStoreStrategy store = new ContentMirrorStoreStrategy();
+        NodeBuilder indexMeta = EMPTY_NODE.builder();
+        NodeBuilder index = indexMeta.child(INDEX_CONTENT_NODE_NAME);
+        // an entry that was added before entries were counted
+        index.child("key").child("a").setProperty("match", true);
+
+        store.update(index, "b", EMPTY, KEY);
+        Assert.assertEquals(-1, ApproximateCounter.getCount(index.getNodeState()));
+        Assert.assertEquals(-1, ApproximateCounter.getCount(
+                index.getChildNode("key").getNodeState()));
+        Assert.assertEquals(2, store.count(indexMeta.getNodeState(), KEY, 10));
+    }
+
 }
@@ -33,6 +33,7 @@ import static org.junit.Assert.fail;
 import java.text.DecimalFormat;
 import java.text.NumberFormat;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Random;
@@ -1596,7 +1597,7 @@ public class OrderedContentMirrorStorageStrategyTest {
     }
 
     private static String getNext(@Nonnull NodeState node, int lane) {
-        return Iterables.toArray(node.getProperty(NEXT).getValue(Type.STRINGS), String.class)[lane];
+        return OrderedContentMirrorStoreStrategy.getPropertyNext(node, lane);
     }
 
     private static Iterable<String> getMultiNext(@Nonnull NodeState node) {
@@ -1650,8 +1651,17 @@ public class OrderedContentMirrorStorageStrategyTest {
         OrderedContentMirrorStoreStrategy.setPropertyNext(n, "a", "b", "c", "d", "e", "f");
         assertNotNull(n);
         assertNotNull(":next cannot be null", n.getProperty(NEXT));
-        assertEquals("even if we provide more than 4 nexts we expect it to take only the first 4s", 
-            ImmutableList.of("a", "b", "c", "d"), 
+        assertEquals("the upper lanes are kept if provided",
+            ImmutableList.of("a", "b", "c", "d", "e", "f"),
+            n.getProperty(NEXT).getValue(Type.STRINGS));
+
+        n = EmptyNodeState.EMPTY_NODE.builder();
+        OrderedContentMirrorStoreStrategy.setPropertyNext(n, "a", "b", "c", "d", "e", "f", "g",
+            "h", "i", "j");
+        assertNotNull(n);
+        assertNotNull(":next cannot be null", n.getProperty(NEXT));
+        assertEquals("even if we provide more nexts than lanes we expect it to take only the first ones",
+            ImmutableList.of("a", "b", "c", "d", "e", "f", "g", "h"),
             n.getProperty(NEXT).getValue(Type.STRINGS));
         
         n = EmptyNodeState.EMPTY_NODE.builder();
@@ -1709,6 +1719,13 @@ public class OrderedContentMirrorStorageStrategyTest {
         assertNotNull(":next cannot be null", n.getProperty(NEXT));
         assertEquals(ImmutableList.of("a", "b", "", "c"),
             n.getProperty(NEXT).getValue(Type.STRINGS));
+
+        n = EmptyNodeState.EMPTY_NODE.builder();
+        n.setProperty(NEXT, ImmutableList.of("a", "b", "c", "d"), Type.STRINGS);
+        OrderedContentMirrorStoreStrategy.setPropertyNext(n, "e", 6);
+        assertEquals("the upper lanes are only added when needed",
+            ImmutableList.of("a", "b", "c", "d", "", "", "e"),
+            n.getProperty(NEXT).getValue(Type.STRINGS));
 }
     
     @Test
@@ -1739,22 +1756,24 @@ public class OrderedContentMirrorStorageStrategyTest {
         assertEquals("b", OrderedContentMirrorStoreStrategy.getPropertyNext(node, 1));
         assertEquals("c", OrderedContentMirrorStoreStrategy.getPropertyNext(node, 2));
         assertEquals("d", OrderedContentMirrorStoreStrategy.getPropertyNext(node, 3));
-        assertEquals("the highest available lane is expected", "d",
+        assertEquals("a lane that is not stored is not linked", "",
+            OrderedContentMirrorStoreStrategy.getPropertyNext(node, OrderedIndex.LANES - 1));
+        assertEquals("a lane that is not stored is not linked", "",
             OrderedContentMirrorStoreStrategy.getPropertyNext(node, OrderedIndex.LANES + 100));
         
         node.setProperty(NEXT, "a", Type.STRING);
         assertEquals("a", OrderedContentMirrorStoreStrategy.getPropertyNext(node));
         assertEquals("a", OrderedContentMirrorStoreStrategy.getPropertyNext(node, 0));
-        assertEquals("a", OrderedContentMirrorStoreStrategy.getPropertyNext(node, 1));
-        assertEquals("a", OrderedContentMirrorStoreStrategy.getPropertyNext(node, 2));
-        assertEquals("a", OrderedContentMirrorStoreStrategy.getPropertyNext(node, 3));
+        assertEquals("", OrderedContentMirrorStoreStrategy.getPropertyNext(node, 1));
+        assertEquals("", OrderedContentMirrorStoreStrategy.getPropertyNext(node, 2));
+        assertEquals("", OrderedContentMirrorStoreStrategy.getPropertyNext(node, 3));
 
         node.setProperty(NEXT, ImmutableList.of("a", "b"), Type.STRINGS);
         assertEquals("a", OrderedContentMirrorStoreStrategy.getPropertyNext(node));
         assertEquals("a", OrderedContentMirrorStoreStrategy.getPropertyNext(node, 0));
         assertEquals("b", OrderedContentMirrorStoreStrategy.getPropertyNext(node, 1));
-        assertEquals("b", OrderedContentMirrorStoreStrategy.getPropertyNext(node, 2));
-        assertEquals("b", OrderedContentMirrorStoreStrategy.getPropertyNext(node, 3));
+        assertEquals("", OrderedContentMirrorStoreStrategy.getPropertyNext(node, 2));
+        assertEquals("", OrderedContentMirrorStoreStrategy.getPropertyNext(node, 3));
     }
     
     @Test
@@ -1791,7 +1810,7 @@ public class OrderedContentMirrorStorageStrategyTest {
         expect(generator.nextDouble()).andReturn(0.02).times(OrderedIndex.LANES);
         expect(generator.nextDouble()).andReturn(0.73).once();
         replay(generator);
-        assertEquals("we should never go beyond 4 lanes", OrderedIndex.LANES - 1,
+        assertEquals("we should never go beyond the number of lanes", OrderedIndex.LANES - 1,
             store.getLane(generator));
     }
     
@@ -3369,6 +3388,64 @@ public class OrderedContentMirrorStorageStrategyTest {
         LOG.debug("\n{}", sb.toString());
     }
     
+    /**
+     * inserts and deletes many keys, linked on the default lanes only (as in indexes written
+     * before the upper lanes were added) and on all lanes, and checks that the lanes stay
+     * ordered and that every key can be found.
+     */
+    @Test
+    public void insertDeleteMixedLanes() {
+        MockOrderedContentMirrorStoreStrategy store = new MockOrderedContentMirrorStoreStrategy();
+        NodeBuilder index = EmptyNodeState.EMPTY_NODE.builder();
+        Random rnd = new Random(1);
+        List<String> keys = new ArrayList<String>();
+        int defaultLanes = OrderedContentMirrorStoreStrategy.EMPTY_NEXT_ARRAY.length;
+
+        for (int i = 0; i < 3000; i++) {
+            if (!keys.isEmpty() && rnd.nextInt(3) == 0) {
+                String key = keys.remove(rnd.nextInt(keys.size()));
+                store.update(index, "/content/" + key, newHashSet(key), EMPTY_KEY_SET);
+            } else {
+                String key = NF.format(rnd.nextInt(10000));
+                if (!keys.contains(key)) {
+                    // the first entries are linked like in an index with the default lanes
+                    store.setLane(rnd.nextInt(i < 1000 ? defaultLanes : OrderedIndex.LANES));
+                    store.update(index, "/content/" + key, EMPTY_KEY_SET, newHashSet(key));
+                    keys.add(key);
+                }
+            }
+        }
+        Collections.sort(keys);
+        NodeState state = index.getNodeState();
+        printSkipList(state);
+
+        assertEquals(keys.size() + 1, state.getChildNodeCount(Long.MAX_VALUE));
+        for (int lane = 0; lane < OrderedIndex.LANES; lane++) {
+            List<String> linked = new ArrayList<String>();
+            String next = getNext(state.getChildNode(START), lane);
+            while (!Strings.isNullOrEmpty(next)) {
+                linked.add(next);
+                next = getNext(state.getChildNode(next), lane);
+            }
+            if (lane == 0) {
+                assertEquals(keys, linked);
+            } else {
+                List<String> sorted = new ArrayList<String>(linked);
+                Collections.sort(sorted);
+                assertEquals("lane " + lane + " is not ordered", sorted, linked);
+                assertTrue("lane " + lane + " links deleted keys", keys.containsAll(linked));
+            }
+        }
+
+        for (String key : keys) {
+            assertEquals(key, store.seek(index,
+                new OrderedContentMirrorStoreStrategy.PredicateEquals(key),
+                new String[OrderedIndex.LANES]));
+        }
+        assertNull(store.seek(index,
+            new OrderedContentMirrorStoreStrategy.PredicateEquals("missing")));
+    }
+
     @Test
     public void predicateLessThan() { 
         Predicate<String> predicate;
@@ -27,16 +27,22 @@ import java.io.File;
 import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.RandomAccessFile;
+import java.util.Arrays;
 import java.util.Map;
 import java.util.Random;
 
 import org.apache.jackrabbit.oak.api.Blob;
+import org.apache.jackrabbit.oak.api.Type;
 import org.apache.jackrabbit.oak.plugins.memory.EmptyNodeState;
 import org.apache.jackrabbit.oak.plugins.segment.Compactor;
+import org.apache.jackrabbit.oak.plugins.segment.RecordId;
 import org.apache.jackrabbit.oak.plugins.segment.SegmentBlob;
 import org.apache.jackrabbit.oak.plugins.segment.SegmentNodeBuilder;
 import org.apache.jackrabbit.oak.plugins.segment.SegmentNodeState;
+import org.apache.jackrabbit.oak.plugins.segment.SegmentTracker;
 import org.apache.jackrabbit.oak.plugins.segment.SegmentWriter;
+import org.apache.jackrabbit.oak.spi.state.NodeBuilder;
+import org.apache.jackrabbit.oak.spi.state.NodeState;
 import org.junit.Before;
 import org.junit.Test;
 
@@ -148,6 +154,136 @@ public class FileStoreTest {
         assertTrue(store.size() > largeBinarySize);
         store.cleanup();
         assertTrue(store.size() < largeBinarySize);
+        CompactionStats stats = store.getCompactionStats();
+        assertTrue(stats.getLastReclaimedBytes() > largeBinarySize / 2);
+        assertEquals(stats.getLastReclaimedBytes(), stats.getTotalReclaimedBytes());
+
+        store.compact();
+        assertEquals(1, stats.getCompactionCount());
+        assertFalse(stats.isCompacting());
+        assertTrue(stats.getCompactedNodeCount() > 0);
+        store.close();
+    }
+
+    @Test
+    public void testConcurrentWriters() throws Exception {
+        FileStore store = new FileStore(directory, 1, false);
+        final SegmentNodeState base = store.getHead();
+
+        int count = 8;
+        final SegmentNodeState[] states = new SegmentNodeState[count];
+        Thread[] threads = new Thread[count];
+        for (int i = 0; i < count; i++) {
+            final int index = i;
+            threads[i] = new Thread() {
+                @Override
+                public void run() {
+                    SegmentNodeBuilder builder = base.builder();
+                    for (int j = 0; j < 1000; j++) {
+                        builder.child("node" + j).setProperty("value", j);
+                    }
+                    states[index] = builder.getNodeState();
+                }
+            };
+            threads[i].start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+
+        SegmentNodeBuilder builder = base.builder();
+        for (int i = 0; i < count; i++) {
+            builder.setChildNode("thread" + i, states[i]);
+        }
+        assertTrue(store.setHead(base, builder.getNodeState()));
+        store.close();
+
+        // all writer buffers must have been persisted on close
+        store = new FileStore(directory, 1, false);
+        SegmentNodeState head = store.getHead();
+        for (int i = 0; i < count; i++) {
+            NodeState state = head.getChildNode("thread" + i);
+            assertEquals(1000, state.getChildNodeCount(Long.MAX_VALUE));
+            assertEquals(999, state.getChildNode("node999")
+                    .getProperty("value").getValue(Type.LONG).longValue());
+        }
+        store.close();
+    }
+
+    @Test
+    public void testSharedRecordCache() throws Exception {
+        FileStore store = new FileStore(directory, 1, false);
+        final SegmentTracker tracker = new SegmentTracker(store, 1, 2);
+        final RecordId[] ids = new RecordId[4];
+        Thread[] threads = new Thread[ids.length];
+        for (int i = 0; i < ids.length; i++) {
+            final int index = i;
+            threads[i] = new Thread() {
+                @Override
+                public void run() {
+                    ids[index] = tracker.getWriter().writeString("shared string");
+                }
+            };
+            threads[i].start();
+            threads[i].join();
+        }
+
+        // strings are deduplicated no matter which writer stores them
+        for (RecordId id : ids) {
+            assertEquals(ids[0], id);
+        }
+        store.close();
+    }
+
+    @Test
+    public void testFlushStats() throws IOException {
+        FileStore store = new FileStore(directory, 1, false);
+        FileStoreStats stats = store.getStats();
+        store.flush();
+        assertEquals(1, stats.getFlushCount());
+        assertEquals(1, stats.getLastFlushBatchSize());
+
+        SegmentNodeState base = store.getHead();
+        SegmentNodeBuilder builder = base.builder();
+        builder.setProperty("foo", "bar");
+        store.setHead(base, builder.getNodeState());
+        store.flush();
+        assertEquals(2, stats.getFlushCount());
+        assertEquals(2, stats.getFlushedSegmentCount());
+
+        store.flush(); // nothing to flush
+        assertEquals(2, stats.getFlushCount());
+        store.close();
+    }
+
+    @Test
+    public void testPrefetch() throws Exception {
+        FileStore store = new FileStore(directory, 1, false);
+        SegmentNodeState base = store.getHead();
+        SegmentNodeBuilder builder = base.builder();
+        char[] chars = new char[1000];
+        Arrays.fill(chars, 'x');
+        String value = new String(chars);
+        NodeBuilder root = builder.child("root");
+        for (int i = 0; i < 1000; i++) {
+            root.child("node" + i).setProperty("value", value + i);
+        }
+        assertTrue(store.setHead(base, builder.getNodeState()));
+        store.close();
+
+        store = new FileStore(directory, 1, false);
+        assertFalse(store.isPrefetchEnabled());
+        store.setPrefetchEnabled(true);
+        assertTrue(store.isPrefetchEnabled());
+
+        // reading the head pulls in the segments it references
+        assertTrue(store.getHead().hasChildNode("root"));
+        for (int i = 0; i < 100 && store.getPrefetchedSegmentCount() == 0; i++) {
+            Thread.sleep(10);
+        }
+        assertTrue(store.getPrefetchedSegmentCount() > 0);
+        assertEquals(1000, store.getHead().getChildNode("root")
+                .getChildNodeCount(Long.MAX_VALUE));
         store.close();
     }
 
@@ -0,0 +1,65 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.jackrabbit.oak.plugins.segment.file;
+
+import static junit.framework.Assert.assertEquals;
+import static junit.framework.Assert.assertNotNull;
+import static junit.framework.Assert.assertNull;
+import static junit.framework.Assert.assertTrue;
+
+import java.nio.ByteBuffer;
+
+import org.apache.jackrabbit.oak.cache.CacheStats;
+import org.junit.Test;
+
+public class SegmentCacheTest {
+
+    @Test
+    public void testPutAndGet() {
+        SegmentCache cache = new SegmentCache(1024 * 1024);
+        assertNull(cache.get(1, 2));
+
+        ByteBuffer data = ByteBuffer.wrap(new byte[] { '0', 'a', 'K', '\n' });
+        ByteBuffer cached = cache.put(1, 2, data);
+        assertTrue(cached.isDirect());
+        assertEquals(data, cached);
+        assertEquals(0, data.position()); // source buffer left untouched
+
+        ByteBuffer buffer = cache.get(1, 2);
+        assertNotNull(buffer);
+        assertEquals(data, buffer);
+
+        CacheStats stats = cache.getStats();
+        assertEquals(1, stats.getHitCount());
+        assertEquals(1, stats.getMissCount());
+
+        cache.clear();
+        assertNull(cache.get(1, 2));
+    }
+
+    @Test
+    public void testEviction() {
+        int size = 32 * 1024;
+        SegmentCache cache = new SegmentCache(16 * 4 * size);
+        for (int i = 0; i < 1000; i++) {
+            cache.put(i, i, ByteBuffer.allocate(size));
+        }
+        assertTrue(cache.getStats().getEvictionCount() > 0);
+        assertTrue(cache.getStats().getElementCount() < 1000);
+    }
+
+}
@@ -0,0 +1,65 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.jackrabbit.oak.plugins.segment.file;
+
+import static junit.framework.Assert.assertFalse;
+import static junit.framework.Assert.assertTrue;
+
+import java.util.Random;
+import java.util.UUID;
+
+import org.junit.Test;
+
+public class SegmentIdFilterTest {
+
+    @Test
+    public void testEmpty() {
+        SegmentIdFilter filter = new SegmentIdFilter(0);
+        assertFalse(filter.mightContain(0, 0));
+        assertFalse(filter.mightContain(1, 2));
+    }
+
+    @Test
+    public void testFalsePositiveRate() {
+        Random random = new Random(42);
+        int count = 10000;
+        UUID[] uuids = new UUID[count];
+        SegmentIdFilter filter = new SegmentIdFilter(count);
+        for (int i = 0; i < count; i++) {
+            uuids[i] = new UUID(random.nextLong(), random.nextLong());
+            filter.add(
+                    uuids[i].getMostSignificantBits(),
+                    uuids[i].getLeastSignificantBits());
+        }
+
+        // no false negatives
+        for (UUID uuid : uuids) {
+            assertTrue(filter.mightContain(
+                    uuid.getMostSignificantBits(),
+                    uuid.getLeastSignificantBits()));
+        }
+
+        int falsePositives = 0;
+        for (int i = 0; i < count; i++) {
+            if (filter.mightContain(random.nextLong(), random.nextLong())) {
+                falsePositives++;
+            }
+        }
+        assertTrue(falsePositives < count / 50);
+    }
+
+}
@@ -18,6 +18,7 @@ package org.apache.jackrabbit.oak.plugins.segment.file;
 
 import static com.google.common.base.Charsets.UTF_8;
 import static junit.framework.Assert.assertEquals;
+import static junit.framework.Assert.assertTrue;
 
 import java.io.File;
 import java.io.IOException;
@@ -68,4 +69,47 @@ public class TarFileTest {
         }
     }
 
+    @Test
+    public void testInterruptedWrite() throws IOException {
+        UUID id1 = UUID.randomUUID();
+        UUID id2 = UUID.randomUUID();
+        byte[] data1 = "Hello, World!".getBytes(UTF_8);
+        byte[] data2 = "Hello again!".getBytes(UTF_8);
+
+        TarWriter writer = new TarWriter(file);
+        try {
+            writer.writeEntry(id1.getMostSignificantBits(),
+                    id1.getLeastSignificantBits() & (-1 >>> 4),
+                    data1, 0, data1.length);
+
+            // an interrupted writer must neither fail nor close the file
+            Thread.currentThread().interrupt();
+            try {
+                writer.writeEntry(id2.getMostSignificantBits(),
+                        id2.getLeastSignificantBits() & (-1 >>> 4),
+                        data2, 0, data2.length);
+            } finally {
+                assertTrue(Thread.interrupted());
+            }
+
+            assertEquals(ByteBuffer.wrap(data1), writer.readEntry(
+                    id1.getMostSignificantBits(),
+                    id1.getLeastSignificantBits() & (-1 >>> 4)));
+            assertEquals(ByteBuffer.wrap(data2), writer.readEntry(
+                    id2.getMostSignificantBits(),
+                    id2.getLeastSignificantBits() & (-1 >>> 4)));
+        } finally {
+            writer.close();
+        }
+
+        TarReader reader = TarReader.open(file, false);
+        try {
+            assertEquals(ByteBuffer.wrap(data2), reader.readEntry(
+                    id2.getMostSignificantBits(),
+                    id2.getLeastSignificantBits() & (-1 >>> 4)));
+        } finally {
+            reader.close();
+        }
+    }
+
 }
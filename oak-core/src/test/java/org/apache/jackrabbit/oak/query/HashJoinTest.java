@@ -0,0 +1,125 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.jackrabbit.oak.query;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.List;
+
+import org.apache.jackrabbit.oak.Oak;
+import org.apache.jackrabbit.oak.api.ContentRepository;
+import org.apache.jackrabbit.oak.api.Tree;
+import org.apache.jackrabbit.oak.plugins.nodetype.write.InitialContent;
+import org.apache.jackrabbit.oak.spi.security.OpenSecurityProvider;
+import org.junit.Test;
+
+/**
+ * Tests hash joins, by comparing the result with the result of nested loop
+ * joins.
+ */
+public class HashJoinTest extends AbstractQueryTest {
+
+    private final QueryEngineSettings settings = new QueryEngineSettings();
+
+    @Override
+    protected ContentRepository createRepository() {
+        return new Oak().with(new InitialContent())
+                .with(new OpenSecurityProvider())
+                .with(settings)
+                .createContentRepository();
+    }
+
+    @Test
+    public void equiJoin() throws Exception {
+        createContent();
+        String query = "select p.[jcr:path], c.[jcr:path] from [nt:base] as p " + 
+                "inner join [nt:base] as c on p.id = c.p " + 
+                "where isdescendantnode(p, '/test') " + 
+                "and isdescendantnode(c, '/test')";
+        settings.setHashJoinEnabled(true);
+        String plan = executeQuery("explain " + query, SQL2).get(0);
+        assertTrue(plan, plan.contains("hash join"));
+        List<String> result = executeQuery(query, SQL2);
+        assertEquals("[/test/parents/p1, /test/children/c1, " + 
+                "/test/parents/p1, /test/children/c2, " + 
+                "/test/parents/p2, /test/children/c3]", result.toString());
+        
+        settings.setHashJoinEnabled(false);
+        plan = executeQuery("explain " + query, SQL2).get(0);
+        assertFalse(plan, plan.contains("hash join"));
+        assertEquals(result, executeQuery(query, SQL2));
+    }
+
+    @Test
+    public void pathJoins() throws Exception {
+        createContent();
+        assertSameResult("select a.[jcr:path], b.[jcr:path] from [nt:base] as a " + 
+                "inner join [nt:base] as b on ischildnode(b, a) " + 
+                "where isdescendantnode(a, '/test') " + 
+                "and isdescendantnode(b, '/test')");
+        assertSameResult("select a.[jcr:path], b.[jcr:path] from [nt:base] as a " + 
+                "inner join [nt:base] as b on isdescendantnode(b, a) " + 
+                "where isdescendantnode(a, '/test') " + 
+                "and isdescendantnode(b, '/test')");
+    }
+
+    @Test
+    public void tooManyRows() throws Exception {
+        createContent();
+        settings.setLimitInMemory(2);
+        assertSameResult("select p.[jcr:path], c.[jcr:path] from [nt:base] as p " + 
+                "inner join [nt:base] as c on p.id = c.p " + 
+                "where isdescendantnode(p, '/test') " + 
+                "and isdescendantnode(c, '/test')");
+    }
+
+    @Test
+    public void hashJoinLimit() throws Exception {
+        createContent();
+        settings.setHashJoinLimit(2);
+        assertEquals(2, settings.getHashJoinLimit());
+        assertSameResult("select p.[jcr:path], c.[jcr:path] from [nt:base] as p " + 
+                "inner join [nt:base] as c on p.id = c.p " + 
+                "where isdescendantnode(p, '/test') " + 
+                "and isdescendantnode(c, '/test')");
+    }
+
+    private void assertSameResult(String query) {
+        settings.setHashJoinEnabled(false);
+        List<String> expected = executeQuery(query, SQL2);
+        assertFalse(expected.isEmpty());
+        settings.setHashJoinEnabled(true);
+        assertEquals(expected, executeQuery(query, SQL2));
+    }
+
+    private void createContent() throws Exception {
+        Tree test = root.getTree("/").addChild("test");
+        Tree parents = test.addChild("parents");
+        for (int i = 0; i < 3; i++) {
+            parents.addChild("p" + i).setProperty("id", "" + i);
+        }
+        Tree children = test.addChild("children");
+        children.addChild("c1").setProperty("p", "1");
+        children.addChild("c2").setProperty("p", "1");
+        children.addChild("c3").setProperty("p", "2");
+        children.addChild("c4").setProperty("p", "3");
+        root.commit();
+    }
+
+}
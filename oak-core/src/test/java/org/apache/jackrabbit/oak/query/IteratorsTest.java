@@ -24,6 +24,7 @@ import static org.junit.Assert.fail;
 import java.util.Collections;
 import java.util.Comparator;
 import java.util.Iterator;
+import java.util.List;
 import java.util.NoSuchElementException;
 
 import org.junit.Test;
@@ -45,6 +46,21 @@ public class IteratorsTest {
         }
         
     };
+    
+    private static final FilterIterators.Serializer<Integer> INT_SERIALIZER = 
+            new FilterIterators.Serializer<Integer>() {
+
+        @Override
+        public String serialize(Integer entry) {
+            return entry.toString();
+        }
+
+        @Override
+        public Integer deserialize(String s) {
+            return Integer.valueOf(s);
+        }
+        
+    };
 
     @Test
     public void distinct() {
@@ -54,6 +70,80 @@ public class IteratorsTest {
         assertEquals("1, 2, 3", toString(FilterIterators.newDistinct(it(1, 2, 1, 3, 3, 1), settings)));
     }
     
+    @Test
+    public void distinctUsingTempFiles() {
+        QueryEngineSettings s = new QueryEngineSettings();
+        s.setLimitInMemory(2);
+        Iterator<Integer> it = FilterIterators.newDistinct(
+                it(1, 2, 1, 3, 3, 1, 4, 2, 5, 4), s, INT_SERIALIZER);
+        // the order is not kept after the limit is reached
+        List<Integer> list = Lists.newArrayList(it);
+        Collections.sort(list);
+        assertEquals("[1, 2, 3, 4, 5]", list.toString());
+        
+        // without serializer, the limit is enforced
+        try {
+            toString(FilterIterators.newDistinct(it(1, 2, 3), s));
+            fail();
+        } catch (UnsupportedOperationException e) {
+            // expected
+        }
+    }
+    
+    @Test
+    public void sortUsingTempFiles() {
+        QueryEngineSettings s = new QueryEngineSettings();
+        s.setLimitInMemory(3);
+        assertEquals("1, 1, 2, 3, 3, 4, 5, 6, 7", toString(FilterIterators.newSort(
+                it(3, 7, 1, 5, 3, 6, 2, 4, 1), INT_COMP, 100, s, INT_SERIALIZER)));
+        assertEquals("1, 1, 2", toString(FilterIterators.newSort(
+                it(3, 7, 1, 5, 3, 6, 2, 4, 1), INT_COMP, 3, s, INT_SERIALIZER)));
+        assertEquals("2, 3", toString(FilterIterators.newCombinedFilter(
+                it(3, 7, 1, 5, 3, 6, 2, 4, 1), true, 2, 1, INT_COMP, s, INT_SERIALIZER)));
+        
+        // without serializer, the limit is enforced
+        try {
+            toString(FilterIterators.newSort(it(3, 2, 1, 4), INT_COMP, 100, s));
+            fail();
+        } catch (UnsupportedOperationException e) {
+            // expected
+        }
+    }
+    
+    @Test
+    public void tempFilesDeleted() {
+        QueryEngineSettings s = new QueryEngineSettings();
+        s.setLimitInMemory(2);
+        int count = FilterIterators.getTempFileCount();
+        
+        // all entries read
+        toString(FilterIterators.newDistinct(
+                it(1, 2, 1, 3, 3, 1, 4, 2, 5, 4), s, INT_SERIALIZER));
+        assertEquals(count, FilterIterators.getTempFileCount());
+        toString(FilterIterators.newSort(
+                it(3, 7, 1, 5, 3, 6, 2, 4, 1), INT_COMP, 100, s, INT_SERIALIZER));
+        assertEquals(count, FilterIterators.getTempFileCount());
+        
+        // the limit is reached, but hasNext is not called afterwards
+        Iterator<Integer> it = FilterIterators.newCombinedFilter(
+                it(3, 7, 1, 5, 3, 6, 2, 4, 1), false, 2, 1, INT_COMP, s, INT_SERIALIZER);
+        assertEquals(2, it.next().intValue());
+        assertEquals(3, it.next().intValue());
+        assertEquals(count, FilterIterators.getTempFileCount());
+        
+        // abandoned before all entries were read
+        it = FilterIterators.newSort(
+                it(3, 7, 1, 5, 3, 6, 2, 4, 1), INT_COMP, 100, s, INT_SERIALIZER);
+        assertEquals(1, it.next().intValue());
+        assertTrue(FilterIterators.getTempFileCount() > count);
+        it = null;
+        for (int i = 0; i < 100 && FilterIterators.getTempFileCount() > count; i++) {
+            System.gc();
+            FilterIterators.deleteAbandonedTempFiles();
+        }
+        assertEquals(count, FilterIterators.getTempFileCount());
+    }
+    
     @Test
     public void limit() {
         assertEquals("", toString(FilterIterators.newLimit(it(), 0)));
@@ -0,0 +1,203 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.jackrabbit.oak.query;
+
+import static java.util.Collections.singletonMap;
+import static org.apache.jackrabbit.oak.api.QueryEngine.NO_BINDINGS;
+import static org.apache.jackrabbit.oak.api.QueryEngine.NO_MAPPINGS;
+import static org.apache.jackrabbit.oak.plugins.index.IndexConstants.INDEX_DEFINITIONS_NAME;
+import static org.apache.jackrabbit.oak.plugins.index.IndexConstants.INDEX_DEFINITIONS_NODE_TYPE;
+import static org.apache.jackrabbit.oak.plugins.index.IndexConstants.PROPERTY_NAMES;
+import static org.apache.jackrabbit.oak.plugins.index.IndexConstants.REINDEX_PROPERTY_NAME;
+import static org.apache.jackrabbit.oak.plugins.index.IndexConstants.TYPE_PROPERTY_NAME;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import org.apache.jackrabbit.JcrConstants;
+import org.apache.jackrabbit.oak.Oak;
+import org.apache.jackrabbit.oak.api.ContentRepository;
+import org.apache.jackrabbit.oak.api.PropertyValue;
+import org.apache.jackrabbit.oak.api.ResultRow;
+import org.apache.jackrabbit.oak.api.Root;
+import org.apache.jackrabbit.oak.api.Tree;
+import org.apache.jackrabbit.oak.api.Type;
+import org.apache.jackrabbit.oak.cache.CacheStats;
+import org.apache.jackrabbit.oak.plugins.index.property.PropertyIndexEditorProvider;
+import org.apache.jackrabbit.oak.plugins.index.property.PropertyIndexProvider;
+import org.apache.jackrabbit.oak.plugins.nodetype.write.InitialContent;
+import org.apache.jackrabbit.oak.spi.query.PropertyValues;
+import org.apache.jackrabbit.oak.spi.security.OpenSecurityProvider;
+import org.junit.Test;
+
+/**
+ * Tests the query plan cache.
+ */
+public class QueryPlanCacheTest extends AbstractQueryTest {
+
+    private final QueryEngineSettings settings = new QueryEngineSettings();
+
+    @Override
+    protected ContentRepository createRepository() {
+        return new Oak().with(new InitialContent())
+                .with(new OpenSecurityProvider())
+                .with(new PropertyIndexProvider())
+                .with(new PropertyIndexEditorProvider())
+                .with(settings)
+                .createContentRepository();
+    }
+
+    @Test
+    public void bindVariables() throws Exception {
+        createContent();
+        settings.setPlanCacheEnabled(true);
+        CacheStats stats = settings.getPlanCacheStats();
+        long hits = stats.getHitCount();
+        long misses = stats.getMissCount();
+        String query = "select [jcr:path] from [nt:base] where [x] = $x";
+        assertEquals("[/test/a]", 
+                execute(query, PropertyValues.newLong(1L)).toString());
+        assertEquals(misses + 1, stats.getMissCount());
+        assertEquals("[/test/b]", 
+                execute(query, PropertyValues.newLong(2L)).toString());
+        assertEquals(hits + 1, stats.getHitCount());
+        // a different type of bind variable is a different plan
+        assertEquals("[/test/a]", 
+                execute(query, PropertyValues.newString("1")).toString());
+        assertEquals(misses + 2, stats.getMissCount());
+        
+        settings.setPlanCacheEnabled(false);
+        assertEquals(0, stats.getElementCount());
+        assertEquals("[/test/b]", 
+                execute(query, PropertyValues.newLong(2L)).toString());
+        assertEquals(hits + 1, stats.getHitCount());
+        assertEquals(misses + 2, stats.getMissCount());
+    }
+
+    @Test
+    public void join() throws Exception {
+        createContent();
+        String query = "select a.[jcr:path], b.[jcr:path] from [nt:base] as a " + 
+                "inner join [nt:base] as b on ischildnode(b, a) " + 
+                "where a.[x] = 1 and isdescendantnode(b, '/test')";
+        List<String> result = executeQuery(query, SQL2);
+        String plan = executeQuery("explain " + query, SQL2).get(0);
+        settings.setPlanCacheEnabled(true);
+        for (int i = 0; i < 3; i++) {
+            assertEquals(result, executeQuery(query, SQL2));
+            assertEquals(plan, executeQuery("explain " + query, SQL2).get(0));
+        }
+        assertEquals(4, settings.getPlanCacheStats().getHitCount());
+    }
+
+    @Test
+    public void xpath() throws Exception {
+        createContent();
+        settings.setPlanCacheEnabled(true);
+        String query = "/jcr:root/test//*[@x = 1 or @x = 2]";
+        List<String> result = executeQuery(query, "xpath");
+        assertEquals("[/test/a, /test/b]", result.toString());
+        assertEquals(result, executeQuery(query, "xpath"));
+        assertEquals(1, settings.getPlanCacheStats().getHitCount());
+    }
+
+    @Test
+    public void indexDefinitionChanged() throws Exception {
+        createContent();
+        settings.setPlanCacheEnabled(true);
+        String query = "explain select [jcr:path] from [nt:base] where [x] = 1";
+        String plan = executeQuery(query, SQL2).get(0);
+        assertTrue(plan, plan.contains("traverse"));
+        assertEquals(plan, executeQuery(query, SQL2).get(0));
+        assertEquals(1, settings.getPlanCacheStats().getHitCount());
+
+        // changing the indexed content doesn't invalidate the cache
+        root.getTree("/test").addChild("c").setProperty("x", 3);
+        root.commit();
+        assertEquals(plan, executeQuery(query, SQL2).get(0));
+        assertEquals(2, settings.getPlanCacheStats().getHitCount());
+
+        Tree index = root.getTree("/").getChild(INDEX_DEFINITIONS_NAME).addChild("x");
+        index.setProperty(JcrConstants.JCR_PRIMARYTYPE,
+                INDEX_DEFINITIONS_NODE_TYPE, Type.NAME);
+        index.setProperty(TYPE_PROPERTY_NAME, "property");
+        index.setProperty(PROPERTY_NAMES, Collections.singletonList("x"), Type.NAMES);
+        index.setProperty(REINDEX_PROPERTY_NAME, true);
+        root.commit();
+        plan = executeQuery(query, SQL2).get(0);
+        assertTrue(plan, plan.contains("property x"));
+        assertEquals(2, settings.getPlanCacheStats().getHitCount());
+    }
+
+    @Test
+    public void sessionsOnDifferentRevisions() throws Exception {
+        createContent();
+        settings.setPlanCacheEnabled(true);
+        Root oldRoot = session.getLatestRoot();
+
+        Tree index = root.getTree("/").getChild(INDEX_DEFINITIONS_NAME).addChild("x");
+        index.setProperty(JcrConstants.JCR_PRIMARYTYPE,
+                INDEX_DEFINITIONS_NODE_TYPE, Type.NAME);
+        index.setProperty(TYPE_PROPERTY_NAME, "property");
+        index.setProperty(PROPERTY_NAMES, Collections.singletonList("x"), Type.NAMES);
+        index.setProperty(REINDEX_PROPERTY_NAME, true);
+        root.commit();
+
+        String query = "explain select [jcr:path] from [nt:base] where [x] = 1";
+        String plan = executeQuery(query, SQL2).get(0);
+        assertTrue(plan, plan.contains("property x"));
+        assertEquals(plan, executeQuery(query, SQL2).get(0));
+        assertEquals(1, settings.getPlanCacheStats().getHitCount());
+
+        // a session that still sees the old index definitions
+        // doesn't get the new plan
+        String oldPlan = readRow(oldRoot.getQueryEngine().executeQuery(query, SQL2,
+                Long.MAX_VALUE, 0, NO_BINDINGS, NO_MAPPINGS).getRows().
+                iterator().next(), false);
+        assertTrue(oldPlan, oldPlan.contains("traverse"));
+        assertEquals(1, settings.getPlanCacheStats().getHitCount());
+
+        // ... and doesn't clear the cached plans of other queries
+        String other = "explain select [jcr:path] from [nt:base] where [x] = 2";
+        executeQuery(other, SQL2);
+        oldRoot.getQueryEngine().executeQuery(query, SQL2,
+                Long.MAX_VALUE, 0, NO_BINDINGS, NO_MAPPINGS);
+        assertEquals(2, settings.getPlanCacheStats().getHitCount());
+        executeQuery(other, SQL2);
+        assertEquals(3, settings.getPlanCacheStats().getHitCount());
+    }
+
+    private List<String> execute(String query, PropertyValue x) throws Exception {
+        List<String> list = new ArrayList<String>();
+        for (ResultRow r : executeQuery(query, SQL2, 
+                singletonMap("x", x)).getRows()) {
+            list.add(r.getPath());
+        }
+        return list;
+    }
+
+    private void createContent() throws Exception {
+        Tree test = root.getTree("/").addChild("test");
+        test.addChild("a").setProperty("x", 1);
+        test.addChild("b").setProperty("x", 2);
+        root.commit();
+    }
+
+}
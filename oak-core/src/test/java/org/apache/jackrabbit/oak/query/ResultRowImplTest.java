@@ -0,0 +1,129 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.jackrabbit.oak.query;
+
+import static org.apache.jackrabbit.JcrConstants.JCR_SYSTEM;
+import static org.apache.jackrabbit.oak.plugins.nodetype.NodeTypeConstants.JCR_NODE_TYPES;
+import static org.apache.jackrabbit.oak.plugins.nodetype.write.InitialContent.INITIAL_CONTENT;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import java.math.BigDecimal;
+import java.util.Arrays;
+
+import org.apache.jackrabbit.oak.api.PropertyValue;
+import org.apache.jackrabbit.oak.api.Root;
+import org.apache.jackrabbit.oak.api.Tree;
+import org.apache.jackrabbit.oak.api.Type;
+import org.apache.jackrabbit.oak.core.ImmutableRoot;
+import org.apache.jackrabbit.oak.plugins.memory.PropertyStates;
+import org.apache.jackrabbit.oak.spi.query.PropertyValues;
+import org.apache.jackrabbit.oak.spi.state.NodeBuilder;
+import org.apache.jackrabbit.oak.spi.state.NodeState;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Tests the serialization of result rows that is used when query results
+ * are kept in temporary files.
+ */
+public class ResultRowImplTest {
+
+    private Query query;
+
+    private FilterIterators.Serializer<ResultRowImpl> serializer;
+
+    @Before
+    public void setUp() throws Exception {
+        NodeBuilder builder = INITIAL_CONTENT.builder();
+        builder.child("content").child("a");
+        NodeState state = builder.getNodeState();
+        Root root = new ImmutableRoot(state);
+
+        NodeState types = state.getChildNode(JCR_SYSTEM).getChildNode(JCR_NODE_TYPES);
+        SQL2Parser p = new SQL2Parser(null, types, new QueryEngineSettings());
+        query = p.parse("select * from [nt:base]");
+        query.setExecutionContext(new ExecutionContext(
+                state, root, new QueryEngineSettings(), null));
+        serializer = ResultRowImpl.getSerializer(query, null);
+    }
+
+    @Test
+    public void roundTrip() {
+        Tree tree = query.getTree("/content/a");
+        PropertyValue[] values = new PropertyValue[] {
+                PropertyValues.newString("x"),
+                PropertyValues.newLong(1L),
+                PropertyValues.newDouble(1.5),
+                PropertyValues.newDecimal(new BigDecimal("1.25")),
+                PropertyValues.newBoolean(true),
+                PropertyValues.newDate("2014-08-20T10:00:00.000Z"),
+                PropertyValues.newName("jcr:content"),
+                PropertyValues.newPath("/content/a"),
+                null,
+                PropertyValues.create(PropertyStates.createProperty("",
+                        Arrays.asList(1L, 2L), Type.LONGS)),
+                PropertyValues.create(PropertyStates.createProperty("",
+                        Arrays.asList(true, false), Type.BOOLEANS)),
+                PropertyValues.create(PropertyStates.createProperty("",
+                        Arrays.asList("2014-08-20T10:00:00.000Z",
+                                "2014-08-21T10:00:00.000Z"), Type.DATES)),
+                PropertyValues.newString(Arrays.asList("a", "b"))
+        };
+        PropertyValue[] orderValues = new PropertyValue[] {
+                PropertyValues.newDate("2014-08-20T10:00:00.000Z"),
+                null,
+                PropertyValues.create(PropertyStates.createProperty("",
+                        Arrays.asList(1.5, 2.5), Type.DOUBLES))
+        };
+        ResultRowImpl row = new ResultRowImpl(query,
+                new Tree[] { tree, null }, values, null, orderValues);
+
+        ResultRowImpl copy = serializer.deserialize(serializer.serialize(row));
+        assertEquals(row, copy);
+        assertArrayEquals(orderValues, copy.getOrderValues());
+        for (int i = 0; i < values.length; i++) {
+            if (values[i] == null) {
+                assertNull(copy.getValues()[i]);
+            } else {
+                assertEquals(values[i].getType(), copy.getValues()[i].getType());
+                assertEquals(values[i].isArray(), copy.getValues()[i].isArray());
+            }
+        }
+    }
+
+    @Test
+    public void roundTripWithoutOrderValues() {
+        ResultRowImpl row = new ResultRowImpl(query, new Tree[] { null },
+                new PropertyValue[] { PropertyValues.newString("x") }, null, null);
+
+        ResultRowImpl copy = serializer.deserialize(serializer.serialize(row));
+        assertEquals(row, copy);
+        assertNull(copy.getOrderValues());
+    }
+
+    @Test
+    public void binaryValuesAreNotSerialized() {
+        ResultRowImpl row = new ResultRowImpl(query, new Tree[] { null },
+                new PropertyValue[] { PropertyValues.newBinary(new byte[] { 1 }) },
+                null, null);
+
+        assertNull(serializer.serialize(row));
+    }
+
+}
@@ -0,0 +1,154 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.jackrabbit.oak.query;
+
+import static org.apache.jackrabbit.oak.api.QueryEngine.NO_BINDINGS;
+import static org.apache.jackrabbit.oak.api.QueryEngine.NO_MAPPINGS;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Collections;
+import java.util.List;
+
+import org.apache.jackrabbit.oak.Oak;
+import org.apache.jackrabbit.oak.api.ContentRepository;
+import org.apache.jackrabbit.oak.plugins.nodetype.write.InitialContent;
+import org.apache.jackrabbit.oak.spi.query.Cursor;
+import org.apache.jackrabbit.oak.spi.query.Filter;
+import org.apache.jackrabbit.oak.spi.query.QueryIndex;
+import org.apache.jackrabbit.oak.spi.query.QueryIndex.AdvancedQueryIndex;
+import org.apache.jackrabbit.oak.spi.query.QueryIndex.IndexPlan;
+import org.apache.jackrabbit.oak.spi.query.QueryIndex.OrderEntry;
+import org.apache.jackrabbit.oak.spi.query.QueryIndexProvider;
+import org.apache.jackrabbit.oak.spi.security.OpenSecurityProvider;
+import org.apache.jackrabbit.oak.spi.state.NodeState;
+import org.junit.Test;
+
+import com.google.common.collect.ImmutableList;
+
+/**
+ * Tests that the cost of an index plan reflects whether the index can sort.
+ */
+public class SortedIndexPlanTest extends AbstractQueryTest {
+
+    @Override
+    protected ContentRepository createRepository() {
+        return new Oak().with(new InitialContent())
+                .with(new OpenSecurityProvider())
+                .with(new QueryIndexProvider() {
+                    @Override
+                    public List<? extends QueryIndex> getQueryIndexes(NodeState nodeState) {
+                        return ImmutableList.of(
+                                new TestIndex("plainIndex", 50, false),
+                                new TestIndex("sortingIndex", 1000, true));
+                    }
+                })
+                .createContentRepository();
+    }
+
+    @Test
+    public void sortedPlanPreferredWithLimit() throws Exception {
+        // without sorting, the limit helps both indexes equally
+        String plan = explain("select [jcr:path] from [nt:base] where [x] = 1", 10);
+        assertTrue(plan, plan.contains("plainIndex"));
+
+        // the plain index needs to read all entries to sort them
+        plan = explain("select [jcr:path] from [nt:base] where [x] = 1 order by [x]", 10);
+        assertTrue(plan, plan.contains("sortingIndex"));
+
+        // without limit, reading fewer entries is better
+        plan = explain("select [jcr:path] from [nt:base] where [x] = 1 order by [x]",
+                Long.MAX_VALUE);
+        assertTrue(plan, plan.contains("plainIndex"));
+
+        // sorted by a different property
+        plan = explain("select [jcr:path] from [nt:base] where [x] = 1 order by [y]", 10);
+        assertTrue(plan, plan.contains("plainIndex"));
+    }
+
+    private String explain(String query, long limit) throws Exception {
+        return readRow(qe.executeQuery("explain " + query, SQL2, limit, 0,
+                NO_BINDINGS, NO_MAPPINGS).getRows().iterator().next(), false);
+    }
+
+    /**
+     * An index on the property "x" that can optionally sort by it.
+     */
+    private static class TestIndex implements QueryIndex, AdvancedQueryIndex {
+
+        private final String name;
+        private final long entryCount;
+        private final boolean sorting;
+
+        TestIndex(String name, long entryCount, boolean sorting) {
+            this.name = name;
+            this.entryCount = entryCount;
+            this.sorting = sorting;
+        }
+
+        @Override
+        public List<IndexPlan> getPlans(Filter filter,
+                List<OrderEntry> sortOrder, NodeState rootState) {
+            if (filter.getPropertyRestriction("x") == null) {
+                return Collections.emptyList();
+            }
+            List<OrderEntry> order = null;
+            if (sorting && sortOrder != null && sortOrder.size() == 1
+                    && sortOrder.get(0).getPropertyName().equals("x")) {
+                order = sortOrder;
+            }
+            return Collections.singletonList(new IndexPlan.Builder()
+                    .setCostPerExecution(1)
+                    .setCostPerEntry(1)
+                    .setEstimatedEntryCount(entryCount)
+                    .setFilter(filter)
+                    .setSortOrder(order)
+                    .build());
+        }
+
+        @Override
+        public String getPlanDescription(IndexPlan plan, NodeState root) {
+            return name;
+        }
+
+        @Override
+        public Cursor query(IndexPlan plan, NodeState rootState) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public double getCost(Filter filter, NodeState rootState) {
+            return Double.POSITIVE_INFINITY;
+        }
+
+        @Override
+        public Cursor query(Filter filter, NodeState rootState) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public String getPlan(Filter filter, NodeState rootState) {
+            return name;
+        }
+
+        @Override
+        public String getIndexName() {
+            return name;
+        }
+
+    }
+
+}
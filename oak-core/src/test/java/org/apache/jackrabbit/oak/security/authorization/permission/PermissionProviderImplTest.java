@@ -16,6 +16,7 @@
  */
 package org.apache.jackrabbit.oak.security.authorization.permission;
 
+import java.security.Principal;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.Map;
@@ -24,15 +25,20 @@ import java.util.Set;
 import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.ImmutableSet;
 import org.apache.jackrabbit.JcrConstants;
+import org.apache.jackrabbit.api.security.JackrabbitAccessControlList;
+import org.apache.jackrabbit.api.security.JackrabbitAccessControlManager;
 import org.apache.jackrabbit.api.security.user.Group;
 import org.apache.jackrabbit.api.security.user.UserManager;
+import org.apache.jackrabbit.commons.jackrabbit.authorization.AccessControlUtils;
 import org.apache.jackrabbit.oak.AbstractSecurityTest;
 import org.apache.jackrabbit.oak.api.ContentSession;
 import org.apache.jackrabbit.oak.api.Root;
 import org.apache.jackrabbit.oak.api.Tree;
+import org.apache.jackrabbit.oak.cache.CacheStats;
 import org.apache.jackrabbit.oak.core.ImmutableRoot;
 import org.apache.jackrabbit.oak.plugins.name.NamespaceConstants;
 import org.apache.jackrabbit.oak.plugins.nodetype.NodeTypeConstants;
+import org.apache.jackrabbit.oak.security.authorization.AuthorizationConfigurationImpl;
 import org.apache.jackrabbit.oak.spi.security.ConfigurationParameters;
 import org.apache.jackrabbit.oak.spi.security.authorization.AuthorizationConfiguration;
 import org.apache.jackrabbit.oak.spi.security.authorization.accesscontrol.AccessControlConstants;
@@ -226,4 +232,57 @@ public class PermissionProviderImplTest extends AbstractSecurityTest implements
             testSession.close();
         }
     }
-}
\ No newline at end of file
+
+    @Test
+    public void testSharedEntriesAfterModification() throws Exception {
+        Principal testPrincipal = getTestUser().getPrincipal();
+        NodeUtil node = new NodeUtil(root.getTree("/")).addChild("acl", JcrConstants.NT_UNSTRUCTURED);
+        node.addChild("child", JcrConstants.NT_UNSTRUCTURED);
+        String readNode = Permissions.getString(Permissions.READ_NODE);
+        try {
+            JackrabbitAccessControlManager acMgr = getAccessControlManager(root);
+            JackrabbitAccessControlList acl = AccessControlUtils.getAccessControlList(acMgr, "/acl");
+            acl.addEntry(testPrincipal, privilegesFromNames(PrivilegeConstants.JCR_READ), true);
+            acMgr.setPolicy("/acl", acl);
+            root.commit();
+
+            ContentSession testSession = createTestSession();
+            try {
+                PermissionProvider pp = createPermissionProvider(testSession);
+                assertTrue(pp.isGranted("/acl/child", readNode));
+            } finally {
+                testSession.close();
+            }
+
+            acl = AccessControlUtils.getAccessControlList(acMgr, "/acl/child");
+            acl.addEntry(testPrincipal, privilegesFromNames(PrivilegeConstants.JCR_READ), false);
+            acMgr.setPolicy("/acl/child", acl);
+            root.commit();
+
+            // a new session must not see the entries cached by the first one
+            testSession = createTestSession();
+            try {
+                PermissionProvider pp = createPermissionProvider(testSession);
+                assertTrue(pp.isGranted("/acl", readNode));
+                assertFalse(pp.isGranted("/acl/child", readNode));
+            } finally {
+                testSession.close();
+            }
+
+            // but shares them with other sessions on the same revision
+            CacheStats stats = ((AuthorizationConfigurationImpl) config).getPermissionEntryCache().getStats();
+            long hits = stats.getHitCount();
+            testSession = createTestSession();
+            try {
+                PermissionProvider pp = createPermissionProvider(testSession);
+                assertFalse(pp.isGranted("/acl/child", readNode));
+            } finally {
+                testSession.close();
+            }
+            assertTrue(stats.getHitCount() > hits);
+        } finally {
+            root.getTree("/acl").remove();
+            root.commit();
+        }
+    }
+}
@@ -17,6 +17,7 @@
 package org.apache.jackrabbit.oak.security.authorization.permission;
 
 import java.security.Principal;
+import java.util.Collections;
 import javax.jcr.security.AccessControlManager;
 
 import org.apache.jackrabbit.JcrConstants;
@@ -25,6 +26,8 @@ import org.apache.jackrabbit.commons.jackrabbit.authorization.AccessControlUtils
 import org.apache.jackrabbit.oak.AbstractSecurityTest;
 import org.apache.jackrabbit.oak.api.ContentSession;
 import org.apache.jackrabbit.oak.api.Tree;
+import org.apache.jackrabbit.oak.core.ImmutableRoot;
+import org.apache.jackrabbit.oak.plugins.tree.ImmutableTree;
 import org.apache.jackrabbit.oak.spi.security.authorization.AuthorizationConfiguration;
 import org.apache.jackrabbit.oak.spi.security.authorization.accesscontrol.AccessControlConstants;
 import org.apache.jackrabbit.oak.spi.security.authorization.permission.PermissionProvider;
@@ -106,4 +109,65 @@ public class TreePermissionImplTest extends AbstractSecurityTest implements Acce
         assertTrue(tp.canRead());
         assertFalse(tp.canReadProperties());
     }
-}
\ No newline at end of file
+
+    @Test
+    public void testCanReadInherited() throws Exception {
+        NodeUtil a = new NodeUtil(root.getTree("/test")).addChild("a", JcrConstants.NT_UNSTRUCTURED);
+        a.addChild("b", JcrConstants.NT_UNSTRUCTURED).addChild("c", JcrConstants.NT_UNSTRUCTURED);
+
+        AccessControlManager acMgr = getAccessControlManager(root);
+        JackrabbitAccessControlList acl = AccessControlUtils.getAccessControlList(acMgr, "/test");
+        acl.addEntry(testPrincipal, privilegesFromNames(PrivilegeConstants.JCR_READ), true);
+        acMgr.setPolicy("/test", acl);
+        acl = AccessControlUtils.getAccessControlList(acMgr, "/test/a/b");
+        acl.addEntry(testPrincipal, privilegesFromNames(PrivilegeConstants.JCR_READ), false);
+        acMgr.setPolicy("/test/a/b", acl);
+        root.commit();
+
+        ImmutableTree test = new ImmutableRoot(root).getTree("/test");
+        TreePermission tp = getTreePermission("/test");
+        assertTrue(tp.canRead());
+
+        TreePermission tpA = tp.getChildPermission("a", test.getChild("a").getNodeState());
+        assertTrue(tpA.canRead());
+
+        TreePermission tpB = tpA.getChildPermission("b", test.getChild("a").getChild("b").getNodeState());
+        assertFalse(tpB.canRead());
+
+        TreePermission tpC = tpB.getChildPermission("c", test.getChild("a").getChild("b").getChild("c").getNodeState());
+        assertFalse(tpC.canRead());
+    }
+
+    @Test
+    public void testCanReadInheritedWithRestriction() throws Exception {
+        NodeUtil b = new NodeUtil(root.getTree("/test")).addChild("a", JcrConstants.NT_UNSTRUCTURED)
+                .addChild("b", JcrConstants.NT_UNSTRUCTURED);
+        b.addChild("c", JcrConstants.NT_UNSTRUCTURED);
+        b.addChild("d", JcrConstants.NT_UNSTRUCTURED);
+
+        AccessControlManager acMgr = getAccessControlManager(root);
+        JackrabbitAccessControlList acl = AccessControlUtils.getAccessControlList(acMgr, "/test");
+        acl.addEntry(testPrincipal, privilegesFromNames(PrivilegeConstants.JCR_READ), true);
+        acl.addEntry(testPrincipal, privilegesFromNames(PrivilegeConstants.JCR_READ), false,
+                Collections.singletonMap(REP_GLOB, getValueFactory().createValue("*/c")));
+        acMgr.setPolicy("/test", acl);
+        root.commit();
+
+        ImmutableTree treeB = new ImmutableRoot(root).getTree("/test/a/b");
+        TreePermission tp = getTreePermission("/test");
+        assertTrue(tp.canRead());
+
+        TreePermission tpA = tp.getChildPermission("a", treeB.getParent().getNodeState());
+        assertTrue(tpA.canRead());
+
+        TreePermission tpB = tpA.getChildPermission("b", treeB.getNodeState());
+        assertTrue(tpB.canRead());
+
+        // the read status of b must not be inherited: c is excluded by the glob
+        TreePermission tpC = tpB.getChildPermission("c", treeB.getChild("c").getNodeState());
+        assertFalse(tpC.canRead());
+
+        TreePermission tpD = tpB.getChildPermission("d", treeB.getChild("d").getNodeState());
+        assertTrue(tpD.canRead());
+    }
+}
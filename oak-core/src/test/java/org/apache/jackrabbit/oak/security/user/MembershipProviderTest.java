@@ -288,6 +288,42 @@ public class MembershipProviderTest extends AbstractSecurityTest {
         );
     }
 
+    @Test
+    public void testIsMember() throws Exception {
+        User user = createUser();
+        Group grp = createGroup();
+        Group g1 = createGroup();
+        Group g2 = createGroup();
+        Group other = createGroup();
+        grp.addMember(g1);
+        g1.addMember(g2);
+        g2.addMember(user);
+        for (int i=0; i<SIZE_TH * 2; i++) {
+            other.addMember(createUser());
+        }
+        root.commit();
+
+        assertTrue(g2.isDeclaredMember(user));
+        assertFalse(g1.isDeclaredMember(user));
+        assertTrue(g1.isMember(user));
+        assertTrue(grp.isMember(user));
+        assertTrue(grp.isMember(g2));
+        assertFalse(other.isMember(user));
+        assertFalse(g2.isMember(grp));
+
+        // transient modifications are taken into account as well
+        g1.removeMember(g2);
+        assertFalse(grp.isMember(user));
+        assertFalse(g1.isDeclaredMember(g2));
+        other.addMember(g1);
+        assertTrue(other.isMember(g1));
+        root.commit();
+
+        assertFalse(grp.isMember(user));
+        assertTrue(other.isMember(g1));
+        assertFalse(other.isMember(user));
+    }
+
     private User createUser() throws RepositoryException {
         String userId = "testUser" + testUsers.size();
         User usr = userMgr.createUser(userId, "pw");
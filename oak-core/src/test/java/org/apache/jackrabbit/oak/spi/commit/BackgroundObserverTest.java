@@ -27,6 +27,7 @@ import static org.junit.Assert.assertTrue;
 import java.util.Collections;
 import java.util.List;
 import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.TimeUnit;
 
@@ -65,11 +66,107 @@ public class BackgroundObserverTest {
         }
     }
 
+    /**
+     * Assert that the queue delay reflects the age of the oldest queued change
+     * and is reported when the change is removed from the queue.
+     */
+    @Test
+    public void queueDelay() throws InterruptedException {
+        List<Runnable> tasks = Lists.newArrayList();
+        List<Long> delays = Lists.newArrayList();
+        BackgroundObserver observer = createManualObserver(tasks, delays, 2);
+
+        assertEquals(0, observer.getQueueDelay());
+        contentChanged(observer, 0);
+        Thread.sleep(50);
+        contentChanged(observer, 1);
+        assertTrue(observer.getQueueDelay() >= 50);
+
+        assertEquals(1, tasks.size());
+        tasks.get(0).run();
+        assertEquals(0, observer.getQueueDelay());
+        assertEquals(2, delays.size());
+        assertTrue(delays.get(0) >= 50);
+    }
+
+    /**
+     * Assert that a change covering changes skipped while the queue was full
+     * is as old as the first skipped change.
+     */
+    @Test
+    public void queueDelayAfterOverflow() throws InterruptedException {
+        List<Runnable> tasks = Lists.newArrayList();
+        List<Long> delays = Lists.newArrayList();
+        BackgroundObserver observer = createManualObserver(tasks, delays, 2);
+
+        contentChanged(observer, 0);
+        contentChanged(observer, 1);
+        // skipped, the queue is full
+        contentChanged(observer, 2);
+        Thread.sleep(50);
+        tasks.get(0).run();
+        assertEquals(0, observer.getQueueDelay());
+
+        contentChanged(observer, 3);
+        assertTrue(observer.getQueueDelay() >= 50);
+
+        tasks.get(tasks.size() - 1).run();
+        assertEquals(3, delays.size());
+        assertTrue(delays.get(2) >= 50);
+    }
+
+    /**
+     * Assert that merged external changes are as old as the oldest of them.
+     */
+    @Test
+    public void queueDelayOfMergedChanges() throws InterruptedException {
+        List<Runnable> tasks = Lists.newArrayList();
+        List<Long> delays = Lists.newArrayList();
+        BackgroundObserver observer = createManualObserver(tasks, delays, 2);
+
+        externalChange(observer, 0);
+        Thread.sleep(50);
+        externalChange(observer, 1);
+        assertTrue(observer.getQueueDelay() >= 50);
+
+        tasks.get(0).run();
+        assertEquals(1, delays.size());
+        assertTrue(delays.get(0) >= 50);
+    }
+
+    /**
+     * Create an observer whose queued changes are only processed by running
+     * the tasks submitted to its executor, and which records the delay of
+     * processed changes.
+     */
+    private static BackgroundObserver createManualObserver(
+            final List<Runnable> tasks, final List<Long> delays, int queueLength) {
+        return new BackgroundObserver(new Observer() {
+            @Override
+            public void contentChanged(@Nonnull NodeState root, @Nullable CommitInfo info) { }
+        }, new Executor() {
+            @Override
+            public void execute(Runnable command) {
+                tasks.add(command);
+            }
+        }, queueLength) {
+            @Override
+            protected void removed(int queueSize, long delay) {
+                delays.add(delay);
+            }
+        };
+    }
+
     private static void contentChanged(Observer observer, long value) {
         NodeState node = EMPTY_NODE.builder().setProperty("p", value).getNodeState();
         observer.contentChanged(node, COMMIT_INFO);
     }
 
+    private static void externalChange(Observer observer, long value) {
+        NodeState node = EMPTY_NODE.builder().setProperty("p", value).getNodeState();
+        observer.contentChanged(node, null);
+    }
+
     private static void done(Observer observer) {
         NodeState node = EMPTY_NODE.builder().setProperty("done", true).getNodeState();
         observer.contentChanged(node, COMMIT_INFO);
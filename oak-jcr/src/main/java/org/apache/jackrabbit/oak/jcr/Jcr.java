@@ -43,6 +43,7 @@ import org.apache.jackrabbit.oak.plugins.nodetype.TypeEditorProvider;
 import org.apache.jackrabbit.oak.plugins.nodetype.write.InitialContent;
 import org.apache.jackrabbit.oak.plugins.observation.CommitRateLimiter;
 import org.apache.jackrabbit.oak.plugins.version.VersionEditorProvider;
+import org.apache.jackrabbit.oak.query.QueryEngineSettings;
 import org.apache.jackrabbit.oak.security.SecurityProviderImpl;
 import org.apache.jackrabbit.oak.spi.commit.CommitHook;
 import org.apache.jackrabbit.oak.spi.commit.ConflictHandler;
@@ -166,6 +167,12 @@ public class Jcr {
         return this;
     }
 
+    @Nonnull
+    public final Jcr with(@Nonnull QueryEngineSettings queryEngineSettings) {
+        oak.with(checkNotNull(queryEngineSettings));
+        return this;
+    }
+
     @Nonnull
     public Jcr withAsyncIndexing() {
         oak.withAsyncIndexing();
@@ -25,6 +25,7 @@ import static org.apache.jackrabbit.oak.plugins.observation.filter.VisibleFilter
 import static org.apache.jackrabbit.oak.spi.whiteboard.WhiteboardUtils.registerMBean;
 import static org.apache.jackrabbit.oak.spi.whiteboard.WhiteboardUtils.registerObserver;
 
+import java.util.concurrent.Executor;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicLong;
 import java.util.concurrent.atomic.AtomicReference;
@@ -80,6 +81,15 @@ class ChangeProcessor implements Observer {
      */
     public static final int MAX_DELAY = 10000;
 
+    /**
+     * Delay in milli seconds of the oldest change in the revision queue at
+     * which the queue is considered as full as if it had reached its maximal
+     * length. Commits are delayed once the delay exceeds {@code DELAY_THRESHOLD}
+     * of this value, such that a slow listener causes back pressure even if
+     * its queue is not filling up.
+     */
+    public static final int MAX_QUEUE_DELAY = 60000;
+
     private final ContentSession contentSession;
     private final NamePathMapper namePathMapper;
     private final ListenerTracker tracker;
@@ -88,9 +98,16 @@ class ChangeProcessor implements Observer {
     private final AtomicLong eventCount;
     private final AtomicLong eventDuration;
     private final TimeSeriesMax maxQueueLength;
+    private final TimeSeriesMax maxQueueDelay;
     private final int queueLength;
     private final CommitRateLimiter commitRateLimiter;
 
+    /**
+     * Delay in milli seconds of the oldest change at which the queue is
+     * considered full. See {@link #MAX_QUEUE_DELAY}.
+     */
+    private volatile int queueDelayLimit = MAX_QUEUE_DELAY;
+
     private CompositeRegistration registration;
     private volatile NodeState previousRoot;
 
@@ -110,6 +127,7 @@ class ChangeProcessor implements Observer {
         this.eventCount = statisticManager.getCounter(OBSERVATION_EVENT_COUNTER);
         this.eventDuration = statisticManager.getCounter(OBSERVATION_EVENT_DURATION);
         this.maxQueueLength = statisticManager.maxQueLengthRecorder();
+        this.maxQueueDelay = statisticManager.maxQueueDelayRecorder();
         this.queueLength = queueLength;
         this.commitRateLimiter = commitRateLimiter;
     }
@@ -122,6 +140,15 @@ class ChangeProcessor implements Observer {
         filterProvider.set(filter);
     }
 
+    /**
+     * Set the delay of the oldest change in the revision queue at which the
+     * queue is considered full, instead of {@link #MAX_QUEUE_DELAY}.
+     * @param queueDelayLimit  the delay in milli seconds
+     */
+    void setQueueDelayLimit(int queueDelayLimit) {
+        this.queueDelayLimit = queueDelayLimit;
+    }
+
     /**
      * Start this change processor
      * @param whiteboard  the whiteboard instance to used for scheduling individual
@@ -151,7 +178,7 @@ class ChangeProcessor implements Observer {
         });
     }
 
-    private BackgroundObserver createObserver(final WhiteboardExecutor executor) {
+    BackgroundObserver createObserver(Executor executor) {
         return new BackgroundObserver(this, executor, queueLength) {
             private volatile long delay;
             private volatile boolean blocking;
@@ -171,15 +198,17 @@ class ChangeProcessor implements Observer {
                     }
                     blocking = true;
                 } else {
-                    double fillRatio = (double) queueSize / queueLength;
+                    double fillRatio = Math.max(
+                            (double) queueSize / queueLength,
+                            Math.min(1, (double) getQueueDelay() / queueDelayLimit));
                     if (fillRatio > DELAY_THRESHOLD) {
                         if (commitRateLimiter != null) {
                             if (delay == 0) {
                                 LOG.warn("Revision queue is becoming full. Further commits will be delayed.");
                             }
 
-                            // Linear backoff proportional to the number of items exceeding
-                            // DELAY_THRESHOLD. Offset by 1 to trigger the log message in the
+                            // Linear backoff proportional to the number of items (or the
+                            // delay of the oldest item) exceeding DELAY_THRESHOLD. Offset by 1 to trigger the log message in the
                             // else branch once the queue falls below DELAY_THRESHOLD again.
                             int newDelay = 1 + (int) ((fillRatio - DELAY_THRESHOLD) / (1 - DELAY_THRESHOLD) * MAX_DELAY);
                             if (newDelay > delay) {
@@ -203,6 +232,11 @@ class ChangeProcessor implements Observer {
                     }
                 }
             }
+
+            @Override
+            protected void removed(int queueSize, long queueDelay) {
+                maxQueueDelay.recordValue(queueDelay);
+            }
         };
     }
 
@@ -261,7 +295,8 @@ class ChangeProcessor implements Observer {
             try {
                 FilterProvider provider = filterProvider.get();
                 // FIXME don't rely on toString for session id
-                if (provider.includeCommit(contentSession.toString(), info)) {
+                if (provider.includeCommit(contentSession.toString(), info)
+                        && ChangeSet.get(previousRoot, root).includes(provider.getSubTrees())) {
                     EventFilter filter = provider.getFilter(previousRoot, root);
                     EventIterator events = new EventQueue(namePathMapper, info, previousRoot, root,
                             provider.getSubTrees(), Filters.all(filter, VISIBLE_FILTER));
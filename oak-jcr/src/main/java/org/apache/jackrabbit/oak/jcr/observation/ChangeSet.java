@@ -0,0 +1,205 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.jackrabbit.oak.jcr.observation;
+
+import static com.google.common.collect.Sets.newHashSet;
+import static org.apache.jackrabbit.oak.commons.PathUtils.concat;
+import static org.apache.jackrabbit.oak.commons.PathUtils.isAncestor;
+import static org.apache.jackrabbit.oak.spi.state.NodeStateUtils.isHidden;
+
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+
+import javax.annotation.Nonnull;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import org.apache.jackrabbit.oak.api.PropertyState;
+import org.apache.jackrabbit.oak.spi.state.NodeState;
+import org.apache.jackrabbit.oak.spi.state.NodeStateDiff;
+
+/**
+ * The set of paths touched by a change between two root states. A change set
+ * is computed once per change and shared by all {@link ChangeProcessor}s, which
+ * use it to skip changes outside of the sub trees their listeners observe
+ * without diffing them and without creating their filters.
+ * <p>
+ * Hidden nodes are ignored as they never result in observation events. If
+ * a change touches more than {@link #MAX_PATHS} paths the change set gives up
+ * and {@link #includes(Iterable)} always returns {@code true}.
+ */
+class ChangeSet {
+
+    /**
+     * Maximal number of paths tracked for a single change.
+     */
+    static final int MAX_PATHS = Integer.getInteger("oak.observation.maxChangeSetPaths", 1000);
+
+    /**
+     * Recently computed change sets keyed by the identity of their after state.
+     * All observers receive the same root state instances, so this allows the
+     * change set of a change to be computed only once.
+     */
+    private static final Cache<NodeState, ChangeSet> CHANGE_SETS =
+            CacheBuilder.newBuilder().weakKeys().maximumSize(64).build();
+
+    private final NodeState before;
+
+    /**
+     * Paths of the nodes whose properties changed.
+     */
+    private final Set<String> changedPaths = newHashSet();
+
+    /**
+     * Paths of the roots of added and removed sub trees.
+     */
+    private final Set<String> subtreePaths = newHashSet();
+
+    private boolean overflow;
+
+    private ChangeSet(NodeState before) {
+        this.before = before;
+    }
+
+    /**
+     * Get the change set between the two given root states, computing it
+     * unless it has been computed already for the same pair of states.
+     *
+     * @param before  before state
+     * @param after   after state
+     * @return  the change set
+     */
+    @Nonnull
+    static ChangeSet get(@Nonnull final NodeState before, @Nonnull final NodeState after) {
+        try {
+            ChangeSet changeSet = CHANGE_SETS.get(after, new Callable<ChangeSet>() {
+                @Override
+                public ChangeSet call() {
+                    return create(before, after);
+                }
+            });
+            // the before state differs if the queue of an observer
+            // has been compacted
+            return changeSet.before == before ? changeSet : create(before, after);
+        } catch (ExecutionException e) {
+            return create(before, after);
+        }
+    }
+
+    /**
+     * Compute the change set between the two given root states.
+     *
+     * @param before  before state
+     * @param after   after state
+     * @return  the change set
+     */
+    @Nonnull
+    static ChangeSet create(@Nonnull NodeState before, @Nonnull NodeState after) {
+        ChangeSet changeSet = new ChangeSet(before);
+        changeSet.overflow = !after.compareAgainstBaseState(before, changeSet.new Diff("/"));
+        return changeSet;
+    }
+
+    /**
+     * Determine whether this change set might contain events for any of the
+     * given sub trees.
+     *
+     * @param subTrees  paths of the observed sub trees
+     * @return  {@code false} if the change does not touch any of the sub trees,
+     *          {@code true} otherwise.
+     */
+    boolean includes(@Nonnull Iterable<String> subTrees) {
+        if (overflow) {
+            return true;
+        }
+        for (String subTree : subTrees) {
+            for (String path : changedPaths) {
+                if (path.equals(subTree) || isAncestor(subTree, path)) {
+                    return true;
+                }
+            }
+            for (String path : subtreePaths) {
+                if (path.equals(subTree) || isAncestor(subTree, path) || isAncestor(path, subTree)) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    private int size() {
+        return changedPaths.size() + subtreePaths.size();
+    }
+
+    private class Diff implements NodeStateDiff {
+        private final String path;
+
+        Diff(String path) {
+            this.path = path;
+        }
+
+        @Override
+        public boolean propertyAdded(PropertyState after) {
+            return nodeChanged();
+        }
+
+        @Override
+        public boolean propertyChanged(PropertyState before, PropertyState after) {
+            return nodeChanged();
+        }
+
+        @Override
+        public boolean propertyDeleted(PropertyState before) {
+            return nodeChanged();
+        }
+
+        @Override
+        public boolean childNodeAdded(String name, NodeState after) {
+            return subtreeChanged(name);
+        }
+
+        @Override
+        public boolean childNodeChanged(String name, NodeState before, NodeState after) {
+            if (isHidden(name)) {
+                return true;
+            }
+            return after.compareAgainstBaseState(before, new Diff(concat(path, name)));
+        }
+
+        @Override
+        public boolean childNodeDeleted(String name, NodeState before) {
+            return subtreeChanged(name);
+        }
+
+        private boolean nodeChanged() {
+            // hidden properties are not skipped: changes to the child order
+            // result in reorder events
+            changedPaths.add(path);
+            return size() <= MAX_PATHS;
+        }
+
+        private boolean subtreeChanged(String name) {
+            if (!isHidden(name)) {
+                subtreePaths.add(concat(path, name));
+            }
+            return size() <= MAX_PATHS;
+        }
+    }
+}
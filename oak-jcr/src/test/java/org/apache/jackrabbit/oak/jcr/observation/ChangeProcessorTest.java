@@ -0,0 +1,95 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.jackrabbit.oak.jcr.observation;
+
+import static org.apache.jackrabbit.oak.plugins.memory.EmptyNodeState.EMPTY_NODE;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+
+import javax.jcr.observation.Event;
+import javax.jcr.observation.EventIterator;
+import javax.jcr.observation.EventListener;
+
+import org.apache.jackrabbit.commons.observation.ListenerTracker;
+import org.apache.jackrabbit.oak.namepath.NamePathMapper;
+import org.apache.jackrabbit.oak.plugins.observation.CommitRateLimiter;
+import org.apache.jackrabbit.oak.spi.commit.BackgroundObserver;
+import org.apache.jackrabbit.oak.spi.commit.CommitInfo;
+import org.apache.jackrabbit.oak.spi.whiteboard.DefaultWhiteboard;
+import org.apache.jackrabbit.oak.stats.StatisticManager;
+import org.junit.After;
+import org.junit.Test;
+
+public class ChangeProcessorTest {
+    private static final CommitInfo COMMIT_INFO = new CommitInfo("no-session", null);
+
+    private final ScheduledExecutorService executor = Executors.newSingleThreadScheduledExecutor();
+
+    @After
+    public void tearDown() {
+        executor.shutdown();
+    }
+
+    /**
+     * Assert that commits are delayed if the oldest queued change waits too
+     * long, even though the queue is far from full.
+     */
+    @Test
+    public void queueDelayBackPressure() throws InterruptedException {
+        final List<Long> delays = new ArrayList<Long>();
+        CommitRateLimiter commitRateLimiter = new CommitRateLimiter() {
+            @Override
+            public void setDelay(long delay) {
+                delays.add(delay);
+                super.setDelay(delay);
+            }
+        };
+        ListenerTracker tracker = new ListenerTracker(new EventListener() {
+            @Override
+            public void onEvent(EventIterator events) { }
+        }, Event.NODE_ADDED, "/", true, null, null, false);
+        ChangeProcessor processor = new ChangeProcessor(null, NamePathMapper.DEFAULT, tracker,
+                null, new StatisticManager(new DefaultWhiteboard(), executor), 100,
+                commitRateLimiter);
+        processor.setQueueDelayLimit(100);
+
+        // queued changes are never processed
+        BackgroundObserver observer = processor.createObserver(new Executor() {
+            @Override
+            public void execute(Runnable command) { }
+        });
+
+        observer.contentChanged(EMPTY_NODE, COMMIT_INFO);
+        assertTrue(delays.isEmpty());
+
+        Thread.sleep(150);
+        observer.contentChanged(EMPTY_NODE, COMMIT_INFO);
+        assertEquals(1, delays.size());
+        assertEquals(1 + ChangeProcessor.MAX_DELAY, delays.get(0).longValue());
+
+        observer.close();
+    }
+
+}
@@ -0,0 +1,87 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.jackrabbit.oak.jcr.observation;
+
+import static java.util.Collections.singleton;
+import static org.apache.jackrabbit.oak.plugins.memory.EmptyNodeState.EMPTY_NODE;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import org.apache.jackrabbit.oak.spi.state.NodeBuilder;
+import org.apache.jackrabbit.oak.spi.state.NodeState;
+import org.junit.Test;
+
+public class ChangeSetTest {
+
+    private static NodeState createRoot() {
+        NodeBuilder builder = EMPTY_NODE.builder();
+        builder.child("a").child("b").child("c");
+        builder.child("x").child("y");
+        return builder.getNodeState();
+    }
+
+    @Test
+    public void propertyChanged() {
+        NodeState before = createRoot();
+        NodeBuilder builder = before.builder();
+        builder.child("a").child("b").setProperty("p", "v");
+        ChangeSet changeSet = ChangeSet.create(before, builder.getNodeState());
+
+        assertTrue(changeSet.includes(singleton("/")));
+        assertTrue(changeSet.includes(singleton("/a")));
+        assertTrue(changeSet.includes(singleton("/a/b")));
+        assertFalse(changeSet.includes(singleton("/a/b/c")));
+        assertFalse(changeSet.includes(singleton("/x")));
+    }
+
+    @Test
+    public void subtreeAdded() {
+        NodeState before = createRoot();
+        NodeBuilder builder = before.builder();
+        builder.child("a").child("new").child("child");
+        ChangeSet changeSet = ChangeSet.create(before, builder.getNodeState());
+
+        assertTrue(changeSet.includes(singleton("/a")));
+        assertTrue(changeSet.includes(singleton("/a/new")));
+        assertTrue(changeSet.includes(singleton("/a/new/child")));
+        assertFalse(changeSet.includes(singleton("/a/b")));
+        assertFalse(changeSet.includes(singleton("/x")));
+    }
+
+    @Test
+    public void hiddenNodesIgnored() {
+        NodeState before = createRoot();
+        NodeBuilder builder = before.builder();
+        builder.child("x").child(":index").setProperty("p", "v");
+        ChangeSet changeSet = ChangeSet.create(before, builder.getNodeState());
+
+        assertFalse(changeSet.includes(singleton("/")));
+    }
+
+    @Test
+    public void shared() {
+        NodeState before = createRoot();
+        NodeBuilder builder = before.builder();
+        builder.child("x").setProperty("p", "v");
+        NodeState after = builder.getNodeState();
+
+        assertSame(ChangeSet.get(before, after), ChangeSet.get(before, after));
+    }
+}
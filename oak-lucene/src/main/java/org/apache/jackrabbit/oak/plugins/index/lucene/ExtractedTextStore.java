@@ -0,0 +1,134 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.jackrabbit.oak.plugins.index.lucene;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import java.io.File;
+import java.io.IOException;
+
+import javax.annotation.CheckForNull;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.common.base.Charsets;
+import com.google.common.hash.Hashing;
+import com.google.common.io.Files;
+
+/**
+ * A persistent store for the text extracted from binaries, so that a binary
+ * is only parsed once, even if the node that contains it is re-indexed, or
+ * if the same binary is stored in multiple nodes. The key is the content
+ * identity of the binary (see {@link org.apache.jackrabbit.oak.api.Blob#getContentIdentity()}),
+ * together with the maximum number of characters that were extracted, so
+ * the store can be shared between repositories that use the same blob
+ * store (even if they use different limits), and can be filled ahead of
+ * time (for example using the "extract" run mode of oak-run).
+ * <p>
+ * The text is stored in one UTF-8 file per binary and maximum length, in a
+ * directory tree below the given root directory. The file name is the
+ * SHA-256 hash of the key.
+ */
+public class ExtractedTextStore {
+
+    private static final Logger log = LoggerFactory.getLogger(ExtractedTextStore.class);
+
+    private static final String SUFFIX = ".txt";
+
+    private final File dir;
+
+    public ExtractedTextStore(File dir) throws IOException {
+        this.dir = checkNotNull(dir);
+        if (!dir.isDirectory() && !dir.mkdirs()) {
+            throw new IOException("Could not create the directory " + dir);
+        }
+    }
+
+    public File getDirectory() {
+        return dir;
+    }
+
+    /**
+     * Get the extracted text of a binary.
+     *
+     * @param contentIdentity the content identity of the binary
+     * @param maxExtractLength the maximum number of characters extracted
+     *            from the binary, or -1 for no limit
+     * @return the text, or null if not stored
+     */
+    @CheckForNull
+    public String get(String contentIdentity, int maxExtractLength) {
+        File file = getFile(contentIdentity, maxExtractLength);
+        if (!file.isFile()) {
+            return null;
+        }
+        try {
+            return Files.toString(file, Charsets.UTF_8);
+        } catch (IOException e) {
+            log.warn("Could not read the extracted text from " + file, e);
+            return null;
+        }
+    }
+
+    /**
+     * Store the extracted text of a binary. The text is written to a
+     * temporary file first, so that concurrent readers never see a partially
+     * written text.
+     *
+     * @param contentIdentity the content identity of the binary
+     * @param maxExtractLength the maximum number of characters extracted
+     *            from the binary, or -1 for no limit
+     * @param text the text
+     */
+    public void put(String contentIdentity, int maxExtractLength, String text) {
+        File file = getFile(contentIdentity, maxExtractLength);
+        File parent = file.getParentFile();
+        File tmp = null;
+        try {
+            if (!parent.isDirectory() && !parent.mkdirs()) {
+                throw new IOException("Could not create the directory " + parent);
+            }
+            tmp = File.createTempFile(file.getName(), ".tmp", parent);
+            Files.write(text, tmp, Charsets.UTF_8);
+            if (!tmp.renameTo(file) && !file.isFile()) {
+                throw new IOException("Could not rename " + tmp + " to " + file);
+            }
+        } catch (IOException e) {
+            log.warn("Could not store the extracted text in " + file, e);
+        } finally {
+            if (tmp != null && tmp.exists() && !tmp.delete()) {
+                log.debug("Could not remove the temporary file {}", tmp);
+            }
+        }
+    }
+
+    private File getFile(String contentIdentity, int maxExtractLength) {
+        String hash = Hashing.sha256().hashString(
+                maxExtractLength + ":" + contentIdentity, Charsets.UTF_8).toString();
+        // two levels of sub-directories, to keep the directories small
+        File parent = new File(new File(dir, hash.substring(0, 2)),
+                hash.substring(2, 4));
+        return new File(parent, hash + SUFFIX);
+    }
+
+    @Override
+    public String toString() {
+        return "ExtractedTextStore(" + dir + ")";
+    }
+
+}
@@ -16,10 +16,21 @@
  */
 package org.apache.jackrabbit.oak.plugins.index.lucene;
 
+import java.util.ArrayList;
+import java.util.List;
+
+import javax.jcr.PropertyType;
+
+import org.apache.lucene.document.DoubleDocValuesField;
+import org.apache.lucene.document.DoubleField;
 import org.apache.lucene.document.Field;
 import org.apache.lucene.document.FieldType;
+import org.apache.lucene.document.LongField;
+import org.apache.lucene.document.NumericDocValuesField;
+import org.apache.lucene.document.SortedDocValuesField;
 import org.apache.lucene.document.StringField;
 import org.apache.lucene.document.TextField;
+import org.apache.lucene.util.BytesRef;
 
 import static org.apache.lucene.index.FieldInfo.IndexOptions.DOCS_AND_FREQS_AND_POSITIONS;
 
@@ -57,6 +68,12 @@ public final class FieldFactory {
         OAK_TYPE_NOT_STORED.freeze();
     }
 
+    /**
+     * The maximum number of characters of a string that is used for sorting
+     * (the length of doc values is limited).
+     */
+    private static final int MAX_SORT_STRING_LENGTH = 8 * 1024;
+
     private final static class OakTextField extends Field {
 
         public OakTextField(String name, String value, boolean stored) {
@@ -86,4 +103,50 @@ public final class FieldFactory {
         return new TextField(FULLTEXT, value, NO);
     }
 
+    /**
+     * Create the fields for a value of a property of an index with full-text
+     * disabled: a field of the given type, plus a doc values field if the
+     * property is used for sorting.
+     *
+     * @param name the property name
+     * @param type the type (LONG, DOUBLE, DATE, or STRING)
+     * @param value the value
+     * @param sorted whether to add a doc values field (at most once per
+     *            document and property)
+     * @return the fields
+     * @throws IllegalArgumentException if the value can not be converted
+     */
+    public static List<Field> newTypedFields(String name, int type,
+            String value, boolean sorted) {
+        List<Field> fields = new ArrayList<Field>(2);
+        switch (type) {
+        case PropertyType.LONG:
+        case PropertyType.DATE: {
+            long x = PropertyIndexDefinition.toLong(type, value);
+            fields.add(new LongField(name, x, NO));
+            if (sorted) {
+                fields.add(new NumericDocValuesField(name, x));
+            }
+            break;
+        }
+        case PropertyType.DOUBLE: {
+            double x = PropertyIndexDefinition.toDouble(value);
+            fields.add(new DoubleField(name, x, NO));
+            if (sorted) {
+                fields.add(new DoubleDocValuesField(name, x));
+            }
+            break;
+        }
+        default:
+            fields.add(new StringField(name, value, NO));
+            if (sorted) {
+                if (value.length() > MAX_SORT_STRING_LENGTH) {
+                    value = value.substring(0, MAX_SORT_STRING_LENGTH);
+                }
+                fields.add(new SortedDocValuesField(name, new BytesRef(value)));
+            }
+        }
+        return fields;
+    }
+
 }
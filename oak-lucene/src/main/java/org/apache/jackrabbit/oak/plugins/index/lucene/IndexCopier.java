@@ -0,0 +1,364 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.jackrabbit.oak.plugins.index.lucene;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+import static com.google.common.collect.Sets.newHashSet;
+
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.UnsupportedEncodingException;
+import java.net.URLEncoder;
+import java.util.Collection;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.lucene.index.IndexFileNames;
+import org.apache.lucene.store.Directory;
+import org.apache.lucene.store.FSDirectory;
+import org.apache.lucene.store.IOContext;
+import org.apache.lucene.store.IndexInput;
+import org.apache.lucene.store.IndexOutput;
+import org.apache.lucene.store.Lock;
+import org.apache.lucene.store.LockFactory;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Keeps local copies of the files of the Lucene indexes that are stored in
+ * the repository (copy-on-read). Reading an index file from the repository
+ * means reading many small binaries from the node store; instead, each file
+ * is copied once to a local directory when it is first opened, and then read
+ * from there (memory-mapped, if supported by the platform).
+ * <p>
+ * Lucene index files are never changed once written, and each file in the
+ * repository has a unique key that changes whenever it is (re-)written. The
+ * local copy is named after the file name and the key, and is only used if
+ * it has the same length as the file in the repository. Files are copied to
+ * a temporary file first, and then renamed, so that a partially copied file
+ * is never used. Local files that are no longer part of the index are
+ * removed when a new revision of the index is opened.
+ */
+public class IndexCopier {
+
+    private static final Logger log = LoggerFactory.getLogger(IndexCopier.class);
+
+    private static final String TMP_SUFFIX = ".tmp";
+
+    private final File indexRootDir;
+
+    private final AtomicLong copiedFileCount = new AtomicLong();
+
+    private final AtomicLong copiedSize = new AtomicLong();
+
+    private final AtomicLong localReadCount = new AtomicLong();
+
+    private final AtomicLong remoteReadCount = new AtomicLong();
+
+    private final AtomicLong deletedFileCount = new AtomicLong();
+
+    private final AtomicLong deletedSize = new AtomicLong();
+
+    public IndexCopier(File indexRootDir) throws IOException {
+        this.indexRootDir = checkNotNull(indexRootDir);
+        if (!indexRootDir.isDirectory() && !indexRootDir.mkdirs()) {
+            throw new IOException("Could not create the directory "
+                    + indexRootDir);
+        }
+    }
+
+    /**
+     * Wrap the directory of an index, so that the files are read from local
+     * copies.
+     *
+     * @param indexPath the path of the index definition
+     * @param remote the directory in the repository
+     * @return the wrapped directory
+     */
+    Directory wrap(String indexPath, OakDirectory remote) throws IOException {
+        File dir = new File(indexRootDir, encode(indexPath));
+        if (!dir.isDirectory() && !dir.mkdirs()) {
+            throw new IOException("Could not create the directory " + dir);
+        }
+        CopyOnReadDirectory d = new CopyOnReadDirectory(remote, dir);
+        d.removeUnusedFiles();
+        return d;
+    }
+
+    public File getIndexRootDir() {
+        return indexRootDir;
+    }
+
+    /**
+     * @return the number of files copied from the repository
+     */
+    public long getCopiedFileCount() {
+        return copiedFileCount.get();
+    }
+
+    /**
+     * @return the total size of the files copied from the repository
+     */
+    public long getCopiedSize() {
+        return copiedSize.get();
+    }
+
+    /**
+     * @return the number of files opened from an existing local copy
+     */
+    public long getLocalReadCount() {
+        return localReadCount.get();
+    }
+
+    /**
+     * @return the number of files that were read from the repository, because
+     *         they could not be copied
+     */
+    public long getRemoteReadCount() {
+        return remoteReadCount.get();
+    }
+
+    /**
+     * @return the number of local files removed, because they were no longer
+     *         used by the index
+     */
+    public long getDeletedFileCount() {
+        return deletedFileCount.get();
+    }
+
+    /**
+     * @return the total size of the local files that were removed
+     */
+    public long getDeletedSize() {
+        return deletedSize.get();
+    }
+
+    /**
+     * @return the total size of the local copies
+     */
+    public long getLocalIndexSize() {
+        return getSize(indexRootDir);
+    }
+
+    private static long getSize(File file) {
+        if (file.isFile()) {
+            return file.length();
+        }
+        long size = 0;
+        File[] list = file.listFiles();
+        if (list != null) {
+            for (File f : list) {
+                size += getSize(f);
+            }
+        }
+        return size;
+    }
+
+    private static String encode(String indexPath) {
+        try {
+            return URLEncoder.encode(indexPath, "UTF-8");
+        } catch (UnsupportedEncodingException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * Get the local file name for a file. The name contains the unique key,
+     * so that a new version of a file (for example after re-indexing) is not
+     * confused with an old one.
+     *
+     * @param name the file name
+     * @param key the unique key
+     * @return the local file name
+     */
+    private static String getLocalName(String name, String key) {
+        return name + "." + key;
+    }
+
+    /**
+     * A read-only directory that copies the files of the remote directory to
+     * a local directory when they are opened.
+     */
+    private class CopyOnReadDirectory extends Directory {
+
+        private final OakDirectory remote;
+
+        private final File dir;
+
+        private final Directory local;
+
+        CopyOnReadDirectory(OakDirectory remote, File dir) throws IOException {
+            this.remote = remote;
+            this.dir = dir;
+            this.local = FSDirectory.open(dir);
+        }
+
+        /**
+         * Remove the local files that are not used by this revision of the
+         * index. Readers of older revisions already opened all their files,
+         * so they are not affected (on platforms where open files can not be
+         * removed, removal is retried for the next revision).
+         */
+        void removeUnusedFiles() throws IOException {
+            Set<String> used = newHashSet();
+            for (String name : remote.listAll()) {
+                String key = remote.getFileKey(name);
+                if (key != null) {
+                    used.add(getLocalName(name, key));
+                }
+            }
+            String[] list = dir.list();
+            if (list == null) {
+                return;
+            }
+            for (String localName : list) {
+                if (used.contains(localName)) {
+                    continue;
+                }
+                File f = new File(dir, localName);
+                long length = f.length();
+                if (f.delete()) {
+                    deletedFileCount.incrementAndGet();
+                    deletedSize.addAndGet(length);
+                } else {
+                    log.debug("Could not remove the unused index file {}", f);
+                }
+            }
+        }
+
+        @Override
+        public IndexInput openInput(String name, IOContext context)
+                throws IOException {
+            String key = remote.getFileKey(name);
+            if (key == null || name.startsWith(IndexFileNames.SEGMENTS)) {
+                // the segments files are small, are read once when the
+                // index is opened, and are re-written in place
+                return remote.openInput(name, context);
+            }
+            String localName = getLocalName(name, key);
+            long length = remote.fileLength(name);
+            File file = new File(dir, localName);
+            if (file.exists() && file.length() == length) {
+                localReadCount.incrementAndGet();
+            } else if (!copy(name, localName, length)) {
+                remoteReadCount.incrementAndGet();
+                return remote.openInput(name, context);
+            }
+            return local.openInput(localName, context);
+        }
+
+        /**
+         * Copy a file from the remote to the local directory.
+         *
+         * @return true if the file was copied
+         */
+        private boolean copy(String name, String localName, long length) {
+            File tmp = null;
+            try {
+                tmp = File.createTempFile(localName, TMP_SUFFIX, dir);
+                remote.copy(local, name, tmp.getName(), IOContext.READONCE);
+                File file = new File(dir, localName);
+                if (!tmp.renameTo(file) && file.length() != length) {
+                    log.warn("Could not rename {} to {}", tmp, file);
+                    return false;
+                }
+                copiedFileCount.incrementAndGet();
+                copiedSize.addAndGet(length);
+                return true;
+            } catch (IOException e) {
+                log.warn("Could not copy the index file " + name + " to "
+                        + dir, e);
+                return false;
+            } finally {
+                if (tmp != null && tmp.exists() && !tmp.delete()) {
+                    log.debug("Could not remove the temporary file {}", tmp);
+                }
+            }
+        }
+
+        @Override
+        public String[] listAll() throws IOException {
+            return remote.listAll();
+        }
+
+        @Override
+        public boolean fileExists(String name) throws IOException {
+            return remote.fileExists(name);
+        }
+
+        @Override
+        public long fileLength(String name) throws IOException {
+            if (!remote.fileExists(name)) {
+                throw new FileNotFoundException(name);
+            }
+            return remote.fileLength(name);
+        }
+
+        @Override
+        public void deleteFile(String name) throws IOException {
+            throw new UnsupportedOperationException("Read-only directory");
+        }
+
+        @Override
+        public IndexOutput createOutput(String name, IOContext context)
+                throws IOException {
+            throw new UnsupportedOperationException("Read-only directory");
+        }
+
+        @Override
+        public void sync(Collection<String> names) throws IOException {
+            // read-only
+        }
+
+        @Override
+        public Lock makeLock(String name) {
+            return remote.makeLock(name);
+        }
+
+        @Override
+        public void clearLock(String name) throws IOException {
+            remote.clearLock(name);
+        }
+
+        @Override
+        public void setLockFactory(LockFactory lockFactory) throws IOException {
+            remote.setLockFactory(lockFactory);
+        }
+
+        @Override
+        public LockFactory getLockFactory() {
+            return remote.getLockFactory();
+        }
+
+        @Override
+        public void close() throws IOException {
+            try {
+                local.close();
+            } finally {
+                remote.close();
+            }
+        }
+
+        @Override
+        public String toString() {
+            return "CopyOnRead(" + dir + ")";
+        }
+
+    }
+
+}
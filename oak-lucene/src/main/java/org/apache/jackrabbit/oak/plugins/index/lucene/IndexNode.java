@@ -24,26 +24,54 @@ import static org.apache.jackrabbit.oak.plugins.index.lucene.LuceneIndexConstant
 
 import java.io.File;
 import java.io.IOException;
+import java.util.Collections;
+import java.util.List;
 import java.util.concurrent.locks.ReadWriteLock;
 import java.util.concurrent.locks.ReentrantReadWriteLock;
 
+import javax.annotation.Nullable;
+
 import org.apache.jackrabbit.oak.spi.state.NodeState;
 import org.apache.jackrabbit.oak.spi.state.ReadOnlyBuilder;
 import org.apache.lucene.index.DirectoryReader;
 import org.apache.lucene.index.IndexReader;
+import org.apache.lucene.index.MultiReader;
 import org.apache.lucene.search.IndexSearcher;
 import org.apache.lucene.store.Directory;
 import org.apache.lucene.store.FSDirectory;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 class IndexNode {
 
-    static IndexNode open(String name, NodeState definition)
+    private static final Logger log = LoggerFactory.getLogger(IndexNode.class);
+
+    /**
+     * Open the given index.
+     *
+     * @param indexPath the path of the index definition (only needed if a
+     *            copier is used)
+     * @param name the name of the index
+     * @param definition the index definition
+     * @param copier the copier for local copies of the index files, or null
+     *            to read the files from the repository
+     * @param nrtUpdater the updater of the near real time indexes, or null
+     *            if near real time indexing is disabled
+     * @return the index, or null if there is no index data
+     */
+    static IndexNode open(String indexPath, String name, NodeState definition,
+            @Nullable IndexCopier copier, @Nullable NRTIndexUpdater nrtUpdater)
             throws IOException {
         Directory directory = null;
 
         NodeState data = definition.getChildNode(INDEX_DATA_CHILD_NAME);
         if (data.exists()) {
-            directory = new OakDirectory(new ReadOnlyBuilder(data));
+            OakDirectory remote = new OakDirectory(new ReadOnlyBuilder(data));
+            if (copier != null) {
+                directory = copier.wrap(indexPath, remote);
+            } else {
+                directory = remote;
+            }
         } else if (PERSISTENCE_FILE.equalsIgnoreCase(definition.getString(PERSISTENCE_NAME))) {
             String path = definition.getString(PERSISTENCE_PATH);
             if (path != null && new File(path).exists()) {
@@ -53,7 +81,11 @@ class IndexNode {
 
         if (directory != null) {
             try {
-                IndexNode index = new IndexNode(name, definition, directory);
+                NRTIndex nrt = null;
+                if (nrtUpdater != null) {
+                    nrt = nrtUpdater.getIndex(indexPath, definition);
+                }
+                IndexNode index = new IndexNode(name, definition, directory, nrt);
                 directory = null; // closed in Index.close()
                 return index;
             } finally {
@@ -74,7 +106,21 @@ class IndexNode {
 
     private final IndexReader reader;
 
-    private final IndexSearcher searcher;
+    /**
+     * The near real time index, or null.
+     */
+    private final NRTIndex nrt;
+
+    /**
+     * The version of the near real time index the searcher was opened with.
+     */
+    private volatile long nrtVersion = -1;
+
+    private List<IndexReader> nrtReaders = Collections.emptyList();
+
+    private MultiReader multiReader;
+
+    private IndexSearcher searcher;
 
     private final ReadWriteLock lock = new ReentrantReadWriteLock();
 
@@ -82,11 +128,17 @@ class IndexNode {
 
     IndexNode(String name, NodeState definition, Directory directory)
             throws IOException {
+        this(name, definition, directory, null);
+    }
+
+    IndexNode(String name, NodeState definition, Directory directory,
+            @Nullable NRTIndex nrt) throws IOException {
         this.name = name;
         this.definition = definition;
         this.directory = directory;
         this.reader = DirectoryReader.open(directory);
         this.searcher = new IndexSearcher(reader);
+        this.nrt = nrt;
     }
 
     String getName() {
@@ -102,6 +154,9 @@ class IndexNode {
     }
 
     boolean acquire() {
+        if (nrt != null && nrt.getVersion() != nrtVersion) {
+            refreshNearRealTime();
+        }
         lock.readLock().lock();
         if (closed) {
             lock.readLock().unlock();
@@ -115,6 +170,53 @@ class IndexNode {
         lock.readLock().unlock();
     }
 
+    /**
+     * Reopen the searcher with the current state of the near real time index.
+     * This is skipped if the index is in use (it is then refreshed on one of
+     * the next calls to {@link #acquire()}), so that queries are never
+     * blocked.
+     */
+    private void refreshNearRealTime() {
+        if (!lock.writeLock().tryLock()) {
+            return;
+        }
+        try {
+            long version = nrt.getVersion();
+            if (closed || version == nrtVersion) {
+                return;
+            }
+            // empty if the near real time index was closed in the meantime
+            // (for example because the index definition was removed)
+            List<IndexReader> readers = nrt.openReaders();
+            IndexReader[] subReaders = new IndexReader[readers.size() + 1];
+            subReaders[0] = reader;
+            for (int i = 0; i < readers.size(); i++) {
+                subReaders[i + 1] = readers.get(i);
+            }
+            MultiReader oldMultiReader = multiReader;
+            List<IndexReader> oldReaders = nrtReaders;
+            multiReader = new MultiReader(subReaders, false);
+            nrtReaders = readers;
+            nrtVersion = version;
+            searcher = new IndexSearcher(multiReader);
+            closeNearRealTime(oldMultiReader, oldReaders);
+        } catch (IOException e) {
+            log.warn("Failed to refresh the near real time index of " + name, e);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private static void closeNearRealTime(MultiReader multiReader,
+            List<IndexReader> readers) throws IOException {
+        if (multiReader != null) {
+            multiReader.close();
+        }
+        for (IndexReader reader : readers) {
+            reader.close();
+        }
+    }
+
     void close() throws IOException {
         lock.writeLock().lock();
         try {
@@ -125,6 +227,7 @@ class IndexNode {
         }
 
         try {
+            closeNearRealTime(multiReader, nrtReaders);
             reader.close();
         } finally {
             directory.close();
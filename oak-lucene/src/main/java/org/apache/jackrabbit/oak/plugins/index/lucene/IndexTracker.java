@@ -26,9 +26,14 @@ import static com.google.common.collect.Maps.filterKeys;
 import static com.google.common.collect.Maps.filterValues;
 import static com.google.common.collect.Maps.newHashMap;
 import static java.util.Collections.emptyMap;
+import static org.apache.jackrabbit.oak.commons.PathUtils.concat;
+import static org.apache.jackrabbit.oak.commons.PathUtils.denotesRoot;
+import static org.apache.jackrabbit.oak.commons.PathUtils.getName;
+import static org.apache.jackrabbit.oak.commons.PathUtils.getParentPath;
 import static org.apache.jackrabbit.oak.plugins.index.IndexConstants.INDEX_DEFINITIONS_NAME;
 import static org.apache.jackrabbit.oak.plugins.index.IndexConstants.TYPE_PROPERTY_NAME;
 import static org.apache.jackrabbit.oak.plugins.index.lucene.LuceneIndexConstants.TYPE_LUCENE;
+import static org.apache.jackrabbit.oak.plugins.index.lucene.PropertyIndexDefinition.isPropertyIndex;
 import static org.apache.jackrabbit.oak.plugins.memory.EmptyNodeState.EMPTY_NODE;
 
 import java.io.IOException;
@@ -36,6 +41,9 @@ import java.util.List;
 import java.util.Map;
 import java.util.Set;
 
+import javax.annotation.CheckForNull;
+import javax.annotation.Nullable;
+
 import org.apache.jackrabbit.oak.commons.PathUtils;
 import org.apache.jackrabbit.oak.spi.commit.CompositeEditor;
 import org.apache.jackrabbit.oak.spi.commit.DefaultEditor;
@@ -56,10 +64,48 @@ class IndexTracker {
     private static final Logger log =
             LoggerFactory.getLogger(IndexTracker.class);
 
+    /**
+     * The copier for local copies of the index files, or null.
+     */
+    private final IndexCopier copier;
+
+    /**
+     * The updater of the near real time indexes, or null.
+     */
+    private final NRTIndexUpdater nrtUpdater;
+
     private NodeState root = EMPTY_NODE;
 
     private volatile Map<String, IndexNode> indices = emptyMap();
 
+    IndexTracker() {
+        this(null);
+    }
+
+    IndexTracker(@Nullable IndexCopier copier) {
+        this(copier, null);
+    }
+
+    IndexTracker(@Nullable IndexCopier copier,
+            @Nullable NRTIndexUpdater nrtUpdater) {
+        this.copier = copier;
+        this.nrtUpdater = nrtUpdater;
+    }
+
+    @CheckForNull
+    IndexCopier getIndexCopier() {
+        return copier;
+    }
+
+    /**
+     * Whether near real time indexing is enabled. In this case, a query can
+     * return the same path more than once (from the persisted and from the
+     * near real time index).
+     */
+    boolean isNearRealTime() {
+        return nrtUpdater != null;
+    }
+
     synchronized void close() {
         Map<String, IndexNode> indices = this.indices;
         this.indices = emptyMap();
@@ -84,14 +130,23 @@ class IndexTracker {
 
             List<String> elements = newArrayList();
             Iterables.addAll(elements, PathUtils.elements(path));
-            elements.add(INDEX_DEFINITIONS_NAME);
-            elements.add(name);
+            if (!isIndexDefinitionPath(path)) {
+                elements.add(INDEX_DEFINITIONS_NAME);
+                elements.add(name);
+            }
             editors.add(new SubtreeEditor(new DefaultEditor() {
                 @Override
                 public void leave(NodeState before, NodeState after) {
                     try {
+                        String indexPath = getIndexPath(path, name);
+                        if (nrtUpdater != null) {
+                            // the changes up to the new revision of the
+                            // persisted index are no longer needed
+                            nrtUpdater.rotate(indexPath);
+                        }
                         // TODO: Use DirectoryReader.openIfChanged()
-                        IndexNode index = IndexNode.open(name, after);
+                        IndexNode index = IndexNode.open(
+                                indexPath, name, after, copier, nrtUpdater);
                         updates.put(path, index); // index can be null
                     } catch (IOException e) {
                         log.error("Failed to open Lucene index at " + path, e);
@@ -133,6 +188,34 @@ class IndexTracker {
         return indices.keySet();
     }
 
+    /**
+     * Whether the given path is the path of an index definition (for
+     * example "/oak:index/lucene"). Otherwise, it is the path of the node
+     * that contains the "oak:index" node with the full-text index (for
+     * example "/").
+     *
+     * @param path the path
+     * @return true for the path of an index definition
+     */
+    private static boolean isIndexDefinitionPath(String path) {
+        return !denotesRoot(path)
+                && INDEX_DEFINITIONS_NAME.equals(getName(getParentPath(path)));
+    }
+
+    /**
+     * Get the path of the index definition.
+     *
+     * @param path the key of the index (see {@link #isIndexDefinitionPath})
+     * @param name the name of the index
+     * @return the path of the index definition
+     */
+    private static String getIndexPath(String path, String name) {
+        if (isIndexDefinitionPath(path)) {
+            return path;
+        }
+        return concat(path, INDEX_DEFINITIONS_NAME, name);
+    }
+
     private synchronized IndexNode findIndexNode(String path) {
         // Retry the lookup from acquireIndexNode now that we're
         // synchronized. The acquire() call is guaranteed to succeed
@@ -145,25 +228,38 @@ class IndexTracker {
 
         NodeState node = root;
         for (String name : PathUtils.elements(path)) {
-            node = root.getChildNode(name);
+            node = node.getChildNode(name);
         }
-        node = node.getChildNode(INDEX_DEFINITIONS_NAME);
 
         try {
-            for (ChildNodeEntry child : node.getChildNodeEntries()) {
-                node = child.getNodeState();
+            if (isIndexDefinitionPath(path)) {
                 if (TYPE_LUCENE.equals(node.getString(TYPE_PROPERTY_NAME))) {
-                    index = IndexNode.open(child.getName(), node);
-                    if (index != null) {
-                        checkState(index.acquire());
-                        indices = ImmutableMap.<String, IndexNode>builder()
-                                .putAll(indices)
-                                .put(path, index)
-                                .build();
-                        return index;
+                    index = IndexNode.open(path, getName(path), node, copier,
+                            nrtUpdater);
+                }
+            } else {
+                node = node.getChildNode(INDEX_DEFINITIONS_NAME);
+                for (ChildNodeEntry child : node.getChildNodeEntries()) {
+                    NodeState definition = child.getNodeState();
+                    if (TYPE_LUCENE.equals(definition.getString(TYPE_PROPERTY_NAME))
+                            && !isPropertyIndex(definition)) {
+                        index = IndexNode.open(
+                                getIndexPath(path, child.getName()),
+                                child.getName(), definition, copier, nrtUpdater);
+                        if (index != null) {
+                            break;
+                        }
                     }
                 }
             }
+            if (index != null) {
+                checkState(index.acquire());
+                indices = ImmutableMap.<String, IndexNode>builder()
+                        .putAll(indices)
+                        .put(path, index)
+                        .build();
+                return index;
+            }
         } catch (IOException e) {
             log.error("Could not access the Lucene index at " + path, e);
         }
@@ -448,39 +448,7 @@ public class LuceneIndex implements FulltextQueryIndex {
             addNodeTypeConstraints(qs, filter);
         }
 
-        String path = filter.getPath();
-        switch (filter.getPathRestriction()) {
-        case ALL_CHILDREN:
-            if ("/".equals(path)) {
-                break;
-            }
-            if (!path.endsWith("/")) {
-                path += "/";
-            }
-            qs.add(new PrefixQuery(newPathTerm(path)));
-            break;
-        case DIRECT_CHILDREN:
-            if (!path.endsWith("/")) {
-                path += "/";
-            }
-            qs.add(new PrefixQuery(newPathTerm(path)));
-            break;
-        case EXACT:
-            qs.add(new TermQuery(newPathTerm(path)));
-            break;
-        case PARENT:
-            if (denotesRoot(path)) {
-                // there's no parent of the root node
-                // we add a path that can not possibly occur because there
-                // is no way to say "match no documents" in Lucene
-                qs.add(new TermQuery(new Term(FieldNames.PATH, "///")));
-            } else {
-                qs.add(new TermQuery(newPathTerm(getParentPath(path))));
-            }
-            break;
-        case NO_RESTRICTION:
-            break;
-        }
+        addPathConstraints(qs, filter);
 
         for (PropertyRestriction pr : filter.getPropertyRestrictions()) {
 
@@ -572,6 +540,49 @@ public class LuceneIndex implements FulltextQueryIndex {
         }
     }
 
+    /**
+     * Add the path restriction of the filter. For a restriction to the direct
+     * children, all descendants match.
+     *
+     * @param qs the list of queries to add to
+     * @param filter the filter
+     */
+    static void addPathConstraints(List<Query> qs, Filter filter) {
+        String path = filter.getPath();
+        switch (filter.getPathRestriction()) {
+        case ALL_CHILDREN:
+            if ("/".equals(path)) {
+                break;
+            }
+            if (!path.endsWith("/")) {
+                path += "/";
+            }
+            qs.add(new PrefixQuery(newPathTerm(path)));
+            break;
+        case DIRECT_CHILDREN:
+            if (!path.endsWith("/")) {
+                path += "/";
+            }
+            qs.add(new PrefixQuery(newPathTerm(path)));
+            break;
+        case EXACT:
+            qs.add(new TermQuery(newPathTerm(path)));
+            break;
+        case PARENT:
+            if (denotesRoot(path)) {
+                // there's no parent of the root node
+                // we add a path that can not possibly occur because there
+                // is no way to say "match no documents" in Lucene
+                qs.add(new TermQuery(new Term(FieldNames.PATH, "///")));
+            } else {
+                qs.add(new TermQuery(newPathTerm(getParentPath(path))));
+            }
+            break;
+        case NO_RESTRICTION:
+            break;
+        }
+    }
+
     private static String tokenizeAndPoll(String token, Analyzer analyzer){
         if (token != null) {
             List<String> tokens = tokenize(token, analyzer);
@@ -963,7 +974,7 @@ public class LuceneIndex implements FulltextQueryIndex {
         }
     }
 
-    private static class PathStoredFieldVisitor extends StoredFieldVisitor {
+    static class PathStoredFieldVisitor extends StoredFieldVisitor {
 
         private String path;
         private boolean pathVisited;
@@ -39,6 +39,39 @@ public interface LuceneIndexConstants {
      */
     String EXCLUDE_PROPERTY_NAMES = "excludePropertyNames";
 
+    /**
+     * Whether the full-text of the content is indexed (default: true). If set
+     * to false, only the properties listed in {@link #INCLUDE_PROPERTY_NAMES}
+     * are indexed, as typed fields that can be used for property restrictions
+     * and sorting, see {@link LucenePropertyIndex}.
+     */
+    String FULL_TEXT_ENABLED = "fulltextEnabled";
+
+    /**
+     * include only certain properties by name (only used if full-text is
+     * disabled)
+     */
+    String INCLUDE_PROPERTY_NAMES = "includePropertyNames";
+
+    /**
+     * the properties that can be used to sort the result (a subset of the
+     * included properties)
+     */
+    String ORDERED_PROP_NAMES = "orderedProps";
+
+    /**
+     * child node of the index definition with the per-property settings, one
+     * child node for each property
+     */
+    String PROP_NODE = "properties";
+
+    /**
+     * the type of a property ("Long", "Double", "Date", or "String", which
+     * is the default); it should match the type of the property in the
+     * content
+     */
+    String PROP_TYPE = "type";
+
     String PERSISTENCE_NAME = "persistence";
 
     String PERSISTENCE_OAK = "repository";
@@ -22,14 +22,18 @@ import static org.apache.jackrabbit.oak.commons.PathUtils.getName;
 import static org.apache.jackrabbit.oak.plugins.index.lucene.FieldFactory.newFulltextField;
 import static org.apache.jackrabbit.oak.plugins.index.lucene.FieldFactory.newPathField;
 import static org.apache.jackrabbit.oak.plugins.index.lucene.FieldFactory.newPropertyField;
+import static org.apache.jackrabbit.oak.plugins.index.lucene.FieldFactory.newTypedFields;
+import static org.apache.jackrabbit.oak.plugins.index.lucene.LuceneIndexConstants.INDEX_DATA_CHILD_NAME;
 import static org.apache.jackrabbit.oak.plugins.index.lucene.TermFactory.newPathTerm;
 import static org.apache.jackrabbit.oak.plugins.index.lucene.util.LuceneIndexHelper.skipTokenization;
 
 import java.io.IOException;
-import java.io.InputStream;
 import java.util.ArrayList;
 import java.util.List;
 
+import javax.annotation.Nullable;
+import javax.jcr.PropertyType;
+
 import org.apache.jackrabbit.JcrConstants;
 import org.apache.jackrabbit.oak.api.Blob;
 import org.apache.jackrabbit.oak.api.CommitFailedException;
@@ -37,27 +41,30 @@ import org.apache.jackrabbit.oak.api.PropertyState;
 import org.apache.jackrabbit.oak.api.Type;
 import org.apache.jackrabbit.oak.plugins.index.IndexEditor;
 import org.apache.jackrabbit.oak.plugins.index.IndexUpdateCallback;
+import org.apache.jackrabbit.oak.plugins.index.MergeableIndexEditor;
 import org.apache.jackrabbit.oak.spi.commit.Editor;
 import org.apache.jackrabbit.oak.spi.state.NodeBuilder;
 import org.apache.jackrabbit.oak.spi.state.NodeState;
+import org.apache.jackrabbit.oak.spi.state.ReadOnlyBuilder;
 import org.apache.lucene.analysis.Analyzer;
 import org.apache.lucene.document.Document;
 import org.apache.lucene.document.Field;
 import org.apache.lucene.index.IndexWriter;
 import org.apache.lucene.search.PrefixQuery;
+import org.apache.lucene.store.Directory;
 import org.apache.tika.metadata.Metadata;
-import org.apache.tika.parser.ParseContext;
-import org.apache.tika.sax.WriteOutContentHandler;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import com.google.common.base.Objects;
+
 /**
  * {@link IndexEditor} implementation that is responsible for keeping the
  * {@link LuceneIndex} up to date
  * 
  * @see LuceneIndex
  */
-public class LuceneIndexEditor implements IndexEditor {
+public class LuceneIndexEditor implements MergeableIndexEditor {
 
     private static final Logger log =
             LoggerFactory.getLogger(LuceneIndexEditor.class);
@@ -76,12 +83,19 @@ public class LuceneIndexEditor implements IndexEditor {
     private boolean propertiesChanged = false;
 
     LuceneIndexEditor(NodeBuilder definition, Analyzer analyzer,
-            IndexUpdateCallback updateCallback) throws CommitFailedException {
+            TextExtractor textExtractor, IndexUpdateCallback updateCallback)
+            throws CommitFailedException {
+        this(definition, analyzer, textExtractor, updateCallback, null);
+    }
+
+    LuceneIndexEditor(NodeBuilder definition, Analyzer analyzer,
+            TextExtractor textExtractor, IndexUpdateCallback updateCallback,
+            @Nullable IndexWriter writer) throws CommitFailedException {
         this.parent = null;
         this.name = null;
         this.path = "/";
         this.context = new LuceneIndexEditorContext(definition, analyzer,
-                updateCallback);
+                textExtractor, updateCallback, writer);
     }
 
     private LuceneIndexEditor(LuceneIndexEditor parent, String name) {
@@ -108,7 +122,7 @@ public class LuceneIndexEditor implements IndexEditor {
             throws CommitFailedException {
         if (propertiesChanged || !before.exists()) {
             String path = getPath();
-            if (addOrUpdate(path, after, before.exists())) {
+            if (addOrUpdate(path, before, after)) {
                 long indexed = context.incIndexedNodes();
                 if (indexed % 1000 == 0) {
                     log.debug("Indexed {} nodes...", indexed);
@@ -129,6 +143,35 @@ public class LuceneIndexEditor implements IndexEditor {
         }
     }
 
+    @Override
+    public boolean isMergeable() {
+        return context.isStoredInRepository();
+    }
+
+    /**
+     * Add the Lucene indexes of the partitions to this index.
+     */
+    @Override
+    public void merge(List<NodeState> partitions)
+            throws CommitFailedException {
+        List<Directory> directories = new ArrayList<Directory>();
+        for (NodeState partition : partitions) {
+            NodeState data = partition.getChildNode(INDEX_DATA_CHILD_NAME);
+            if (data.exists()) {
+                directories.add(new OakDirectory(new ReadOnlyBuilder(data)));
+            }
+        }
+        try {
+            IndexWriter writer = context.getWriter();
+            writer.addIndexes(directories.toArray(
+                    new Directory[directories.size()]));
+            context.closeWriter();
+        } catch (IOException e) {
+            throw new CommitFailedException("Lucene", 6,
+                    "Failed to merge the Lucene index partitions", e);
+        }
+    }
+
     @Override
     public void propertyAdded(PropertyState after) {
         propertiesChanged = true;
@@ -175,10 +218,24 @@ public class LuceneIndexEditor implements IndexEditor {
         return null; // no need to recurse down the removed subtree
     }
 
-    private boolean addOrUpdate(String path, NodeState state, boolean isUpdate)
+    private boolean addOrUpdate(String path, NodeState before, NodeState after)
             throws CommitFailedException {
         try {
-            Document d = makeDocument(path, state, isUpdate);
+            PropertyIndexDefinition propertyIndex = context.getPropertyIndex();
+            Document d;
+            if (propertyIndex == null) {
+                d = makeDocument(path, after, before.exists());
+            } else if (!before.exists() || isChanged(before, after, propertyIndex)) {
+                d = makePropertyDocument(path, after, propertyIndex);
+                if (d == null && before.exists()) {
+                    // none of the indexed properties is left
+                    context.getWriter().deleteDocuments(newPathTerm(path));
+                    context.indexUpdate();
+                }
+            } else {
+                // none of the indexed properties was changed
+                d = null;
+            }
             if (d != null) {
                 context.getWriter().updateDocument(newPathTerm(path), d);
                 return true;
@@ -231,6 +288,57 @@ public class LuceneIndexEditor implements IndexEditor {
         return document;
     }
 
+    /**
+     * Create the document for a node in an index with full-text disabled,
+     * where only the included properties are indexed, as typed fields.
+     *
+     * @return the document, or null if the node has none of the properties
+     */
+    private Document makePropertyDocument(String path, NodeState state,
+            PropertyIndexDefinition propertyIndex) throws CommitFailedException {
+        List<Field> fields = new ArrayList<Field>();
+        for (String pname : propertyIndex.getIncludes()) {
+            PropertyState property = state.getProperty(pname);
+            if (property == null || property.getType().tag() == Type.BINARY.tag()) {
+                continue;
+            }
+            int type = propertyIndex.getType(pname);
+            // doc values can only be added once per document and field,
+            // so multi-valued properties are sorted by the first value
+            boolean sorted = propertyIndex.isOrdered(pname);
+            for (String value : property.getValue(Type.STRINGS)) {
+                try {
+                    fields.addAll(newTypedFields(pname, type, value, sorted));
+                    sorted = false;
+                } catch (IllegalArgumentException e) {
+                    log.warn("Could not index the property " + pname + " of "
+                            + path + " as " + PropertyType.nameFromValue(type)
+                            + ": " + e.getMessage());
+                }
+            }
+        }
+        if (fields.isEmpty()) {
+            return null;
+        }
+        this.context.indexUpdate();
+        Document document = new Document();
+        document.add(newPathField(path));
+        for (Field f : fields) {
+            document.add(f);
+        }
+        return document;
+    }
+
+    private static boolean isChanged(NodeState before, NodeState after,
+            PropertyIndexDefinition propertyIndex) {
+        for (String pname : propertyIndex.getIncludes()) {
+            if (!Objects.equal(before.getProperty(pname), after.getProperty(pname))) {
+                return true;
+            }
+        }
+        return false;
+    }
+
     private static boolean isVisible(String name) {
         return name.charAt(0) != ':';
     }
@@ -251,37 +359,10 @@ public class LuceneIndexEditor implements IndexEditor {
         }
 
         for (Blob v : property.getValue(Type.BINARIES)) {
-            fields.add(newFulltextField(parseStringValue(v, metadata)));
+            fields.add(newFulltextField(
+                    context.getTextExtractor().extract(v, metadata)));
         }
         return fields;
     }
 
-    private String parseStringValue(Blob v, Metadata metadata) {
-        WriteOutContentHandler handler = new WriteOutContentHandler();
-        try {
-            InputStream stream = v.getNewStream();
-            try {
-                context.getParser().parse(stream, handler, metadata, new ParseContext());
-            } finally {
-                stream.close();
-            }
-        } catch (LinkageError e) {
-            // Capture and ignore errors caused by extraction libraries
-            // not being present. This is equivalent to disabling
-            // selected media types in configuration, so we can simply
-            // ignore these errors.
-        } catch (Throwable t) {
-            // Capture and report any other full text extraction problems.
-            // The special STOP exception is used for normal termination.
-            if (!handler.isWriteLimitReached(t)) {
-                log.debug("Failed to extract text from a binary property."
-                        + " This is a fairly common case, and nothing to"
-                        + " worry about. The stack trace is included to"
-                        + " help improve the text extraction feature.", t);
-                return "TextExtractionError";
-            }
-        }
-        return handler.toString();
-    }
-
 }
@@ -28,6 +28,7 @@ import java.io.File;
 import java.io.IOException;
 import java.util.Set;
 
+import javax.annotation.Nullable;
 import javax.jcr.PropertyType;
 
 import org.apache.jackrabbit.oak.api.CommitFailedException;
@@ -35,14 +36,13 @@ import org.apache.jackrabbit.oak.api.PropertyState;
 import org.apache.jackrabbit.oak.api.Type;
 import org.apache.jackrabbit.oak.plugins.index.IndexUpdateCallback;
 import org.apache.jackrabbit.oak.spi.state.NodeBuilder;
+import org.apache.jackrabbit.oak.spi.state.NodeState;
 import org.apache.lucene.analysis.Analyzer;
 import org.apache.lucene.index.IndexWriter;
 import org.apache.lucene.index.IndexWriterConfig;
 import org.apache.lucene.index.SerialMergeScheduler;
 import org.apache.lucene.store.Directory;
 import org.apache.lucene.store.FSDirectory;
-import org.apache.tika.parser.AutoDetectParser;
-import org.apache.tika.parser.Parser;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -53,7 +53,7 @@ public class LuceneIndexEditorContext {
     private static final Logger log = LoggerFactory
             .getLogger(LuceneIndexEditorContext.class);
 
-    private static IndexWriterConfig getIndexWriterConfig(Analyzer analyzer) {
+    static IndexWriterConfig getIndexWriterConfig(Analyzer analyzer) {
         // FIXME: Hack needed to make Lucene work in an OSGi environment
         Thread thread = Thread.currentThread();
         ClassLoader loader = thread.getContextClassLoader();
@@ -94,12 +94,16 @@ public class LuceneIndexEditorContext {
 
     private final IndexWriterConfig config;
 
-    private static final Parser parser = new AutoDetectParser();
-
     private final NodeBuilder definition;
 
     private IndexWriter writer = null;
 
+    /**
+     * Whether the writer was supplied by the caller (and is therefore not
+     * closed by this context).
+     */
+    private final boolean externalWriter;
+
     private final int propertyTypes;
 
     private final Set<String> excludes;
@@ -108,10 +112,33 @@ public class LuceneIndexEditorContext {
 
     private boolean storageEnabled = true;
 
+    /**
+     * The typed properties, if full-text is disabled; null otherwise.
+     */
+    private final PropertyIndexDefinition propertyIndex;
+
     private final IndexUpdateCallback updateCallback;
 
-    LuceneIndexEditorContext(NodeBuilder definition, Analyzer analyzer, IndexUpdateCallback updateCallback) {
+    private final TextExtractor textExtractor;
+
+    LuceneIndexEditorContext(NodeBuilder definition, Analyzer analyzer,
+            TextExtractor textExtractor, IndexUpdateCallback updateCallback) {
+        this(definition, analyzer, textExtractor, updateCallback, null);
+    }
+
+    /**
+     * Create a context that writes to the given index writer, instead of the
+     * index as configured in the definition.
+     *
+     * @param writer the writer to use, or null to use the index as configured
+     */
+    LuceneIndexEditorContext(NodeBuilder definition, Analyzer analyzer,
+            TextExtractor textExtractor, IndexUpdateCallback updateCallback,
+            @Nullable IndexWriter writer) {
         this.definition = definition;
+        this.writer = writer;
+        this.externalWriter = writer != null;
+        this.textExtractor = textExtractor;
         this.config = getIndexWriterConfig(analyzer);
 
         PropertyState pst = definition.getProperty(INCLUDE_PROPERTY_TYPES);
@@ -136,6 +163,12 @@ public class LuceneIndexEditorContext {
         }
         PropertyState storage = definition.getProperty(EXPERIMENTAL_STORAGE);
         storageEnabled = storage == null || storage.getValue(Type.BOOLEAN);
+        NodeState defn = definition.getNodeState();
+        if (PropertyIndexDefinition.isPropertyIndex(defn)) {
+            propertyIndex = new PropertyIndexDefinition(defn);
+        } else {
+            propertyIndex = null;
+        }
         this.indexedNodes = 0;
         this.updateCallback = updateCallback;
     }
@@ -148,8 +181,25 @@ public class LuceneIndexEditorContext {
         return !excludes.contains(name);
     }
 
-    Parser getParser() {
-        return parser;
+    /**
+     * Get the typed properties of an index with full-text disabled.
+     *
+     * @return the property index definition, or null if full-text is enabled
+     */
+    PropertyIndexDefinition getPropertyIndex() {
+        return propertyIndex;
+    }
+
+    /**
+     * Whether the index data is stored in the repository (and not in the
+     * file system).
+     */
+    boolean isStoredInRepository() {
+        return definition.getString(PERSISTENCE_PATH) == null;
+    }
+
+    TextExtractor getTextExtractor() {
+        return textExtractor;
     }
 
     IndexWriter getWriter() throws IOException {
@@ -160,11 +210,13 @@ public class LuceneIndexEditorContext {
     }
 
     /**
-     * close writer if it's not null
+     * close writer if it's not null, and was not supplied by the caller. A
+     * later call to {@link #getWriter()} opens a new writer.
      */
     void closeWriter() throws IOException {
-        if (writer != null) {
+        if (writer != null && !externalWriter) {
             writer.close();
+            writer = null;
         }
     }
 
@@ -18,17 +18,32 @@ package org.apache.jackrabbit.oak.plugins.index.lucene;
 
 import static org.apache.jackrabbit.oak.plugins.index.lucene.LuceneIndexConstants.ANALYZER;
 import static org.apache.jackrabbit.oak.plugins.index.lucene.LuceneIndexConstants.TYPE_LUCENE;
+import static org.apache.jackrabbit.oak.spi.whiteboard.WhiteboardUtils.registerMBean;
 
+import java.io.File;
+import java.io.IOException;
+import java.util.Map;
+
+import org.apache.felix.scr.annotations.Activate;
 import org.apache.felix.scr.annotations.Component;
+import org.apache.felix.scr.annotations.Deactivate;
+import org.apache.felix.scr.annotations.Property;
 import org.apache.felix.scr.annotations.Service;
 import org.apache.jackrabbit.oak.api.CommitFailedException;
+import org.apache.jackrabbit.oak.commons.PropertiesUtil;
+import org.apache.jackrabbit.oak.osgi.OsgiWhiteboard;
 import org.apache.jackrabbit.oak.plugins.index.IndexEditor;
 import org.apache.jackrabbit.oak.plugins.index.IndexEditorProvider;
 import org.apache.jackrabbit.oak.plugins.index.IndexUpdateCallback;
 import org.apache.jackrabbit.oak.spi.commit.Editor;
 import org.apache.jackrabbit.oak.spi.state.NodeBuilder;
 import org.apache.jackrabbit.oak.spi.state.NodeState;
+import org.apache.jackrabbit.oak.spi.whiteboard.Registration;
 import org.apache.lucene.analysis.Analyzer;
+import org.osgi.framework.BundleContext;
+import org.osgi.framework.ServiceRegistration;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 /**
  * Service that provides Lucene based {@link IndexEditor}s
@@ -37,21 +52,100 @@ import org.apache.lucene.analysis.Analyzer;
  * @see IndexEditorProvider
  * 
  */
-@Component
+@Component(metatype = true, label = "Apache Jackrabbit Oak LuceneIndexEditorProvider")
 @Service(IndexEditorProvider.class)
 public class LuceneIndexEditorProvider implements IndexEditorProvider {
 
+    private static final Logger log = LoggerFactory.getLogger(LuceneIndexEditorProvider.class);
+
+    @Property(
+            label = "Extracted text directory",
+            description = "Local file system path where the text extracted from binaries is stored, "
+                    + "so that binaries are not parsed again when re-indexing (disabled if empty)"
+    )
+    private static final String PROP_EXTRACTED_TEXT_DIR = "extractedTextDir";
+
+    @Property(
+            longValue = 0,
+            label = "Text extraction timeout",
+            description = "Maximum time in milliseconds to extract the text of a binary (0 for no limit)"
+    )
+    private static final String PROP_EXTRACTION_TIMEOUT = "extractionTimeout";
+
+    @Property(
+            longValue = 0,
+            label = "Maximum binary size",
+            description = "Size in bytes above which the text of binaries is not extracted (0 for no limit)"
+    )
+    private static final String PROP_MAX_BINARY_SIZE = "maxBinarySize";
+
+    @Property(
+            intValue = TextExtractor.DEFAULT_MAX_EXTRACT_LENGTH,
+            label = "Maximum extracted text length",
+            description = "Maximum number of characters extracted from a binary (-1 for no limit)"
+    )
+    private static final String PROP_MAX_EXTRACT_LENGTH = "maxExtractLength";
+
+    /**
+     * The text extractor shared by all instances that are not configured.
+     */
+    static final TextExtractor DEFAULT_TEXT_EXTRACTOR = new TextExtractor();
+
     /**
      * TODO how to inject this in an OSGi friendly way?
      */
     private Analyzer analyzer = ANALYZER;
 
+    private TextExtractor textExtractor = DEFAULT_TEXT_EXTRACTOR;
+
+    private Registration mbeanReg;
+
+    private ServiceRegistration extractorReg;
+
+    @Activate
+    private void activate(BundleContext bundleContext, Map<String, ?> config) {
+        ExtractedTextStore store = null;
+        String dir = PropertiesUtil.toString(config.get(PROP_EXTRACTED_TEXT_DIR), null);
+        if (dir != null && !dir.isEmpty()) {
+            try {
+                store = new ExtractedTextStore(new File(dir));
+                log.info("Using the extracted text store in {}", dir);
+            } catch (IOException e) {
+                log.warn("Could not open the extracted text store", e);
+            }
+        }
+        textExtractor = new TextExtractor(store,
+                PropertiesUtil.toLong(config.get(PROP_EXTRACTION_TIMEOUT), 0),
+                PropertiesUtil.toLong(config.get(PROP_MAX_BINARY_SIZE), 0),
+                PropertiesUtil.toInteger(config.get(PROP_MAX_EXTRACT_LENGTH),
+                        TextExtractor.DEFAULT_MAX_EXTRACT_LENGTH));
+        mbeanReg = registerMBean(new OsgiWhiteboard(bundleContext),
+                TextExtractionStatsMBean.class,
+                textExtractor.getStats(),
+                TextExtractionStatsMBean.TYPE,
+                "Lucene text extraction statistics");
+        // used by the near real time indexes
+        extractorReg = bundleContext.registerService(
+                TextExtractor.class.getName(), textExtractor, null);
+    }
+
+    @Deactivate
+    private void deactivate() {
+        if (extractorReg != null) {
+            extractorReg.unregister();
+        }
+        if (mbeanReg != null) {
+            mbeanReg.unregister();
+        }
+        textExtractor.close();
+    }
+
     @Override
     public Editor getIndexEditor(
             String type, NodeBuilder definition, NodeState root, IndexUpdateCallback callback)
             throws CommitFailedException {
         if (TYPE_LUCENE.equals(type)) {
-            return new LuceneIndexEditor(definition, analyzer, callback);
+            return new LuceneIndexEditor(definition, analyzer, textExtractor, callback);
         }
         return null;
     }
@@ -63,6 +157,17 @@ public class LuceneIndexEditorProvider implements IndexEditorProvider {
         this.analyzer = analyzer;
     }
 
+    /**
+     * sets the text extractor that is used for binaries
+     */
+    public void setTextExtractor(TextExtractor textExtractor) {
+        this.textExtractor = textExtractor;
+    }
+
+    public TextExtractor getTextExtractor() {
+        return textExtractor;
+    }
+
     // ----- helper builder method
 
     public LuceneIndexEditorProvider with(Analyzer analyzer) {
@@ -70,4 +175,9 @@ public class LuceneIndexEditorProvider implements IndexEditorProvider {
         return this;
     }
 
+    public LuceneIndexEditorProvider with(TextExtractor textExtractor) {
+        this.setTextExtractor(textExtractor);
+        return this;
+    }
+
 }
@@ -21,6 +21,7 @@ package org.apache.jackrabbit.oak.plugins.index.lucene;
 
 import java.io.IOException;
 
+import javax.management.openmbean.CompositeData;
 import javax.management.openmbean.TabularData;
 
 public interface LuceneIndexMBean {
@@ -28,4 +29,11 @@ public interface LuceneIndexMBean {
 
     TabularData getIndexStats() throws IOException;
 
+    /**
+     * Statistics about the local copies of the index files.
+     *
+     * @return the statistics, or null if copy-on-read is not enabled
+     */
+    CompositeData getCopyOnReadStats();
+
 }
@@ -24,6 +24,7 @@ import java.io.IOException;
 import java.util.Set;
 
 import javax.management.NotCompliantMBeanException;
+import javax.management.openmbean.CompositeData;
 import javax.management.openmbean.CompositeDataSupport;
 import javax.management.openmbean.CompositeType;
 import javax.management.openmbean.OpenDataException;
@@ -105,6 +106,15 @@ public class LuceneIndexMBeanImpl extends AnnotatedStandardMBean implements Luce
         }
     }
 
+    @Override
+    public CompositeData getCopyOnReadStats() {
+        IndexCopier copier = indexTracker.getIndexCopier();
+        if (copier == null) {
+            return null;
+        }
+        return new CopyOnReadStats(copier).toCompositeData();
+    }
+
     private static class IndexStats {
         static final String[] FIELD_NAMES = new String[]{
                 "path",
@@ -182,6 +192,86 @@ public class LuceneIndexMBeanImpl extends AnnotatedStandardMBean implements Luce
         }
     }
 
+    private static class CopyOnReadStats {
+        static final String[] FIELD_NAMES = new String[]{
+                "localIndexDir",
+                "localIndexSizeStr",
+                "localIndexSize",
+                "copiedFileCount",
+                "copiedSize",
+                "localReadCount",
+                "remoteReadCount",
+                "deletedFileCount",
+                "deletedSize",
+        };
+
+        static final String[] FIELD_DESCRIPTIONS = new String[]{
+                "Directory of the local copies",
+                "Size of the local copies in human readable format",
+                "Size of the local copies in bytes",
+                "Number of files copied from the repository",
+                "Size of the files copied from the repository in bytes",
+                "Number of files opened from an existing local copy",
+                "Number of files read from the repository because they could not be copied",
+                "Number of unused local files that were removed",
+                "Size of the unused local files that were removed in bytes",
+        };
+
+        @SuppressWarnings("rawtypes")
+        static final OpenType[] FIELD_TYPES = new OpenType[]{
+                SimpleType.STRING,
+                SimpleType.STRING,
+                SimpleType.LONG,
+                SimpleType.LONG,
+                SimpleType.LONG,
+                SimpleType.LONG,
+                SimpleType.LONG,
+                SimpleType.LONG,
+                SimpleType.LONG,
+        };
+
+        static final CompositeType TYPE = createCompositeType();
+
+        static CompositeType createCompositeType() {
+            try {
+                return new CompositeType(
+                        CopyOnReadStats.class.getName(),
+                        "Composite data type for Lucene copy-on-read statistics",
+                        CopyOnReadStats.FIELD_NAMES,
+                        CopyOnReadStats.FIELD_DESCRIPTIONS,
+                        CopyOnReadStats.FIELD_TYPES);
+            } catch (OpenDataException e) {
+                throw new IllegalStateException(e);
+            }
+        }
+
+        private final IndexCopier copier;
+
+        CopyOnReadStats(IndexCopier copier) {
+            this.copier = copier;
+        }
+
+        CompositeDataSupport toCompositeData() {
+            long localIndexSize = copier.getLocalIndexSize();
+            Object[] values = new Object[]{
+                    copier.getIndexRootDir().getAbsolutePath(),
+                    humanReadableByteCount(localIndexSize, true),
+                    localIndexSize,
+                    copier.getCopiedFileCount(),
+                    copier.getCopiedSize(),
+                    copier.getLocalReadCount(),
+                    copier.getRemoteReadCount(),
+                    copier.getDeletedFileCount(),
+                    copier.getDeletedSize()
+            };
+            try {
+                return new CompositeDataSupport(TYPE, FIELD_NAMES, values);
+            } catch (OpenDataException e) {
+                throw new IllegalStateException(e);
+            }
+        }
+    }
+
     //~---------------------------------------------------------< Internal >
 
     private static Directory getDirectory(IndexReader reader) {
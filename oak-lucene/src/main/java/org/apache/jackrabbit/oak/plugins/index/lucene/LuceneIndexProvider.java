@@ -20,6 +20,7 @@ import java.io.Closeable;
 import java.util.List;
 
 import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
 
 import org.apache.jackrabbit.oak.plugins.index.aggregate.NodeAggregator;
 import org.apache.jackrabbit.oak.spi.commit.CommitInfo;
@@ -35,15 +36,43 @@ import com.google.common.collect.ImmutableList;
  * A provider for Lucene indexes.
  * 
  * @see LuceneIndex
+ * @see LucenePropertyIndex
  */
 public class LuceneIndexProvider implements QueryIndexProvider, Observer, Closeable {
 
-    protected final IndexTracker tracker = new IndexTracker();
+    protected final IndexTracker tracker;
 
     protected volatile Analyzer analyzer = LuceneIndexConstants.ANALYZER;
 
     protected volatile NodeAggregator aggregator = null;
 
+    public LuceneIndexProvider() {
+        this((IndexCopier) null);
+    }
+
+    /**
+     * Create a provider that reads the index files from local copies.
+     *
+     * @param copier the copier, or null to read the index files from the
+     *            repository
+     */
+    public LuceneIndexProvider(@Nullable IndexCopier copier) {
+        this(copier, null);
+    }
+
+    /**
+     * Create a provider that also searches the near real time indexes.
+     *
+     * @param copier the copier, or null to read the index files from the
+     *            repository
+     * @param nrtUpdater the updater of the near real time indexes, or null
+     *            to only search the persisted indexes
+     */
+    public LuceneIndexProvider(@Nullable IndexCopier copier,
+            @Nullable NRTIndexUpdater nrtUpdater) {
+        this.tracker = new IndexTracker(copier, nrtUpdater);
+    }
+
     public void close() {
         tracker.close();
     }
@@ -59,13 +88,18 @@ public class LuceneIndexProvider implements QueryIndexProvider, Observer, Closea
 
     @Override @Nonnull
     public List<QueryIndex> getQueryIndexes(NodeState nodeState) {
-        return ImmutableList.<QueryIndex> of(newLuceneIndex());
+        return ImmutableList.<QueryIndex> of(newLuceneIndex(),
+                newLucenePropertyIndex());
     }
 
     protected LuceneIndex newLuceneIndex() {
         return new LuceneIndex(tracker, analyzer, aggregator);
     }
 
+    protected LucenePropertyIndex newLucenePropertyIndex() {
+        return new LucenePropertyIndex(tracker);
+    }
+
     /**
      * sets the default analyzer that will be used at query time
      */
@@ -19,8 +19,12 @@
 
 package org.apache.jackrabbit.oak.plugins.index.lucene;
 
+import java.io.File;
+import java.io.IOException;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 import javax.management.NotCompliantMBeanException;
 
@@ -28,13 +32,16 @@ import com.google.common.collect.Lists;
 import org.apache.felix.scr.annotations.Activate;
 import org.apache.felix.scr.annotations.Component;
 import org.apache.felix.scr.annotations.Deactivate;
+import org.apache.felix.scr.annotations.Property;
 import org.apache.felix.scr.annotations.Reference;
 import org.apache.felix.scr.annotations.ReferenceCardinality;
 import org.apache.felix.scr.annotations.ReferencePolicy;
 import org.apache.felix.scr.annotations.ReferencePolicyOption;
+import org.apache.jackrabbit.oak.commons.PropertiesUtil;
 import org.apache.jackrabbit.oak.osgi.OsgiWhiteboard;
 import org.apache.jackrabbit.oak.plugins.index.aggregate.AggregateIndexProvider;
 import org.apache.jackrabbit.oak.plugins.index.aggregate.NodeAggregator;
+import org.apache.jackrabbit.oak.spi.commit.BackgroundObserver;
 import org.apache.jackrabbit.oak.spi.commit.Observer;
 import org.apache.jackrabbit.oak.spi.query.QueryIndexProvider;
 import org.apache.jackrabbit.oak.spi.whiteboard.Registration;
@@ -47,7 +54,7 @@ import org.slf4j.LoggerFactory;
 import static org.apache.jackrabbit.oak.spi.whiteboard.WhiteboardUtils.registerMBean;
 
 @SuppressWarnings("UnusedDeclaration")
-@Component(immediate = true)
+@Component(metatype = true, immediate = true, label = "Apache Jackrabbit Oak LuceneIndexProvider")
 public class LuceneIndexProviderService {
 
     private LuceneIndexProvider indexProvider;
@@ -70,12 +77,71 @@ public class LuceneIndexProviderService {
     )
     protected Analyzer analyzer;
 
+    @Reference(cardinality = ReferenceCardinality.OPTIONAL_UNARY,
+            policyOption = ReferencePolicyOption.GREEDY,
+            policy = ReferencePolicy.DYNAMIC
+    )
+    private TextExtractor textExtractor;
+
     private Registration mbeanReg;
 
+    private NRTIndexUpdater nrtUpdater;
+
+    private BackgroundObserver nrtObserver;
+
+    private ExecutorService nrtExecutor;
+
+    /**
+     * Whether the index files are copied to a local directory, and read from
+     * there (copy-on-read).
+     */
+    @Property(
+            boolValue = false,
+            label = "Enable CopyOnRead",
+            description = "Enable copying of Lucene index to local file system to improve query performance"
+    )
+    private static final String PROP_COPY_ON_READ = "enableCopyOnReadSupport";
+
+    @Property(
+            label = "Local index storage path",
+            description = "Local file system path where Lucene indexes would be copied when CopyOnRead is enabled"
+    )
+    private static final String PROP_LOCAL_INDEX_DIR = "localIndexDir";
+
+    /**
+     * Whether changes are indexed in memory as well, so that they are visible
+     * to queries on this cluster node before the asynchronous indexer has
+     * persisted them.
+     */
+    @Property(
+            boolValue = false,
+            label = "Enable near real time indexing",
+            description = "Index changes in memory, so that they can be queried on this cluster node " +
+                    "before the asynchronous index update has run"
+    )
+    private static final String PROP_NRT = "enableNRT";
+
+    @Property(
+            longValue = NRTIndexUpdater.DEFAULT_MAX_SIZE / 1024 / 1024,
+            label = "Near real time index size limit",
+            description = "Maximum size in MB of the in-memory part of an index; larger ones are " +
+                    "cleared until the next asynchronous index update"
+    )
+    private static final String PROP_NRT_MAX_SIZE = "nrtMaxSizeMB";
+
     @Activate
     private void activate(BundleContext bundleContext, Map<String, ?> config)
             throws NotCompliantMBeanException {
-        indexProvider = new LuceneIndexProvider();
+        if (PropertiesUtil.toBoolean(config.get(PROP_NRT), false)) {
+            log.info("Enabling near real time indexing");
+            long maxSize = PropertiesUtil.toLong(config.get(PROP_NRT_MAX_SIZE),
+                    NRTIndexUpdater.DEFAULT_MAX_SIZE / 1024 / 1024) * 1024 * 1024;
+            nrtUpdater = new NRTIndexUpdater(defaultAnalyzer, getTextExtractor(), maxSize);
+            nrtExecutor = Executors.newSingleThreadExecutor();
+            nrtObserver = new BackgroundObserver(nrtUpdater, nrtExecutor);
+            regs.add(bundleContext.registerService(Observer.class.getName(), nrtObserver, null));
+        }
+        indexProvider = new LuceneIndexProvider(createIndexCopier(config), nrtUpdater);
         initialize();
 
         QueryIndexProvider aggregate = AggregateIndexProvider.wrap(indexProvider);
@@ -90,6 +156,27 @@ public class LuceneIndexProviderService {
                 "Lucene Index statistics");
     }
 
+    private IndexCopier createIndexCopier(Map<String, ?> config) {
+        boolean enabled = PropertiesUtil.toBoolean(config.get(PROP_COPY_ON_READ), false);
+        if (!enabled) {
+            return null;
+        }
+        String dir = PropertiesUtil.toString(config.get(PROP_LOCAL_INDEX_DIR), null);
+        if (dir == null || dir.isEmpty()) {
+            log.warn("CopyOnRead is enabled, but no local index directory is configured ({})",
+                    PROP_LOCAL_INDEX_DIR);
+            return null;
+        }
+        try {
+            IndexCopier copier = new IndexCopier(new File(dir));
+            log.info("Enabling CopyOnRead support, with the local index directory {}", dir);
+            return copier;
+        } catch (IOException e) {
+            log.warn("Could not enable CopyOnRead support", e);
+            return null;
+        }
+    }
+
     @Deactivate
     private void deactivate() {
         for (ServiceRegistration reg : regs) {
@@ -104,6 +191,15 @@ public class LuceneIndexProviderService {
             indexProvider.close();
             indexProvider = null;
         }
+
+        if (nrtObserver != null) {
+            nrtObserver.close();
+            nrtObserver = null;
+            nrtExecutor.shutdown();
+            nrtExecutor = null;
+            nrtUpdater.close();
+            nrtUpdater = null;
+        }
     }
 
     private void initialize(){
@@ -119,6 +215,20 @@ public class LuceneIndexProviderService {
 
         Analyzer analyzer = this.analyzer != null ? this.analyzer : defaultAnalyzer;
         indexProvider.setAnalyzer(analyzer);
+
+        if (nrtUpdater != null) {
+            nrtUpdater.setTextExtractor(getTextExtractor());
+        }
+    }
+
+    /**
+     * The text extractor of the index editors, so that the near real time
+     * indexes use the same extracted text store and limits.
+     */
+    private TextExtractor getTextExtractor() {
+        TextExtractor extractor = this.textExtractor;
+        return extractor != null ? extractor
+                : LuceneIndexEditorProvider.DEFAULT_TEXT_EXTRACTOR;
     }
 
     protected void bindNodeAggregator(NodeAggregator aggregator) {
@@ -140,4 +250,14 @@ public class LuceneIndexProviderService {
         this.analyzer = null;
         initialize();
     }
+
+    protected void bindTextExtractor(TextExtractor textExtractor) {
+        this.textExtractor = textExtractor;
+        initialize();
+    }
+
+    protected void unbindTextExtractor(TextExtractor textExtractor) {
+        this.textExtractor = null;
+        initialize();
+    }
 }
@@ -0,0 +1,474 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.jackrabbit.oak.plugins.index.lucene;
+
+import static com.google.common.base.Preconditions.checkState;
+import static javax.jcr.PropertyType.DATE;
+import static javax.jcr.PropertyType.DOUBLE;
+import static javax.jcr.PropertyType.LONG;
+import static javax.jcr.PropertyType.STRING;
+import static org.apache.jackrabbit.oak.commons.PathUtils.concat;
+import static org.apache.jackrabbit.oak.plugins.index.IndexConstants.INDEX_DEFINITIONS_NAME;
+import static org.apache.jackrabbit.oak.plugins.index.IndexConstants.TYPE_PROPERTY_NAME;
+import static org.apache.jackrabbit.oak.plugins.index.lucene.LuceneIndex.LUCENE_QUERY_BATCH_SIZE;
+import static org.apache.jackrabbit.oak.plugins.index.lucene.LuceneIndexConstants.TYPE_LUCENE;
+import static org.apache.jackrabbit.oak.plugins.index.lucene.PropertyIndexDefinition.isPropertyIndex;
+import static org.apache.jackrabbit.oak.plugins.index.lucene.PropertyIndexDefinition.toDouble;
+import static org.apache.jackrabbit.oak.plugins.index.lucene.PropertyIndexDefinition.toLong;
+import static org.apache.lucene.search.BooleanClause.Occur.MUST;
+import static org.apache.lucene.search.BooleanClause.Occur.SHOULD;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.List;
+
+import org.apache.jackrabbit.oak.api.PropertyValue;
+import org.apache.jackrabbit.oak.api.Type;
+import org.apache.jackrabbit.oak.plugins.index.lucene.LuceneIndex.PathStoredFieldVisitor;
+import org.apache.jackrabbit.oak.spi.query.Cursor;
+import org.apache.jackrabbit.oak.spi.query.Cursors.PathCursor;
+import org.apache.jackrabbit.oak.spi.query.Filter;
+import org.apache.jackrabbit.oak.spi.query.Filter.PropertyRestriction;
+import org.apache.jackrabbit.oak.spi.query.QueryIndex;
+import org.apache.jackrabbit.oak.spi.query.QueryIndex.AdvancedQueryIndex;
+import org.apache.jackrabbit.oak.spi.state.ChildNodeEntry;
+import org.apache.jackrabbit.oak.spi.state.NodeState;
+import org.apache.lucene.index.IndexReader;
+import org.apache.lucene.index.Term;
+import org.apache.lucene.search.BooleanQuery;
+import org.apache.lucene.search.IndexSearcher;
+import org.apache.lucene.search.MatchAllDocsQuery;
+import org.apache.lucene.search.NumericRangeQuery;
+import org.apache.lucene.search.PrefixQuery;
+import org.apache.lucene.search.Query;
+import org.apache.lucene.search.ScoreDoc;
+import org.apache.lucene.search.Sort;
+import org.apache.lucene.search.SortField;
+import org.apache.lucene.search.TermQuery;
+import org.apache.lucene.search.TermRangeQuery;
+import org.apache.lucene.search.TopDocs;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.common.collect.AbstractIterator;
+import com.google.common.collect.Queues;
+
+/**
+ * A query index that uses the Lucene indexes with full-text disabled, where
+ * the included properties are indexed as typed fields. Such an index can
+ * evaluate equality, range, "in", and "is not null" conditions on the
+ * included properties, and can return the result sorted by the ordered
+ * properties, so that the query engine does not need to sort it.
+ * <p>
+ * Only the nodes that have at least one of the included properties are
+ * indexed, so the index is only used if the query has a condition on one of
+ * them. The definitions are read from the "oak:index" node of the root node:
+ * <pre>
+ * <code>
+ * {
+ *     NodeBuilder index = root.child("oak:index").child("products")
+ *         .setProperty("jcr:primaryType", "oak:QueryIndexDefinition", Type.NAME)
+ *         .setProperty("type", "lucene")
+ *         .setProperty("async", "async")
+ *         .setProperty("fulltextEnabled", false)
+ *         .setProperty("includePropertyNames", of("price", "created", "title"), Type.STRINGS)
+ *         .setProperty("orderedProps", of("price", "created"), Type.STRINGS)
+ *         .setProperty("reindex", true);
+ *     index.child("properties").child("price").setProperty("type", "Long");
+ *     index.child("properties").child("created").setProperty("type", "Date");
+ * }
+ * </code>
+ * </pre>
+ *
+ * @see LuceneIndexConstants#FULL_TEXT_ENABLED
+ */
+public class LucenePropertyIndex implements QueryIndex, AdvancedQueryIndex {
+
+    private static final Logger LOG = LoggerFactory
+            .getLogger(LucenePropertyIndex.class);
+
+    /**
+     * The name of the plan attribute with the path of the index definition.
+     */
+    private static final String ATTR_INDEX_PATH = "lucene.indexPath";
+
+    private final IndexTracker tracker;
+
+    public LucenePropertyIndex(IndexTracker tracker) {
+        this.tracker = tracker;
+    }
+
+    @Override
+    public String getIndexName() {
+        return "lucene-property";
+    }
+
+    @Override
+    public double getCost(Filter filter, NodeState root) {
+        throw new UnsupportedOperationException("Not supported as implementing AdvancedQueryIndex");
+    }
+
+    @Override
+    public String getPlan(Filter filter, NodeState root) {
+        throw new UnsupportedOperationException("Not supported as implementing AdvancedQueryIndex");
+    }
+
+    @Override
+    public Cursor query(Filter filter, NodeState root) {
+        throw new UnsupportedOperationException("Not supported as implementing AdvancedQueryIndex");
+    }
+
+    @Override
+    public List<IndexPlan> getPlans(Filter filter, List<OrderEntry> sortOrder,
+            NodeState root) {
+        if (filter.getFullTextConstraint() != null
+                || filter.containsNativeConstraint()) {
+            // full-text and native conditions are handled by the LuceneIndex
+            return Collections.emptyList();
+        }
+        List<IndexPlan> plans = new ArrayList<IndexPlan>();
+        NodeState definitions = root.getChildNode(INDEX_DEFINITIONS_NAME);
+        for (ChildNodeEntry entry : definitions.getChildNodeEntries()) {
+            NodeState definition = entry.getNodeState();
+            if (!TYPE_LUCENE.equals(definition.getString(TYPE_PROPERTY_NAME))
+                    || !isPropertyIndex(definition)) {
+                continue;
+            }
+            String path = concat("/", INDEX_DEFINITIONS_NAME, entry.getName());
+            IndexNode index = tracker.acquireIndexNode(path);
+            if (index == null) {
+                // not indexed yet
+                continue;
+            }
+            try {
+                IndexPlan plan = getPlan(path, index, filter, sortOrder);
+                if (plan != null) {
+                    plans.add(plan);
+                }
+            } catch (IOException e) {
+                LOG.warn("Could not read the Lucene index at " + path, e);
+            } finally {
+                index.release();
+            }
+        }
+        return plans;
+    }
+
+    private static IndexPlan getPlan(String path, IndexNode index,
+            Filter filter, List<OrderEntry> sortOrder) throws IOException {
+        PropertyIndexDefinition defn =
+                new PropertyIndexDefinition(index.getDefinition());
+        IndexReader reader = index.getSearcher().getIndexReader();
+        long count = -1;
+        for (PropertyRestriction pr : filter.getPropertyRestrictions()) {
+            if (getPropertyQuery(pr, defn) != null) {
+                long c = getEstimatedEntryCount(reader, pr, defn);
+                count = count < 0 ? c : Math.min(count, c);
+            }
+        }
+        if (count < 0) {
+            // nodes without any of the included properties are not indexed,
+            // so without a condition on one of them, we would miss nodes
+            return null;
+        }
+        if (sortOrder != null && getSort(sortOrder, defn) == null) {
+            // not sorted by the ordered properties only
+            sortOrder = null;
+        }
+        return new IndexPlan.Builder()
+                .setCostPerExecution(2)
+                .setCostPerEntry(1)
+                .setEstimatedEntryCount(count)
+                .setFilter(filter)
+                .setDelayed(true)
+                .setFulltextIndex(false)
+                .setIncludesNodeData(false)
+                .setSortOrder(sortOrder)
+                .setDefinition(index.getDefinition())
+                .setAttribute(ATTR_INDEX_PATH, path)
+                .build();
+    }
+
+    /**
+     * Estimate the number of matching documents for the given restriction.
+     * For equality conditions on string properties, the document frequency
+     * of the term is used; otherwise the number of documents with the
+     * property (which is an upper bound).
+     */
+    private static long getEstimatedEntryCount(IndexReader reader,
+            PropertyRestriction pr, PropertyIndexDefinition defn)
+            throws IOException {
+        String name = pr.propertyName;
+        if (defn.getType(name) == STRING && pr.list == null && !pr.isLike
+                && pr.first != null && pr.first.equals(pr.last)
+                && pr.firstIncluding && pr.lastIncluding) {
+            return reader.docFreq(new Term(name, pr.first.getValue(Type.STRING)));
+        }
+        int count = reader.getDocCount(name);
+        return count < 0 ? reader.numDocs() : count;
+    }
+
+    @Override
+    public String getPlanDescription(IndexPlan plan, NodeState root) {
+        String path = (String) IndexPlan.Builder.getAttribute(plan, ATTR_INDEX_PATH);
+        IndexNode index = tracker.acquireIndexNode(path);
+        checkState(index != null, "The Lucene index is not available");
+        try {
+            PropertyIndexDefinition defn =
+                    new PropertyIndexDefinition(index.getDefinition());
+            StringBuilder buff = new StringBuilder("lucene-property:");
+            buff.append(index.getName()).append(' ');
+            buff.append(getQuery(plan.getFilter(), defn));
+            List<OrderEntry> sortOrder = plan.getSortOrder();
+            if (sortOrder != null) {
+                buff.append(" sort:").append(getSort(sortOrder, defn));
+            }
+            return buff.toString();
+        } finally {
+            index.release();
+        }
+    }
+
+    @Override
+    public Cursor query(IndexPlan plan, NodeState root) {
+        final Filter filter = plan.getFilter();
+        final List<OrderEntry> sortOrder = plan.getSortOrder();
+        final String path = (String) IndexPlan.Builder.getAttribute(plan, ATTR_INDEX_PATH);
+        Iterator<String> it = new AbstractIterator<String>() {
+
+            private final Deque<String> queue = Queues.newArrayDeque();
+
+            private ScoreDoc lastDoc;
+
+            @Override
+            protected String computeNext() {
+                if (!queue.isEmpty() || loadDocs()) {
+                    return queue.remove();
+                }
+                return endOfData();
+            }
+
+            /**
+             * Loads the lucene documents in batches
+             * @return true if any document is loaded
+             */
+            private boolean loadDocs() {
+                IndexNode index = tracker.acquireIndexNode(path);
+                checkState(index != null, "The Lucene index is not available");
+                try {
+                    PropertyIndexDefinition defn =
+                            new PropertyIndexDefinition(index.getDefinition());
+                    IndexSearcher searcher = index.getSearcher();
+                    Query query = getQuery(filter, defn);
+                    Sort sort = sortOrder == null ? null : getSort(sortOrder, defn);
+                    TopDocs docs;
+                    if (sort == null) {
+                        if (lastDoc != null) {
+                            docs = searcher.searchAfter(lastDoc, query, LUCENE_QUERY_BATCH_SIZE);
+                        } else {
+                            docs = searcher.search(query, LUCENE_QUERY_BATCH_SIZE);
+                        }
+                    } else {
+                        if (lastDoc != null) {
+                            docs = searcher.searchAfter(lastDoc, query, LUCENE_QUERY_BATCH_SIZE, sort);
+                        } else {
+                            docs = searcher.search(query, LUCENE_QUERY_BATCH_SIZE, sort);
+                        }
+                    }
+                    for (ScoreDoc doc : docs.scoreDocs) {
+                        PathStoredFieldVisitor visitor = new PathStoredFieldVisitor();
+                        searcher.getIndexReader().document(doc.doc, visitor);
+                        String p = visitor.getPath();
+                        if (p != null) {
+                            queue.add("".equals(p) ? "/" : p);
+                        }
+                        lastDoc = doc;
+                    }
+                } catch (IOException e) {
+                    LOG.warn("query via {} failed.", LucenePropertyIndex.this, e);
+                } finally {
+                    index.release();
+                }
+                return !queue.isEmpty();
+            }
+
+        };
+        // there is one document per node, so the paths are distinct,
+        // except if a newer copy of the document is in the near real time index
+        return new PathCursor(it, tracker.isNearRealTime(),
+                filter.getQueryEngineSettings());
+    }
+
+    /**
+     * Get the Lucene query for the path restriction and the property
+     * restrictions on the included properties of the filter. Other
+     * conditions (for example node type restrictions) are not evaluated by
+     * the index, but by the query engine.
+     *
+     * @param filter the filter
+     * @param defn the index definition
+     * @return the Lucene query
+     */
+    private static Query getQuery(Filter filter, PropertyIndexDefinition defn) {
+        List<Query> qs = new ArrayList<Query>();
+        LuceneIndex.addPathConstraints(qs, filter);
+        for (PropertyRestriction pr : filter.getPropertyRestrictions()) {
+            Query q = getPropertyQuery(pr, defn);
+            if (q != null) {
+                qs.add(q);
+            }
+        }
+        if (qs.size() == 0) {
+            return new MatchAllDocsQuery();
+        }
+        if (qs.size() == 1) {
+            return qs.get(0);
+        }
+        BooleanQuery bq = new BooleanQuery();
+        for (Query q : qs) {
+            bq.add(q, MUST);
+        }
+        return bq;
+    }
+
+    /**
+     * Get the Lucene query for a property restriction.
+     *
+     * @param pr the restriction
+     * @param defn the index definition
+     * @return the query, or null if the index can not evaluate the
+     *         restriction (the property is not included, or the values can
+     *         not be converted to the type of the property)
+     */
+    private static Query getPropertyQuery(PropertyRestriction pr,
+            PropertyIndexDefinition defn) {
+        String name = pr.propertyName;
+        if (!defn.includes(name)) {
+            return null;
+        }
+        int type = defn.getType(name);
+        try {
+            if (pr.list != null) {
+                if (pr.list.size() > BooleanQuery.getMaxClauseCount()) {
+                    return null;
+                }
+                BooleanQuery in = new BooleanQuery();
+                for (PropertyValue value : pr.list) {
+                    String v = value.getValue(Type.STRING);
+                    in.add(getRangeQuery(name, type, v, v, true, true), SHOULD);
+                }
+                return in;
+            }
+            if (pr.isLike) {
+                // only simple prefix conditions ("like 'abc%'") are supported
+                String pattern = pr.first.getValue(Type.STRING);
+                int len = pattern.length();
+                if (type != STRING || len == 0
+                        || pattern.indexOf('%') != len - 1
+                        || pattern.indexOf('_') >= 0
+                        || pattern.indexOf('\\') >= 0) {
+                    return null;
+                }
+                return new PrefixQuery(new Term(name, pattern.substring(0, len - 1)));
+            }
+            String first = pr.first == null ? null : pr.first.getValue(Type.STRING);
+            String last = pr.last == null ? null : pr.last.getValue(Type.STRING);
+            return getRangeQuery(name, type, first, last,
+                    pr.firstIncluding, pr.lastIncluding);
+        } catch (IllegalArgumentException e) {
+            // the query engine will evaluate the condition
+            return null;
+        }
+    }
+
+    /**
+     * Get a range query for the given typed field. If both bounds are null,
+     * all documents with the field match ("is not null").
+     */
+    private static Query getRangeQuery(String name, int type,
+            String first, String last,
+            boolean firstIncluding, boolean lastIncluding) {
+        switch (type) {
+        case LONG:
+        case DATE: {
+            Long min = first == null ? null : toLong(type, first);
+            Long max = last == null ? null : toLong(type, last);
+            return NumericRangeQuery.newLongRange(name, min, max,
+                    firstIncluding, lastIncluding);
+        }
+        case DOUBLE: {
+            Double min = first == null ? null : toDouble(first);
+            Double max = last == null ? null : toDouble(last);
+            return NumericRangeQuery.newDoubleRange(name, min, max,
+                    firstIncluding, lastIncluding);
+        }
+        default:
+            if (first != null && first.equals(last)
+                    && firstIncluding && lastIncluding) {
+                return new TermQuery(new Term(name, first));
+            }
+            return TermRangeQuery.newStringRange(name, first, last,
+                    firstIncluding, lastIncluding);
+        }
+    }
+
+    /**
+     * Get the Lucene sort order for the given sort order.
+     *
+     * @param sortOrder the sort order
+     * @param defn the index definition
+     * @return the Lucene sort order, or null if one of the properties is not
+     *         an ordered property of the index
+     */
+    private static Sort getSort(List<OrderEntry> sortOrder,
+            PropertyIndexDefinition defn) {
+        SortField[] fields = new SortField[sortOrder.size()];
+        for (int i = 0; i < fields.length; i++) {
+            OrderEntry e = sortOrder.get(i);
+            String name = e.getPropertyName();
+            if (!defn.isOrdered(name)) {
+                return null;
+            }
+            boolean reverse = e.getOrder() == OrderEntry.Order.DESCENDING;
+            // nodes without the property come first (ascending order),
+            // the same as when the query engine sorts the result
+            switch (defn.getType(name)) {
+            case LONG:
+            case DATE:
+                fields[i] = new SortField(name, SortField.Type.LONG, reverse);
+                fields[i].setMissingValue(Long.MIN_VALUE);
+                break;
+            case DOUBLE:
+                fields[i] = new SortField(name, SortField.Type.DOUBLE, reverse);
+                fields[i].setMissingValue(Double.NEGATIVE_INFINITY);
+                break;
+            default:
+                fields[i] = new SortField(name, SortField.Type.STRING, reverse);
+            }
+        }
+        return new Sort(fields);
+    }
+
+    @Override
+    public String toString() {
+        return "LucenePropertyIndex";
+    }
+
+}
@@ -0,0 +1,199 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.jackrabbit.oak.plugins.index.lucene;
+
+import static com.google.common.collect.Lists.newArrayListWithCapacity;
+
+import java.io.IOException;
+import java.util.List;
+
+import org.apache.lucene.analysis.Analyzer;
+import org.apache.lucene.index.DirectoryReader;
+import org.apache.lucene.index.IndexReader;
+import org.apache.lucene.index.IndexWriter;
+import org.apache.lucene.store.RAMDirectory;
+
+/**
+ * The near real time part of a Lucene index: the changes that were made in
+ * the repository since the persisted index was last updated by the
+ * asynchronous indexer. The changes are kept in memory only, and are written
+ * by the {@link NRTIndexUpdater}.
+ * <p>
+ * There are two generations: the current one, which is written to, and the
+ * previous one. Whenever a new revision of the persisted index is opened, the
+ * generations are rotated, and the previous generation is dropped. This
+ * ensures that changes that were made while the asynchronous indexer was
+ * running (and are therefore not necessarily part of the new revision) are
+ * still visible until the next revision of the persisted index.
+ * <p>
+ * If the asynchronous indexer does not catch up, the generations can grow
+ * without limit; the {@link NRTIndexUpdater} then {@link #clear() clears}
+ * the index once it is larger than the configured maximum size.
+ */
+class NRTIndex {
+
+    private final Analyzer analyzer;
+
+    private Generation current;
+
+    private Generation previous;
+
+    private boolean closed;
+
+    /**
+     * Incremented whenever the content of the index changes, so that readers
+     * know when to reopen.
+     */
+    private volatile long version;
+
+    NRTIndex(Analyzer analyzer) throws IOException {
+        this.analyzer = analyzer;
+        this.current = new Generation(analyzer);
+    }
+
+    /**
+     * Get the memory used by all generations.
+     *
+     * @return the size in bytes
+     */
+    synchronized long getSize() {
+        long size = current.getSize();
+        if (previous != null) {
+            size += previous.getSize();
+        }
+        return size;
+    }
+
+    /**
+     * Get the writer of the current generation.
+     *
+     * @return the writer
+     */
+    synchronized IndexWriter getWriter() {
+        return current.writer;
+    }
+
+    /**
+     * Signal that the index was changed using the writer.
+     */
+    synchronized void changed() {
+        version++;
+    }
+
+    long getVersion() {
+        return version;
+    }
+
+    /**
+     * Open near real time readers for all generations. The caller needs to
+     * close the readers.
+     *
+     * @return the readers (the previous generation first), or an empty list
+     *         if the index is closed
+     */
+    synchronized List<IndexReader> openReaders() throws IOException {
+        List<IndexReader> readers = newArrayListWithCapacity(2);
+        if (closed) {
+            return readers;
+        }
+        try {
+            if (previous != null) {
+                readers.add(DirectoryReader.open(previous.writer, true));
+            }
+            readers.add(DirectoryReader.open(current.writer, true));
+        } catch (IOException e) {
+            for (IndexReader reader : readers) {
+                reader.close();
+            }
+            throw e;
+        }
+        return readers;
+    }
+
+    /**
+     * Drop the previous generation, and start a new one.
+     */
+    synchronized void rotate() throws IOException {
+        Generation dropped = previous;
+        previous = current;
+        current = new Generation(analyzer);
+        version++;
+        if (dropped != null) {
+            dropped.close();
+        }
+    }
+
+    /**
+     * Drop all generations, and start a new one.
+     */
+    synchronized void clear() throws IOException {
+        Generation dropped = current;
+        Generation droppedPrevious = previous;
+        current = new Generation(analyzer);
+        previous = null;
+        version++;
+        try {
+            dropped.close();
+        } finally {
+            if (droppedPrevious != null) {
+                droppedPrevious.close();
+            }
+        }
+    }
+
+    /**
+     * Close the index. Afterwards, no readers are opened any longer, and the
+     * version is incremented so that open readers are dropped.
+     */
+    synchronized void close() throws IOException {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        version++;
+        try {
+            current.close();
+        } finally {
+            if (previous != null) {
+                previous.close();
+            }
+        }
+    }
+
+    private static class Generation {
+
+        final RAMDirectory directory = new RAMDirectory();
+
+        final IndexWriter writer;
+
+        Generation(Analyzer analyzer) throws IOException {
+            writer = new IndexWriter(directory,
+                    LuceneIndexEditorContext.getIndexWriterConfig(analyzer));
+        }
+
+        long getSize() {
+            return directory.sizeInBytes() + writer.ramSizeInBytes();
+        }
+
+        void close() throws IOException {
+            // readers that are still open keep the (in-memory) files
+            writer.close();
+        }
+
+    }
+
+}
@@ -0,0 +1,251 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.jackrabbit.oak.plugins.index.lucene;
+
+import static com.google.common.collect.Maps.newConcurrentMap;
+import static com.google.common.collect.Sets.newHashSet;
+import static org.apache.jackrabbit.oak.commons.PathUtils.concat;
+import static org.apache.jackrabbit.oak.commons.PathUtils.getParentPath;
+import static org.apache.jackrabbit.oak.plugins.index.IndexConstants.ASYNC_PROPERTY_NAME;
+import static org.apache.jackrabbit.oak.plugins.index.IndexConstants.INDEX_DEFINITIONS_NAME;
+import static org.apache.jackrabbit.oak.plugins.index.IndexConstants.TYPE_PROPERTY_NAME;
+import static org.apache.jackrabbit.oak.plugins.index.lucene.LuceneIndexConstants.TYPE_LUCENE;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentMap;
+
+import javax.annotation.CheckForNull;
+
+import org.apache.jackrabbit.oak.api.CommitFailedException;
+import org.apache.jackrabbit.oak.plugins.index.IndexUpdateCallback;
+import org.apache.jackrabbit.oak.spi.commit.CommitInfo;
+import org.apache.jackrabbit.oak.spi.commit.EditorDiff;
+import org.apache.jackrabbit.oak.spi.commit.Observer;
+import org.apache.jackrabbit.oak.spi.commit.VisibleEditor;
+import org.apache.jackrabbit.oak.spi.state.ChildNodeEntry;
+import org.apache.jackrabbit.oak.spi.state.NodeState;
+import org.apache.jackrabbit.oak.spi.state.ReadOnlyBuilder;
+import org.apache.lucene.analysis.Analyzer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Keeps the near real time part of the asynchronous Lucene indexes up to
+ * date. Each change in the repository is indexed into an in-memory
+ * {@link NRTIndex}, so that it is visible to queries on this cluster node
+ * before the asynchronous indexer has persisted it. The persisted index is
+ * still updated by the asynchronous indexer only.
+ * <p>
+ * Only the index definitions in "/oak:index" are supported. The updater
+ * should be registered as a background observer, as the changes (including
+ * text extraction) are indexed in the thread that calls
+ * {@link #contentChanged(NodeState, CommitInfo)}. The text of binaries is
+ * extracted with the text extractor of the index editors, so that the
+ * same store and limits apply.
+ * <p>
+ * A near real time index that grows larger than the maximum size (because
+ * the asynchronous indexer doesn't catch up) is cleared. The changes up to
+ * then are only visible to queries after the next asynchronous update.
+ */
+public class NRTIndexUpdater implements Observer, Closeable {
+
+    private static final Logger log =
+            LoggerFactory.getLogger(NRTIndexUpdater.class);
+
+    private static final IndexUpdateCallback NOOP_CALLBACK =
+            new IndexUpdateCallback() {
+                @Override
+                public void indexUpdate() {
+                    // do nothing
+                }
+            };
+
+    /**
+     * The default maximum size of a near real time index, in bytes.
+     */
+    public static final long DEFAULT_MAX_SIZE = 64 * 1024 * 1024;
+
+    private static final String INDEX_DEFINITIONS_PATH =
+            concat("/", INDEX_DEFINITIONS_NAME);
+
+    private final Analyzer analyzer;
+
+    private final long maxSize;
+
+    private volatile TextExtractor textExtractor;
+
+    private final ConcurrentMap<String, NRTIndex> indexes = newConcurrentMap();
+
+    private NodeState root;
+
+    /**
+     * Create an updater.
+     *
+     * @param analyzer the analyzer
+     * @param textExtractor the text extractor (not closed by this updater)
+     * @param maxSize the maximum size of each near real time index, in bytes
+     */
+    public NRTIndexUpdater(Analyzer analyzer, TextExtractor textExtractor,
+            long maxSize) {
+        this.analyzer = analyzer;
+        this.textExtractor = textExtractor;
+        this.maxSize = maxSize;
+    }
+
+    /**
+     * Set the text extractor, for example when the configuration of the
+     * index editors changed.
+     *
+     * @param textExtractor the text extractor (not closed by this updater)
+     */
+    public void setTextExtractor(TextExtractor textExtractor) {
+        this.textExtractor = textExtractor;
+    }
+
+    /**
+     * Get the near real time index for the given index definition.
+     *
+     * @param path the path of the index definition
+     * @param definition the index definition
+     * @return the index, or null if the index is not asynchronous (and
+     *         therefore doesn't need a near real time index), or if it is
+     *         not in "/oak:index" (and therefore not maintained by this
+     *         updater)
+     */
+    @CheckForNull
+    NRTIndex getIndex(String path, NodeState definition) throws IOException {
+        if (!definition.hasProperty(ASYNC_PROPERTY_NAME)
+                || !INDEX_DEFINITIONS_PATH.equals(getParentPath(path))) {
+            return null;
+        }
+        NRTIndex index = indexes.get(path);
+        if (index == null) {
+            NRTIndex created = new NRTIndex(analyzer);
+            index = indexes.putIfAbsent(path, created);
+            if (index == null) {
+                index = created;
+            } else {
+                created.close();
+            }
+        }
+        return index;
+    }
+
+    /**
+     * Rotate the generations of the near real time index, because a new
+     * revision of the persisted index was opened.
+     *
+     * @param path the path of the index definition
+     */
+    void rotate(String path) {
+        NRTIndex index = indexes.get(path);
+        if (index != null) {
+            try {
+                index.rotate();
+            } catch (IOException e) {
+                log.warn("Failed to rotate the near real time index at " + path, e);
+            }
+        }
+    }
+
+    @Override
+    public synchronized void contentChanged(NodeState root, CommitInfo info) {
+        NodeState before = this.root;
+        this.root = root;
+        if (before == null) {
+            // the content up to here is in the persisted index
+            // (or will be, after the next asynchronous update)
+            return;
+        }
+
+        Set<String> paths = newHashSet();
+        NodeState definitions = root.getChildNode(INDEX_DEFINITIONS_NAME);
+        for (ChildNodeEntry entry : definitions.getChildNodeEntries()) {
+            NodeState definition = entry.getNodeState();
+            if (!TYPE_LUCENE.equals(definition.getString(TYPE_PROPERTY_NAME))) {
+                continue;
+            }
+            String path = concat(INDEX_DEFINITIONS_PATH, entry.getName());
+            try {
+                NRTIndex index = getIndex(path, definition);
+                if (index != null) {
+                    paths.add(path);
+                    update(index, path, definition, before, root);
+                }
+            } catch (IOException e) {
+                log.warn("Failed to update the near real time index at " + path, e);
+            }
+        }
+
+        for (Map.Entry<String, NRTIndex> entry : indexes.entrySet()) {
+            if (!paths.contains(entry.getKey())
+                    && indexes.remove(entry.getKey(), entry.getValue())) {
+                close(entry.getKey(), entry.getValue());
+            }
+        }
+    }
+
+    private void update(NRTIndex index, String path, NodeState definition,
+            NodeState before, NodeState after) {
+        try {
+            LuceneIndexEditor editor = new LuceneIndexEditor(
+                    new ReadOnlyBuilder(definition), analyzer, textExtractor,
+                    NOOP_CALLBACK, index.getWriter());
+            CommitFailedException e = EditorDiff.process(
+                    new VisibleEditor(editor), before, after);
+            if (e != null) {
+                log.warn("Failed to update the near real time index at " + path, e);
+            }
+        } catch (CommitFailedException e) {
+            log.warn("Failed to update the near real time index at " + path, e);
+        } finally {
+            index.changed();
+        }
+        long size = index.getSize();
+        if (size > maxSize) {
+            log.warn("The near real time index at {} uses {} bytes, more than the"
+                    + " limit of {} bytes; clearing it until the next asynchronous"
+                    + " index update", new Object[] {path, size, maxSize});
+            try {
+                index.clear();
+            } catch (IOException e) {
+                log.warn("Failed to clear the near real time index at " + path, e);
+            }
+        }
+    }
+
+    @Override
+    public synchronized void close() {
+        for (Map.Entry<String, NRTIndex> entry : indexes.entrySet()) {
+            if (indexes.remove(entry.getKey(), entry.getValue())) {
+                close(entry.getKey(), entry.getValue());
+            }
+        }
+    }
+
+    private static void close(String path, NRTIndex index) {
+        try {
+            index.close();
+        } catch (IOException e) {
+            log.warn("Failed to close the near real time index at " + path, e);
+        }
+    }
+
+}
@@ -24,6 +24,7 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.util.Collection;
 import java.util.List;
+import java.util.UUID;
 import org.apache.jackrabbit.oak.api.Blob;
 import org.apache.jackrabbit.oak.api.PropertyState;
 import org.apache.jackrabbit.oak.spi.state.NodeBuilder;
@@ -43,6 +44,7 @@ import static com.google.common.collect.Lists.newArrayList;
 import static org.apache.jackrabbit.JcrConstants.JCR_DATA;
 import static org.apache.jackrabbit.JcrConstants.JCR_LASTMODIFIED;
 import static org.apache.jackrabbit.oak.api.Type.BINARIES;
+import static org.apache.jackrabbit.oak.api.Type.LONG;
 
 /**
  * Implementation of the Lucene {@link Directory} (a flat list of files)
@@ -88,9 +90,31 @@ class OakDirectory extends Directory {
     @Override
     public IndexOutput createOutput(String name, IOContext context)
             throws IOException {
-        return new OakIndexOutput(name, directoryBuilder.child(name));
+        NodeBuilder file = directoryBuilder.child(name);
+        file.setProperty(PROP_UNIQUE_KEY, UUID.randomUUID().toString());
+        return new OakIndexOutput(name, file);
     }
 
+    /**
+     * Get a key that identifies the current content of the given file. The
+     * key changes whenever the file is written, including when the index is
+     * re-built (where the same file names are used again).
+     *
+     * @param name the file name
+     * @return the key, or null if the file does not exist or has no key
+     */
+    String getFileKey(String name) {
+        NodeBuilder file = directoryBuilder.getChildNode(name);
+        String key = file.getString(PROP_UNIQUE_KEY);
+        if (key == null) {
+            // written before the unique key was added
+            PropertyState lastModified = file.getProperty(JCR_LASTMODIFIED);
+            if (lastModified != null) {
+                key = "t" + lastModified.getValue(LONG);
+            }
+        }
+        return key;
+    }
 
     @Override
     public IndexInput openInput(String name, IOContext context)
@@ -133,6 +157,11 @@ class OakDirectory extends Directory {
         return lockFactory;
     }
 
+    /**
+     * Name of the property that contains the unique key of a file.
+     */
+    static final String PROP_UNIQUE_KEY = "uniqueKey";
+
     /**
      * Size of the blob entries to which the Lucene files are split.
      * Set to higher than the 4kB inline limit for the BlobStore, but
@@ -0,0 +1,142 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.jackrabbit.oak.plugins.index.lucene;
+
+import static com.google.common.collect.Maps.newHashMap;
+import static javax.jcr.PropertyType.DATE;
+import static javax.jcr.PropertyType.DOUBLE;
+import static javax.jcr.PropertyType.LONG;
+import static javax.jcr.PropertyType.STRING;
+import static org.apache.jackrabbit.oak.plugins.index.lucene.LuceneIndexConstants.FULL_TEXT_ENABLED;
+import static org.apache.jackrabbit.oak.plugins.index.lucene.LuceneIndexConstants.INCLUDE_PROPERTY_NAMES;
+import static org.apache.jackrabbit.oak.plugins.index.lucene.LuceneIndexConstants.ORDERED_PROP_NAMES;
+import static org.apache.jackrabbit.oak.plugins.index.lucene.LuceneIndexConstants.PROP_NODE;
+import static org.apache.jackrabbit.oak.plugins.index.lucene.LuceneIndexConstants.PROP_TYPE;
+
+import java.util.Map;
+import java.util.Set;
+
+import javax.jcr.PropertyType;
+
+import org.apache.jackrabbit.oak.api.PropertyState;
+import org.apache.jackrabbit.oak.api.Type;
+import org.apache.jackrabbit.oak.plugins.value.Conversions;
+import org.apache.jackrabbit.oak.spi.state.NodeState;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSet;
+
+/**
+ * The settings of a Lucene index with full-text disabled, where the included
+ * properties are indexed as typed fields.
+ */
+class PropertyIndexDefinition {
+
+    private static final Logger log =
+            LoggerFactory.getLogger(PropertyIndexDefinition.class);
+
+    private final Map<String, Integer> types;
+
+    private final Set<String> ordered;
+
+    PropertyIndexDefinition(NodeState definition) {
+        NodeState props = definition.getChildNode(PROP_NODE);
+        Map<String, Integer> map = newHashMap();
+        for (String name : definition.getStrings(INCLUDE_PROPERTY_NAMES)) {
+            if (name.indexOf('/') >= 0) {
+                log.warn("Relative properties are not supported: " + name);
+                continue;
+            }
+            map.put(name, getType(props.getChildNode(name).getString(PROP_TYPE)));
+        }
+        this.types = ImmutableMap.copyOf(map);
+        this.ordered = ImmutableSet.copyOf(
+                definition.getStrings(ORDERED_PROP_NAMES));
+    }
+
+    /**
+     * Whether the given index definition has full-text disabled.
+     *
+     * @param definition the index definition
+     * @return true if only the included properties are indexed
+     */
+    static boolean isPropertyIndex(NodeState definition) {
+        PropertyState ps = definition.getProperty(FULL_TEXT_ENABLED);
+        return ps != null && !ps.getValue(Type.BOOLEAN);
+    }
+
+    boolean includes(String name) {
+        return types.containsKey(name);
+    }
+
+    Set<String> getIncludes() {
+        return types.keySet();
+    }
+
+    boolean isOrdered(String name) {
+        return includes(name) && ordered.contains(name);
+    }
+
+    /**
+     * Get the type of the given property.
+     *
+     * @param name the property name
+     * @return the type (LONG, DOUBLE, DATE, or STRING)
+     */
+    int getType(String name) {
+        Integer type = types.get(name);
+        return type == null ? STRING : type;
+    }
+
+    /**
+     * Convert a value of a property with the type LONG or DATE to the long
+     * value that is indexed (for dates, the milliseconds since 1970 UTC).
+     *
+     * @param type the property type
+     * @param value the value
+     * @return the long value
+     * @throws IllegalArgumentException if the value can not be converted
+     */
+    static long toLong(int type, String value) {
+        if (type == DATE) {
+            return Conversions.convert(value).toCalendar().getTimeInMillis();
+        }
+        return Conversions.convert(value).toLong();
+    }
+
+    static double toDouble(String value) {
+        return Conversions.convert(value).toDouble();
+    }
+
+    private static int getType(String typeName) {
+        if (typeName == null) {
+            return STRING;
+        }
+        try {
+            int type = PropertyType.valueFromName(typeName);
+            if (type == LONG || type == DOUBLE || type == DATE) {
+                return type;
+            }
+        } catch (IllegalArgumentException e) {
+            log.warn("Unknown property type: " + typeName);
+        }
+        return STRING;
+    }
+
+}
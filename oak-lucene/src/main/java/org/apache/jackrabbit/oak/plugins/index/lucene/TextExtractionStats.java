@@ -0,0 +1,107 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.jackrabbit.oak.plugins.index.lucene;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * The counters of a {@link TextExtractor}.
+ */
+public class TextExtractionStats implements TextExtractionStatsMBean {
+
+    private final AtomicLong cacheHitCount = new AtomicLong();
+
+    private final AtomicLong parseCount = new AtomicLong();
+
+    private final AtomicLong parseTime = new AtomicLong();
+
+    private final AtomicLong parsedSize = new AtomicLong();
+
+    private final AtomicLong errorCount = new AtomicLong();
+
+    private final AtomicLong timeoutCount = new AtomicLong();
+
+    private final AtomicLong skippedCount = new AtomicLong();
+
+    void cacheHit() {
+        cacheHitCount.incrementAndGet();
+    }
+
+    void parsed(long size, long millis) {
+        parseCount.incrementAndGet();
+        parsedSize.addAndGet(size);
+        parseTime.addAndGet(millis);
+    }
+
+    void error() {
+        errorCount.incrementAndGet();
+    }
+
+    void timeout() {
+        timeoutCount.incrementAndGet();
+    }
+
+    void skipped() {
+        skippedCount.incrementAndGet();
+    }
+
+    @Override
+    public long getCacheHitCount() {
+        return cacheHitCount.get();
+    }
+
+    @Override
+    public long getParseCount() {
+        return parseCount.get();
+    }
+
+    @Override
+    public long getParseTime() {
+        return parseTime.get();
+    }
+
+    @Override
+    public long getParsedSize() {
+        return parsedSize.get();
+    }
+
+    @Override
+    public long getErrorCount() {
+        return errorCount.get();
+    }
+
+    @Override
+    public long getTimeoutCount() {
+        return timeoutCount.get();
+    }
+
+    @Override
+    public long getSkippedCount() {
+        return skippedCount.get();
+    }
+
+    @Override
+    public String toString() {
+        return "cacheHits: " + getCacheHitCount()
+                + ", parsed: " + getParseCount()
+                + " (" + getParsedSize() + " bytes, " + getParseTime() + " ms)"
+                + ", errors: " + getErrorCount()
+                + ", timeouts: " + getTimeoutCount()
+                + ", skipped: " + getSkippedCount();
+    }
+
+}
@@ -0,0 +1,63 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.jackrabbit.oak.plugins.index.lucene;
+
+/**
+ * Statistics about the text extraction of binaries for full-text indexing.
+ */
+public interface TextExtractionStatsMBean {
+    String TYPE = "TextExtractionStats";
+
+    /**
+     * @return the number of binaries for which the text was found in the
+     *         extracted text store
+     */
+    long getCacheHitCount();
+
+    /**
+     * @return the number of binaries that were parsed
+     */
+    long getParseCount();
+
+    /**
+     * @return the total time spent parsing binaries, in milliseconds
+     */
+    long getParseTime();
+
+    /**
+     * @return the total size of the parsed binaries, in bytes
+     */
+    long getParsedSize();
+
+    /**
+     * @return the number of binaries that could not be parsed
+     */
+    long getErrorCount();
+
+    /**
+     * @return the number of binaries where parsing was stopped because it
+     *         took too long
+     */
+    long getTimeoutCount();
+
+    /**
+     * @return the number of binaries that were not parsed because they are
+     *         too large
+     */
+    long getSkippedCount();
+
+}
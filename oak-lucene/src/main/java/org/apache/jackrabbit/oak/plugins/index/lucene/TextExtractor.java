@@ -0,0 +1,288 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.jackrabbit.oak.plugins.index.lucene;
+
+import java.io.InputStream;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.annotation.CheckForNull;
+import javax.annotation.Nullable;
+
+import org.apache.jackrabbit.oak.api.Blob;
+import org.apache.tika.exception.TikaException;
+import org.apache.tika.metadata.Metadata;
+import org.apache.tika.parser.AutoDetectParser;
+import org.apache.tika.parser.ParseContext;
+import org.apache.tika.parser.Parser;
+import org.apache.tika.sax.WriteOutContentHandler;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.xml.sax.SAXException;
+
+/**
+ * Extracts the text of binaries for full-text indexing.
+ * <p>
+ * If an {@link ExtractedTextStore} is set, the text of a binary is looked up
+ * there first (using the content identity of the binary), and the text of
+ * parsed binaries is added to it. That way, re-indexing does not need to
+ * parse the same binaries again.
+ * <p>
+ * Parsing can be limited: binaries larger than the maximum size are not
+ * parsed at all, the extracted text is truncated at the maximum length, and
+ * parsing is stopped if it takes longer than the timeout. At most
+ * {@link #MAX_PARSE_THREADS} binaries are parsed concurrently with a
+ * timeout; parsers that don't react to the interrupt keep their thread
+ * until they are done, and further binaries then time out while waiting.
+ * <p>
+ * Only texts that will not change when parsing again are added to the
+ * store: the extracted text, and the error text if the parser rejected the
+ * content. Binaries that time out or fail otherwise (for example because
+ * the binary could not be read) are not added, as parsing might succeed
+ * later on.
+ */
+public class TextExtractor {
+
+    private static final Logger log = LoggerFactory.getLogger(TextExtractor.class);
+
+    /**
+     * The text that is indexed if the text could not be extracted.
+     */
+    static final String ERROR_TEXT = "TextExtractionError";
+
+    /**
+     * The default maximum number of characters extracted from a binary (the
+     * same as the Tika default).
+     */
+    public static final int DEFAULT_MAX_EXTRACT_LENGTH = 100 * 1000;
+
+    /**
+     * The maximum number of threads used to parse binaries with a timeout.
+     */
+    static final int MAX_PARSE_THREADS =
+            Integer.getInteger("oak.textExtraction.maxThreads", 4);
+
+    private static final Parser parser = new AutoDetectParser();
+
+    private final ExtractedTextStore store;
+
+    private final long timeout;
+
+    private final long maxBinarySize;
+
+    private final int maxExtractLength;
+
+    private final TextExtractionStats stats = new TextExtractionStats();
+
+    private ThreadPoolExecutor executor;
+
+    /**
+     * Create a text extractor without store and without limits, except the
+     * default maximum text length.
+     */
+    public TextExtractor() {
+        this(null, 0, 0, DEFAULT_MAX_EXTRACT_LENGTH);
+    }
+
+    /**
+     * Create a text extractor.
+     *
+     * @param store the extracted text store, or null
+     * @param timeout the maximum time to parse one binary in milliseconds,
+     *            or 0 for no timeout
+     * @param maxBinarySize the size in bytes above which binaries are not
+     *            parsed, or 0 for no limit
+     * @param maxExtractLength the maximum number of characters to extract
+     *            from a binary, or -1 for no limit
+     */
+    public TextExtractor(@Nullable ExtractedTextStore store, long timeout,
+            long maxBinarySize, int maxExtractLength) {
+        this.store = store;
+        this.timeout = timeout;
+        this.maxBinarySize = maxBinarySize;
+        this.maxExtractLength = maxExtractLength;
+    }
+
+    @CheckForNull
+    public ExtractedTextStore getStore() {
+        return store;
+    }
+
+    public TextExtractionStats getStats() {
+        return stats;
+    }
+
+    /**
+     * Get the text of a binary, from the store if available, otherwise by
+     * parsing it.
+     *
+     * @param blob the binary
+     * @param metadata the metadata (content type and encoding, if known)
+     * @return the text (empty if the binary was not parsed, and
+     *         "TextExtractionError" if the text could not be extracted)
+     */
+    public String extract(Blob blob, Metadata metadata) {
+        String id = store == null ? null : blob.getContentIdentity();
+        if (id != null) {
+            String text = store.get(id, maxExtractLength);
+            if (text != null) {
+                stats.cacheHit();
+                return text;
+            }
+        }
+        long length = blob.length();
+        if (maxBinarySize > 0 && length > maxBinarySize) {
+            stats.skipped();
+            log.debug("Not extracting the text of a binary of {} bytes", length);
+            return "";
+        }
+        long start = System.currentTimeMillis();
+        String text;
+        boolean cacheable = true;
+        try {
+            text = parse(blob, metadata);
+        } catch (LinkageError e) {
+            // Capture and ignore errors caused by extraction libraries
+            // not being present. This is equivalent to disabling
+            // selected media types in configuration, so we can simply
+            // ignore these errors.
+            text = "";
+            cacheable = false;
+        } catch (TimeoutException e) {
+            stats.timeout();
+            log.warn("Text extraction of a binary of {} bytes timed out after {} ms",
+                    length, timeout);
+            text = ERROR_TEXT;
+            cacheable = false;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            text = ERROR_TEXT;
+            cacheable = false;
+        } catch (TikaException e) {
+            // the parser rejected the content: parsing again
+            // would fail the same way
+            text = parseError(e);
+        } catch (SAXException e) {
+            text = parseError(e);
+        } catch (Throwable t) {
+            // for example the binary could not be read, or we ran out
+            // of memory: parsing might succeed later on
+            text = parseError(t);
+            cacheable = false;
+        }
+        stats.parsed(length, System.currentTimeMillis() - start);
+        if (cacheable && id != null) {
+            store.put(id, maxExtractLength, text);
+        }
+        return text;
+    }
+
+    private String parseError(Throwable t) {
+        // Capture and report any other full text extraction problems.
+        stats.error();
+        log.debug("Failed to extract text from a binary property."
+                + " This is a fairly common case, and nothing to"
+                + " worry about. The stack trace is included to"
+                + " help improve the text extraction feature.", t);
+        return ERROR_TEXT;
+    }
+
+    /**
+     * Stop the threads used to parse binaries with a timeout.
+     */
+    public synchronized void close() {
+        if (executor != null) {
+            executor.shutdownNow();
+            executor = null;
+        }
+    }
+
+    private String parse(final Blob blob, final Metadata metadata)
+            throws Exception {
+        if (timeout <= 0) {
+            return parseNow(blob, metadata);
+        }
+        ThreadPoolExecutor executor = getExecutor();
+        Future<String> future = executor.submit(new Callable<String>() {
+            @Override
+            public String call() throws Exception {
+                return parseNow(blob, metadata);
+            }
+        });
+        try {
+            return future.get(timeout, TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            // the parser might not react to the interrupt,
+            // in which case the thread keeps running until it is done
+            future.cancel(true);
+            // if all threads are busy, the task is still queued
+            executor.remove((Runnable) future);
+            throw e;
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof Exception) {
+                throw (Exception) cause;
+            } else if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            throw e;
+        }
+    }
+
+    private String parseNow(Blob blob, Metadata metadata) throws Exception {
+        WriteOutContentHandler handler = new WriteOutContentHandler(maxExtractLength);
+        InputStream stream = blob.getNewStream();
+        try {
+            parser.parse(stream, handler, metadata, new ParseContext());
+        } catch (Exception e) {
+            // The special STOP exception is used for normal termination.
+            if (!handler.isWriteLimitReached(e)) {
+                throw e;
+            }
+        } finally {
+            stream.close();
+        }
+        return handler.toString();
+    }
+
+    private synchronized ThreadPoolExecutor getExecutor() {
+        if (executor == null) {
+            final AtomicInteger count = new AtomicInteger();
+            executor = new ThreadPoolExecutor(MAX_PARSE_THREADS, MAX_PARSE_THREADS,
+                    60, TimeUnit.SECONDS, new LinkedBlockingQueue<Runnable>(),
+                    new ThreadFactory() {
+                @Override
+                public Thread newThread(Runnable r) {
+                    Thread t = new Thread(r, "oak-text-extraction-"
+                            + count.incrementAndGet());
+                    t.setDaemon(true);
+                    return t;
+                }
+            });
+            executor.allowCoreThreadTimeOut(true);
+        }
+        return executor;
+    }
+
+}
@@ -30,15 +30,21 @@ import static org.apache.jackrabbit.oak.plugins.index.IndexConstants.REINDEX_PRO
 import static org.apache.jackrabbit.oak.plugins.index.IndexConstants.TYPE_PROPERTY_NAME;
 import static org.apache.jackrabbit.oak.plugins.index.lucene.LuceneIndexConstants.EXCLUDE_PROPERTY_NAMES;
 import static org.apache.jackrabbit.oak.plugins.index.lucene.LuceneIndexConstants.EXPERIMENTAL_STORAGE;
+import static org.apache.jackrabbit.oak.plugins.index.lucene.LuceneIndexConstants.FULL_TEXT_ENABLED;
+import static org.apache.jackrabbit.oak.plugins.index.lucene.LuceneIndexConstants.INCLUDE_PROPERTY_NAMES;
 import static org.apache.jackrabbit.oak.plugins.index.lucene.LuceneIndexConstants.INCLUDE_PROPERTY_TYPES;
+import static org.apache.jackrabbit.oak.plugins.index.lucene.LuceneIndexConstants.ORDERED_PROP_NAMES;
 import static org.apache.jackrabbit.oak.plugins.index.lucene.LuceneIndexConstants.PERSISTENCE_FILE;
 import static org.apache.jackrabbit.oak.plugins.index.lucene.LuceneIndexConstants.PERSISTENCE_NAME;
 import static org.apache.jackrabbit.oak.plugins.index.lucene.LuceneIndexConstants.PERSISTENCE_PATH;
+import static org.apache.jackrabbit.oak.plugins.index.lucene.LuceneIndexConstants.PROP_NODE;
+import static org.apache.jackrabbit.oak.plugins.index.lucene.LuceneIndexConstants.PROP_TYPE;
 import static org.apache.jackrabbit.oak.plugins.index.lucene.LuceneIndexConstants.TYPE_LUCENE;
 import static org.apache.jackrabbit.oak.plugins.memory.PropertyStates.createProperty;
 import static org.apache.jackrabbit.oak.spi.security.user.UserConstants.GROUP_PROPERTY_NAMES;
 import static org.apache.jackrabbit.oak.spi.security.user.UserConstants.USER_PROPERTY_NAMES;
 
+import java.util.Map;
 import java.util.Set;
 
 import javax.annotation.Nonnull;
@@ -144,6 +150,50 @@ public class LuceneIndexHelper {
         return index;
     }
 
+    /**
+     * Create a Lucene index definition with full-text disabled, where only the
+     * given properties are indexed (as typed fields).
+     *
+     * @param index the "oak:index" node
+     * @param name the name of the index
+     * @param includes the names of the properties to index
+     * @param orderedProps the properties that are used for sorting
+     * @param types the property types (property name to type name, for
+     *            example "Long"; the default type is "String")
+     * @param async the async property, or null for a synchronous index
+     * @return the index definition
+     */
+    public static NodeBuilder newLucenePropertyIndexDefinition(
+            @Nonnull NodeBuilder index, @Nonnull String name,
+            @Nonnull Set<String> includes,
+            @Nullable Set<String> orderedProps,
+            @Nullable Map<String, String> types, @Nullable String async) {
+        if (index.hasChildNode(name)) {
+            return index.child(name);
+        }
+        index = index.child(name);
+        index.setProperty(JCR_PRIMARYTYPE, INDEX_DEFINITIONS_NODE_TYPE, NAME)
+                .setProperty(TYPE_PROPERTY_NAME, TYPE_LUCENE)
+                .setProperty(FULL_TEXT_ENABLED, false)
+                .setProperty(createProperty(INCLUDE_PROPERTY_NAMES, includes,
+                        STRINGS))
+                .setProperty(REINDEX_PROPERTY_NAME, true);
+        if (async != null) {
+            index.setProperty(ASYNC_PROPERTY_NAME, async);
+        }
+        if (orderedProps != null && !orderedProps.isEmpty()) {
+            index.setProperty(createProperty(ORDERED_PROP_NAMES, orderedProps,
+                    STRINGS));
+        }
+        if (types != null) {
+            NodeBuilder props = index.child(PROP_NODE);
+            for (Map.Entry<String, String> e : types.entrySet()) {
+                props.child(e.getKey()).setProperty(PROP_TYPE, e.getValue());
+            }
+        }
+        return index;
+    }
+
     /**
      * Nodes that represent UUIDs and shold not be tokenized
      * 
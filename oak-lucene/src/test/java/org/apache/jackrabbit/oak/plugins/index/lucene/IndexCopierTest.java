@@ -0,0 +1,106 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.jackrabbit.oak.plugins.index.lucene;
+
+import static org.apache.jackrabbit.oak.plugins.memory.EmptyNodeState.EMPTY_NODE;
+import static org.junit.Assert.assertEquals;
+
+import java.io.File;
+import java.io.IOException;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.jackrabbit.oak.spi.state.NodeBuilder;
+import org.apache.lucene.store.Directory;
+import org.apache.lucene.store.IOContext;
+import org.apache.lucene.store.IndexInput;
+import org.apache.lucene.store.IndexOutput;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class IndexCopierTest {
+
+    private static final File DIR = new File("target/indexCopierTest");
+
+    private final NodeBuilder builder = EMPTY_NODE.builder();
+
+    @Before
+    public void setUp() throws IOException {
+        FileUtils.deleteDirectory(DIR);
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        FileUtils.deleteDirectory(DIR);
+    }
+
+    @Test
+    public void copyOnRead() throws Exception {
+        writeFile("_0.cfs", 100);
+        writeFile("segments_1", 10);
+
+        IndexCopier copier = new IndexCopier(DIR);
+        Directory dir = copier.wrap("/oak:index/test",
+                new OakDirectory(builder));
+        assertEquals(100, read(dir, "_0.cfs"));
+        // the segments file is always read from the repository
+        assertEquals(10, read(dir, "segments_1"));
+        assertEquals(1, copier.getCopiedFileCount());
+        assertEquals(100, copier.getCopiedSize());
+        assertEquals(0, copier.getLocalReadCount());
+
+        assertEquals(100, read(dir, "_0.cfs"));
+        assertEquals(1, copier.getCopiedFileCount());
+        assertEquals(1, copier.getLocalReadCount());
+        assertEquals(100, copier.getLocalIndexSize());
+        dir.close();
+
+        // re-writing the file changes the key,
+        // so that the old local copy is removed
+        writeFile("_0.cfs", 50);
+        dir = copier.wrap("/oak:index/test", new OakDirectory(builder));
+        assertEquals(1, copier.getDeletedFileCount());
+        assertEquals(100, copier.getDeletedSize());
+        assertEquals(50, read(dir, "_0.cfs"));
+        assertEquals(2, copier.getCopiedFileCount());
+        assertEquals(50, copier.getLocalIndexSize());
+        dir.close();
+    }
+
+    private void writeFile(String name, int length) throws IOException {
+        Directory dir = new OakDirectory(builder);
+        IndexOutput out = dir.createOutput(name, IOContext.DEFAULT);
+        for (int i = 0; i < length; i++) {
+            out.writeByte((byte) i);
+        }
+        out.close();
+    }
+
+    private static int read(Directory dir, String name) throws IOException {
+        IndexInput in = dir.openInput(name, IOContext.DEFAULT);
+        try {
+            int length = (int) in.length();
+            for (int i = 0; i < length; i++) {
+                assertEquals((byte) i, in.readByte());
+            }
+            return length;
+        } finally {
+            in.close();
+        }
+    }
+
+}
@@ -0,0 +1,265 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.jackrabbit.oak.plugins.index.lucene;
+
+import static com.google.common.collect.ImmutableList.copyOf;
+import static com.google.common.collect.Iterators.transform;
+import static junit.framework.Assert.assertEquals;
+import static junit.framework.Assert.assertNull;
+import static junit.framework.Assert.assertTrue;
+import static org.apache.jackrabbit.JcrConstants.JCR_SYSTEM;
+import static org.apache.jackrabbit.JcrConstants.NT_BASE;
+import static org.apache.jackrabbit.oak.plugins.index.IndexConstants.INDEX_DEFINITIONS_NAME;
+import static org.apache.jackrabbit.oak.plugins.index.IndexConstants.REINDEX_PROPERTY_NAME;
+import static org.apache.jackrabbit.oak.plugins.index.lucene.LuceneIndexConstants.PROP_NODE;
+import static org.apache.jackrabbit.oak.plugins.index.lucene.util.LuceneIndexHelper.newLucenePropertyIndexDefinition;
+import static org.apache.jackrabbit.oak.plugins.nodetype.NodeTypeConstants.JCR_NODE_TYPES;
+import static org.apache.jackrabbit.oak.plugins.nodetype.write.InitialContent.INITIAL_CONTENT;
+
+import java.util.List;
+
+import org.apache.jackrabbit.oak.api.Type;
+import org.apache.jackrabbit.oak.plugins.index.IndexUpdateProvider;
+import org.apache.jackrabbit.oak.query.QueryEngineSettings;
+import org.apache.jackrabbit.oak.query.ast.Operator;
+import org.apache.jackrabbit.oak.query.ast.SelectorImpl;
+import org.apache.jackrabbit.oak.query.index.FilterImpl;
+import org.apache.jackrabbit.oak.spi.commit.CommitInfo;
+import org.apache.jackrabbit.oak.spi.commit.EditorHook;
+import org.apache.jackrabbit.oak.spi.query.Cursor;
+import org.apache.jackrabbit.oak.spi.query.Filter;
+import org.apache.jackrabbit.oak.spi.query.IndexRow;
+import org.apache.jackrabbit.oak.spi.query.PropertyValues;
+import org.apache.jackrabbit.oak.spi.query.QueryIndex.IndexPlan;
+import org.apache.jackrabbit.oak.spi.query.QueryIndex.OrderEntry;
+import org.apache.jackrabbit.oak.spi.state.NodeBuilder;
+import org.apache.jackrabbit.oak.spi.state.NodeState;
+import org.junit.Test;
+
+import com.google.common.base.Function;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSet;
+
+/**
+ * Tests the {@link LucenePropertyIndex}.
+ */
+public class LucenePropertyIndexTest {
+
+    private static final EditorHook HOOK = new EditorHook(
+            new IndexUpdateProvider(new LuceneIndexEditorProvider()));
+
+    private NodeState root = INITIAL_CONTENT;
+
+    private NodeBuilder builder = root.builder();
+
+    @Test
+    public void rangeAndOrder() throws Exception {
+        NodeState indexed = createContent();
+
+        LucenePropertyIndex queryIndex = newIndex(indexed);
+        FilterImpl filter = createFilter(NT_BASE);
+        filter.restrictProperty("price", Operator.GREATER_THAN,
+                PropertyValues.newLong(6L));
+        List<OrderEntry> sortOrder = ImmutableList.of(new OrderEntry(
+                "price", Type.UNDEFINED, OrderEntry.Order.DESCENDING));
+
+        List<IndexPlan> plans = queryIndex.getPlans(filter, sortOrder, indexed);
+        assertEquals(1, plans.size());
+        IndexPlan plan = plans.get(0);
+        assertEquals(sortOrder, plan.getSortOrder());
+        assertEquals(ImmutableList.of("/c", "/a", "/x/e"),
+                getPaths(queryIndex.query(plan, indexed)));
+
+        // numeric, not lexicographic order
+        sortOrder = ImmutableList.of(new OrderEntry(
+                "price", Type.UNDEFINED, OrderEntry.Order.ASCENDING));
+        plan = queryIndex.getPlans(filter, sortOrder, indexed).get(0);
+        assertEquals(ImmutableList.of("/x/e", "/a", "/c"),
+                getPaths(queryIndex.query(plan, indexed)));
+    }
+
+    @Test
+    public void notOrderedProperty() throws Exception {
+        NodeState indexed = createContent();
+
+        LucenePropertyIndex queryIndex = newIndex(indexed);
+        FilterImpl filter = createFilter(NT_BASE);
+        filter.restrictProperty("title", Operator.EQUAL,
+                PropertyValues.newString("hello"));
+        List<OrderEntry> sortOrder = ImmutableList.of(new OrderEntry(
+                "title", Type.UNDEFINED, OrderEntry.Order.ASCENDING));
+
+        List<IndexPlan> plans = queryIndex.getPlans(filter, sortOrder, indexed);
+        assertEquals(1, plans.size());
+        IndexPlan plan = plans.get(0);
+        // the title is not an ordered property
+        assertNull(plan.getSortOrder());
+        assertEquals(2, plan.getEstimatedEntryCount());
+        assertEquals(ImmutableSet.of("/a", "/b"),
+                ImmutableSet.copyOf(getPaths(queryIndex.query(plan, indexed))));
+    }
+
+    @Test
+    public void dateAndPath() throws Exception {
+        NodeState indexed = createContent();
+
+        LucenePropertyIndex queryIndex = newIndex(indexed);
+        FilterImpl filter = createFilter(NT_BASE);
+        filter.restrictPath("/x", Filter.PathRestriction.ALL_CHILDREN);
+        filter.restrictProperty("created", Operator.GREATER_OR_EQUAL,
+                PropertyValues.newDate("2014-01-01T00:00:00.000Z"));
+        List<OrderEntry> sortOrder = ImmutableList.of(new OrderEntry(
+                "created", Type.UNDEFINED, OrderEntry.Order.ASCENDING));
+
+        IndexPlan plan = queryIndex.getPlans(filter, sortOrder, indexed).get(0);
+        assertEquals(ImmutableList.of("/x/e", "/x/f"),
+                getPaths(queryIndex.query(plan, indexed)));
+    }
+
+    @Test
+    public void propertyExistence() throws Exception {
+        NodeState indexed = createContent();
+
+        LucenePropertyIndex queryIndex = newIndex(indexed);
+        FilterImpl filter = createFilter(NT_BASE);
+        filter.restrictProperty("price", Operator.NOT_EQUAL, null);
+
+        IndexPlan plan = queryIndex.getPlans(filter, null, indexed).get(0);
+        assertEquals(ImmutableSet.of("/a", "/b", "/c", "/x/e"),
+                ImmutableSet.copyOf(getPaths(queryIndex.query(plan, indexed))));
+    }
+
+    @Test
+    public void noPlan() throws Exception {
+        NodeState indexed = createContent();
+
+        LucenePropertyIndex queryIndex = newIndex(indexed);
+        List<OrderEntry> sortOrder = ImmutableList.of(new OrderEntry(
+                "price", Type.UNDEFINED, OrderEntry.Order.ASCENDING));
+
+        // nodes without the properties are not indexed,
+        // so sorting alone is not enough
+        FilterImpl filter = createFilter(NT_BASE);
+        assertTrue(queryIndex.getPlans(filter, sortOrder, indexed).isEmpty());
+
+        // not an included property
+        filter.restrictProperty("other", Operator.EQUAL,
+                PropertyValues.newString("x"));
+        assertTrue(queryIndex.getPlans(filter, sortOrder, indexed).isEmpty());
+    }
+
+    @Test
+    public void removeProperty() throws Exception {
+        NodeState indexed = createContent();
+
+        NodeBuilder b = indexed.builder();
+        b.child("a").removeProperty("price");
+        b.child("a").removeProperty("title");
+        b.child("c").setProperty("price", 3L);
+        indexed = HOOK.processCommit(indexed, b.getNodeState(), CommitInfo.EMPTY);
+
+        LucenePropertyIndex queryIndex = newIndex(indexed);
+        FilterImpl filter = createFilter(NT_BASE);
+        filter.restrictProperty("price", Operator.GREATER_THAN,
+                PropertyValues.newLong(6L));
+
+        IndexPlan plan = queryIndex.getPlans(filter, null, indexed).get(0);
+        assertEquals(ImmutableList.of("/x/e"),
+                getPaths(queryIndex.query(plan, indexed)));
+    }
+
+    @Test
+    public void queryAndUpdateAfterReindex() throws Exception {
+        NodeState indexed = createContent();
+
+        NodeBuilder b = indexed.builder();
+        b.child(INDEX_DEFINITIONS_NAME).child("props")
+                .setProperty(REINDEX_PROPERTY_NAME, true);
+        indexed = HOOK.processCommit(indexed, b.getNodeState(), CommitInfo.EMPTY);
+        // the property types are kept on reindex
+        assertTrue(indexed.getChildNode(INDEX_DEFINITIONS_NAME)
+                .getChildNode("props").getChildNode(PROP_NODE)
+                .getChildNode("price").exists());
+
+        FilterImpl filter = createFilter(NT_BASE);
+        filter.restrictProperty("price", Operator.GREATER_THAN,
+                PropertyValues.newLong(6L));
+        List<OrderEntry> sortOrder = ImmutableList.of(new OrderEntry(
+                "price", Type.UNDEFINED, OrderEntry.Order.DESCENDING));
+        LucenePropertyIndex queryIndex = newIndex(indexed);
+        IndexPlan plan = queryIndex.getPlans(filter, sortOrder, indexed).get(0);
+        assertEquals(ImmutableList.of("/c", "/a", "/x/e"),
+                getPaths(queryIndex.query(plan, indexed)));
+
+        b = indexed.builder();
+        b.child("b").setProperty("price", 50L);
+        indexed = HOOK.processCommit(indexed, b.getNodeState(), CommitInfo.EMPTY);
+
+        queryIndex = newIndex(indexed);
+        plan = queryIndex.getPlans(filter, sortOrder, indexed).get(0);
+        assertEquals(ImmutableList.of("/c", "/b", "/a", "/x/e"),
+                getPaths(queryIndex.query(plan, indexed)));
+    }
+
+    private NodeState createContent() {
+        NodeBuilder index = builder.child(INDEX_DEFINITIONS_NAME);
+        newLucenePropertyIndexDefinition(index, "props",
+                ImmutableSet.of("price", "created", "title"),
+                ImmutableSet.of("price", "created"),
+                ImmutableMap.of("price", "Long", "created", "Date"), null);
+
+        NodeState before = builder.getNodeState();
+        builder.child("a").setProperty("price", 10L).setProperty("title", "hello");
+        builder.child("b").setProperty("price", 5L).setProperty("title", "hello");
+        builder.child("c").setProperty("price", 100L);
+        builder.child("d").setProperty("title", "world");
+        builder.child("x").child("e").setProperty("price", 9L)
+                .setProperty("created", "2014-02-01T00:00:00.000Z", Type.DATE);
+        builder.child("x").child("f")
+                .setProperty("created", "2014-03-01T00:00:00.000Z", Type.DATE);
+        builder.child("x").child("g")
+                .setProperty("created", "2013-03-01T00:00:00.000Z", Type.DATE);
+        NodeState after = builder.getNodeState();
+
+        return HOOK.processCommit(before, after, CommitInfo.EMPTY);
+    }
+
+    private static LucenePropertyIndex newIndex(NodeState indexed) {
+        IndexTracker tracker = new IndexTracker();
+        tracker.update(indexed);
+        return new LucenePropertyIndex(tracker);
+    }
+
+    private FilterImpl createFilter(String nodeTypeName) {
+        NodeState system = root.getChildNode(JCR_SYSTEM);
+        NodeState types = system.getChildNode(JCR_NODE_TYPES);
+        NodeState type = types.getChildNode(nodeTypeName);
+        SelectorImpl selector = new SelectorImpl(type, nodeTypeName);
+        return new FilterImpl(selector, "SELECT * FROM [" + nodeTypeName + "]", new QueryEngineSettings());
+    }
+
+    private static List<String> getPaths(Cursor cursor) {
+        return copyOf(transform(cursor, new Function<IndexRow, String>() {
+            @Override
+            public String apply(IndexRow input) {
+                return input.getPath();
+            }
+        }));
+    }
+
+}
@@ -0,0 +1,99 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.jackrabbit.oak.plugins.index.lucene;
+
+import static java.util.Arrays.asList;
+import static org.apache.jackrabbit.oak.plugins.index.IndexConstants.ASYNC_PROPERTY_NAME;
+
+import java.util.Collections;
+
+import org.apache.jackrabbit.oak.Oak;
+import org.apache.jackrabbit.oak.api.ContentRepository;
+import org.apache.jackrabbit.oak.api.Tree;
+import org.apache.jackrabbit.oak.plugins.index.AsyncIndexUpdate;
+import org.apache.jackrabbit.oak.plugins.memory.MemoryNodeStore;
+import org.apache.jackrabbit.oak.plugins.nodetype.write.InitialContent;
+import org.apache.jackrabbit.oak.query.AbstractQueryTest;
+import org.apache.jackrabbit.oak.spi.commit.Observer;
+import org.apache.jackrabbit.oak.spi.query.QueryIndexProvider;
+import org.apache.jackrabbit.oak.spi.security.OpenSecurityProvider;
+import org.apache.jackrabbit.oak.spi.state.NodeStore;
+import org.junit.After;
+import org.junit.Test;
+
+/**
+ * Tests that changes are visible to queries on an asynchronous Lucene index
+ * before the asynchronous index update has run.
+ */
+public class NRTIndexQueryTest extends AbstractQueryTest {
+
+    private final NodeStore store = new MemoryNodeStore();
+
+    private final LuceneIndexEditorProvider editorProvider =
+            new LuceneIndexEditorProvider();
+
+    private NRTIndexUpdater nrtUpdater;
+
+    @Override
+    protected void createTestIndexNode() throws Exception {
+        Tree index = root.getTree("/");
+        createTestIndexNode(index, LuceneIndexConstants.TYPE_LUCENE)
+                .setProperty(ASYNC_PROPERTY_NAME, "async");
+        root.commit();
+        asyncIndexUpdate();
+    }
+
+    @Override
+    protected ContentRepository createRepository() {
+        nrtUpdater = new NRTIndexUpdater(LuceneIndexConstants.ANALYZER,
+                editorProvider.getTextExtractor(), NRTIndexUpdater.DEFAULT_MAX_SIZE);
+        LuceneIndexProvider provider = new LuceneIndexProvider(null, nrtUpdater);
+        return new Oak(store).with(new InitialContent())
+                .with(new OpenSecurityProvider())
+                .with((QueryIndexProvider) provider)
+                .with((Observer) provider)
+                .with(nrtUpdater)
+                .with(editorProvider)
+                .createContentRepository();
+    }
+
+    @After
+    public void closeUpdater() {
+        nrtUpdater.close();
+    }
+
+    @Test
+    public void visibleBeforeAsyncUpdate() throws Exception {
+        String query = "select [jcr:path] from [nt:base] where contains([text], 'hello')";
+        assertQuery(query, Collections.<String>emptyList());
+
+        root.getTree("/").addChild("test").addChild("a").setProperty("text", "hello world");
+        root.commit();
+        assertQuery(query, asList("/test/a"));
+
+        // still visible once the change is in the persisted index
+        asyncIndexUpdate();
+        root.getTree("/test").addChild("b").setProperty("text", "hello again");
+        root.commit();
+        assertQuery(query + " order by [jcr:path]", asList("/test/a", "/test/b"));
+    }
+
+    private void asyncIndexUpdate() {
+        new AsyncIndexUpdate("async", store, editorProvider).run();
+    }
+
+}
@@ -0,0 +1,117 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.jackrabbit.oak.plugins.index.lucene;
+
+import static org.apache.jackrabbit.oak.plugins.index.IndexConstants.ASYNC_PROPERTY_NAME;
+import static org.apache.jackrabbit.oak.plugins.index.lucene.FieldFactory.newPathField;
+import static org.apache.jackrabbit.oak.plugins.index.lucene.LuceneIndexConstants.ANALYZER;
+import static org.apache.jackrabbit.oak.plugins.memory.EmptyNodeState.EMPTY_NODE;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.util.List;
+
+import org.apache.jackrabbit.oak.spi.state.NodeState;
+import org.apache.lucene.document.Document;
+import org.apache.lucene.index.IndexReader;
+import org.junit.Test;
+
+public class NRTIndexTest {
+
+    @Test
+    public void rotate() throws Exception {
+        NRTIndex index = new NRTIndex(ANALYZER);
+        long version = index.getVersion();
+        add(index, "/a");
+        assertTrue(index.getVersion() > version);
+        assertEquals(1, numDocs(index));
+
+        // the previous generation is still visible
+        index.rotate();
+        add(index, "/b");
+        assertEquals(2, numDocs(index));
+
+        // until the generations are rotated again
+        index.rotate();
+        assertEquals(1, numDocs(index));
+        index.rotate();
+        assertEquals(0, numDocs(index));
+        index.close();
+    }
+
+    @Test
+    public void clear() throws Exception {
+        NRTIndex index = new NRTIndex(ANALYZER);
+        add(index, "/a");
+        index.rotate();
+        add(index, "/b");
+        long size = index.getSize();
+        assertTrue(size > 0);
+
+        long version = index.getVersion();
+        index.clear();
+        assertTrue(index.getVersion() > version);
+        assertTrue(index.getSize() < size);
+        assertEquals(0, numDocs(index));
+        add(index, "/c");
+        assertEquals(1, numDocs(index));
+        index.close();
+    }
+
+    @Test
+    public void close() throws Exception {
+        NRTIndex index = new NRTIndex(ANALYZER);
+        add(index, "/a");
+        long version = index.getVersion();
+        index.close();
+        assertTrue(index.getVersion() > version);
+        assertTrue(index.openReaders().isEmpty());
+    }
+
+    @Test
+    public void onlyIndexDefinitionsInOakIndex() throws Exception {
+        NRTIndexUpdater updater = new NRTIndexUpdater(ANALYZER,
+                new TextExtractor(), NRTIndexUpdater.DEFAULT_MAX_SIZE);
+        NodeState definition = EMPTY_NODE.builder()
+                .setProperty(ASYNC_PROPERTY_NAME, "async").getNodeState();
+        assertNotNull(updater.getIndex("/oak:index/a", definition));
+        assertNull(updater.getIndex("/content/oak:index/a", definition));
+        assertNull(updater.getIndex("/oak:index/b", EMPTY_NODE));
+        updater.close();
+    }
+
+    private static void add(NRTIndex index, String path) throws IOException {
+        Document doc = new Document();
+        doc.add(newPathField(path));
+        index.getWriter().addDocument(doc);
+        index.changed();
+    }
+
+    private static int numDocs(NRTIndex index) throws IOException {
+        int count = 0;
+        List<IndexReader> readers = index.openReaders();
+        for (IndexReader reader : readers) {
+            count += reader.numDocs();
+            reader.close();
+        }
+        return count;
+    }
+
+}
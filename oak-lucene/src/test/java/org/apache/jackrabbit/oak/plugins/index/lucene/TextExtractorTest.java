@@ -0,0 +1,141 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.jackrabbit.oak.plugins.index.lucene;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.jackrabbit.oak.api.Blob;
+import org.apache.jackrabbit.oak.plugins.memory.ArrayBasedBlob;
+import org.apache.tika.metadata.Metadata;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.google.common.base.Charsets;
+
+public class TextExtractorTest {
+
+    private static final File DIR = new File("target/textExtractorTest");
+
+    @Before
+    public void setUp() throws IOException {
+        FileUtils.deleteDirectory(DIR);
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        FileUtils.deleteDirectory(DIR);
+    }
+
+    @Test
+    public void extractedTextStore() throws Exception {
+        ExtractedTextStore store = new ExtractedTextStore(DIR);
+        TextExtractor extractor = new TextExtractor(store, 0, 0,
+                TextExtractor.DEFAULT_MAX_EXTRACT_LENGTH);
+        Blob blob = newBlob("1", "hello world");
+        assertNull(store.get("1", TextExtractor.DEFAULT_MAX_EXTRACT_LENGTH));
+        assertEquals("hello world", extractor.extract(blob, newMetadata()).trim());
+        assertEquals(1, extractor.getStats().getParseCount());
+        assertEquals(0, extractor.getStats().getCacheHitCount());
+
+        // the same binary in another node, or after re-indexing
+        extractor = new TextExtractor(new ExtractedTextStore(DIR), 0, 0,
+                TextExtractor.DEFAULT_MAX_EXTRACT_LENGTH);
+        assertEquals("hello world", extractor.extract(blob, newMetadata()).trim());
+        assertEquals(0, extractor.getStats().getParseCount());
+        assertEquals(1, extractor.getStats().getCacheHitCount());
+    }
+
+    @Test
+    public void maxLengthInKey() throws Exception {
+        Blob blob = newBlob("1", "hello world");
+        TextExtractor extractor = new TextExtractor(
+                new ExtractedTextStore(DIR), 0, 0, 3);
+        assertEquals(3, extractor.extract(blob, newMetadata()).length());
+
+        // the truncated text is not used with a larger limit
+        extractor = new TextExtractor(new ExtractedTextStore(DIR), 0, 0,
+                TextExtractor.DEFAULT_MAX_EXTRACT_LENGTH);
+        assertEquals("hello world", extractor.extract(blob, newMetadata()).trim());
+        assertEquals(1, extractor.getStats().getParseCount());
+        assertEquals(0, extractor.getStats().getCacheHitCount());
+    }
+
+    @Test
+    public void readErrorNotStored() throws Exception {
+        ExtractedTextStore store = new ExtractedTextStore(DIR);
+        TextExtractor extractor = new TextExtractor(store, 0, 0,
+                TextExtractor.DEFAULT_MAX_EXTRACT_LENGTH);
+        Blob blob = new ArrayBasedBlob(new byte[10]) {
+            @Override
+            public String getContentIdentity() {
+                return "1";
+            }
+            @Override
+            public InputStream getNewStream() {
+                return new InputStream() {
+                    @Override
+                    public int read() throws IOException {
+                        throw new IOException("not available");
+                    }
+                };
+            }
+        };
+        assertEquals(TextExtractor.ERROR_TEXT, extractor.extract(blob, newMetadata()));
+        assertEquals(1, extractor.getStats().getErrorCount());
+        assertNull(store.get("1", TextExtractor.DEFAULT_MAX_EXTRACT_LENGTH));
+    }
+
+    @Test
+    public void limits() throws Exception {
+        TextExtractor extractor = new TextExtractor(null, 10000, 5, 3);
+        assertEquals("", extractor.extract(
+                newBlob("1", "hello world"), newMetadata()));
+        assertEquals(1, extractor.getStats().getSkippedCount());
+        assertEquals(0, extractor.getStats().getParseCount());
+
+        // truncated
+        String text = extractor.extract(newBlob("2", "hello"), newMetadata());
+        assertEquals(3, text.length());
+        assertTrue("hello".startsWith(text.trim()));
+        assertEquals(1, extractor.getStats().getParseCount());
+        extractor.close();
+    }
+
+    private static Metadata newMetadata() {
+        Metadata metadata = new Metadata();
+        metadata.set(Metadata.CONTENT_TYPE, "text/plain");
+        return metadata;
+    }
+
+    private static Blob newBlob(final String id, String text) {
+        return new ArrayBasedBlob(text.getBytes(Charsets.UTF_8)) {
+            @Override
+            public String getContentIdentity() {
+                return id;
+            }
+        };
+    }
+
+}
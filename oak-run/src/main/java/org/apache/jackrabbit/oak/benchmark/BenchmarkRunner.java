@@ -173,6 +173,8 @@ public class BenchmarkRunner {
             new ConcurrentWriteTest(),
             new SimpleSearchTest(),
             new SQL2SearchTest(),
+            new ParameterizedQueryTest(),
+            new ParameterizedQueryPlanCacheTest(),
             new DescendantSearchTest(),
             new SQL2DescendantSearchTest(),
             new FlatTreeUpdateTest(),
@@ -185,6 +187,8 @@ public class BenchmarkRunner {
                     flatStructure.value(options),
                     report.value(options)),
             new CreateNodesBenchmark(),
+            new SegmentPrefetchBenchmark(),
+            new TarLookupBenchmark(),
             new ManyNodes(),
             new ObservationTest(),
             new XmlImportTest(),
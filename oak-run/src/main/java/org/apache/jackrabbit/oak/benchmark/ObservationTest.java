@@ -52,6 +52,13 @@ public class ObservationTest extends Benchmark {
     private static final int OUTPUT_RESOLUTION = 100;
     private static final int LISTENER_COUNT = Integer.getInteger("listenerCount", 100);
 
+    /**
+     * Number of additional listeners registered for sub trees that are not
+     * touched by the benchmark. They do not receive any events but measure
+     * the overhead of dispatching changes to many listeners.
+     */
+    private static final int IDLE_LISTENER_COUNT = Integer.getInteger("idleListenerCount", 0);
+
     @Override
     public void run(Iterable<RepositoryFixture> fixtures) {
         for (RepositoryFixture fixture : fixtures) {
@@ -88,8 +95,8 @@ public class ObservationTest extends Benchmark {
         final AtomicInteger eventCount = new AtomicInteger();
         final AtomicInteger nodeCount = new AtomicInteger();
 
-        Session[] sessions = new Session[LISTENER_COUNT];
-        EventListener[] listeners = new Listener[LISTENER_COUNT];
+        Session[] sessions = new Session[LISTENER_COUNT + IDLE_LISTENER_COUNT];
+        EventListener[] listeners = new Listener[LISTENER_COUNT + IDLE_LISTENER_COUNT];
 
         try {
             for (int k = 0; k < LISTENER_COUNT; k++) {
@@ -98,6 +105,12 @@ public class ObservationTest extends Benchmark {
                 ObservationManager obsMgr = sessions[k].getWorkspace().getObservationManager();
                 obsMgr.addEventListener(listeners[k], EVENT_TYPES, "/", true, null, null, false);
             }
+            for (int k = LISTENER_COUNT; k < LISTENER_COUNT + IDLE_LISTENER_COUNT; k++) {
+                sessions[k] = createSession(repository);
+                listeners[k] = new Listener(new AtomicInteger());
+                ObservationManager obsMgr = sessions[k].getWorkspace().getObservationManager();
+                obsMgr.addEventListener(listeners[k], EVENT_TYPES, "/idle" + k, true, null, null, false);
+            }
 
             Future<?> createNodes = Executors.newSingleThreadExecutor().submit(new Runnable() {
                 private final Session session = repository.login(new SimpleCredentials("admin", "admin".toCharArray()));
@@ -148,7 +161,7 @@ public class ObservationTest extends Benchmark {
             }
             createNodes.get();
         } finally {
-            for (int k = 0; k < LISTENER_COUNT; k++) {
+            for (int k = 0; k < LISTENER_COUNT + IDLE_LISTENER_COUNT; k++) {
                 sessions[k].getWorkspace().getObservationManager().removeEventListener(listeners[k]);
                 sessions[k].logout();
             }
@@ -0,0 +1,129 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.jackrabbit.oak.benchmark;
+
+import javax.jcr.InvalidItemStateException;
+import javax.jcr.Node;
+import javax.jcr.NodeIterator;
+import javax.jcr.Repository;
+import javax.jcr.RepositoryException;
+import javax.jcr.Session;
+import javax.jcr.ValueFactory;
+import javax.jcr.query.Query;
+import javax.jcr.query.QueryManager;
+
+import org.apache.jackrabbit.oak.benchmark.util.OakIndexUtils;
+import org.apache.jackrabbit.oak.fixture.JcrCustomizer;
+import org.apache.jackrabbit.oak.fixture.OakRepositoryFixture;
+import org.apache.jackrabbit.oak.fixture.RepositoryFixture;
+import org.apache.jackrabbit.oak.jcr.Jcr;
+import org.apache.jackrabbit.oak.query.QueryEngineSettings;
+
+/**
+ * Run the same parameterized SQL-2 query of the form "select * from
+ * [nt:base] where testcount = $count" many times. Each query returns only a
+ * few rows, so that the per-query overhead (parsing and planning) dominates.
+ * The query plan cache is disabled.
+ */
+public class ParameterizedQueryTest extends AbstractTest {
+
+    private static final int NODE_COUNT = 100;
+
+    private static final int ROWS_PER_QUERY = 5;
+
+    private static final String QUERY = 
+            "select * from [nt:base] where testcount = $count";
+
+    private Session session;
+
+    private Node root;
+
+    protected boolean isPlanCacheEnabled() {
+        return false;
+    }
+
+    @Override
+    protected Repository[] createRepository(RepositoryFixture fixture) throws Exception {
+        if (fixture instanceof OakRepositoryFixture) {
+            return ((OakRepositoryFixture) fixture).setUpCluster(1, new JcrCustomizer() {
+                @Override
+                public Jcr customize(Jcr jcr) {
+                    QueryEngineSettings settings = new QueryEngineSettings();
+                    settings.setPlanCacheEnabled(isPlanCacheEnabled());
+                    return jcr.with(settings);
+                }
+            });
+        }
+        return super.createRepository(fixture);
+    }
+
+    @Override
+    public void beforeSuite() throws RepositoryException {
+        session = getRepository().login(getCredentials());
+
+        try {
+            ensurePropertyIndex();
+        } catch (InvalidItemStateException e) {
+            // some other oak instance probably created the same
+            // index definition concurrently. refresh and try again
+            // do not catch exception if it fails again.
+            session.refresh(false);
+            ensurePropertyIndex();
+        }
+
+        root = session.getRootNode().addNode("testroot" + TEST_ID, "nt:unstructured");
+        for (int i = 0; i < ROWS_PER_QUERY; i++) {
+            Node node = root.addNode("node" + i, "nt:unstructured");
+            for (int j = 0; j < NODE_COUNT; j++) {
+                Node child = node.addNode("node" + j, "nt:unstructured");
+                child.setProperty("testcount", j);
+            }
+            session.save();
+        }
+    }
+
+    @Override
+    public void runTest() throws Exception {
+        QueryManager manager = session.getWorkspace().getQueryManager();
+        ValueFactory vf = session.getValueFactory();
+        for (int i = 0; i < NODE_COUNT; i++) {
+            Query query = manager.createQuery(QUERY, Query.JCR_SQL2);
+            query.bindValue("count", vf.createValue(i));
+            NodeIterator iterator = query.execute().getNodes();
+            while (iterator.hasNext()) {
+                Node node = iterator.nextNode();
+                if (node.getProperty("testcount").getLong() != i) {
+                    throw new Exception("Invalid test result: " + node.getPath());
+                }
+            }
+        }
+    }
+
+    @Override
+    public void afterSuite() throws RepositoryException {
+        root.remove();
+        session.save();
+        session.logout();
+    }
+
+    private void ensurePropertyIndex() throws RepositoryException {
+        new OakIndexUtils.PropertyIndex().
+                property("testcount").
+                create(session);
+    }
+
+}
@@ -0,0 +1,117 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.jackrabbit.oak.benchmark;
+
+import java.io.File;
+import java.io.IOException;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.jackrabbit.oak.api.PropertyState;
+import org.apache.jackrabbit.oak.api.Type;
+import org.apache.jackrabbit.oak.fixture.RepositoryFixture;
+import org.apache.jackrabbit.oak.plugins.segment.SegmentNodeBuilder;
+import org.apache.jackrabbit.oak.plugins.segment.SegmentNodeState;
+import org.apache.jackrabbit.oak.plugins.segment.file.FileStore;
+import org.apache.jackrabbit.oak.spi.state.ChildNodeEntry;
+import org.apache.jackrabbit.oak.spi.state.NodeBuilder;
+import org.apache.jackrabbit.oak.spi.state.NodeState;
+
+/**
+ * Measures the throughput of a full traversal of a TarMK repository with
+ * a cold segment cache, with and without segment prefetching. The
+ * repository (about 100k nodes) is created directly on a
+ * {@link FileStore}, so the repository fixtures are not used.
+ */
+public class SegmentPrefetchBenchmark extends Benchmark {
+
+    private static final int LEVELS = 5;
+
+    private static final int CHILDREN = 10;
+
+    @Override
+    public void run(Iterable<RepositoryFixture> fixtures) {
+        try {
+            File directory = File.createTempFile("prefetch", "dir");
+            directory.delete();
+            try {
+                createContent(directory);
+                for (int i = 0; i < 3; i++) {
+                    traverse(directory, false);
+                    traverse(directory, true);
+                }
+            } finally {
+                FileUtils.deleteQuietly(directory);
+            }
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+
+    private static void createContent(File directory) throws IOException {
+        FileStore store = new FileStore(directory, 256, false);
+        try {
+            SegmentNodeState base = store.getHead();
+            SegmentNodeBuilder builder = base.builder();
+            createNodes(builder.child("root"), LEVELS);
+            store.setHead(base, builder.getNodeState());
+        } finally {
+            store.close();
+        }
+    }
+
+    private static void createNodes(NodeBuilder builder, int levels) {
+        for (int i = 0; i < CHILDREN; i++) {
+            NodeBuilder child = builder.child("node" + i);
+            child.setProperty("level", levels);
+            child.setProperty("title", "Node " + i + " at level " + levels);
+            if (levels > 1) {
+                createNodes(child, levels - 1);
+            }
+        }
+    }
+
+    private static void traverse(File directory, boolean prefetch)
+            throws IOException {
+        // a new store comes with an empty segment cache
+        FileStore store = new FileStore(directory, 256, false);
+        try {
+            store.setPrefetchEnabled(prefetch);
+            long start = System.nanoTime();
+            int count = traverse(store.getHead().getChildNode("root"));
+            long duration = System.nanoTime() - start;
+            System.out.format(
+                    "Traversed %d nodes in %dms, prefetch=%s (%d segments prefetched, %.0f nodes/s)%n",
+                    count, duration / 1000000, prefetch,
+                    store.getPrefetchedSegmentCount(),
+                    count * 1000000000.0 / duration);
+        } finally {
+            store.close();
+        }
+    }
+
+    private static int traverse(NodeState state) {
+        int count = 1;
+        for (PropertyState property : state.getProperties()) {
+            property.getValue(Type.STRING);
+        }
+        for (ChildNodeEntry entry : state.getChildNodeEntries()) {
+            count += traverse(entry.getNodeState());
+        }
+        return count;
+    }
+
+}
@@ -0,0 +1,101 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.jackrabbit.oak.benchmark;
+
+import static com.google.common.collect.Lists.newArrayList;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Collections;
+import java.util.List;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.jackrabbit.oak.fixture.RepositoryFixture;
+import org.apache.jackrabbit.oak.plugins.segment.SegmentId;
+import org.apache.jackrabbit.oak.plugins.segment.SegmentNodeBuilder;
+import org.apache.jackrabbit.oak.plugins.segment.SegmentNodeState;
+import org.apache.jackrabbit.oak.plugins.segment.file.FileStore;
+import org.apache.jackrabbit.oak.plugins.segment.file.FileStoreStats;
+
+/**
+ * Measures how fast segments are located in a TarMK store that consists
+ * of many (2000) small tar files, as after a long uptime without
+ * compaction. The store is created directly on a {@link FileStore}, so
+ * the repository fixtures are not used.
+ */
+public class TarLookupBenchmark extends Benchmark {
+
+    private static final int TAR_FILES = 2000;
+
+    @Override
+    public void run(Iterable<RepositoryFixture> fixtures) {
+        try {
+            File directory = File.createTempFile("tarlookup", "dir");
+            directory.delete();
+            try {
+                createTarFiles(directory);
+                for (int i = 0; i < 3; i++) {
+                    lookup(directory);
+                }
+            } finally {
+                FileUtils.deleteQuietly(directory);
+            }
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+
+    private static void createTarFiles(File directory) throws IOException {
+        // with a zero maximum file size each segment ends up in a new file
+        FileStore store = new FileStore(directory, 0, false);
+        try {
+            for (int i = 0; i < TAR_FILES; i++) {
+                SegmentNodeState base = store.getHead();
+                SegmentNodeBuilder builder = base.builder();
+                builder.setProperty("count", i);
+                store.setHead(base, builder.getNodeState());
+                store.getTracker().flushWriters();
+            }
+        } finally {
+            store.close();
+        }
+    }
+
+    private static void lookup(File directory) throws IOException {
+        FileStore store = new FileStore(directory, 256, false);
+        try {
+            List<SegmentId> ids = newArrayList(store.getSegmentIds());
+            Collections.shuffle(ids);
+
+            long start = System.nanoTime();
+            for (SegmentId id : ids) {
+                store.readSegment(id);
+            }
+            long duration = System.nanoTime() - start;
+
+            FileStoreStats stats = store.getStats();
+            System.out.format(
+                    "Read %d segments from %d tar files in %dms (%.1fus/segment, %.2f index probes/lookup)%n",
+                    ids.size(), store.getTarReaderIndex().size(),
+                    duration / 1000000, duration / 1000.0 / ids.size(),
+                    stats.getTarIndexProbesPerLookup());
+        } finally {
+            store.close();
+        }
+    }
+
+}
@@ -38,6 +38,7 @@ import java.util.UUID;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
+import javax.jcr.PropertyType;
 import javax.jcr.Repository;
 
 import com.google.common.base.Joiner;
@@ -51,10 +52,14 @@ import com.mongodb.MongoURI;
 import joptsimple.OptionParser;
 import joptsimple.OptionSet;
 import joptsimple.OptionSpec;
+import org.apache.jackrabbit.JcrConstants;
 import org.apache.jackrabbit.core.RepositoryContext;
 import org.apache.jackrabbit.core.config.RepositoryConfig;
 import org.apache.jackrabbit.oak.Oak;
+import org.apache.jackrabbit.oak.api.Blob;
 import org.apache.jackrabbit.oak.api.ContentRepository;
+import org.apache.jackrabbit.oak.api.PropertyState;
+import org.apache.jackrabbit.oak.api.Type;
 import org.apache.jackrabbit.oak.benchmark.BenchmarkRunner;
 import org.apache.jackrabbit.oak.commons.PathUtils;
 import org.apache.jackrabbit.oak.commons.json.JsopBuilder;
@@ -69,6 +74,8 @@ import org.apache.jackrabbit.oak.plugins.backup.FileStoreRestore;
 import org.apache.jackrabbit.oak.plugins.document.DocumentMK;
 import org.apache.jackrabbit.oak.plugins.document.DocumentNodeStore;
 import org.apache.jackrabbit.oak.plugins.document.util.MongoConnection;
+import org.apache.jackrabbit.oak.plugins.index.lucene.ExtractedTextStore;
+import org.apache.jackrabbit.oak.plugins.index.lucene.TextExtractor;
 import org.apache.jackrabbit.oak.plugins.segment.RecordId;
 import org.apache.jackrabbit.oak.plugins.segment.Segment;
 import org.apache.jackrabbit.oak.plugins.segment.SegmentId;
@@ -76,14 +83,17 @@ import org.apache.jackrabbit.oak.plugins.segment.SegmentNodeState;
 import org.apache.jackrabbit.oak.plugins.segment.SegmentNodeStore;
 import org.apache.jackrabbit.oak.plugins.segment.file.FileStore;
 import org.apache.jackrabbit.oak.scalability.ScalabilityRunner;
+import org.apache.jackrabbit.oak.spi.state.ChildNodeEntry;
 import org.apache.jackrabbit.oak.spi.state.NodeBuilder;
 import org.apache.jackrabbit.oak.spi.state.NodeState;
+import org.apache.jackrabbit.oak.spi.state.NodeStateUtils;
 import org.apache.jackrabbit.oak.spi.state.NodeStore;
 import org.apache.jackrabbit.oak.upgrade.RepositoryUpgrade;
 import org.apache.jackrabbit.server.remoting.davex.JcrRemotingServlet;
 import org.apache.jackrabbit.webdav.jcr.JCRWebdavServerServlet;
 import org.apache.jackrabbit.webdav.server.AbstractWebdavServlet;
 import org.apache.jackrabbit.webdav.simple.SimpleWebdavServlet;
+import org.apache.tika.metadata.Metadata;
 import org.eclipse.jetty.server.Server;
 import org.eclipse.jetty.servlet.ServletContextHandler;
 import org.eclipse.jetty.servlet.ServletHolder;
@@ -147,6 +157,9 @@ public class Main {
         case CHECKPOINTS:
             checkpoints(args);
             break;
+            case EXTRACT:
+                extract(args);
+                break;
             case HELP:
             default:
                 System.err.print("Available run modes: ");
@@ -216,6 +229,75 @@ public class Main {
         }
     }
 
+    private static void extract(String[] args) throws IOException {
+        Closer closer = Closer.create();
+        String h = "extract { /path/to/oak/repository | mongodb://host:port/database } <path/to/extracted/text> [<path>]";
+        try {
+            NodeStore store = bootstrapNodeStore(args, closer, h);
+            if (args.length < 2) {
+                System.err.println("usage: " + h);
+                System.exit(1);
+            }
+            String path = args.length > 2 ? args[2] : "/";
+            ExtractedTextStore textStore = new ExtractedTextStore(new File(args[1]));
+            TextExtractor extractor = new TextExtractor(textStore, 0, 0,
+                    TextExtractor.DEFAULT_MAX_EXTRACT_LENGTH);
+            System.out.println("Extracting the text of the binaries below "
+                    + path + " to " + textStore.getDirectory());
+            NodeState node = store.getRoot();
+            for (String name : PathUtils.elements(path)) {
+                node = node.getChildNode(name);
+            }
+            long count = extractText(extractor, node, 0);
+            System.out.println("Done, " + count + " binaries ("
+                    + extractor.getStats() + ")");
+        } catch (Throwable e) {
+            throw closer.rethrow(e);
+        } finally {
+            closer.close();
+        }
+    }
+
+    /**
+     * Extract the text of all binaries in the given subtree, and add it to
+     * the extracted text store of the text extractor (binaries that are
+     * already in the store are not parsed again).
+     *
+     * @return the number of binaries processed so far
+     */
+    private static long extractText(TextExtractor extractor, NodeState node,
+            long count) {
+        for (PropertyState property : node.getProperties()) {
+            if (property.getType().tag() != PropertyType.BINARY) {
+                continue;
+            }
+            Metadata metadata = new Metadata();
+            if (JcrConstants.JCR_DATA.equals(property.getName())) {
+                String type = node.getString(JcrConstants.JCR_MIMETYPE);
+                if (type != null) {
+                    metadata.set(Metadata.CONTENT_TYPE, type);
+                }
+                String encoding = node.getString(JcrConstants.JCR_ENCODING);
+                if (encoding != null) {
+                    metadata.set(Metadata.CONTENT_ENCODING, encoding);
+                }
+            }
+            for (Blob blob : property.getValue(Type.BINARIES)) {
+                extractor.extract(blob, metadata);
+                if (++count % 1000 == 0) {
+                    System.out.println("    " + count + " binaries ("
+                            + extractor.getStats() + ")");
+                }
+            }
+        }
+        for (ChildNodeEntry child : node.getChildNodeEntries()) {
+            if (!NodeStateUtils.isHidden(child.getName())) {
+                count = extractText(extractor, child.getNodeState(), count);
+            }
+        }
+        return count;
+    }
+
     public static NodeStore bootstrapNodeStore(String[] args, Closer closer,
             String h) throws IOException {
         //TODO add support for other NodeStore flags
@@ -808,7 +890,8 @@ public class Main {
         SCALABILITY("scalability"),
         EXPLORE("explore"),
         HELP("help"),
-        CHECKPOINTS("checkpoints");
+        CHECKPOINTS("checkpoints"),
+        EXTRACT("extract");
 
         private final String name;
 